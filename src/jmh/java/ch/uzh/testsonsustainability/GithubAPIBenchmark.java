@@ -0,0 +1,130 @@
+package ch.uzh.testsonsustainability;
+
+import org.kohsuke.github.GHIssueState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-month metric methods of {@link GithubAPI}, each invocation querying the next month of the analysed period.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlog4j.configuration=jmh-log4j.properties"})
+public class GithubAPIBenchmark {
+
+    private static final long SEED = 42;
+    private static final int STARTING_YEAR = 2010;
+    private static final int MONTHS = 120;
+
+    @State(Scope.Benchmark)
+    public static class Repository {
+
+        @Param({"1000", "10000", "100000"})
+        public int commits;
+
+        @Param({"200"})
+        public int developers;
+
+        public GithubAPI githubAPI;
+        public Date[] monthStarts;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            monthStarts = new Date[MONTHS + 1];
+            for (int month = 0; month <= MONTHS; month++) {
+                monthStarts[month] = new Date(STARTING_YEAR - 1900 + month / 12, month % 12, 1);
+            }
+            // one issue every four commits, as in most of the analysed projects
+            githubAPI = new SyntheticGithubData(commits, commits / 4, developers, monthStarts[0], monthStarts[MONTHS], SEED).githubAPI();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Month {
+
+        private int month;
+        public Date since;
+        public Date until;
+
+        public void next(Repository repository) {
+            month = (month + 1) % MONTHS;
+            since = repository.monthStarts[month];
+            until = repository.monthStarts[month + 1];
+        }
+    }
+
+    @Benchmark
+    public int getNumberOfCommits(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getNumberOfCommits(month.since, month.until);
+    }
+
+    @Benchmark
+    public int getNumberOfContributors(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getNumberOfContributors(month.since, month.until);
+    }
+
+    @Benchmark
+    public int getNumberOfUniversityContributors(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getNumberOfUniversityContributors(month.since, month.until);
+    }
+
+    @Benchmark
+    public int getNumberOfCommercialContributors(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getNumberOfCommercialContributors(month.since, month.until);
+    }
+
+    @Benchmark
+    public int getNumberOfIssues(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getNumberOfIssues(GHIssueState.ALL, month.since, month.until);
+    }
+
+    @Benchmark
+    public int getNumberOfNonDevIssues(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getNumberOfNonDevIssues(GHIssueState.CLOSED, month.since, month.until);
+    }
+
+    @Benchmark
+    public int getNumberOfSubmitters(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getNumberOfSubmitters(GHIssueState.OPEN, month.since, month.until);
+    }
+
+    @Benchmark
+    public long getNumberOfNonDevSubmitters(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getNumberOfNonDevSubmitters(GHIssueState.ALL, month.since, month.until);
+    }
+
+    @Benchmark
+    public int getSizeOfTheCoreTeam(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.getSizeOfTheCoreTeam(month.since, month.until);
+    }
+
+    @Benchmark
+    public boolean isDormant(Repository repository, Month month) throws Exception {
+        month.next(repository);
+        return repository.githubAPI.isDormant(month.until);
+    }
+}
@@ -0,0 +1,143 @@
+package ch.uzh.testsonsustainability;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlog4j.configuration=jmh-log4j.properties"})
+public class MavenCentralInfoBenchmark {
+
+    private static final long SEED = 42;
+    private static final int QUERIES = 1024;
+    private static final Set<DependencyScope> COMPILE_SCOPES = EnumSet.of(DependencyScope.COMPILE, DependencyScope.RUNTIME);
+
+    @State(Scope.Benchmark)
+    public static class Dataset {
+
+        @Param({"1000", "10000", "50000"})
+        public int artifacts;
+
+        @Param({"5"})
+        public int versionsPerArtifact;
+
+        @Param({"4"})
+        public int dependenciesPerVersion;
+
+        public String csvPath;
+        public MavenCentralInfo mavenCentralInfo;
+        public String[] artifactQueries;
+        public String[] artifactTagQueries;
+        public LocalDate[] dateQueries;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            Path directory = Files.createTempDirectory("tos-jmh-maven");
+            csvPath = new SyntheticMavenData(artifacts, versionsPerArtifact, dependenciesPerVersion, SEED).writeTo(directory);
+            mavenCentralInfo = new MavenCentralInfo(csvPath);
+
+            Random random = new Random(SEED);
+            artifactQueries = new String[QUERIES];
+            artifactTagQueries = new String[QUERIES];
+            dateQueries = new LocalDate[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                int artifactIndex = random.nextInt(artifacts);
+                int versionIndex = random.nextInt(versionsPerArtifact);
+                artifactQueries[i] = SyntheticMavenData.artifact(artifactIndex);
+                artifactTagQueries[i] = SyntheticMavenData.artifact(artifactIndex) + ":" + SyntheticMavenData.tag(versionIndex);
+                dateQueries[i] = SyntheticMavenData.releaseDate(artifactIndex, versionIndex).plusMonths(1);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        public int next() {
+            next = (next + 1) % QUERIES;
+            return next;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public MavenCentralInfo construction(Dataset dataset) throws IOException {
+        return new MavenCentralInfo(dataset.csvPath);
+    }
+
+    @Benchmark
+    public String getCurrentVersionArtifactTag(Dataset dataset, Cursor cursor) throws Exception {
+        int i = cursor.next();
+        return dataset.mavenCentralInfo.getCurrentVersionArtifactTag(dataset.artifactQueries[i], dataset.dateQueries[i]);
+    }
+
+    @Benchmark
+    public int getDependencies(Dataset dataset, Cursor cursor) {
+        return dataset.mavenCentralInfo.getDependencies(dataset.artifactTagQueries[cursor.next()]).size();
+    }
+
+    @Benchmark
+    public int getDependants(Dataset dataset, Cursor cursor) {
+        return dataset.mavenCentralInfo.getDependants(dataset.artifactTagQueries[cursor.next()]).size();
+    }
+
+    @Benchmark
+    public int getTransitiveDependencies(Dataset dataset, Cursor cursor) {
+        return dataset.mavenCentralInfo.getTransitiveDependencies(dataset.artifactTagQueries[cursor.next()]).size();
+    }
+
+    @Benchmark
+    public int getTransitiveDependenciesInCompileScope(Dataset dataset, Cursor cursor) {
+        return dataset.mavenCentralInfo.getTransitiveDependencies(dataset.artifactTagQueries[cursor.next()], COMPILE_SCOPES).size();
+    }
+
+    @Benchmark
+    public int getTransitiveDependants(Dataset dataset, Cursor cursor) {
+        return dataset.mavenCentralInfo.getTransitiveDependants(dataset.artifactTagQueries[cursor.next()]).size();
+    }
+
+    @Benchmark
+    public int getDependantArtifacts(Dataset dataset, Cursor cursor) {
+        return dataset.mavenCentralInfo.getDependantArtifacts(dataset.artifactQueries[cursor.next()], COMPILE_SCOPES).size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int getDependencyCountsBatch(Dataset dataset) throws Exception {
+        // all the queries at once, the transitive counts are cached after the first invocation
+        return dataset.mavenCentralInfo.getDependencyCounts(Arrays.asList(dataset.artifactTagQueries), COMPILE_SCOPES).size();
+    }
+
+    @Benchmark
+    public double katzCentrality(Dataset dataset, Cursor cursor) throws Exception {
+        int i = cursor.next();
+        return dataset.mavenCentralInfo.katzCentrality(dataset.artifactQueries[i], dataset.dateQueries[i]);
+    }
+}
@@ -0,0 +1,113 @@
+package ch.uzh.testsonsustainability;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONObject;
+import org.kohsuke.github.GHCommit;
+import org.kohsuke.github.GHIssue;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Seeded generator of the commits, issues and contributors of a repository, materialised as github-api objects
+ * without any request to github.
+ */
+public class SyntheticGithubData {
+
+    public static final List<String> UNIVERSITY_DOMAINS = Arrays.asList("uzh.ch", "unisa.it", "mit.edu");
+    public static final List<String> PUBLIC_DOMAINS = Arrays.asList("gmail.com", "yahoo.com", "outlook.com");
+    private static final List<String> COMMERCIAL_DOMAINS = Arrays.asList("google.com", "alibaba.com", "redhat.com");
+
+    private final ObjectMapper mapper;
+    private final GitHub offlineRoot;
+    private final SimpleDateFormat dateFormat;
+
+    public final List<GHCommit> commits = new ArrayList<>();
+    public final List<GHIssue> issues = new ArrayList<>();
+    public final List<GHRepository.Contributor> contributors = new ArrayList<>();
+
+    public SyntheticGithubData(int numberOfCommits, int numberOfIssues, int numberOfDevelopers, Date since, Date until, long seed) throws Exception {
+        // github-api objects are bound through their fields, as github does when parsing the responses
+        mapper = new ObjectMapper()
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        offlineRoot = new GitHubBuilder().withEndpoint("http://localhost").withConnector(HttpConnector.OFFLINE).build();
+        dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        Random random = new Random(seed);
+        long span = until.getTime() - since.getTime();
+        String[] domains = new String[numberOfDevelopers];
+        for (int developer = 0; developer < numberOfDevelopers; developer++) {
+            List<String> domainGroup = developer % 3 == 0 ? UNIVERSITY_DOMAINS : developer % 3 == 1 ? PUBLIC_DOMAINS : COMMERCIAL_DOMAINS;
+            domains[developer] = domainGroup.get(random.nextInt(domainGroup.size()));
+            // only part of the developers are collaborators of the repository
+            if (developer % 2 == 0) {
+                contributors.add(read(new JSONObject().put("login", "dev" + developer), GHRepository.Contributor.class));
+            }
+        }
+
+        for (int i = 0; i < numberOfCommits; i++) {
+            // few developers author most of the commits
+            double r = random.nextDouble();
+            int developer = (int) (r * r * numberOfDevelopers);
+            String date = dateFormat.format(new Date(since.getTime() + (long) (random.nextDouble() * span)));
+            JSONObject person = new JSONObject()
+                    .put("name", "Developer " + developer)
+                    .put("email", "dev" + developer + "@" + domains[developer])
+                    .put("date", date);
+            JSONObject commit = new JSONObject()
+                    .put("sha", Long.toHexString(random.nextLong()))
+                    .put("commit", new JSONObject().put("author", person).put("committer", person).put("message", "commit " + i));
+            commits.add(read(commit, GHCommit.class));
+        }
+
+        for (int i = 0; i < numberOfIssues; i++) {
+            double r = random.nextDouble();
+            int submitter = (int) (r * r * numberOfDevelopers * 4);
+            Date createdAt = new Date(since.getTime() + (long) (random.nextDouble() * span));
+            boolean closed = random.nextInt(3) > 0;
+            JSONObject issue = new JSONObject()
+                    .put("number", i)
+                    .put("created_at", dateFormat.format(createdAt))
+                    .put("state", closed ? "closed" : "open")
+                    .put("user", new JSONObject().put("login", "dev" + submitter));
+            if (closed) {
+                issue.put("closed_at", dateFormat.format(new Date(createdAt.getTime() + (long) (random.nextDouble() * 30L * 24 * 3600 * 1000))));
+            }
+            GHIssue ghIssue = read(issue, GHIssue.class);
+            injectRoot(ghIssue);
+            issues.add(ghIssue);
+        }
+    }
+
+    public GithubAPI githubAPI() throws IOException {
+        return new GithubAPI(commits, issues, contributors, new Domains(UNIVERSITY_DOMAINS, PUBLIC_DOMAINS));
+    }
+
+    private <T> T read(JSONObject json, Class<T> type) throws IOException {
+        return mapper.readValue(json.toString(), type);
+    }
+
+    private void injectRoot(GHIssue issue) throws ReflectiveOperationException {
+        // GHIssue resolves its users through the root, which is normally set when github wraps the response
+        Field root = GHIssue.class.getDeclaredField("root");
+        root.setAccessible(true);
+        root.set(issue, offlineRoot);
+    }
+}
@@ -0,0 +1,59 @@
+package ch.uzh.testsonsustainability;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Options of a run, as given on the command line, with their defaults. The worker options are only read by the
+ * worker, the graph daemon, coordinator and bulk dependency table modes use the paths and the few options they
+ * document.
+ */
+class AnalysisSettings {
+
+    String csvPath;
+    String outPath;
+    String clonePath;
+    int startingYear = 2019;
+    String gitHubUsername;
+    String gitHubToken;
+    String gitHubApiUrl = Utils.GITHUB_API_URL;
+    boolean gitHubGraphQL = false;
+    String githubArchivePath;
+    String jobApiBaseUrl;
+    long heartbeatIntervalSeconds = 60;
+    int workerThreads = 1;
+    boolean incremental = false;
+    long metricsIntervalSeconds = 60;
+    MetricPlanner metrics = MetricPlanner.all();
+    Set<DependencyScope> dependencyScopes = EnumSet.allOf(DependencyScope.class);
+    ApproximateCounts approximateCounts;
+    String graphUrl;
+    String dependencyTablePath;
+    boolean incrementalCheckout = false;
+    // null to run the static analysis in the worker JVM, 0 for one helper per worker thread
+    Integer analysisHelpers;
+    String analysisMaxHeap;
+    long analysisTimeoutSeconds = 3600;
+    int analysisRecycle = 100;
+    Integer apiBudgetReserve;
+    int httpMaxPerHost = 8;
+    int httpReadTimeoutSeconds = 60;
+    int repositoryCacheSize = 16;
+
+    Pair<String, String> ghUserPassword() {
+        return Pair.of(gitHubUsername, gitHubToken);
+    }
+
+    /**
+     * The pool of static analysis helpers, or null if the analysis runs in the worker JVM. A job analyses its months
+     * one after the other, so more helpers than worker threads would never be busy.
+     */
+    StaticAnalysisPool createAnalysisPool() {
+        if (analysisHelpers == null) {
+            return null;
+        }
+        return new StaticAnalysisPool(analysisHelpers == 0 ? workerThreads : analysisHelpers, analysisMaxHeap, analysisTimeoutSeconds, analysisRecycle);
+    }
+}
@@ -0,0 +1,194 @@
+package ch.uzh.testsonsustainability;
+
+import org.kohsuke.github.GHRateLimit;
+import org.kohsuke.github.GitHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans the github API calls of a job before it starts, and holds the job back when the rate limit left cannot pay
+ * for them.
+ *
+ * The calls are estimated from the counts of the repository, fetched with one GraphQL query, following the requests
+ * GithubAPI issues: a page per 100 commits, issues or contributors, plus the user fields of each commit and each user
+ * once when the commit users are resolved through REST, and for cc_degree a few calls per author and month, whose
+ * number is learned from the jobs already run. A job that the calls left cannot pay for waits for the reset of the
+ * rate limit, keeping its lease, and a job that a whole rate limit window cannot pay for is run without cc_degree.
+ * The planned calls are compared with the calls the job issued in the same phases when it finishes.
+ */
+class ApiBudgetPlanner {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ApiBudgetPlanner.class);
+
+    static final String RETRIEVAL = "github_retrieval";
+    static final String SOCIAL_TIES = "cc_degree";
+
+    private static final int PAGE_SIZE = 100;
+    // the user of the author and a page of their subscriptions, then a commit query per subscription
+    private static final double DEFAULT_SOCIAL_CALLS_PER_AUTHOR_MONTH = 2 + 10;
+
+    private final GitHub github;
+    private final GithubGraphQL graphQL;
+    private final int reserve;
+
+    // calls of cc_degree and estimated author months of the jobs run so far, to learn the calls per author and month
+    private long socialCalls = 0;
+    private double socialAuthorMonths = 0;
+
+    ApiBudgetPlanner(GitHub github, GithubGraphQL graphQL, int reserve) {
+        this.github = github;
+        this.graphQL = graphQL;
+        this.reserve = reserve;
+    }
+
+    /**
+     * Plans the job of the repository retrieved since the starting date, whose variables are computed for the given
+     * number of months, and waits until the rate limit left can pay for it.
+     */
+    Plan plan(String repoName, Date startingDate, int retrievalMonths, int months, MetricPlanner metricPlanner, boolean graphQLRetrieval) throws IOException {
+        GithubGraphQL.RepositoryCounts counts = graphQL.counts(repoName, startingDate);
+        boolean socialTies = metricPlanner.computes(SOCIAL_TIES);
+        Plan plan = estimate(counts, retrievalMonths, months, metricPlanner.getDataSources(), graphQLRetrieval, socialTies, socialCallsPerAuthorMonth());
+        LOGGER.info("Planned {} github api calls for {} from {}: {}", plan.total(), repoName, counts, plan);
+
+        GHRateLimit rateLimit = github.getRateLimit();
+        if (socialTies && plan.total() > rateLimit.limit - reserve) {
+            plan = estimate(counts, retrievalMonths, months, metricPlanner.getDataSources(), graphQLRetrieval, false, 0);
+            LOGGER.warn("A rate limit window of {} calls cannot pay for {}, skipping {} and planning {} calls", rateLimit.limit, repoName, SOCIAL_TIES, plan.total());
+        }
+        while (plan.total() > rateLimit.remaining - reserve) {
+            if (plan.total() > rateLimit.limit - reserve) {
+                LOGGER.warn("A rate limit window of {} calls cannot pay for {}, running it across the resets of the rate limit", rateLimit.limit, repoName);
+                break;
+            }
+            long waitMillis = rateLimit.getResetDate().getTime() - System.currentTimeMillis() + 1000;
+            LOGGER.warn("Postponing {} by {} seconds, until the rate limit resets: {} calls left, {} in reserve", repoName, waitMillis / 1000, rateLimit.remaining, reserve);
+            if (waitMillis > 0) {
+                try (PipelineMetrics.Timer timer = PipelineMetrics.time("budget_wait")) {
+                    Thread.sleep(waitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the reset of the rate limit");
+                }
+            }
+            rateLimit = github.getRateLimit();
+        }
+        PipelineMetrics.observe(PipelineMetrics.JOB_PLANNED_API_CALLS, null, null, plan.total());
+        return plan;
+    }
+
+    /**
+     * Calls of the job in each phase, as GithubAPI issues them.
+     */
+    static Plan estimate(GithubGraphQL.RepositoryCounts counts, int retrievalMonths, int months, Set<DataSource> dataSources, boolean graphQLRetrieval, boolean socialTies, double socialCallsPerAuthorMonth) {
+        // the repository itself
+        long retrievalCalls = 1;
+        boolean commits = dataSources.contains(DataSource.COMMITS);
+        boolean issues = dataSources.contains(DataSource.ISSUES);
+        if (graphQLRetrieval && (commits || issues)) {
+            // a query returns a page of each list, with the users of the commits
+            retrievalCalls += Math.max(commits ? pages(counts.commits) : 0, issues ? pages(issues(counts, dataSources)) : 0);
+        } else {
+            if (commits) {
+                retrievalCalls += pages(counts.commits);
+                if (dataSources.contains(DataSource.COMMIT_USERS)) {
+                    // the user fields of each listed commit are fetched lazily, and each user once
+                    retrievalCalls += counts.commits + counts.users;
+                }
+            }
+            if (issues) {
+                retrievalCalls += pages(issues(counts, dataSources));
+            }
+        }
+        if (dataSources.contains(DataSource.CONTRIBUTORS)) {
+            retrievalCalls += pages(counts.users);
+        }
+        Plan plan = new Plan(socialTies);
+        plan.calls.put(RETRIEVAL, retrievalCalls);
+        if (socialTies && dataSources.contains(DataSource.SOCIAL_API)) {
+            plan.authorMonths = authorMonths(counts, retrievalMonths, months);
+            plan.calls.put(SOCIAL_TIES, Math.round(plan.authorMonths * socialCallsPerAuthorMonth));
+        }
+        return plan;
+    }
+
+    private static double authorMonths(GithubGraphQL.RepositoryCounts counts, int retrievalMonths, int months) {
+        // an author commits at least once in the months they are active
+        double commitsPerMonth = (double) counts.commits / Math.max(retrievalMonths, 1);
+        return months * Math.min(counts.users, commitsPerMonth);
+    }
+
+    // the backlog lists all the issues
+    private static int issues(GithubGraphQL.RepositoryCounts counts, Set<DataSource> dataSources) {
+        return dataSources.contains(DataSource.ISSUE_BACKLOG) ? counts.allIssues : counts.issues;
+    }
+
+    private static long pages(int items) {
+        return Math.max(1, (items + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    private synchronized double socialCallsPerAuthorMonth() {
+        return socialAuthorMonths == 0 ? DEFAULT_SOCIAL_CALLS_PER_AUTHOR_MONTH : socialCalls / socialAuthorMonths;
+    }
+
+    /**
+     * Logs the planned and actual calls of the job running on the current thread, and learns the calls of cc_degree
+     * per author and month from them.
+     */
+    void finish(Plan plan, String jobId) {
+        StringBuilder comparison = new StringBuilder();
+        for (Map.Entry<String, Long> plannedCalls : plan.calls.entrySet()) {
+            comparison.append(String.format(", %s planned %d used %d", plannedCalls.getKey(), plannedCalls.getValue(), PipelineMetrics.getJobApiCalls(plannedCalls.getKey())));
+        }
+        long actualCalls = PipelineMetrics.getJobApiCalls() - PipelineMetrics.getJobApiCalls("api_planning");
+        LOGGER.info("Job {} planned {} github api calls and used {}{}", jobId, plan.total(), actualCalls, comparison);
+        if (plan.authorMonths > 0) {
+            synchronized (this) {
+                socialCalls += PipelineMetrics.getJobApiCalls(SOCIAL_TIES);
+                socialAuthorMonths += plan.authorMonths;
+            }
+        }
+    }
+
+    static class Plan {
+
+        private final boolean socialTies;
+        private final Map<String, Long> calls = new LinkedHashMap<>();
+        private double authorMonths = 0;
+
+        private Plan(boolean socialTies) {
+            this.socialTies = socialTies;
+        }
+
+        /**
+         * Whether cc_degree is computed, false if the job was downgraded.
+         */
+        boolean hasSocialTies() {
+            return socialTies;
+        }
+
+        long total() {
+            long total = 0;
+            for (long phaseCalls : calls.values()) {
+                total += phaseCalls;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder plan = new StringBuilder();
+            for (Map.Entry<String, Long> phaseCalls : calls.entrySet()) {
+                plan.append(plan.length() == 0 ? "" : ", ").append(phaseCalls.getKey()).append('=').append(phaseCalls.getValue());
+            }
+            return plan.toString();
+        }
+    }
+}
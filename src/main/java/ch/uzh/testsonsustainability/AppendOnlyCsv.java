@@ -0,0 +1,88 @@
+package ch.uzh.testsonsustainability;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Csv file that is only ever appended to, whose records are read from where the previous read stopped. The first line
+ * is the header of the records, and a line still being written, without its line break, is left for the next read.
+ */
+class AppendOnlyCsv {
+
+    // the appended bytes are read in chunks, as the file may have grown by more than an array holds since the last read
+    private static final int CHUNK_BYTES = 64 << 20;
+
+    private final Path path;
+    private final int chunkBytes;
+    private String header = null;
+    private long offset = 0;
+
+    AppendOnlyCsv(Path path) {
+        this(path, CHUNK_BYTES);
+    }
+
+    AppendOnlyCsv(Path path, int chunkBytes) {
+        this.path = path;
+        this.chunkBytes = chunkBytes;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Records appended since the previous read, none if the file does not exist.
+     */
+    List<CSVRecord> readNewRecords() throws IOException {
+        if (!Files.exists(path)) {
+            return Collections.emptyList();
+        }
+        List<CSVRecord> records = new ArrayList<>();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            long length = file.length();
+            if (length < offset) {
+                throw new IOException(path + " shrank from " + offset + " to " + length + " bytes, it has to be reloaded from scratch");
+            }
+            while (offset < length) {
+                byte[] chunk = new byte[(int) Math.min(chunkBytes, length - offset)];
+                file.seek(offset);
+                file.readFully(chunk);
+                int complete = chunk.length;
+                while (complete > 0 && chunk[complete - 1] != '\n') {
+                    complete--;
+                }
+                if (complete == 0) {
+                    if (chunk.length < chunkBytes) {
+                        // the last line is still being written
+                        break;
+                    }
+                    throw new IOException("A line of " + path + " at byte " + offset + " is longer than " + chunkBytes + " bytes");
+                }
+                // the line cut by the end of the chunk is read again with the next chunk
+                offset += complete;
+                records.addAll(parse(new String(chunk, 0, complete, StandardCharsets.UTF_8)));
+            }
+        }
+        return records;
+    }
+
+    private List<CSVRecord> parse(String lines) throws IOException {
+        if (header == null) {
+            header = lines.substring(0, lines.indexOf('\n') + 1);
+            lines = lines.substring(header.length());
+        }
+        try (CSVParser parser = CSVParser.parse(header + lines, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+            return parser.getRecords();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ch.uzh.testsonsustainability;
+
+/**
+ * Transitive counts estimated from cardinality sketches instead of counted exactly, and the relative standard error
+ * of the estimates, see {@link TransitiveSketches}.
+ */
+public class ApproximateCounts {
+
+    public static final double DEFAULT_RELATIVE_ERROR = 0.02;
+
+    private final boolean transitiveUpstreams;
+    private final boolean transitiveDownstreams;
+    private final double relativeError;
+
+    public ApproximateCounts(boolean transitiveUpstreams, boolean transitiveDownstreams, double relativeError) {
+        if (relativeError <= 0 || relativeError >= 1) {
+            throw new IllegalArgumentException("Relative error " + relativeError + " is not between 0 and 1");
+        }
+        this.transitiveUpstreams = transitiveUpstreams;
+        this.transitiveDownstreams = transitiveDownstreams;
+        this.relativeError = relativeError;
+    }
+
+    /**
+     * Parses a comma separated list of the variables to estimate, t_upstreams and t_downstreams.
+     */
+    public static ApproximateCounts parse(String variables, double relativeError) {
+        boolean transitiveUpstreams = false;
+        boolean transitiveDownstreams = false;
+        for (String variable : variables.split(",")) {
+            switch (variable.trim()) {
+                case "t_upstreams":
+                    transitiveUpstreams = true;
+                    break;
+                case "t_downstreams":
+                    transitiveDownstreams = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Variable " + variable.trim() + " cannot be approximated, only t_upstreams and t_downstreams can");
+            }
+        }
+        return new ApproximateCounts(transitiveUpstreams, transitiveDownstreams, relativeError);
+    }
+
+    public boolean isTransitiveUpstreams() {
+        return transitiveUpstreams;
+    }
+
+    public boolean isTransitiveDownstreams() {
+        return transitiveDownstreams;
+    }
+
+    public double getRelativeError() {
+        return relativeError;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("t_upstreams=%b, t_downstreams=%b, error=%.3f", transitiveUpstreams, transitiveDownstreams, relativeError);
+    }
+}
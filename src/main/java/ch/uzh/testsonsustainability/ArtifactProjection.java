@@ -0,0 +1,199 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.graph.ValueGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Projection of the maven graph at artifact granularity (group:artifact, all versions collapsed), precomputed once.
+ *
+ * Artifact tags (versions) and artifacts get dense int ids. The artifact of each version is an entry of an int array,
+ * so going from a version to its artifact or to its GH repo needs no string parsing. Two artifacts are linked when any
+ * of their versions are linked, with the union of the scopes of those links.
+ */
+class ArtifactProjection {
+
+    private final Map<String, Integer> versionIds;
+    private final int[] versionArtifacts;
+    private final Map<String, Integer> artifactIds;
+    private final String[] artifacts;
+    private final String[] artifactGHRepos;
+    private final Adjacency dependencies;
+    private final Adjacency dependants;
+
+    ArtifactProjection(ValueGraph<String, Byte> mavenGraph, Collection<String> releasedArtifacts, Map<String, String> artifactGHRepoMap) {
+        versionIds = new HashMap<>(mavenGraph.nodes().size() * 2);
+        versionArtifacts = new int[mavenGraph.nodes().size()];
+        artifactIds = new HashMap<>();
+        List<String> artifactList = new ArrayList<>();
+        for (String artifactTag : mavenGraph.nodes()) {
+            int versionId = versionIds.size();
+            versionIds.put(artifactTag, versionId);
+            versionArtifacts[versionId] = artifactId(artifactOf(artifactTag), artifactList);
+        }
+        for (String artifact : releasedArtifacts) {
+            artifactId(artifact, artifactList);
+        }
+        artifacts = artifactList.toArray(new String[0]);
+
+        artifactGHRepos = new String[artifacts.length];
+        for (int artifactId = 0; artifactId < artifacts.length; artifactId++) {
+            artifactGHRepos[artifactId] = artifactGHRepoMap.get(artifacts[artifactId]);
+        }
+
+        dependencies = new Adjacency(mavenGraph, true);
+        dependants = new Adjacency(mavenGraph, false);
+    }
+
+    /**
+     * The group:artifact part of a group:artifact:version artifact tag.
+     */
+    static String artifactOf(String artifactTag) {
+        int groupEnd = artifactTag.indexOf(':');
+        int artifactEnd = groupEnd < 0 ? -1 : artifactTag.indexOf(':', groupEnd + 1);
+        return artifactEnd < 0 ? artifactTag : artifactTag.substring(0, artifactEnd);
+    }
+
+    private int artifactId(String artifact, List<String> artifactList) {
+        Integer artifactId = artifactIds.get(artifact);
+        if (artifactId == null) {
+            artifactId = artifactList.size();
+            artifactIds.put(artifact, artifactId);
+            artifactList.add(artifact);
+        }
+        return artifactId;
+    }
+
+    Map<String, Integer> getVersionIds() {
+        return versionIds;
+    }
+
+    /**
+     * Artifact id of the artifact tag, -1 if the artifact tag is not in the graph.
+     */
+    int getArtifactId(String artifactTag) {
+        Integer versionId = versionIds.get(artifactTag);
+        return versionId == null ? -1 : versionArtifacts[versionId];
+    }
+
+    /**
+     * The artifact of the artifact tag, parsed only if the artifact tag is not in the graph.
+     */
+    String getArtifact(String artifactTag) {
+        int artifactId = getArtifactId(artifactTag);
+        return artifactId < 0 ? artifactOf(artifactTag) : artifacts[artifactId];
+    }
+
+    /**
+     * GH repo link of the artifact of the artifact tag, null if unknown.
+     */
+    String getGHRepo(String artifactTag) {
+        int artifactId = getArtifactId(artifactTag);
+        return artifactId < 0 ? null : artifactGHRepos[artifactId];
+    }
+
+    /**
+     * Ids of the artifact tags whose artifact has a known GH repo accepted by the predicate, tested once per artifact.
+     */
+    BitSet versionsOfGHRepos(Predicate<String> ghRepos) {
+        Boolean[] accepted = new Boolean[artifacts.length];
+        BitSet versions = new BitSet(versionArtifacts.length);
+        for (int versionId = 0; versionId < versionArtifacts.length; versionId++) {
+            int artifactId = versionArtifacts[versionId];
+            if (accepted[artifactId] == null) {
+                accepted[artifactId] = artifactGHRepos[artifactId] != null && ghRepos.test(artifactGHRepos[artifactId]);
+            }
+            if (accepted[artifactId]) {
+                versions.set(versionId);
+            }
+        }
+        return versions;
+    }
+
+    Set<String> getDependencyArtifacts(String artifact, byte scopeMask) {
+        return neighbours(dependencies, artifact, scopeMask);
+    }
+
+    Set<String> getDependantArtifacts(String artifact, byte scopeMask) {
+        return neighbours(dependants, artifact, scopeMask);
+    }
+
+    private Set<String> neighbours(Adjacency adjacency, String artifact, byte scopeMask) {
+        Integer artifactId = artifactIds.get(artifact);
+        if (artifactId == null) {
+            return Collections.emptySet();
+        }
+        Set<String> neighbours = new LinkedHashSet<>();
+        for (int i = adjacency.offsets[artifactId]; i < adjacency.offsets[artifactId + 1]; i++) {
+            if ((adjacency.scopes[i] & scopeMask) != 0) {
+                neighbours.add(artifacts[adjacency.targets[i]]);
+            }
+        }
+        return neighbours;
+    }
+
+    private class Adjacency {
+
+        private final int[] offsets;
+        private final int[] targets;
+        private final byte[] scopes;
+
+        private Adjacency(ValueGraph<String, Byte> mavenGraph, boolean forward) {
+            // artifact links are collected as (from artifact, to artifact) longs, then sorted and merged
+            long[] links = new long[mavenGraph.edges().size()];
+            int linkCount = 0;
+            for (String fromTag : mavenGraph.nodes()) {
+                int fromArtifact = versionArtifacts[versionIds.get(fromTag)];
+                for (String toTag : mavenGraph.successors(fromTag)) {
+                    int toArtifact = versionArtifacts[versionIds.get(toTag)];
+                    if (fromArtifact != toArtifact) {
+                        int source = forward ? fromArtifact : toArtifact;
+                        int target = forward ? toArtifact : fromArtifact;
+                        links[linkCount++] = (long) source << 32 | target;
+                    }
+                }
+            }
+            links = Arrays.copyOf(links, linkCount);
+            Arrays.sort(links);
+
+            offsets = new int[artifacts.length + 1];
+            int[] mergedTargets = new int[linkCount];
+            int merged = 0;
+            for (int i = 0; i < linkCount; i++) {
+                if (merged == 0 || links[i] != links[i - 1]) {
+                    offsets[(int) (links[i] >>> 32) + 1]++;
+                    mergedTargets[merged++] = (int) links[i];
+                }
+            }
+            for (int artifactId = 0; artifactId < artifacts.length; artifactId++) {
+                offsets[artifactId + 1] += offsets[artifactId];
+            }
+            targets = Arrays.copyOf(mergedTargets, merged);
+
+            // the targets of each artifact are sorted, so the scopes of the version links can be merged in a second pass
+            scopes = new byte[merged];
+            for (String fromTag : mavenGraph.nodes()) {
+                int fromArtifact = versionArtifacts[versionIds.get(fromTag)];
+                for (String toTag : mavenGraph.successors(fromTag)) {
+                    int toArtifact = versionArtifacts[versionIds.get(toTag)];
+                    if (fromArtifact != toArtifact) {
+                        int source = forward ? fromArtifact : toArtifact;
+                        int target = forward ? toArtifact : fromArtifact;
+                        int position = Arrays.binarySearch(targets, offsets[source], offsets[source + 1], target);
+                        scopes[position] |= mavenGraph.edgeValueOrDefault(fromTag, toTag, DependencyScope.NONE);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package ch.uzh.testsonsustainability;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.io.NullOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Working tree of a clone, cloned without checkout, moved to the tag of each month.
+ *
+ * Instead of checking out each tag, which rewrites every file of the working tree, the working tree is moved from the
+ * tree of the previous tag to the tree of the next one by applying their diff: deleted paths are removed, added and
+ * modified paths are written from their blobs, and the other files are left untouched. The months of a job are
+ * analysed in ascending order, so the tags are visited chronologically and each step only carries the changes of
+ * one release. Files are written as stored in the repository, without line ending conversion, and symbolic links
+ * are written as files holding their target, as git does without symlink support, so the tree does not point
+ * outside itself.
+ *
+ * The index and HEAD are moved along with the files, the index entries carrying the size and modification time of
+ * the files written, so the clone stays a consistent worktree at the tag: the static analysis, given the clone and
+ * the tag as without this class, finds the tag already checked out and clean.
+ */
+class CheckoutManager implements AutoCloseable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(CheckoutManager.class);
+
+    private final Repository repository;
+    private final File directory;
+    private final ObjectReader reader;
+    private final DiffFormatter diffFormatter = new DiffFormatter(NullOutputStream.INSTANCE);
+    // commit of HEAD as cloned, analysed in the months without a tag, HEAD itself moving along with the tags
+    private final ObjectId clonedHead;
+
+    // tree the working tree is at, null when it is empty or in an unknown state after a failed step
+    private ObjectId currentTree;
+    private boolean dirty = false;
+    private long totalBytes = 0;
+
+    CheckoutManager(Repository repository) throws IOException {
+        this.repository = repository;
+        this.directory = repository.getWorkTree();
+        this.reader = repository.newObjectReader();
+        this.clonedHead = repository.resolve(Constants.HEAD);
+        diffFormatter.setRepository(repository);
+    }
+
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Moves the working tree, the index and HEAD to the tag, or to HEAD as cloned if the tag is null, and returns the
+     * bytes written.
+     */
+    long moveTo(String tag) throws IOException {
+        ObjectId target = tag == null ? clonedHead : repository.resolve(tag);
+        if (target == null) {
+            throw new IOException("Cannot resolve " + (tag == null ? Constants.HEAD : tag) + " in " + repository.getDirectory());
+        }
+        RevCommit commit;
+        ObjectId tree;
+        try (RevWalk revWalk = new RevWalk(reader)) {
+            commit = revWalk.parseCommit(target);
+            tree = commit.getTree().getId();
+        }
+        if (tree.equals(currentTree)) {
+            // the files and the index are already at the tree, e.g. a tag of a commit only changing the version
+            moveHead(commit, tag);
+            return 0;
+        }
+        DirCache index = repository.lockDirCache();
+        long bytes = 0;
+        List<DiffEntry> entries;
+        try {
+            if (dirty) {
+                // the working tree was left half way by a failed step, so the next tree is written from scratch
+                clear(directory);
+                index.clear();
+                currentTree = null;
+            }
+            dirty = true;
+            entries = diffFormatter.scan(currentTree, tree);
+            DirCacheEditor editor = index.editor();
+            // deletions go first, so that a file replacing a directory, or the reverse, finds its path free
+            for (DiffEntry entry : entries) {
+                if (entry.getChangeType() == DiffEntry.ChangeType.DELETE) {
+                    delete(entry.getOldPath());
+                    editor.add(new DirCacheEditor.DeletePath(entry.getOldPath()));
+                }
+            }
+            for (DiffEntry entry : entries) {
+                if (entry.getChangeType() != DiffEntry.ChangeType.DELETE) {
+                    String path = entry.getNewPath();
+                    ObjectId blob = entry.getNewId().toObjectId();
+                    FileMode mode = entry.getNewMode();
+                    bytes += write(path, blob, mode);
+                    File file = new File(directory, path);
+                    editor.add(new DirCacheEditor.PathEdit(path) {
+                        @Override
+                        public void apply(DirCacheEntry indexEntry) {
+                            indexEntry.setFileMode(mode);
+                            indexEntry.setObjectId(blob);
+                            if (mode != FileMode.GITLINK) {
+                                indexEntry.setLength(file.length());
+                                indexEntry.setLastModified(file.lastModified());
+                            }
+                        }
+                    });
+                }
+            }
+            editor.finish();
+            index.write();
+            index.commit();
+        } finally {
+            index.unlock();
+        }
+        moveHead(commit, tag);
+        currentTree = tree;
+        dirty = false;
+        totalBytes += bytes;
+        PipelineMetrics.observe(PipelineMetrics.CHECKOUT_BYTES, null, null, bytes);
+        PipelineMetrics.observe(PipelineMetrics.CHECKOUT_PATHS, null, null, entries.size());
+        LOGGER.info("Moved {} to {} with {} changed paths, {} bytes written", directory, tag == null ? "HEAD" : tag, entries.size(), bytes);
+        return bytes;
+    }
+
+    // detaches HEAD at the commit
+    private void moveHead(RevCommit commit, String tag) throws IOException {
+        RefUpdate head = repository.updateRef(Constants.HEAD, true);
+        head.setNewObjectId(commit);
+        RefUpdate.Result result = head.forceUpdate();
+        if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED && result != RefUpdate.Result.NO_CHANGE) {
+            throw new IOException("Cannot move HEAD of " + repository.getDirectory() + " to " + tag + ": " + result);
+        }
+    }
+
+    private long write(String path, ObjectId blob, FileMode mode) throws IOException {
+        if (mode == FileMode.GITLINK) {
+            // the content of the submodules is not in the clone
+            return 0;
+        }
+        Path file = directory.toPath().resolve(path);
+        Files.createDirectories(file.getParent());
+        ObjectLoader loader = reader.open(blob);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            loader.copyTo(out);
+        }
+        file.toFile().setExecutable(mode == FileMode.EXECUTABLE_FILE);
+        return loader.getSize();
+    }
+
+    private void delete(String path) throws IOException {
+        Path file = directory.toPath().resolve(path);
+        Files.deleteIfExists(file);
+        // directories left empty are removed, up to the working tree
+        for (Path parent = file.getParent(); !parent.equals(directory.toPath()); parent = parent.getParent()) {
+            String[] children = parent.toFile().list();
+            if (children == null || children.length > 0) {
+                break;
+            }
+            Files.delete(parent);
+        }
+    }
+
+    /**
+     * Deletes the files of the working tree, keeping the .git directory of the clone.
+     */
+    private static void clear(File directory) throws IOException {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (!child.getName().equals(Constants.DOT_GIT)) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.delete(file.toPath());
+    }
+
+    /**
+     * Releases the readers of the repository, the clone itself is deleted with the job.
+     */
+    @Override
+    public void close() {
+        reader.close();
+        diffFormatter.close();
+    }
+}
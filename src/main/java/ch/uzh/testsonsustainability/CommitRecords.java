@@ -0,0 +1,66 @@
+package ch.uzh.testsonsustainability;
+
+/**
+ * Commits of a repository sorted by commit date. Emails and logins are {@link StringIds} ids, {@link StringIds#NONE}
+ * when unknown. The github users of the commits (author login, committer email) are only resolved if requested.
+ */
+class CommitRecords extends TimeRecords {
+
+    private final int[] authorEmails;
+    private final int[] authorLogins;
+    private final int[] committerEmails;
+
+    private CommitRecords(long[] times, int[] authorEmails, int[] authorLogins, int[] committerEmails) {
+        super(times);
+        this.authorEmails = authorEmails;
+        this.authorLogins = authorLogins;
+        this.committerEmails = committerEmails;
+    }
+
+    /**
+     * Email of the git author of the commit.
+     */
+    int getAuthorEmail(int index) {
+        return authorEmails[index];
+    }
+
+    /**
+     * Login of the github user of the author of the commit.
+     */
+    int getAuthorLogin(int index) {
+        return authorLogins[index];
+    }
+
+    /**
+     * Email of the github user of the committer of the commit.
+     */
+    int getCommitterEmail(int index) {
+        return committerEmails[index];
+    }
+
+    static class Builder {
+
+        private long[] times = new long[64];
+        private int[] authorEmails = new int[64];
+        private int[] authorLogins = new int[64];
+        private int[] committerEmails = new int[64];
+        private int size;
+
+        void add(long time, int authorEmail, int authorLogin, int committerEmail) {
+            times = grow(times, size);
+            authorEmails = grow(authorEmails, size);
+            authorLogins = grow(authorLogins, size);
+            committerEmails = grow(committerEmails, size);
+            times[size] = time;
+            authorEmails[size] = authorEmail;
+            authorLogins[size] = authorLogin;
+            committerEmails[size] = committerEmail;
+            size++;
+        }
+
+        CommitRecords build() {
+            int[] order = timeOrder(times, size);
+            return new CommitRecords(sorted(times, order), sorted(authorEmails, order), sorted(authorLogins, order), sorted(committerEmails, order));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ch.uzh.testsonsustainability;
+
+import org.kohsuke.github.HttpConnector;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Counts the requests issued to the GitHub API, including the ones triggered lazily by the github-api objects.
+ */
+public class CountingHttpConnector implements HttpConnector {
+
+    private final HttpConnector delegate;
+
+    public CountingHttpConnector(HttpConnector delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        PipelineMetrics.githubApiCall();
+        return delegate.connect(url);
+    }
+}
@@ -0,0 +1,45 @@
+package ch.uzh.testsonsustainability;
+
+/**
+ * Data retrieved for a project before its variables can be computed. The {@link MetricPlanner} only retrieves the
+ * data sources the selected variables need.
+ */
+public enum DataSource {
+    /**
+     * Commits listed through the github API, or read from the github archive, filtered from the merges of pull
+     * requests with the local clone.
+     */
+    COMMITS,
+    /**
+     * Github users of the authors and committers of the commits, fetched once per login.
+     */
+    COMMIT_USERS,
+    /**
+     * Issues created since the starting date of the retrieval.
+     */
+    ISSUES,
+    /**
+     * Issues created before the starting date of the retrieval that were still open at that date, so that the issues
+     * open or closed in a month are counted whenever they were created. Their listing does not stop at the starting
+     * date, so it takes a request per page of all the issues of the repository.
+     */
+    ISSUE_BACKLOG,
+    CONTRIBUTORS,
+    /**
+     * Tags of the repository, read from the refs of the local clone.
+     */
+    TAGS,
+    /**
+     * Repositories and commits of the authors of the project, queried through the github API for each month.
+     */
+    SOCIAL_API,
+    /**
+     * Git objects of the repository, cloned without working tree.
+     */
+    CLONE,
+    /**
+     * Working tree of the repository, checked out for the static analysis.
+     */
+    CHECKOUT,
+    MAVEN_GRAPH
+}
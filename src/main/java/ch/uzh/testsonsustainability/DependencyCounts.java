@@ -0,0 +1,41 @@
+package ch.uzh.testsonsustainability;
+
+/**
+ * Number of direct and transitive dependencies (upstreams) and dependants (downstreams) of an artifact tag.
+ */
+public class DependencyCounts {
+
+    private final int upstreams;
+    private final int downstreams;
+    private final int transitiveUpstreams;
+    private final int transitiveDownstreams;
+
+    public DependencyCounts(int upstreams, int downstreams, int transitiveUpstreams, int transitiveDownstreams) {
+        this.upstreams = upstreams;
+        this.downstreams = downstreams;
+        this.transitiveUpstreams = transitiveUpstreams;
+        this.transitiveDownstreams = transitiveDownstreams;
+    }
+
+    public int getUpstreams() {
+        return upstreams;
+    }
+
+    public int getDownstreams() {
+        return downstreams;
+    }
+
+    public int getTransitiveUpstreams() {
+        return transitiveUpstreams;
+    }
+
+    public int getTransitiveDownstreams() {
+        return transitiveDownstreams;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("upstreams=%d, downstreams=%d, t_upstreams=%d, t_downstreams=%d",
+                upstreams, downstreams, transitiveUpstreams, transitiveDownstreams);
+    }
+}
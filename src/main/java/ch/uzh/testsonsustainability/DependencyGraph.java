@@ -0,0 +1,32 @@
+package ch.uzh.testsonsustainability;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Queries on the maven dependency graph itself, answered either by an in-process {@link MavenCentralInfo} or by a
+ * {@link DependencyGraphClient} of a graph daemon shared by the workers of a machine.
+ */
+public interface DependencyGraph extends DependencyLookup {
+
+    Set<String> getDependencies(String artifactTag, Set<DependencyScope> scopes) throws Exception;
+
+    Set<String> getDependants(String artifactTag, Set<DependencyScope> scopes) throws Exception;
+
+    Set<String> getTransitiveDependencies(String artifactTag, Set<DependencyScope> scopes) throws Exception;
+
+    Set<String> getTransitiveDependants(String artifactTag, Set<DependencyScope> scopes) throws Exception;
+
+    /**
+     * GH repo of each dependency of the artifact tag, null for the dependencies without a known GH repo.
+     */
+    Map<String, String> getDependencyGHRepos(String artifactTag, Set<DependencyScope> scopes) throws Exception;
+
+    Set<String> getDormantDependencies(String artifactTag, LocalDate date, GithubAPI githubAPI, Set<DependencyScope> scopes) throws Exception;
+
+    @Override
+    default int getNumberOfDormantDependencies(String artifactTag, LocalDate date, GithubAPI githubAPI, Set<DependencyScope> scopes) throws Exception {
+        return getDormantDependencies(artifactTag, date, githubAPI, scopes).size();
+    }
+}
@@ -0,0 +1,164 @@
+package ch.uzh.testsonsustainability;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * {@link DependencyGraph} answered by a {@link DependencyGraphServer}. The version resolutions of many dates are sent
+ * as one batch of queries.
+ */
+public class DependencyGraphClient implements DependencyGraph {
+
+    private final RestTemplate restTemplate;
+    private final String queryUrl;
+
+    public DependencyGraphClient(RestTemplate restTemplate, String graphBaseUrl) {
+        this.restTemplate = restTemplate;
+        this.queryUrl = graphBaseUrl + DependencyGraphServer.QUERY_ENDPOINT;
+    }
+
+    @Override
+    public Boolean artifactTagExists(String artifactTag) throws Exception {
+        return (Boolean) query(new JSONObject().put("method", "artifactTagExists").put("artifactTag", artifactTag));
+    }
+
+    @Override
+    public String getCurrentVersionArtifactTag(String artifact, LocalDate date) throws Exception {
+        return (String) query(versionQuery(artifact, date));
+    }
+
+    @Override
+    public List<String> getCurrentVersionArtifactTags(String artifact, List<LocalDate> dates) throws Exception {
+        JSONArray queries = new JSONArray();
+        for (LocalDate date : dates) {
+            queries.put(versionQuery(artifact, date));
+        }
+        JSONArray answers = new JSONArray(restTemplate.postForObject(queryUrl, queries.toString(), String.class));
+        List<String> artifactTags = new ArrayList<>();
+        for (int i = 0; i < answers.length(); i++) {
+            artifactTags.add((String) result(answers.getJSONObject(i)));
+        }
+        return artifactTags;
+    }
+
+    @Override
+    public Set<String> getDependencies(String artifactTag, Set<DependencyScope> scopes) throws Exception {
+        return stringSet(query(scopedQuery("getDependencies", scopes).put("artifactTag", artifactTag)));
+    }
+
+    @Override
+    public Set<String> getDependants(String artifactTag, Set<DependencyScope> scopes) throws Exception {
+        return stringSet(query(scopedQuery("getDependants", scopes).put("artifactTag", artifactTag)));
+    }
+
+    @Override
+    public Set<String> getTransitiveDependencies(String artifactTag, Set<DependencyScope> scopes) throws Exception {
+        return stringSet(query(scopedQuery("getTransitiveDependencies", scopes).put("artifactTag", artifactTag)));
+    }
+
+    @Override
+    public Set<String> getTransitiveDependants(String artifactTag, Set<DependencyScope> scopes) throws Exception {
+        return stringSet(query(scopedQuery("getTransitiveDependants", scopes).put("artifactTag", artifactTag)));
+    }
+
+    @Override
+    public Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, Set<DependencyScope> scopes) throws Exception {
+        return getDependencyCounts(artifactTags, scopes, null);
+    }
+
+    @Override
+    public Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, Set<DependencyScope> scopes, ApproximateCounts approximate) throws Exception {
+        JSONObject query = scopedQuery("getDependencyCounts", scopes).put("artifactTags", new JSONArray(artifactTags));
+        if (approximate != null) {
+            query.put("approximate", new JSONObject()
+                    .put("t_upstreams", approximate.isTransitiveUpstreams())
+                    .put("t_downstreams", approximate.isTransitiveDownstreams())
+                    .put("error", approximate.getRelativeError()));
+        }
+        JSONObject result = (JSONObject) query(query);
+        Map<String, DependencyCounts> dependencyCounts = new HashMap<>();
+        for (String artifactTag : result.keySet()) {
+            JSONArray counts = result.getJSONArray(artifactTag);
+            dependencyCounts.put(artifactTag, new DependencyCounts(counts.getInt(0), counts.getInt(1), counts.getInt(2), counts.getInt(3)));
+        }
+        return dependencyCounts;
+    }
+
+    @Override
+    public Map<String, String> getDependencyGHRepos(String artifactTag, Set<DependencyScope> scopes) throws Exception {
+        JSONObject result = (JSONObject) query(scopedQuery("getDependencyGHRepos", scopes).put("artifactTag", artifactTag));
+        Map<String, String> dependencyGHRepos = new HashMap<>();
+        for (String dependencyArtifactTag : result.keySet()) {
+            dependencyGHRepos.put(dependencyArtifactTag, result.isNull(dependencyArtifactTag) ? null : result.getString(dependencyArtifactTag));
+        }
+        return dependencyGHRepos;
+    }
+
+    @Override
+    public Set<String> getDormantDependencies(String artifactTag, LocalDate date, GithubAPI githubAPI, Set<DependencyScope> scopes) throws Exception {
+        // dormancy is established by the worker, which has the github data
+        return getDependencyGHRepos(artifactTag, scopes).entrySet().stream()
+                .filter(dependencyGHRepo -> MavenCentralInfo.isGHRepoDormant(dependencyGHRepo.getValue(), date, githubAPI))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean hasDependencyDormancy() throws Exception {
+        return (Boolean) query(new JSONObject().put("method", "hasDependencyDormancy"));
+    }
+
+    @Override
+    public int getNumberOfTransitiveDormantDependencies(String artifactTag, LocalDate date, Set<DependencyScope> scopes) throws Exception {
+        // the daemon establishes the dormancy of each dependency from the github archive it was started with
+        return ((Number) query(scopedQuery("getNumberOfTransitiveDormantDependencies", scopes).put("artifactTag", artifactTag).put("date", date.toString()))).intValue();
+    }
+
+    @Override
+    public double katzCentrality(String artifact, LocalDate date, Set<DependencyScope> scopes) throws Exception {
+        Object result = query(scopedQuery("katzCentrality", scopes).put("artifact", artifact).put("date", date.toString()));
+        return ((Number) result).doubleValue();
+    }
+
+    private static JSONObject versionQuery(String artifact, LocalDate date) {
+        return new JSONObject().put("method", "getCurrentVersionArtifactTag").put("artifact", artifact).put("date", date.toString());
+    }
+
+    private static JSONObject scopedQuery(String method, Set<DependencyScope> scopes) {
+        JSONArray scopeNames = new JSONArray();
+        for (DependencyScope scope : scopes) {
+            scopeNames.put(scope.name());
+        }
+        return new JSONObject().put("method", method).put("scopes", scopeNames);
+    }
+
+    private Object query(JSONObject query) throws Exception {
+        return result(new JSONObject(restTemplate.postForObject(queryUrl, query.toString(), String.class)));
+    }
+
+    private static Object result(JSONObject answer) throws Exception {
+        if (answer.has("error")) {
+            throw new Exception(answer.getString("error"));
+        }
+        return answer.get("result");
+    }
+
+    private static Set<String> stringSet(Object result) {
+        Set<String> strings = new HashSet<>();
+        for (Object string : (JSONArray) result) {
+            strings.add((String) string);
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,214 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Serves the queries of {@link DependencyGraph} on a loopback HTTP port, so that the workers of a machine share one
+ * {@link MavenCentralInfo} instead of each loading the csv files.
+ *
+ * A query is a JSON object with the name of the method and its parameters, posted to {@value #QUERY_ENDPOINT}. A JSON
+ * array of queries is answered with the array of their results, in the same order.
+ *
+ * With a refresh interval, the links and releases appended to the delta files are merged into the graph at each
+ * interval, the queries waiting for the merge to finish. The dormant transitive dependencies are only served when the
+ * daemon is given the github archive establishing the dormancy of each dependency.
+ */
+public class DependencyGraphServer implements AutoCloseable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(DependencyGraphServer.class);
+
+    public static final String QUERY_ENDPOINT = "/graph/query";
+
+    private final MavenCentralInfo mavenCentralInfo;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // the queries share the graph, which a refresh changes on its own
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private ScheduledExecutorService refresher;
+
+    public DependencyGraphServer(MavenCentralInfo mavenCentralInfo, int port) throws IOException {
+        this.mavenCentralInfo = mavenCentralInfo;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(QUERY_ENDPOINT, this::handle);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.info("Serving the dependency graph on {}", getUrl());
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Merges the records appended to the delta files every interval.
+     */
+    public synchronized void startRefresh(long intervalSeconds) {
+        if (refresher != null) {
+            return;
+        }
+        LOGGER.info("Merging the delta files into the dependency graph every {} seconds", intervalSeconds);
+        refresher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("graph-refresh").setDaemon(true).build());
+        refresher.scheduleWithFixedDelay(this::refresh, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    void refresh() {
+        try {
+            // the files are read while the queries go on, only the merge holds them back
+            MavenCentralInfo.Delta delta = mavenCentralInfo.readDelta();
+            if (delta.isEmpty()) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                mavenCentralInfo.ingest(delta);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error when merging the delta files into the dependency graph");
+            LOGGER.error(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String response;
+        int status = 200;
+        try {
+            Object request = new JSONTokener(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)).nextValue();
+            if (request instanceof JSONArray) {
+                JSONArray queries = (JSONArray) request;
+                JSONArray results = new JSONArray();
+                for (int i = 0; i < queries.length(); i++) {
+                    results.put(answer(queries.getJSONObject(i)));
+                }
+                response = results.toString();
+            } else {
+                response = answer((JSONObject) request).toString();
+            }
+        } catch (Exception e) {
+            status = 400;
+            response = new JSONObject().put("error", String.valueOf(e.getMessage())).toString();
+        }
+
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    private JSONObject answer(JSONObject query) {
+        lock.readLock().lock();
+        try {
+            return new JSONObject().put("result", execute(query));
+        } catch (Exception e) {
+            LOGGER.error("Error when answering query {}", query);
+            LOGGER.error(e.getMessage());
+            return new JSONObject().put("error", String.valueOf(e.getMessage()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Object execute(JSONObject query) throws Exception {
+        String method = query.getString("method");
+        switch (method) {
+            case "artifactTagExists":
+                return mavenCentralInfo.artifactTagExists(query.getString("artifactTag"));
+            case "getCurrentVersionArtifactTag":
+                return mavenCentralInfo.getCurrentVersionArtifactTag(query.getString("artifact"), LocalDate.parse(query.getString("date")));
+            case "getDependencies":
+                return new JSONArray(mavenCentralInfo.getDependencies(query.getString("artifactTag"), scopes(query)));
+            case "getDependants":
+                return new JSONArray(mavenCentralInfo.getDependants(query.getString("artifactTag"), scopes(query)));
+            case "getTransitiveDependencies":
+                return new JSONArray(mavenCentralInfo.getTransitiveDependencies(query.getString("artifactTag"), scopes(query)));
+            case "getTransitiveDependants":
+                return new JSONArray(mavenCentralInfo.getTransitiveDependants(query.getString("artifactTag"), scopes(query)));
+            case "getDependencyCounts":
+                List<String> artifactTags = new ArrayList<>();
+                for (Object artifactTag : query.getJSONArray("artifactTags")) {
+                    artifactTags.add((String) artifactTag);
+                }
+                JSONObject dependencyCounts = new JSONObject();
+                JSONObject approximate = query.optJSONObject("approximate");
+                ApproximateCounts approximateCounts = approximate == null ? null : new ApproximateCounts(
+                        approximate.getBoolean("t_upstreams"), approximate.getBoolean("t_downstreams"), approximate.getDouble("error"));
+                for (Map.Entry<String, DependencyCounts> artifactTagCounts : mavenCentralInfo.getDependencyCounts(artifactTags, scopes(query), approximateCounts).entrySet()) {
+                    DependencyCounts counts = artifactTagCounts.getValue();
+                    dependencyCounts.put(artifactTagCounts.getKey(), new JSONArray()
+                            .put(counts.getUpstreams())
+                            .put(counts.getDownstreams())
+                            .put(counts.getTransitiveUpstreams())
+                            .put(counts.getTransitiveDownstreams()));
+                }
+                return dependencyCounts;
+            case "getDependencyGHRepos":
+                JSONObject dependencyGHRepos = new JSONObject();
+                for (Map.Entry<String, String> dependencyGHRepo : mavenCentralInfo.getDependencyGHRepos(query.getString("artifactTag"), scopes(query)).entrySet()) {
+                    dependencyGHRepos.put(dependencyGHRepo.getKey(), dependencyGHRepo.getValue() == null ? JSONObject.NULL : dependencyGHRepo.getValue());
+                }
+                return dependencyGHRepos;
+            case "hasDependencyDormancy":
+                return mavenCentralInfo.hasDependencyDormancy();
+            case "getNumberOfTransitiveDormantDependencies":
+                return mavenCentralInfo.getNumberOfTransitiveDormantDependencies(query.getString("artifactTag"), LocalDate.parse(query.getString("date")), scopes(query));
+            case "katzCentrality":
+                return mavenCentralInfo.katzCentrality(query.getString("artifact"), LocalDate.parse(query.getString("date")), scopes(query));
+            default:
+                throw new IllegalArgumentException("Unknown method " + method);
+        }
+    }
+
+    private static Set<DependencyScope> scopes(JSONObject query) {
+        if (!query.has("scopes")) {
+            return EnumSet.allOf(DependencyScope.class);
+        }
+        Set<DependencyScope> scopes = EnumSet.noneOf(DependencyScope.class);
+        for (Object scope : query.getJSONArray("scopes")) {
+            scopes.add(DependencyScope.valueOf((String) scope));
+        }
+        return scopes;
+    }
+}
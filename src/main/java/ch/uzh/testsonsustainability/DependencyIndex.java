@@ -0,0 +1,244 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.graph.ValueGraph;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Int indexed copy of the maven graph answering the dependency counts of many artifact tags at once.
+ *
+ * Links are stored as compressed adjacency arrays in both directions, with the scope mask of each link. Traversals run
+ * on the common fork-join pool, shared by the indexes rebuilt over time, and reuse a visited bitset per thread. Transitive counts are cached per artifact tag, direction
+ * and scope mask, since the same versions are queried for many months and by the projects depending on them. A
+ * traversal also caches its count for the artifact tags of the strongly connected component of its start, which reach
+ * the same nodes; the closures of the other artifact tags are not reused, so a query of many versions of an artifact
+ * still traverses each of them, the sketches being the way to count all the artifact tags at once. The cache
+ * outlives the index, which is rebuilt when links are added to the graph, see {@link TransitiveCounts}. Transitive
+ * counts may instead be estimated for all the artifact tags at once, see {@link TransitiveSketches}, the estimates
+ * being kept with the index. The same pass counts only some of the transitive dependencies, e.g. the dormant ones.
+ */
+class DependencyIndex {
+
+    private final Map<String, Integer> ids;
+    private final Adjacency dependencies;
+    private final Adjacency dependants;
+    private final TransitiveCounts transitiveCounts;
+    private final ConcurrentMap<Long, int[]> transitiveEstimates = new ConcurrentHashMap<>();
+    private final ThreadLocal<Traversal> traversals;
+
+    /**
+     * The ids are the ones of the artifact projection, numbering the nodes in the iteration order of the graph.
+     */
+    DependencyIndex(ValueGraph<String, Byte> mavenGraph, Map<String, Integer> ids, TransitiveCounts transitiveCounts) {
+        this.ids = ids;
+        this.transitiveCounts = transitiveCounts;
+        dependencies = new Adjacency(mavenGraph, ids, true);
+        dependants = new Adjacency(mavenGraph, ids, false);
+        traversals = ThreadLocal.withInitial(() -> new Traversal(ids.size()));
+    }
+
+    /**
+     * Counts for the artifact tags, following only the links in the scope mask. Artifact tags that are not in the
+     * graph are not part of the result.
+     */
+    Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, byte scopeMask) {
+        return getDependencyCounts(artifactTags, scopeMask, null);
+    }
+
+    /**
+     * Counts for the artifact tags, with the transitive counts selected by approximate estimated, exact if it is null.
+     */
+    Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, byte scopeMask, ApproximateCounts approximate) {
+        int[] upstreamEstimates = approximate != null && approximate.isTransitiveUpstreams() ? transitiveEstimates(dependencies, scopeMask, approximate) : null;
+        int[] downstreamEstimates = approximate != null && approximate.isTransitiveDownstreams() ? transitiveEstimates(dependants, scopeMask, approximate) : null;
+        List<String> knownArtifactTags = artifactTags.stream()
+                .distinct()
+                .filter(ids::containsKey)
+                .collect(Collectors.toList());
+        Map<String, DependencyCounts> dependencyCounts = new ConcurrentHashMap<>();
+        knownArtifactTags.parallelStream().forEach(artifactTag -> {
+            int id = ids.get(artifactTag);
+            dependencyCounts.put(artifactTag, new DependencyCounts(
+                    dependencies.degree(id, scopeMask),
+                    dependants.degree(id, scopeMask),
+                    upstreamEstimates != null ? upstreamEstimates[id] : transitiveCount(dependencies, id, scopeMask),
+                    downstreamEstimates != null ? downstreamEstimates[id] : transitiveCount(dependants, id, scopeMask)));
+        });
+        return dependencyCounts;
+    }
+
+    /**
+     * Id of the artifact tag, null if it is not in the graph.
+     */
+    Integer getId(String artifactTag) {
+        return ids.get(artifactTag);
+    }
+
+    /**
+     * Estimated number of counted artifact tags among the transitive dependencies of each artifact tag, through the
+     * links in the scope mask, for all the artifact tags in one pass.
+     */
+    int[] estimateCountedDependencies(BitSet counted, byte scopeMask, int precision) {
+        try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_counted_sketches")) {
+            return TransitiveSketches.estimateReachable(dependencies.offsets, dependencies.targets, dependencies.scopes, scopeMask, counted, precision);
+        }
+    }
+
+    private int transitiveCount(Adjacency adjacency, int id, byte scopeMask) {
+        long key = TransitiveCounts.key(id, adjacency == dependencies, scopeMask);
+        Integer count = transitiveCounts.counts.get(key);
+        if (count == null) {
+            Traversal traversal = traversals.get();
+            count = traversal.countReachable(adjacency, adjacency == dependencies ? dependants : dependencies, id, scopeMask);
+            for (int i = 0; i < traversal.componentSize; i++) {
+                transitiveCounts.counts.put(TransitiveCounts.key(traversal.component[i], adjacency == dependencies, scopeMask), count);
+            }
+        }
+        return count;
+    }
+
+    private int[] transitiveEstimates(Adjacency adjacency, byte scopeMask, ApproximateCounts approximate) {
+        int precision = TransitiveSketches.precision(approximate.getRelativeError());
+        long key = (long) precision << 9 | (scopeMask & 0xff) << 1 | (adjacency == dependencies ? 1 : 0);
+        return transitiveEstimates.computeIfAbsent(key, k -> {
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_sketches")) {
+                return TransitiveSketches.estimateReachable(adjacency.offsets, adjacency.targets, adjacency.scopes, scopeMask, precision);
+            }
+        });
+    }
+
+    /**
+     * Transitive counts cached per artifact tag id, direction and scope mask. The ids of the artifact tags do not
+     * change when links are added to the graph, so the counts stay valid except for the ones the new links change.
+     */
+    static class TransitiveCounts {
+
+        private final ConcurrentMap<Long, Integer> counts = new ConcurrentHashMap<>();
+
+        private static long key(int id, boolean upstreams, byte scopeMask) {
+            return (long) (scopeMask & 0xff) << 33 | (upstreams ? 1L << 32 : 0) | id;
+        }
+
+        /**
+         * Drops the counts of upstreams of the first ids and the counts of downstreams of the second ones, whatever
+         * their scope mask, and returns the number of counts dropped.
+         */
+        int invalidate(BitSet upstreamIds, BitSet downstreamIds) {
+            int size = counts.size();
+            counts.keySet().removeIf(key -> ((key >>> 32 & 1) == 1 ? upstreamIds : downstreamIds).get((int) key.longValue()));
+            return size - counts.size();
+        }
+    }
+
+    private static class Adjacency {
+
+        private final int[] offsets;
+        private final int[] targets;
+        private final byte[] scopes;
+
+        private Adjacency(ValueGraph<String, Byte> mavenGraph, Map<String, Integer> ids, boolean forward) {
+            offsets = new int[ids.size() + 1];
+            targets = new int[mavenGraph.edges().size()];
+            scopes = new byte[targets.length];
+            int next = 0;
+            for (String node : mavenGraph.nodes()) {
+                int id = ids.get(node);
+                offsets[id] = next;
+                for (String neighbour : forward ? mavenGraph.successors(node) : mavenGraph.predecessors(node)) {
+                    targets[next] = ids.get(neighbour);
+                    scopes[next] = forward
+                            ? mavenGraph.edgeValueOrDefault(node, neighbour, DependencyScope.NONE)
+                            : mavenGraph.edgeValueOrDefault(neighbour, node, DependencyScope.NONE);
+                    next++;
+                }
+            }
+            offsets[ids.size()] = next;
+        }
+
+        private int degree(int id, byte scopeMask) {
+            int degree = 0;
+            for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                if ((scopes[i] & scopeMask) != 0) {
+                    degree++;
+                }
+            }
+            return degree;
+        }
+    }
+
+    private static class Traversal {
+
+        private final BitSet visited;
+        private final int[] queue;
+        private final BitSet inComponent;
+        // the strongly connected component of the start of the last traversal, the start first
+        private final int[] component;
+        private int componentSize = 0;
+
+        private Traversal(int nodes) {
+            visited = new BitSet(nodes);
+            queue = new int[nodes];
+            inComponent = new BitSet(nodes);
+            component = new int[nodes];
+        }
+
+        // counts the nodes reachable from the start and collects the component of the start: the reached nodes that
+        // reach it back, found by a visit of the reverse links restricted to the reached nodes, which only looks at
+        // the direct reverse links of the start when it is not in a cycle
+        private int countReachable(Adjacency adjacency, Adjacency reverse, int start, byte scopeMask) {
+            int reached = visit(adjacency, start, scopeMask);
+            componentSize = 0;
+            component[componentSize++] = start;
+            inComponent.set(start);
+            for (int head = 0; head < componentSize; head++) {
+                int node = component[head];
+                for (int i = reverse.offsets[node]; i < reverse.offsets[node + 1]; i++) {
+                    int source = reverse.targets[i];
+                    if ((reverse.scopes[i] & scopeMask) != 0 && visited.get(source) && !inComponent.get(source)) {
+                        inComponent.set(source);
+                        component[componentSize++] = source;
+                    }
+                }
+            }
+            for (int i = 0; i < componentSize; i++) {
+                inComponent.clear(component[i]);
+            }
+            clear(reached);
+            // the start node itself is not counted
+            return reached - 1;
+        }
+
+        // visits the nodes reachable from the start, leaving them in the queue and marked visited, and returns their
+        // number, the start included
+        private int visit(Adjacency adjacency, int start, byte scopeMask) {
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            visited.set(start);
+            while (head < tail) {
+                int node = queue[head++];
+                for (int i = adjacency.offsets[node]; i < adjacency.offsets[node + 1]; i++) {
+                    int target = adjacency.targets[i];
+                    if ((adjacency.scopes[i] & scopeMask) != 0 && !visited.get(target)) {
+                        visited.set(target);
+                        queue[tail++] = target;
+                    }
+                }
+            }
+            return tail;
+        }
+
+        // only the visited bits are cleared, so the bitset can be reused at the cost of the visit
+        private void clear(int tail) {
+            for (int i = 0; i < tail; i++) {
+                visited.clear(queue[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ch.uzh.testsonsustainability;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookups of the maven variables of the artifact tags used by the workers, answered either by a full
+ * {@link DependencyGraph} or by a {@link DependencyTable} computed beforehand for all the projects, which only holds
+ * the counts.
+ */
+public interface DependencyLookup {
+
+    Boolean artifactTagExists(String artifactTag) throws Exception;
+
+    String getCurrentVersionArtifactTag(String artifact, LocalDate date) throws Exception;
+
+    /**
+     * Current version artifact tag at each of the dates, in the order of the dates.
+     */
+    default List<String> getCurrentVersionArtifactTags(String artifact, List<LocalDate> dates) throws Exception {
+        List<String> artifactTags = new ArrayList<>();
+        for (LocalDate date : dates) {
+            artifactTags.add(getCurrentVersionArtifactTag(artifact, date));
+        }
+        return artifactTags;
+    }
+
+    Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, Set<DependencyScope> scopes) throws Exception;
+
+    /**
+     * Counts with the transitive counts selected by approximate estimated rather than counted, exact if it is null.
+     * The counts are exact unless the implementation can estimate them.
+     */
+    default Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, Set<DependencyScope> scopes, ApproximateCounts approximate) throws Exception {
+        return getDependencyCounts(artifactTags, scopes);
+    }
+
+    int getNumberOfDormantDependencies(String artifactTag, LocalDate date, GithubAPI githubAPI, Set<DependencyScope> scopes) throws Exception;
+
+    /**
+     * Whether the dormancy of each dependency is established from its own GH repo, e.g. read from the github archive,
+     * which {@link #getNumberOfTransitiveDormantDependencies} needs.
+     */
+    boolean hasDependencyDormancy() throws Exception;
+
+    /**
+     * Number of transitive dependencies of the artifact tag whose own GH repo is dormant at the date. Unlike
+     * {@link #getNumberOfDormantDependencies}, the dormancy is not taken from the commits of the project, so it is only
+     * answered when {@link #hasDependencyDormancy()}.
+     */
+    int getNumberOfTransitiveDormantDependencies(String artifactTag, LocalDate date, Set<DependencyScope> scopes) throws Exception;
+
+    double katzCentrality(String artifact, LocalDate date, Set<DependencyScope> scopes) throws Exception;
+}
@@ -0,0 +1,63 @@
+package ch.uzh.testsonsustainability;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Maven scope of a dependency link. Each scope is a bit of the mask stored on the edges of the maven graph, so a set
+ * of scopes can be checked with a single and during the traversals.
+ */
+public enum DependencyScope {
+    COMPILE,
+    PROVIDED,
+    RUNTIME,
+    TEST,
+    SYSTEM,
+    IMPORT,
+    OTHER;
+
+    public static final byte NONE = 0;
+    public static final byte ALL = mask(EnumSet.allOf(DependencyScope.class));
+
+    public byte bit() {
+        return (byte) (1 << ordinal());
+    }
+
+    public static byte mask(Collection<DependencyScope> scopes) {
+        byte mask = NONE;
+        for (DependencyScope scope : scopes) {
+            mask |= scope.bit();
+        }
+        return mask;
+    }
+
+    /**
+     * Scope of a link as written in the links csv file (e.g. "Compile"). Links without scope have the maven default
+     * compile scope.
+     */
+    public static DependencyScope parse(String scope) {
+        if (scope == null || scope.trim().isEmpty()) {
+            return COMPILE;
+        }
+        try {
+            return valueOf(scope.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return OTHER;
+        }
+    }
+
+    /**
+     * Scopes from a comma separated list of scope names, e.g. "compile,runtime".
+     */
+    public static Set<DependencyScope> parseList(String scopes) {
+        Set<DependencyScope> parsedScopes = EnumSet.noneOf(DependencyScope.class);
+        for (String scope : scopes.split(",")) {
+            if (!scope.trim().isEmpty()) {
+                parsedScopes.add(valueOf(scope.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        return parsedScopes;
+    }
+}
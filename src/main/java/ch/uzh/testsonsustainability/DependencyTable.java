@@ -0,0 +1,324 @@
+package ch.uzh.testsonsustainability;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Maven variables of all the projects of the csv input file for every month, computed in bulk from the maven data
+ * alone, so that the workers join against the table instead of loading or querying the dependency graph.
+ *
+ * The version current at the end of each month is resolved for all the projects first, then the counts, the katz
+ * centrality and the number of dependencies with a known GH repo are computed once per distinct version, in parallel.
+ * The dormant upstreams also depend on the commits of the project, so the table holds the dependencies with a known
+ * GH repo and the worker counts them when the project is dormant. The dormant transitive dependencies are computed per
+ * month, and only when the dormancy of each dependency is known, in a t_d_upstreams column. The table is computed for
+ * a set of scopes, recorded on its first line and checked when it is read. It only holds counts, so it answers the
+ * lookups of the workers but not the queries of a {@link DependencyGraph}.
+ */
+class DependencyTable implements DependencyLookup {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(DependencyTable.class);
+
+    private static final String SCOPES_PREFIX = "# scopes: ";
+    private static final String[] HEADER = {"project", "until", "artifact_tag",
+            "upstreams", "downstreams", "t_upstreams", "t_downstreams", "gh_upstreams", "dc_katz"};
+    // only in the tables written with the dormancy of each dependency
+    private static final String TRANSITIVE_DORMANT_COLUMN = "t_d_upstreams";
+
+    private final Set<DependencyScope> scopes;
+    // current version artifact tag of each project at the end of each month
+    private final Map<String, Map<LocalDate, String>> artifactTags;
+    // only the artifact tags in the dependency graph have a row
+    private final Map<String, Row> rows;
+    // dormant transitive dependencies of the artifact tags at the end of each month, null without the column
+    private final Map<String, Integer> transitiveDormant;
+
+    private DependencyTable(Set<DependencyScope> scopes, Map<String, Map<LocalDate, String>> artifactTags, Map<String, Row> rows, Map<String, Integer> transitiveDormant) {
+        this.scopes = scopes;
+        this.artifactTags = artifactTags;
+        this.rows = rows;
+        this.transitiveDormant = transitiveDormant;
+    }
+
+    /**
+     * Computes the table of the projects in the csv input file for the months ending at the dates, and writes it to
+     * the table path. The table is written apart and moved in place once complete.
+     */
+    static void write(MavenCentralInfo mavenCentralInfo, String csvPath, List<LocalDate> untilDates, Set<DependencyScope> scopes, String tablePath) throws Exception {
+        List<String> projects = readProjects(csvPath);
+        Map<String, List<String>> projectArtifactTags = new ConcurrentHashMap<>();
+        Map<String, Row> rows = new ConcurrentHashMap<>();
+        boolean withDormancy = mavenCentralInfo.hasDependencyDormancy();
+        Map<String, Integer> transitiveDormant = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("table_versions")) {
+                pool.submit(() -> projects.parallelStream().forEach(project -> {
+                    try {
+                        projectArtifactTags.put(project, mavenCentralInfo.getCurrentVersionArtifactTags(project, untilDates));
+                    } catch (Exception e) {
+                        LOGGER.error("Versions of {} not resolved, leaving it out of the dependency table: {}", project, e.getMessage());
+                    }
+                })).get();
+            }
+            Set<String> distinctArtifactTags = projectArtifactTags.values().stream()
+                    .flatMap(List::stream)
+                    .collect(Collectors.toSet());
+            LOGGER.info("{} distinct versions current in {} months of {} projects", distinctArtifactTags.size(), untilDates.size(), projectArtifactTags.size());
+
+            Map<String, DependencyCounts> dependencyCounts;
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("table_counts")) {
+                dependencyCounts = mavenCentralInfo.getDependencyCounts(distinctArtifactTags, scopes);
+            }
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("table_katz")) {
+                pool.submit(() -> dependencyCounts.entrySet().parallelStream().forEach(artifactTagCounts -> {
+                    String artifactTag = artifactTagCounts.getKey();
+                    int ghUpstreams = (int) mavenCentralInfo.getDependencyGHRepos(artifactTag, scopes).values().stream()
+                            .filter(Objects::nonNull)
+                            .count();
+                    rows.put(artifactTag, new Row(artifactTagCounts.getValue(), ghUpstreams,
+                            mavenCentralInfo.katzCentralityOfArtifactTag(artifactTag, scopes)));
+                })).get();
+            }
+            if (withDormancy) {
+                // one propagation of the dormant versions per month, covering the versions of all the projects
+                try (PipelineMetrics.Timer timer = PipelineMetrics.time("table_dormancy")) {
+                    pool.submit(() -> IntStream.range(0, untilDates.size()).parallel().forEach(month -> {
+                        LocalDate untilDate = untilDates.get(month);
+                        for (List<String> monthArtifactTags : projectArtifactTags.values()) {
+                            String artifactTag = monthArtifactTags.get(month);
+                            if (rows.containsKey(artifactTag)) {
+                                transitiveDormant.put(monthKey(artifactTag, untilDate),
+                                        mavenCentralInfo.getNumberOfTransitiveDormantDependencies(artifactTag, untilDate, scopes));
+                            }
+                        }
+                    })).get();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Path table = Paths.get(tablePath);
+        Path partialTable = Paths.get(tablePath + ".partial");
+        try (BufferedWriter writer = Files.newBufferedWriter(partialTable)) {
+            writer.write(SCOPES_PREFIX + scopes.stream().map(scope -> scope.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(",")));
+            writer.newLine();
+            List<String> header = new ArrayList<>(Arrays.asList(HEADER));
+            if (withDormancy) {
+                header.add(TRANSITIVE_DORMANT_COLUMN);
+            }
+            CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(header.toArray(new String[0])));
+            for (String project : projects) {
+                List<String> monthArtifactTags = projectArtifactTags.get(project);
+                if (monthArtifactTags == null) {
+                    continue;
+                }
+                for (int i = 0; i < untilDates.size(); i++) {
+                    String artifactTag = monthArtifactTags.get(i);
+                    Row row = rows.get(artifactTag);
+                    List<Object> values = new ArrayList<>(Arrays.asList(project, untilDates.get(i), artifactTag));
+                    if (row == null) {
+                        values.addAll(Collections.nCopies(header.size() - values.size(), ""));
+                    } else {
+                        values.addAll(Arrays.asList(row.counts.getUpstreams(), row.counts.getDownstreams(),
+                                row.counts.getTransitiveUpstreams(), row.counts.getTransitiveDownstreams(),
+                                row.ghUpstreams, row.katz));
+                        if (withDormancy) {
+                            values.add(transitiveDormant.get(monthKey(artifactTag, untilDates.get(i))));
+                        }
+                    }
+                    printer.printRecord(values);
+                }
+            }
+            printer.flush();
+        }
+        Files.move(partialTable, table, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Dependency table of {} projects written to {}, {} the dormant transitive dependencies", projectArtifactTags.size(), tablePath, withDormancy ? "with" : "without");
+    }
+
+    /**
+     * Reads a table written for the scopes.
+     */
+    static DependencyTable read(String tablePath, Set<DependencyScope> scopes) throws IOException {
+        Map<String, Map<LocalDate, String>> artifactTags = new HashMap<>();
+        Map<String, Row> rows = new HashMap<>();
+        Map<String, Integer> transitiveDormant = null;
+        try (BufferedReader brTable = new BufferedReader(new FileReader(tablePath))) {
+            String scopesLine = brTable.readLine();
+            if (scopesLine == null || !scopesLine.startsWith(SCOPES_PREFIX)) {
+                throw new IOException("No scopes line in dependency table " + tablePath);
+            }
+            Set<DependencyScope> tableScopes = DependencyScope.parseList(scopesLine.substring(SCOPES_PREFIX.length()));
+            if (!tableScopes.equals(scopes)) {
+                throw new IllegalArgumentException(String.format("Dependency table %s computed for the scopes %s, not %s", tablePath, tableScopes, scopes));
+            }
+            CSVParser tableParser = CSVParser.parse(brTable, CSVFormat.DEFAULT.withFirstRecordAsHeader());
+            if (tableParser.getHeaderMap().containsKey(TRANSITIVE_DORMANT_COLUMN)) {
+                transitiveDormant = new HashMap<>();
+            }
+            String previousArtifactTag = null;
+            for (CSVRecord csvRecord : tableParser) {
+                String artifactTag = csvRecord.get("artifact_tag");
+                // a version is usually current for several months, so its name is shared by the months
+                if (artifactTag.equals(previousArtifactTag)) {
+                    artifactTag = previousArtifactTag;
+                }
+                previousArtifactTag = artifactTag;
+                LocalDate untilDate = LocalDate.parse(csvRecord.get("until"));
+                artifactTags.computeIfAbsent(csvRecord.get("project"), project -> new HashMap<>())
+                        .put(untilDate, artifactTag);
+                if (transitiveDormant != null && !csvRecord.get(TRANSITIVE_DORMANT_COLUMN).isEmpty()) {
+                    transitiveDormant.put(monthKey(artifactTag, untilDate), Integer.parseInt(csvRecord.get(TRANSITIVE_DORMANT_COLUMN)));
+                }
+                if (!csvRecord.get("upstreams").isEmpty() && !rows.containsKey(artifactTag)) {
+                    rows.put(artifactTag, new Row(
+                            new DependencyCounts(
+                                    Integer.parseInt(csvRecord.get("upstreams")),
+                                    Integer.parseInt(csvRecord.get("downstreams")),
+                                    Integer.parseInt(csvRecord.get("t_upstreams")),
+                                    Integer.parseInt(csvRecord.get("t_downstreams"))),
+                            Integer.parseInt(csvRecord.get("gh_upstreams")),
+                            Double.parseDouble(csvRecord.get("dc_katz"))));
+                }
+            }
+        }
+        LOGGER.info("Dependency table {} read, {} projects and {} versions", tablePath, artifactTags.size(), rows.size());
+        return new DependencyTable(EnumSet.copyOf(scopes), artifactTags, rows, transitiveDormant);
+    }
+
+    private static String monthKey(String artifactTag, LocalDate untilDate) {
+        return artifactTag + "@" + untilDate;
+    }
+
+    private static List<String> readProjects(String csvPath) throws IOException {
+        List<String> projects = new ArrayList<>();
+        try (BufferedReader brProjects = new BufferedReader(new FileReader(csvPath + Utils.CSV_INPUT_FILENAME))) {
+            CSVParser projectsParser = CSVParser.parse(brProjects, CSVFormat.DEFAULT.withFirstRecordAsHeader().withDelimiter(';'));
+            for (CSVRecord csvRecord : projectsParser) {
+                projects.add(csvRecord.get("Project"));
+            }
+        }
+        return projects;
+    }
+
+    private void checkScopes(Set<DependencyScope> scopes) {
+        if (!this.scopes.equals(scopes)) {
+            throw new IllegalArgumentException(String.format("Dependency table computed for the scopes %s, not %s", this.scopes, scopes));
+        }
+    }
+
+    private Row getRow(String artifactTag) {
+        Row row = rows.get(artifactTag);
+        if (row == null) {
+            throw new IllegalArgumentException("Artifact tag " + artifactTag + " not in the dependency graph");
+        }
+        return row;
+    }
+
+    @Override
+    public Boolean artifactTagExists(String artifactTag) {
+        return rows.containsKey(artifactTag);
+    }
+
+    @Override
+    public String getCurrentVersionArtifactTag(String artifact, LocalDate date) throws Exception {
+        Map<LocalDate, String> monthArtifactTags = artifactTags.get(artifact);
+        if (monthArtifactTags == null) {
+            throw new Exception(String.format("Artifact %s not found in the dependency table", artifact));
+        }
+        String artifactTag = monthArtifactTags.get(date);
+        if (artifactTag == null) {
+            throw new Exception(String.format("Month ending %s of artifact %s not in the dependency table", date, artifact));
+        }
+        return artifactTag;
+    }
+
+    @Override
+    public Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, Set<DependencyScope> scopes) {
+        checkScopes(scopes);
+        Map<String, DependencyCounts> dependencyCounts = new HashMap<>();
+        for (String artifactTag : artifactTags) {
+            Row row = rows.get(artifactTag);
+            if (row != null) {
+                dependencyCounts.put(artifactTag, row.counts);
+            }
+        }
+        return dependencyCounts;
+    }
+
+    @Override
+    public int getNumberOfDormantDependencies(String artifactTag, LocalDate date, GithubAPI githubAPI, Set<DependencyScope> scopes) {
+        checkScopes(scopes);
+        Row row = getRow(artifactTag);
+        // the dormancy of a dependency with a known GH repo is established from the commits of the project, so these
+        // dependencies are all dormant or none is
+        return row.ghUpstreams > 0 && MavenCentralInfo.isProjectDormant(date, githubAPI) ? row.ghUpstreams : 0;
+    }
+
+    @Override
+    public boolean hasDependencyDormancy() {
+        return transitiveDormant != null;
+    }
+
+    @Override
+    public int getNumberOfTransitiveDormantDependencies(String artifactTag, LocalDate date, Set<DependencyScope> scopes) {
+        checkScopes(scopes);
+        if (transitiveDormant == null) {
+            throw new IllegalStateException("Dependency table written without the github archive, it has no dormant transitive dependencies");
+        }
+        Integer count = transitiveDormant.get(monthKey(artifactTag, date));
+        if (count == null) {
+            throw new IllegalArgumentException("Month ending " + date + " of artifact tag " + artifactTag + " not in the dependency table");
+        }
+        return count;
+    }
+
+    @Override
+    public double katzCentrality(String artifact, LocalDate date, Set<DependencyScope> scopes) throws Exception {
+        checkScopes(scopes);
+        return getRow(getCurrentVersionArtifactTag(artifact, date)).katz;
+    }
+
+    private static class Row {
+
+        private final DependencyCounts counts;
+        private final int ghUpstreams;
+        private final double katz;
+
+        private Row(DependencyCounts counts, int ghUpstreams, double katz) {
+            this.counts = counts;
+            this.ghUpstreams = ghUpstreams;
+            this.katz = katz;
+        }
+    }
+}
@@ -25,6 +25,12 @@ public class Domains {
         publicDomains = retrieveDomains(csvPath + "/" + PUBLIC_DOMAIN_FILENAME);
         LOGGER.info("Found {} public domains", publicDomains.size());
     }
+
+    Domains(List<String> universityDomains, List<String> publicDomains) {
+        this.universityDomains = universityDomains;
+        this.publicDomains = publicDomains;
+    }
+
 /*
     private List<String> retrieveUniversityDomains() throws IOException {
         LOGGER.info("Reading university domains from remote url");
@@ -8,179 +8,412 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.internal.ketch.LogIndex;
-import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.io.NullOutputStream;
 import org.kohsuke.github.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Github data of a repository and the metrics computed from it.
+ *
+ * Commits and issues are consumed page by page and projected into {@link CommitRecords} and {@link IssueRecords}, so
+ * the github-api objects, with their JSON fields and nested users, are not retained for the lifetime of the job. The
+ * metrics of a month are computed over the range of records of the month.
+ */
 public class GithubAPI {
 
     private static Logger LOGGER = LoggerFactory.getLogger(GithubAPI.class);
 
+    private static final int PAGE_SIZE = 100;
+    // commits in the year before a month under which the project is dormant
+    static final int DORMANT_COMMITS = 12;
+
+    // kinds of the domains of the emails
+    private static final byte NO_DOMAIN = 0;
+    private static final byte UNIVERSITY = 1;
+    private static final byte PUBLIC = 2;
+    private static final byte COMMERCIAL = 3;
+
     private final GitHub github;
 
     private final GHRepository repo;
-    private final List<GHCommit> commits;
-    private final List<GHIssue> closedIssues;
-    private final List<GHIssue> openIssues;
-    private final List<GHIssue> allIssues;
-    private final List<GHRepository.Contributor> contributors;
-    private final List<GHTag> tags;
+    private final StringIds strings = new StringIds();
+    private final CommitRecords commits;
+    private final IssueRecords issues;
+    private final IssueTimeline issueTimeline;
+    private final BitSet collaborators = new BitSet();
 
     private final List<String> universityDomains;
     private final List<String> publicDomains;
+    private final byte[] domainKinds;
 
     public GithubAPI(String repoName, Domains domains, int startingYear, Git git, Pair<String, String> ghUserPassword) throws IOException {
-        LOGGER.debug("Connecting to github with user {}", ghUserPassword.getLeft());
-        github = GitHub.connect(ghUserPassword.getLeft(), ghUserPassword.getRight());
-        Date startingDate = new Date(startingYear - 1900, 0, 1);
-        Date endingDate = new Date();
-        LOGGER.debug("Retrieving information for repository {}", repoName);
-        repo = github.getRepository(repoName);
-        commits = removeMergePullRequestCommit(repo.queryCommits().since(startingDate).until(endingDate).list().asList(),git);
-        LOGGER.debug("Retrieved {} commits", commits.size());
-        closedIssues = repo.listIssues(GHIssueState.CLOSED).asList().stream().filter(issue -> !issue.isPullRequest()).collect(Collectors.toList());
-        LOGGER.debug("Retrieved {} closed issues", closedIssues.size());
-        openIssues = repo.listIssues(GHIssueState.OPEN).asList().stream().filter(issue -> !issue.isPullRequest()).collect(Collectors.toList());
-        LOGGER.debug("Retrieved {} open issues", openIssues.size());
-        allIssues = repo.listIssues(GHIssueState.ALL).asList().stream().filter(issue -> !issue.isPullRequest()).collect(Collectors.toList());
-        LOGGER.debug("Retrieved {} all issues", allIssues.size());
-        contributors = repo.listContributors().asList();
-        LOGGER.debug("Retrieved {} contributors", contributors.size());
-        tags = repo.listTags().asList();
-        LOGGER.debug("Retrieved {} tags", tags.size());
+        this(repoName, domains, new Date(startingYear - 1900, 0, 1), git, ghUserPassword, Utils.GITHUB_API_URL);
+    }
+
+    public GithubAPI(String repoName, Domains domains, Date startingDate, Git git, Pair<String, String> ghUserPassword, String githubApiUrl) throws IOException {
+        this(repoName, domains, startingDate, git, ghUserPassword, githubApiUrl, EnumSet.allOf(DataSource.class), false);
+    }
+
+    /**
+     * Only retrieves the given data sources, the data of the other sources is empty. The git clone is only used to
+     * filter the commits, so it may be null if the commits are not retrieved.
+     *
+     * With graphQL, the commits and issues are retrieved through the github GraphQL API, see {@link GithubGraphQL},
+     * the other data sources through the REST API.
+     */
+    public GithubAPI(String repoName, Domains domains, Date startingDate, Git git, Pair<String, String> ghUserPassword, String githubApiUrl, Set<DataSource> dataSources, boolean graphQL) throws IOException {
+        this(repoName, domains, startingDate, git, ghUserPassword, githubApiUrl, new CountingHttpConnector(HttpConnector.DEFAULT), dataSources, graphQL);
+    }
+
+    private GithubAPI(String repoName, Domains domains, Date startingDate, Git git, Pair<String, String> ghUserPassword, String githubApiUrl, HttpConnector connector, Set<DataSource> dataSources, boolean graphQL) throws IOException {
+        this(repoName, domains, startingDate, git, connect(githubApiUrl, ghUserPassword, connector),
+                graphQL ? new GithubGraphQL(githubApiUrl, ghUserPassword.getRight(), connector) : null, dataSources);
+    }
+
+    /**
+     * Retrieves the repository through a github client that may be shared with other jobs, and the commits and issues
+     * through the GraphQL client if it is not null.
+     */
+    GithubAPI(String repoName, Domains domains, Date startingDate, Git git, GitHub github, GithubGraphQL graphQL, Set<DataSource> dataSources) throws IOException {
+        this(repoName, domains, startingDate, git, github, graphQL, null, dataSources);
+    }
+
+    /**
+     * Reads the commits, issues and contributors from the github archive if it is not null, without retrieving the
+     * repository from github, see {@link GithubArchive}. The github client is then only used for cc_degree.
+     */
+    GithubAPI(String repoName, Domains domains, Date startingDate, Git git, GitHub github, GithubGraphQL graphQL, GithubArchive archive, Set<DataSource> dataSources) throws IOException {
+        this.github = github;
         universityDomains = domains.universityDomains;
         publicDomains = domains.publicDomains;
-        LOGGER.debug("Retrieval completed");
-    }
+        Date endingDate = new Date();
+        LOGGER.debug("Retrieving {} of repository {} since {}", dataSources, repoName, startingDate);
+        repo = archive == null ? github.getRepository(repoName) : null;
+        GithubArchive.Repository archived = archive == null ? null : archive.get(repoName);
+
+        CommitRecords.Builder commitRecords = new CommitRecords.Builder();
+        IssueRecords.Builder issueRecords = new IssueRecords.Builder();
+        if (archived != null) {
+            boolean resolveUsers = dataSources.contains(DataSource.COMMIT_USERS);
+            // the pushed commits have no parents, the merges are told apart from their parents in the clone
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("github_archive");
+                 RevWalk parentWalk = git == null ? null : new RevWalk(git.getRepository())) {
+                if (dataSources.contains(DataSource.COMMITS)) {
+                    archived.replayCommits(startingDate, endingDate, resolveUsers, (sha, parentShas, time, authorEmail, authorLogin, committerEmail) -> {
+                        List<String> clonedParentShas = clonedParentShas(sha, parentWalk);
+                        if (clonedParentShas.size() > 1 && isMergePullRequestCommit(sha, clonedParentShas, git)) {
+                            LOGGER.info("FOUND A MERGE PULL REQUEST COMMIT " + sha);
+                            return;
+                        }
+                        commitRecords.add(time, strings.id(authorEmail), strings.id(authorLogin), strings.id(committerEmail));
+                    });
+                }
+                if (dataSources.contains(DataSource.ISSUES)) {
+                    archived.replayIssues(startingDate, dataSources.contains(DataSource.ISSUE_BACKLOG), (time, closedTime, state, submitter) ->
+                            issueRecords.add(time, closedTime, state, strings.id(submitter)));
+                }
+            }
+        } else if (graphQL != null && (dataSources.contains(DataSource.COMMITS) || dataSources.contains(DataSource.ISSUES))) {
+            GithubGraphQL.CommitConsumer commitConsumer = (sha, parentShas, time, authorEmail, authorLogin, committerEmail) -> {
+                if (parentShas.size() > 1 && isMergePullRequestCommit(sha, parentShas, git)) {
+                    LOGGER.info("FOUND A MERGE PULL REQUEST COMMIT " + sha);
+                    return;
+                }
+                commitRecords.add(time, strings.id(authorEmail), strings.id(authorLogin), strings.id(committerEmail));
+            };
+            GithubGraphQL.IssueConsumer issueConsumer = (time, closedTime, state, submitter) ->
+                    issueRecords.add(time, closedTime, state, strings.id(submitter));
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("github_graphql")) {
+                graphQL.retrieve(repoName, startingDate, endingDate,
+                        dataSources.contains(DataSource.COMMITS) ? commitConsumer : null,
+                        dataSources.contains(DataSource.COMMIT_USERS),
+                        dataSources.contains(DataSource.ISSUES) ? issueConsumer : null,
+                        dataSources.contains(DataSource.ISSUE_BACKLOG));
+            }
+        } else if (dataSources.contains(DataSource.COMMITS)) {
+            boolean resolveUsers = dataSources.contains(DataSource.COMMIT_USERS);
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("github_commits")) {
+                for (GHCommit commit : repo.queryCommits().since(startingDate).until(endingDate).list().withPageSize(PAGE_SIZE)) {
+                    if (commit.getParentSHA1s().size() > 1 && isMergePullRequestCommit(commit.getSHA1(), commit.getParentSHA1s(), git)) {
+                        LOGGER.info("FOUND A MERGE PULL REQUEST COMMIT " + commit.getSHA1());
+                        continue;
+                    }
+                    addCommit(commitRecords, commit, resolveUsers);
+                }
+            }
+        }
+        commits = commitRecords.build();
+        LOGGER.debug("Retrieved {} commits", commits.size());
 
-    private List<GHCommit> removeMergePullRequestCommit(List<GHCommit> commits, Git git) throws IOException{
-        List<GHCommit> filteredCommits = new ArrayList<>();
-        filteredCommits.addAll(commits);
-        for (GHCommit commit: commits){
-            if (commit.getParents().size() > 1){
-                GHCommit mostRecentParentCommit = null;
-                for (GHCommit parentCommit : commit.getParents()){
-                    if (mostRecentParentCommit == null || parentCommit.getCommitDate().after(mostRecentParentCommit.getCommitDate())){
-                        mostRecentParentCommit = parentCommit;
+        if (archived == null && graphQL == null && dataSources.contains(DataSource.ISSUES)) {
+            boolean withBacklog = dataSources.contains(DataSource.ISSUE_BACKLOG);
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("github_issues")) {
+                // open and closed issues are told apart by their state, so all issues are listed once
+                for (GHIssue issue : repo.listIssues(GHIssueState.ALL).withPageSize(PAGE_SIZE)) {
+                    if (issue.getCreatedAt().before(startingDate)) {
+                        // issues are listed newest first, so we can stop paginating as soon as we reach the first issue created before since
+                        if (!withBacklog) {
+                            break;
+                        }
+                        if (!isOpenAt(issue, startingDate)) {
+                            continue;
+                        }
                     }
+                    addIssue(issueRecords, issue);
                 }
-                ObjectReader reader = git.getRepository().newObjectReader();
-                RevCommit oldCommit = git.getRepository().parseCommit(LogIndex.fromString(mostRecentParentCommit.getSHA1()));
-                RevCommit newCommit = git.getRepository().parseCommit(LogIndex.fromString(commit.getSHA1()));
-                ObjectId oldTree = oldCommit.getTree();
-                ObjectId newTree = newCommit.getTree();
-                CanonicalTreeParser oldTreeIter = new CanonicalTreeParser();
-                oldTreeIter.reset( reader, oldTree );
-                CanonicalTreeParser newTreeIter = new CanonicalTreeParser();
-                newTreeIter.reset(reader, newTree);
-                DiffFormatter df = new DiffFormatter( new ByteArrayOutputStream() ); // use NullOutputStream.INSTANCE if you don't need the diff output
-                df.setRepository( git.getRepository() );
-                List<DiffEntry> entries = df.scan( oldTreeIter, newTreeIter );
-                if (entries.isEmpty()){
-                    filteredCommits.remove(commit);
-                    LOGGER.info("FOUND A MERGE PULL REQUEST COMMIT " +commit.getSHA1());
+            }
+        }
+        issues = issueRecords.build();
+        issueTimeline = new IssueTimeline(issues);
+        LOGGER.debug("Retrieved {} issues", issues.size());
+
+        if (dataSources.contains(DataSource.CONTRIBUTORS)) {
+            if (archived != null) {
+                for (String login : archived.getContributors()) {
+                    collaborators.set(strings.id(login));
+                }
+            } else {
+                try (PipelineMetrics.Timer timer = PipelineMetrics.time("github_contributors")) {
+                    for (GHRepository.Contributor contributor : repo.listContributors().withPageSize(PAGE_SIZE)) {
+                        collaborators.set(strings.id(contributor.getLogin()));
+                    }
                 }
             }
+            LOGGER.debug("Retrieved {} contributors", collaborators.cardinality());
         }
-        return filteredCommits;
+        domainKinds = domainKinds();
+        LOGGER.debug("Retrieval completed");
     }
 
-    public int getNumberOfCommits(Date since, Date until) throws IOException {
-        LOGGER.debug("Retrieving number of commits from GH API");
-        List<GHCommit> monthlyCommits = getCommits(since, until);
-        LOGGER.debug("Number of commits retrieved");
-        return monthlyCommits.size();
+    /**
+     * Github client authenticated with the token, issuing its requests through the connector.
+     */
+    static GitHub connect(String githubApiUrl, Pair<String, String> ghUserPassword, HttpConnector connector) throws IOException {
+        LOGGER.debug("Connecting to github at {} with user {}", githubApiUrl, ghUserPassword.getLeft());
+        return new GitHubBuilder()
+                .withEndpoint(githubApiUrl)
+                .withOAuthToken(ghUserPassword.getRight(), ghUserPassword.getLeft())
+                .withConnector(connector)
+                .build();
+    }
+
+    /**
+     * Builds the API over already retrieved data, without connecting to github (e.g., for benchmarks).
+     */
+    GithubAPI(List<GHCommit> commits, List<GHIssue> allIssues, List<GHRepository.Contributor> contributors, Domains domains) throws IOException {
+        this.github = null;
+        this.repo = null;
+        this.universityDomains = domains.universityDomains;
+        this.publicDomains = domains.publicDomains;
+        CommitRecords.Builder commitRecords = new CommitRecords.Builder();
+        for (GHCommit commit : commits) {
+            addCommit(commitRecords, commit, true);
+        }
+        this.commits = commitRecords.build();
+        IssueRecords.Builder issueRecords = new IssueRecords.Builder();
+        for (GHIssue issue : allIssues) {
+            addIssue(issueRecords, issue);
+        }
+        this.issues = issueRecords.build();
+        this.issueTimeline = new IssueTimeline(this.issues);
+        for (GHRepository.Contributor contributor : contributors) {
+            collaborators.set(strings.id(contributor.getLogin()));
+        }
+        this.domainKinds = domainKinds();
     }
 
-    private List<GHCommit> getCommits(Date since, Date until) throws IOException {
-        List<GHCommit> monthlyCommits = new ArrayList<>();
-        for (GHCommit c : commits) {
-            if (c.getCommitDate().after(since) && c.getCommitDate().before(until))
-                monthlyCommits.add(c);
+    private void addCommit(CommitRecords.Builder commitRecords, GHCommit commit, boolean resolveUsers) throws IOException {
+        GitUser author = commit.getCommitShortInfo().getAuthor();
+        int authorLogin = StringIds.NONE;
+        int committerEmail = StringIds.NONE;
+        if (resolveUsers) {
+            // github users are fetched once per login and cached by the github client
+            GHUser authorUser = commit.getAuthor();
+            authorLogin = authorUser == null ? StringIds.NONE : strings.id(authorUser.getLogin());
+            GHUser committerUser = commit.getCommitter();
+            committerEmail = committerUser == null ? StringIds.NONE : strings.id(committerUser.getEmail());
         }
-        return monthlyCommits;
+        commitRecords.add(commit.getCommitDate().getTime(), author == null ? StringIds.NONE : strings.id(author.getEmail()), authorLogin, committerEmail);
+    }
+
+    // whether the issue was still open at the date, the closing of an issue closed and reopened since being unknown
+    private static boolean isOpenAt(GHIssue issue, Date date) {
+        return issue.getState() == GHIssueState.OPEN || issue.getClosedAt() == null || !issue.getClosedAt().before(date);
+    }
+
+    private void addIssue(IssueRecords.Builder issueRecords, GHIssue issue) throws IOException {
+        if (!issue.isPullRequest()) {
+            Date closedAt = issue.getClosedAt();
+            issueRecords.add(issue.getCreatedAt().getTime(), closedAt == null ? IssueRecords.NOT_CLOSED : closedAt.getTime(),
+                    issue.getState(), strings.id(issue.getUser().getLogin()));
+        }
+    }
+
+    /**
+     * Parents of the commit in the local clone, none without clone or if the commit is not in the clone.
+     */
+    private static List<String> clonedParentShas(String sha, RevWalk revWalk) throws IOException {
+        if (revWalk == null) {
+            return Collections.emptyList();
+        }
+        List<String> parentShas = new ArrayList<>();
+        try {
+            for (RevCommit parent : revWalk.parseCommit(ObjectId.fromString(sha)).getParents()) {
+                parentShas.add(parent.getName());
+            }
+        } catch (MissingObjectException e) {
+            return Collections.emptyList();
+        }
+        return parentShas;
+    }
+
+    /**
+     * Whether the merge commit brings no change compared to its most recent parent, as the merges of pull requests.
+     * The trees of the commit and its parents are compared in the local clone rather than through github.
+     */
+    private boolean isMergePullRequestCommit(String sha, List<String> parentShas, Git git) throws IOException {
+        if (git == null) {
+            return false;
+        }
+        try (PipelineMetrics.Timer timer = PipelineMetrics.time("merge_filter");
+             RevWalk revWalk = new RevWalk(git.getRepository());
+             DiffFormatter df = new DiffFormatter(NullOutputStream.INSTANCE)) {
+            RevCommit newCommit = revWalk.parseCommit(ObjectId.fromString(sha));
+            RevCommit mostRecentParentCommit = null;
+            for (String parentSHA1 : parentShas) {
+                RevCommit parentCommit = revWalk.parseCommit(ObjectId.fromString(parentSHA1));
+                if (mostRecentParentCommit == null || parentCommit.getCommitterIdent().getWhen().after(mostRecentParentCommit.getCommitterIdent().getWhen())) {
+                    mostRecentParentCommit = parentCommit;
+                }
+            }
+            df.setRepository(git.getRepository());
+            List<DiffEntry> entries = df.scan(mostRecentParentCommit.getTree(), newCommit.getTree());
+            return entries.isEmpty();
+        }
+    }
+
+    private byte[] domainKinds() {
+        byte[] domainKinds = new byte[strings.size()];
+        for (int id = 0; id < domainKinds.length; id++) {
+            String[] emailParts = strings.get(id).split("@");
+            if (emailParts.length > 1) {
+                String domain = emailParts[1];
+                domainKinds[id] = universityDomains.contains(domain) ? UNIVERSITY : publicDomains.contains(domain) ? PUBLIC : COMMERCIAL;
+            }
+        }
+        return domainKinds;
+    }
+
+    private byte domainKind(int emailId) {
+        return emailId == StringIds.NONE ? NO_DOMAIN : domainKinds[emailId];
+    }
+
+    public int getNumberOfCommits(Date since, Date until) throws IOException {
+        LOGGER.debug("Retrieving number of commits from GH API");
+        int numberOfCommits = commits.to(until) - commits.from(since);
+        LOGGER.debug("Number of commits retrieved");
+        return Math.max(numberOfCommits, 0);
     }
 
     public Set<String> getContributors(Date since, Date until) throws IOException {
         LOGGER.debug("Retrieving number of contributors from GH API");
         Set<String> contributorsEmails = Sets.newHashSet();
-        List<GHCommit> monthlyCommits = getCommits(since, until);
-        for (GHCommit c : monthlyCommits) {
-            contributorsEmails.add(c.getCommitShortInfo().getAuthor().getEmail());
+        for (int i = commits.from(since); i < commits.to(until); i++) {
+            contributorsEmails.add(strings.get(commits.getAuthorEmail(i)));
         }
         LOGGER.debug("Number of contributors retrieved");
         return contributorsEmails;
     }
 
     public int getNumberOfContributors(Date since, Date until) throws IOException {
-        return getContributors(since, until).size();
+        BitSet contributorsEmails = new BitSet();
+        for (int i = commits.from(since); i < commits.to(until); i++) {
+            // unknown emails are counted as one contributor
+            contributorsEmails.set(commits.getAuthorEmail(i) + 1);
+        }
+        return contributorsEmails.cardinality();
     }
 
     public int getNumberOfIssues(GHIssueState state, Date since, Date until)
             throws IOException, IssueStateNotValidException{
         LOGGER.debug("Retrieving number of issues from GH API");
-        List<GHIssue> monthlyIssues = getIssues(state, since, until);
+        checkState(state);
+        if (state == GHIssueState.ALL) {
+            return issueTimeline.opened(since, until);
+        }
+        int numberOfIssues = 0;
+        for (int i = issues.from(since); i < issues.to(until); i++) {
+            if (issues.hasState(i, state)) {
+                numberOfIssues++;
+            }
+        }
         LOGGER.debug("Number of issues retrieved");
-        return monthlyIssues.size();
+        return numberOfIssues;
     }
 
-    private List<GHIssue> getIssuesByState(GHIssueState state) throws IssueStateNotValidException{
-        if (state.equals(GHIssueState.CLOSED)){
-            return closedIssues;
-        }
-        else if (state.equals(GHIssueState.OPEN)){
-            return openIssues;
-        }
-        else if (state.equals(GHIssueState.ALL)){
-            return allIssues;
-        }
+    /**
+     * Issues open at the date, i.e. created before it and closed after it if ever, rather than the issues created in
+     * a month that are still open at retrieval time as {@link #getNumberOfIssues} counts them. Complete only if the
+     * {@link DataSource#ISSUE_BACKLOG} was retrieved.
+     */
+    public int getNumberOfOpenIssuesAt(Date date) {
+        return issueTimeline.openAt(date);
+    }
 
-        throw new IssueStateNotValidException("State is not valid");
+    /**
+     * Issues closed between the dates, whenever they were created if the {@link DataSource#ISSUE_BACKLOG} was
+     * retrieved, else only the ones created since the starting date.
+     */
+    public int getNumberOfIssuesClosedBetween(Date since, Date until) {
+        return issueTimeline.closed(since, until);
     }
 
-    private List<GHIssue> getIssues(GHIssueState state, Date since, Date until)
-            throws IOException, IssueStateNotValidException {
-        List<GHIssue> monthlyIssues = new ArrayList<>();
-        for (GHIssue i : getIssuesByState(state)) {
-            if (i.getCreatedAt().after(since) && i.getCreatedAt().before(until))
-                monthlyIssues.add(i);
+    private static void checkState(GHIssueState state) throws IssueStateNotValidException {
+        if (!state.equals(GHIssueState.CLOSED) && !state.equals(GHIssueState.OPEN) && !state.equals(GHIssueState.ALL)) {
+            throw new IssueStateNotValidException("State is not valid");
         }
-        return monthlyIssues;
     }
 
-
     public int getNumberOfSubmitters(GHIssueState state, Date since, Date until) throws IOException, IssueStateNotValidException {
-        return getSubmitters(state, since, until).size();
+        return submitterIds(state, since, until).cardinality();
     }
 
     public Set<String> getSubmitters(GHIssueState state, Date since, Date until) throws IOException, IssueStateNotValidException {
         LOGGER.debug("Retrieving number of submitters from GH API");
         Set<String> submitters = Sets.newHashSet();
-        List<GHIssue> monthlyIssues = getIssues(state, since, until);
-        for (GHIssue issue : monthlyIssues) {
-            submitters.add(issue.getUser().getLogin());
+        BitSet submitterIds = submitterIds(state, since, until);
+        for (int id = submitterIds.nextSetBit(0); id >= 0; id = submitterIds.nextSetBit(id + 1)) {
+            submitters.add(strings.get(id));
         }
         LOGGER.debug("Number of submitters retrieved");
         return submitters;
     }
 
+    private BitSet submitterIds(GHIssueState state, Date since, Date until) throws IssueStateNotValidException {
+        checkState(state);
+        BitSet submitterIds = new BitSet();
+        for (int i = issues.from(since); i < issues.to(until); i++) {
+            if (issues.hasState(i, state)) {
+                submitterIds.set(issues.getSubmitter(i));
+            }
+        }
+        return submitterIds;
+    }
+
     public int getNumberOfNonDevIssues(GHIssueState state, Date since, Date until) throws IOException, IssueStateNotValidException {
         LOGGER.debug("Retrieving number of non dev issues from GH API");
-        Set<String> collaboratorNames = getCollaboratorNames();
+        checkState(state);
         int nonDevIssues = 0;
-        for (GHIssue issue : getIssues(state, since, until)){
-            if (!collaboratorNames.contains(issue.getUser().getLogin())) {
+        for (int i = issues.from(since); i < issues.to(until); i++) {
+            if (issues.hasState(i, state) && !collaborators.get(issues.getSubmitter(i))) {
                 nonDevIssues++;
             }
         }
@@ -188,66 +421,46 @@ public class GithubAPI {
         return nonDevIssues;
     }
 
-    private Set<String> getCollaboratorNames() {
-        Set<String> collaboratorNames = Sets.newHashSet();
-        for (GHRepository.Contributor contributor : contributors) {
-            collaboratorNames.add(contributor.getLogin());
-        }
-        return collaboratorNames;
-    }
-
     public long getNumberOfNonDevSubmitters(GHIssueState state, Date since, Date until) throws IOException, IssueStateNotValidException {
         LOGGER.debug("Retrieving number of non dev submitters from GH API");
-        Set<String> collaboratorNames = getCollaboratorNames();
-        return getSubmitters(state, since, until).stream()
-                .filter( submitter -> !collaboratorNames.contains(submitter))
-                .count();
+        BitSet submitterIds = submitterIds(state, since, until);
+        submitterIds.andNot(collaborators);
+        return submitterIds.cardinality();
+    }
+
+    /**
+     * Size of the repository in KB as reported by github, null if the repository was not retrieved from github.
+     */
+    public Integer getRepositorySize() {
+        return repo == null ? null : repo.getSize();
     }
 
     public boolean isDormant(Date until) throws IOException {
         LOGGER.debug("Checking if a project is dormant at date {}", until);
         Date since = new Date(until.getYear() - 1, until.getMonth(), 1);
         int n_commits = getNumberOfCommits(since, until);
-        return (n_commits < 12);
-    }
-
-    public String getBranchAtDate(Date until) throws IOException {
-        LOGGER.debug("Retrieving branches at date {} from GH API", until);
-        Date currentDate = null;
-        String tag = null;
-        for (GHTag t : tags) {
-            Date commitDate = t.getCommit().getCommitDate();
-            if (currentDate == null || commitDate.after(currentDate) && commitDate.before(until)) {
-                currentDate = commitDate;
-                tag = t.getName();
-            }
-        }
-        LOGGER.debug("Branches at date {} retrieved", until);
-        return tag;
+        return (n_commits < DORMANT_COMMITS);
     }
 
     public int getSizeOfTheCoreTeam(Date since, Date until) throws IOException {
         LOGGER.info("Calculating size of the core team");
-        Multiset<String> committers = HashMultiset.create();
+        Multiset<Integer> committers = HashMultiset.create();
         int numberOfCommits = 0;
-        List<GHCommit> monthlyCommits = getCommits(since, until);
-        for (GHCommit c : monthlyCommits) {
-            if (c.getCommitter()!= null) {
-                String email = c.getCommitter().getEmail();
-                if (email != null) {
-                    committers.add(email);
-                }
+        for (int i = commits.from(since); i < commits.to(until); i++) {
+            int email = commits.getCommitterEmail(i);
+            if (email != StringIds.NONE) {
+                committers.add(email);
             }
             numberOfCommits++;
         }
-        Set<String> keyset = committers.elementSet();
-        String maxKey = "";
+        Set<Integer> keyset = committers.elementSet();
+        Integer maxKey = null;
         int max = 0;
         int sum = 0;
         double covered = 0;
         int q90 = 0;
         while (covered < 90 && !committers.isEmpty()) {
-            for (String s : keyset) {
+            for (Integer s : keyset) {
                 if (committers.count(s) > max) {
                     max = committers.count(s);
                     maxKey = s;
@@ -268,26 +481,26 @@ public class GithubAPI {
 
     public int getSocialTies(Date since, Date until) throws IOException {
         LOGGER.info("Calculating social ties");
-        ArrayList<String> repoNames = new ArrayList<String>();
-        List<GHCommit> monthlyCommits = getCommits(since, until);
-        for (GHCommit c : monthlyCommits) {
-            GHUser author = c.getAuthor();
-            if (author != null) {
-                String login = author.getLogin();
-                List<GHRepository> repos = author.listSubscriptions().asList();
-                for (GHRepository repo : repos) {
-                    try {
-                        List<GHCommit> dev_commits = repo.queryCommits().author(login).since(since).until(until).list()
-                                .asList();
-                        if (!dev_commits.isEmpty()) {
-                            if (!repoNames.contains(repo.getUrl().getPath())) {
-                                repoNames.add(repo.getUrl().getPath());
-                            }
-                        }
-                    } catch (GHException e) {
-                        LOGGER.error("Repository {} is empty", repo);
-                        LOGGER.error(e.getMessage());
+        Set<String> repoNames = new HashSet<>();
+        // the ties of an author do not depend on the number of their commits in the month
+        BitSet authorLogins = new BitSet();
+        for (int i = commits.from(since); i < commits.to(until); i++) {
+            if (commits.getAuthorLogin(i) != StringIds.NONE) {
+                authorLogins.set(commits.getAuthorLogin(i));
+            }
+        }
+        for (int authorLogin = authorLogins.nextSetBit(0); authorLogin >= 0; authorLogin = authorLogins.nextSetBit(authorLogin + 1)) {
+            String login = strings.get(authorLogin);
+            for (GHRepository repo : github.getUser(login).listSubscriptions()) {
+                try {
+                    // only the first page is needed to know whether the developer committed to the repository
+                    boolean devCommits = repo.queryCommits().author(login).since(since).until(until).list().withPageSize(1).iterator().hasNext();
+                    if (devCommits) {
+                        repoNames.add(repo.getUrl().getPath());
                     }
+                } catch (GHException e) {
+                    LOGGER.error("Repository {} is empty", repo);
+                    LOGGER.error(e.getMessage());
                 }
             }
         }
@@ -299,16 +512,9 @@ public class GithubAPI {
     public int getNumberOfUniversityContributors(Date since, Date until) throws IOException {
         LOGGER.debug("Retrieving number of university contributors");
         int universityContributors = 0;
-        List<GHCommit> monthlyCommits = getCommits(since,until);
-
-        for (GHCommit c : monthlyCommits) {
-            if (c.getCommitShortInfo().getAuthor() != null) {
-                String email = c.getCommitShortInfo().getAuthor().getEmail();
-                if (email != null && email.contains("@")) {
-                    String domain = email.split("@")[1];
-                    if (universityDomains.contains(domain))
-                        universityContributors++;
-                }
+        for (int i = commits.from(since); i < commits.to(until); i++) {
+            if (domainKind(commits.getAuthorEmail(i)) == UNIVERSITY) {
+                universityContributors++;
             }
         }
         LOGGER.debug("Number of university contributors retrieved");
@@ -318,13 +524,9 @@ public class GithubAPI {
     public int getNumberOfCommercialContributors(Date since, Date until) throws IOException {
         LOGGER.debug("Retrieving number of commercial contributors");
         int commercialContributors = 0;
-        List<GHCommit> monthlyCommits = getCommits(since,until);
-        for (GHCommit c : monthlyCommits) {
-            if (c.getCommitShortInfo().getAuthor() != null) {
-                String email = c.getCommitShortInfo().getAuthor().getEmail();
-                String domain = email.split("@")[1];
-                if (!universityDomains.contains(domain) && !publicDomains.contains(domain))
-                    commercialContributors++;
+        for (int i = commits.from(since); i < commits.to(until); i++) {
+            if (domainKind(commits.getAuthorEmail(i)) == COMMERCIAL) {
+                commercialContributors++;
             }
         }
         LOGGER.debug("Number of commercial contributors retrieved");
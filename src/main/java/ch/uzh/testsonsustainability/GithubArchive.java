@@ -0,0 +1,427 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.eclipse.jgit.lib.ObjectId;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.kohsuke.github.GHIssueState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Commits, issues and contributors of the projects read from local dumps of the github events in the format of GH
+ * Archive, gzipped files of one JSON event per line, instead of retrieved through the github API.
+ *
+ * The dumps are scanned once for all the projects of the csv data path, each file streamed by one of the threads, and
+ * only the push, issues, member and create events of the projects are parsed, the others being skipped from their
+ * type and repository at the start of the line. The events of a repository are kept as columns of primitive arrays and
+ * replayed into {@link GithubAPI} by each job.
+ *
+ * The events are not the resources of the REST API, so the records differ from the retrieved ones: a commit has the
+ * time it was pushed rather than its commit date and the login of its pusher as the github user of its author and
+ * committer, and a push lists at most 20 of its commits. The commits are those pushed to the default branch, which the
+ * create events of the repository name, or else the branch most commits were pushed to. An issue has the state and
+ * closing date of its latest event, and the contributors are the users who pushed to the repository or were added as
+ * its members.
+ */
+class GithubArchive {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(GithubArchive.class);
+
+    private static final String DUMP_SUFFIX = ".json.gz";
+    private static final String PUSH_EVENT = "PushEvent";
+    private static final String ISSUES_EVENT = "IssuesEvent";
+    private static final String MEMBER_EVENT = "MemberEvent";
+    private static final String CREATE_EVENT = "CreateEvent";
+    private static final String BRANCH_PREFIX = "refs/heads/";
+    // login github shows for the issues of deleted accounts
+    private static final String GHOST_LOGIN = "ghost";
+
+    // repositories of the projects by lower case name, as github names are case insensitive
+    private final Map<String, Repository> repositories;
+    private final AtomicLong scannedEvents = new AtomicLong();
+    private final AtomicLong parsedEvents = new AtomicLong();
+
+    private GithubArchive(Map<String, Repository> repositories) {
+        this.repositories = repositories;
+    }
+
+    /**
+     * Scans the dumps under the archive path, in any subdirectory, for the repositories of the projects in the csv
+     * data path.
+     */
+    static GithubArchive load(String archivePath, String csvPath, int threads) throws IOException {
+        Map<String, Repository> repositories = new HashMap<>();
+        for (String repoName : readRepositories(csvPath)) {
+            repositories.put(repoName.toLowerCase(Locale.ROOT), new Repository());
+        }
+        List<Path> dumps;
+        try (Stream<Path> paths = Files.walk(Paths.get(archivePath))) {
+            dumps = paths.filter(path -> path.getFileName().toString().endsWith(DUMP_SUFFIX)).sorted().collect(Collectors.toList());
+        }
+        LOGGER.info("Scanning {} event dumps in {} for {} repositories with {} threads", dumps.size(), archivePath, repositories.size(), threads);
+
+        GithubArchive archive = new GithubArchive(repositories);
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("github-archive-%d").setDaemon(true).build());
+        try (PipelineMetrics.Timer timer = PipelineMetrics.time("github_archive_scan")) {
+            List<Future<?>> scans = new ArrayList<>();
+            for (Path dump : dumps) {
+                scans.add(executor.submit(() -> {
+                    archive.scan(dump);
+                    return null;
+                }));
+            }
+            for (Future<?> scan : scans) {
+                scan.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning the event dumps");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.info("Scanned {} events, {} of the repositories", archive.scannedEvents.get(), archive.parsedEvents.get());
+        return archive;
+    }
+
+    private static List<String> readRepositories(String csvPath) throws IOException {
+        List<String> repoNames = new ArrayList<>();
+        try (BufferedReader brProjects = new BufferedReader(new FileReader(csvPath + Utils.CSV_INPUT_FILENAME))) {
+            CSVParser projectsParser = CSVParser.parse(brProjects, CSVFormat.DEFAULT.withFirstRecordAsHeader().withDelimiter(';'));
+            for (CSVRecord csvRecord : projectsParser) {
+                String githubLink = csvRecord.get("Github Link");
+                // projects without a github repository cannot be analysed
+                if (githubLink.contains("github.com/")) {
+                    repoNames.add(githubLink.split("github.com/")[1]);
+                }
+            }
+        }
+        return repoNames;
+    }
+
+    /**
+     * Events of the repository, none if it is not a repository of the projects or has no event in the dumps.
+     */
+    Repository get(String repoName) {
+        Repository repository = repositories.get(repoName.toLowerCase(Locale.ROOT));
+        if (repository == null) {
+            LOGGER.warn("Repository {} is not a repository of the projects, the archive has none of its events", repoName);
+            return new Repository();
+        }
+        return repository;
+    }
+
+    /**
+     * Whether the GH repo is dormant at the date as {@link GithubAPI#isDormant} establishes it, from the commits pushed
+     * to its default branch in the year before the month of the date, so the dumps have to cover that year. The
+     * dormancy of a GH repo that is not a repository of the projects cannot be established, so it is not dormant.
+     */
+    boolean isDormant(String ghRepo, LocalDate until) {
+        if (!ghRepo.contains("github.com/")) {
+            return false;
+        }
+        Repository repository = repositories.get(ghRepo.split("github.com/")[1].toLowerCase(Locale.ROOT));
+        if (repository == null) {
+            return false;
+        }
+        LocalDate since = until.minusYears(1).withDayOfMonth(1);
+        return repository.countCommits(toMillis(since), toMillis(until)) < GithubAPI.DORMANT_COMMITS;
+    }
+
+    // the dates of the months are local, as the dates GithubAPI is queried with
+    private static long toMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void scan(Path dump) throws IOException {
+        long scanned = 0;
+        long parsed = 0;
+        try (BufferedReader events = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(dump), 1 << 16), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = events.readLine()) != null) {
+                scanned++;
+                String type = stringAfter(line, "\"type\":\"", 0);
+                if (!PUSH_EVENT.equals(type) && !ISSUES_EVENT.equals(type) && !MEMBER_EVENT.equals(type) && !CREATE_EVENT.equals(type)) {
+                    continue;
+                }
+                String repoName = stringAfter(line, "\"name\":\"", line.indexOf("\"repo\":{"));
+                Repository repository = repoName == null ? null : repositories.get(repoName.toLowerCase(Locale.ROOT));
+                if (repository == null) {
+                    continue;
+                }
+                try {
+                    repository.add(type, new JSONObject(line));
+                    parsed++;
+                    PipelineMetrics.increment(PipelineMetrics.ARCHIVE_EVENTS, "type", type);
+                } catch (JSONException e) {
+                    LOGGER.warn("Skipping an event of {} in {} that cannot be read: {}", repoName, dump, e.getMessage());
+                }
+            }
+        }
+        scannedEvents.addAndGet(scanned);
+        parsedEvents.addAndGet(parsed);
+        LOGGER.debug("Scanned {} events of {}, {} of the repositories", scanned, dump, parsed);
+    }
+
+    // string value following the key from the index on, without unescaping, as the types and repository names need none
+    private static String stringAfter(String line, String key, int fromIndex) {
+        if (fromIndex < 0) {
+            return null;
+        }
+        int start = line.indexOf(key, fromIndex);
+        if (start < 0) {
+            return null;
+        }
+        start += key.length();
+        int end = line.indexOf('"', start);
+        return end < 0 ? null : line.substring(start, end);
+    }
+
+    private static long parseDate(String date) {
+        return Instant.parse(date).toEpochMilli();
+    }
+
+    /**
+     * Events of a repository, added by the threads scanning the dumps in any order, and replayed in the order of
+     * their times.
+     */
+    static class Repository {
+
+        private static final int SHA_BYTES = 20;
+
+        private final StringIds strings = new StringIds();
+
+        // commits of the pushes, with the branch they were pushed to
+        private long[] commitTimes = new long[16];
+        private byte[] commitShas = new byte[16 * SHA_BYTES];
+        private int[] commitBranches = new int[16];
+        private int[] commitAuthorEmails = new int[16];
+        private int[] commitPushers = new int[16];
+        private int commits;
+
+        // issues as of each of their events
+        private int[] issueNumbers = new int[16];
+        private long[] issueEventTimes = new long[16];
+        private long[] issueTimes = new long[16];
+        private long[] issueClosedTimes = new long[16];
+        private byte[] issueStates = new byte[16];
+        private int[] issueSubmitters = new int[16];
+        private int issueEvents;
+
+        private final BitSet contributors = new BitSet();
+
+        private int defaultBranch = StringIds.NONE;
+        private long defaultBranchTime = Long.MIN_VALUE;
+        // sorted times of the commits of the default branch, once the dumps are scanned
+        private long[] defaultBranchCommitTimes = null;
+
+        private synchronized void add(String type, JSONObject event) {
+            long time = parseDate(event.getString("created_at"));
+            JSONObject payload = event.getJSONObject("payload");
+            switch (type) {
+                case PUSH_EVENT:
+                    String ref = payload.optString("ref", "");
+                    if (!ref.startsWith(BRANCH_PREFIX)) {
+                        break;
+                    }
+                    int branch = strings.id(ref.substring(BRANCH_PREFIX.length()));
+                    int pusher = strings.id(event.getJSONObject("actor").getString("login"));
+                    contributors.set(pusher);
+                    JSONArray pushedCommits = payload.optJSONArray("commits");
+                    for (int i = 0; pushedCommits != null && i < pushedCommits.length(); i++) {
+                        JSONObject commit = pushedCommits.getJSONObject(i);
+                        JSONObject author = commit.optJSONObject("author");
+                        addCommit(time, commit.getString("sha"), branch,
+                                author == null || author.isNull("email") ? StringIds.NONE : strings.id(author.getString("email")), pusher);
+                    }
+                    break;
+                case ISSUES_EVENT:
+                    JSONObject issue = payload.getJSONObject("issue");
+                    if (issue.has("pull_request")) {
+                        break;
+                    }
+                    JSONObject user = issue.optJSONObject("user");
+                    addIssueEvent(issue.getInt("number"), time, parseDate(issue.getString("created_at")),
+                            issue.isNull("closed_at") ? IssueRecords.NOT_CLOSED : parseDate(issue.getString("closed_at")),
+                            "closed".equals(issue.getString("state")),
+                            strings.id(user == null ? GHOST_LOGIN : user.getString("login")));
+                    break;
+                case MEMBER_EVENT:
+                    if ("added".equals(payload.optString("action"))) {
+                        contributors.set(strings.id(payload.getJSONObject("member").getString("login")));
+                    }
+                    break;
+                case CREATE_EVENT:
+                    // the default branch as of the latest create event
+                    if (!payload.isNull("master_branch") && time >= defaultBranchTime) {
+                        defaultBranch = strings.id(payload.getString("master_branch"));
+                        defaultBranchTime = time;
+                    }
+                    break;
+            }
+        }
+
+        private void addCommit(long time, String sha, int branch, int authorEmail, int pusher) {
+            if (!ObjectId.isId(sha)) {
+                return;
+            }
+            commitTimes = TimeRecords.grow(commitTimes, commits);
+            commitBranches = TimeRecords.grow(commitBranches, commits);
+            commitAuthorEmails = TimeRecords.grow(commitAuthorEmails, commits);
+            commitPushers = TimeRecords.grow(commitPushers, commits);
+            if ((commits + 1) * SHA_BYTES > commitShas.length) {
+                commitShas = Arrays.copyOf(commitShas, commitShas.length * 2);
+            }
+            commitTimes[commits] = time;
+            ObjectId.fromString(sha).copyRawTo(commitShas, commits * SHA_BYTES);
+            commitBranches[commits] = branch;
+            commitAuthorEmails[commits] = authorEmail;
+            commitPushers[commits] = pusher;
+            commits++;
+        }
+
+        private void addIssueEvent(int number, long eventTime, long time, long closedTime, boolean closed, int submitter) {
+            issueNumbers = TimeRecords.grow(issueNumbers, issueEvents);
+            issueEventTimes = TimeRecords.grow(issueEventTimes, issueEvents);
+            issueTimes = TimeRecords.grow(issueTimes, issueEvents);
+            issueClosedTimes = TimeRecords.grow(issueClosedTimes, issueEvents);
+            issueStates = TimeRecords.grow(issueStates, issueEvents);
+            issueSubmitters = TimeRecords.grow(issueSubmitters, issueEvents);
+            issueNumbers[issueEvents] = number;
+            issueEventTimes[issueEvents] = eventTime;
+            issueTimes[issueEvents] = time;
+            issueClosedTimes[issueEvents] = closedTime;
+            issueStates[issueEvents] = (byte) (closed ? 1 : 0);
+            issueSubmitters[issueEvents] = submitter;
+            issueEvents++;
+        }
+
+        /**
+         * Replays the commits of the default branch pushed between the dates, each once at the time it was first
+         * pushed to the branch. The commits have no parents, the merges have to be told apart from the clone.
+         */
+        synchronized void replayCommits(Date since, Date until, boolean withUsers, GithubGraphQL.CommitConsumer consumer) throws IOException {
+            for (Map.Entry<ObjectId, Integer> firstPush : firstPushes().entrySet()) {
+                int i = firstPush.getValue();
+                if (commitTimes[i] < since.getTime() || commitTimes[i] >= until.getTime()) {
+                    continue;
+                }
+                String pusher = withUsers ? strings.get(commitPushers[i]) : null;
+                consumer.accept(firstPush.getKey().name(), Collections.emptyList(), commitTimes[i], strings.get(commitAuthorEmails[i]), pusher, pusher);
+            }
+        }
+
+        /**
+         * Number of commits of the default branch pushed strictly after since and before until, as the commit records
+         * count them.
+         */
+        synchronized int countCommits(long since, long until) {
+            if (defaultBranchCommitTimes == null) {
+                defaultBranchCommitTimes = firstPushes().values().stream().mapToLong(i -> commitTimes[i]).sorted().toArray();
+            }
+            return TimeRecords.firstIndexAbove(defaultBranchCommitTimes, until - 1) - TimeRecords.firstIndexAbove(defaultBranchCommitTimes, since);
+        }
+
+        // the first push of each commit of the default branch
+        private Map<ObjectId, Integer> firstPushes() {
+            int branch = defaultBranch();
+            Map<ObjectId, Integer> firstPushes = new HashMap<>();
+            for (int i = 0; i < commits; i++) {
+                if (commitBranches[i] != branch) {
+                    continue;
+                }
+                ObjectId sha = ObjectId.fromRaw(commitShas, i * SHA_BYTES);
+                Integer firstPush = firstPushes.get(sha);
+                if (firstPush == null || commitTimes[i] < commitTimes[firstPush]) {
+                    firstPushes.put(sha, i);
+                }
+            }
+            return firstPushes;
+        }
+
+        // the branch of the latest create event naming the default branch, or the branch most commits were pushed to
+        private int defaultBranch() {
+            if (defaultBranch != StringIds.NONE) {
+                return defaultBranch;
+            }
+            Map<Integer, Integer> branchCommits = new HashMap<>();
+            int mostPushedBranch = StringIds.NONE;
+            for (int i = 0; i < commits; i++) {
+                int count = branchCommits.merge(commitBranches[i], 1, Integer::sum);
+                if (mostPushedBranch == StringIds.NONE || count > branchCommits.get(mostPushedBranch)) {
+                    mostPushedBranch = commitBranches[i];
+                }
+            }
+            return mostPushedBranch;
+        }
+
+        /**
+         * Replays the issues created since the date, as of their latest event, and with the backlog the older issues
+         * still open at the date.
+         */
+        synchronized void replayIssues(Date since, boolean withBacklog, GithubGraphQL.IssueConsumer consumer) throws IOException {
+            Map<Integer, Integer> latestEvents = new HashMap<>();
+            for (int i = 0; i < issueEvents; i++) {
+                Integer latestEvent = latestEvents.get(issueNumbers[i]);
+                if (latestEvent == null || issueEventTimes[i] >= issueEventTimes[latestEvent]) {
+                    latestEvents.put(issueNumbers[i], i);
+                }
+            }
+            for (int i : latestEvents.values()) {
+                boolean openAtSince = issueStates[i] == 0 || issueClosedTimes[i] >= since.getTime();
+                if (issueTimes[i] >= since.getTime() || withBacklog && openAtSince) {
+                    consumer.accept(issueTimes[i], issueClosedTimes[i], issueStates[i] == 1 ? GHIssueState.CLOSED : GHIssueState.OPEN, strings.get(issueSubmitters[i]));
+                }
+            }
+        }
+
+        /**
+         * Logins of the users who pushed to the repository or were added as its members.
+         */
+        synchronized List<String> getContributors() {
+            List<String> logins = new ArrayList<>();
+            for (int id = contributors.nextSetBit(0); id >= 0; id = contributors.nextSetBit(id + 1)) {
+                logins.add(strings.get(id));
+            }
+            return logins;
+        }
+    }
+}
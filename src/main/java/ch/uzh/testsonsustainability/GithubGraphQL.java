@@ -0,0 +1,392 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.io.CharStreams;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.kohsuke.github.GHIssueState;
+import org.kohsuke.github.HttpConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Retrieves the commit history of the default branch and the issues of a repository through the github GraphQL API.
+ *
+ * A query returns a page of 100 commits with their parents and users, and a page of 100 issues, so a repository
+ * takes as many queries as its longest list has pages, instead of a REST request per page of each list and per user.
+ * The query reports the points it cost and the points left, and the retrieval waits for the reset of the rate limit
+ * once the points left cannot pay for the next query. A query rejected by the primary or the secondary rate limit is
+ * retried after the wait github asks for, a few times at most; any other rejection fails the retrieval.
+ */
+class GithubGraphQL {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(GithubGraphQL.class);
+
+    private static final String HISTORY_QUERY = "query History($owner: String!, $name: String!, $since: GitTimestamp, $until: GitTimestamp, "
+            + "$withCommits: Boolean!, $withUsers: Boolean!, $commitCursor: String, $withIssues: Boolean!, $issueCursor: String) {\n"
+            + "  rateLimit { cost remaining resetAt }\n"
+            + "  repository(owner: $owner, name: $name) {\n"
+            + "    defaultBranchRef @include(if: $withCommits) {\n"
+            + "      target {\n"
+            + "        ... on Commit {\n"
+            + "          history(first: 100, since: $since, until: $until, after: $commitCursor) {\n"
+            + "            pageInfo { hasNextPage endCursor }\n"
+            + "            nodes {\n"
+            + "              oid committedDate\n"
+            + "              author { email user @include(if: $withUsers) { login } }\n"
+            + "              committer { user @include(if: $withUsers) { email } }\n"
+            + "              parents(first: 8) { nodes { oid } }\n"
+            + "            }\n"
+            + "          }\n"
+            + "        }\n"
+            + "      }\n"
+            + "    }\n"
+            + "    issues(first: 100, after: $issueCursor, orderBy: {field: CREATED_AT, direction: DESC}) @include(if: $withIssues) {\n"
+            + "      pageInfo { hasNextPage endCursor }\n"
+            + "      nodes { createdAt closedAt state author { login } }\n"
+            + "    }\n"
+            + "  }\n"
+            + "}";
+
+    private static final String COUNTS_QUERY = "query Counts($owner: String!, $name: String!, $since: GitTimestamp!, $issuesSince: DateTime!) {\n"
+            + "  rateLimit { cost remaining resetAt }\n"
+            + "  repository(owner: $owner, name: $name) {\n"
+            + "    defaultBranchRef { target { ... on Commit { history(since: $since) { totalCount } } } }\n"
+            + "    issues(filterBy: {since: $issuesSince}) { totalCount }\n"
+            + "    allIssues: issues { totalCount }\n"
+            + "    mentionableUsers { totalCount }\n"
+            + "  }\n"
+            + "}";
+
+    // login github shows for the issues of deleted accounts, which have no author in GraphQL
+    private static final String GHOST_LOGIN = "ghost";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final long DEFAULT_RESET_WAIT_MILLIS = 60 * 1000;
+    static final int MAX_RATE_LIMITED_RETRIES = 5;
+
+    private final URL url;
+    private final String token;
+    private final HttpConnector connector;
+
+    private int queries = 0;
+    private int points = 0;
+    private int lastCost = 1;
+    private int remaining = Integer.MAX_VALUE;
+    private long resetAtMillis = 0;
+
+    GithubGraphQL(String githubApiUrl, String token, HttpConnector connector) throws IOException {
+        this.url = new URL(graphQLUrl(githubApiUrl));
+        this.token = token;
+        this.connector = connector;
+    }
+
+    /**
+     * GraphQL endpoint of a github REST API url, e.g. https://api.github.com/graphql or, on a github enterprise
+     * server, https://host/api/graphql for https://host/api/v3.
+     */
+    static String graphQLUrl(String githubApiUrl) {
+        String apiUrl = githubApiUrl.endsWith("/") ? githubApiUrl.substring(0, githubApiUrl.length() - 1) : githubApiUrl;
+        if (apiUrl.endsWith("/api/v3")) {
+            return apiUrl.substring(0, apiUrl.length() - "/v3".length()) + "/graphql";
+        }
+        return apiUrl + "/graphql";
+    }
+
+    interface CommitConsumer {
+        /**
+         * The users of the commit are null if they were not requested or the emails are not known to github.
+         */
+        void accept(String sha, List<String> parentShas, long time, String authorEmail, String authorLogin, String committerEmail) throws IOException;
+    }
+
+    interface IssueConsumer {
+        /**
+         * The closing time is {@link IssueRecords#NOT_CLOSED} for an open issue.
+         */
+        void accept(long time, long closedTime, GHIssueState state, String submitter) throws IOException;
+    }
+
+    /**
+     * Counts of the repository since the date, in one query: the commits of the default branch, the issues updated
+     * since the date, which include the issues created since, all the issues, and the users who can be mentioned in
+     * the repository, which include its contributors.
+     */
+    RepositoryCounts counts(String repoName, Date since) throws IOException {
+        String[] ownerAndName = repoName.split("/");
+        JSONObject variables = new JSONObject()
+                .put("owner", ownerAndName[0])
+                .put("name", ownerAndName[1])
+                .put("since", formatDate(since))
+                .put("issuesSince", formatDate(since));
+        JSONObject repository = query(COUNTS_QUERY, variables).getJSONObject("repository");
+        JSONObject history = history(repository);
+        return new RepositoryCounts(
+                history == null ? 0 : history.getInt("totalCount"),
+                repository.getJSONObject("issues").getInt("totalCount"),
+                repository.getJSONObject("allIssues").getInt("totalCount"),
+                repository.getJSONObject("mentionableUsers").getInt("totalCount"));
+    }
+
+    /**
+     * Retrieves the commits between the dates and the issues created since the starting date, newest first, and with
+     * the backlog the older issues still open at the starting date, see {@link DataSource#ISSUE_BACKLOG}. A null
+     * consumer skips its list.
+     */
+    void retrieve(String repoName, Date since, Date until, CommitConsumer commits, boolean withUsers, IssueConsumer issues, boolean withBacklog) throws IOException {
+        String[] ownerAndName = repoName.split("/");
+        JSONObject variables = new JSONObject()
+                .put("owner", ownerAndName[0])
+                .put("name", ownerAndName[1])
+                .put("since", formatDate(since))
+                .put("until", formatDate(until))
+                .put("withUsers", withUsers);
+        boolean withCommits = commits != null;
+        boolean withIssues = issues != null;
+        String commitCursor = null;
+        String issueCursor = null;
+        while (withCommits || withIssues) {
+            variables.put("withCommits", withCommits)
+                    .put("commitCursor", commitCursor == null ? JSONObject.NULL : commitCursor)
+                    .put("withIssues", withIssues)
+                    .put("issueCursor", issueCursor == null ? JSONObject.NULL : issueCursor);
+            JSONObject repository = query(HISTORY_QUERY, variables).getJSONObject("repository");
+
+            if (withCommits) {
+                JSONObject history = history(repository);
+                if (history == null) {
+                    // an empty repository has no default branch
+                    withCommits = false;
+                } else {
+                    for (Object node : history.getJSONArray("nodes")) {
+                        acceptCommit(commits, (JSONObject) node);
+                    }
+                    JSONObject pageInfo = history.getJSONObject("pageInfo");
+                    withCommits = pageInfo.getBoolean("hasNextPage");
+                    commitCursor = pageInfo.optString("endCursor", null);
+                }
+            }
+
+            if (withIssues) {
+                JSONObject issuePage = repository.getJSONObject("issues");
+                for (Object node : issuePage.getJSONArray("nodes")) {
+                    JSONObject issue = (JSONObject) node;
+                    long time = parseDate(issue.getString("createdAt"));
+                    long closedTime = issue.isNull("closedAt") ? IssueRecords.NOT_CLOSED : parseDate(issue.getString("closedAt"));
+                    if (time < since.getTime()) {
+                        // issues are listed newest first, so we can stop paginating as soon as we reach the first issue created before since
+                        if (!withBacklog) {
+                            withIssues = false;
+                            break;
+                        }
+                        // the closing of an issue closed and reopened since is unknown, it is open since its creation
+                        if (issue.getString("state").equals("CLOSED") && closedTime < since.getTime()) {
+                            continue;
+                        }
+                    }
+                    JSONObject author = issue.optJSONObject("author");
+                    issues.accept(time,
+                            closedTime,
+                            issue.getString("state").equals("CLOSED") ? GHIssueState.CLOSED : GHIssueState.OPEN,
+                            author == null ? GHOST_LOGIN : author.getString("login"));
+                }
+                JSONObject pageInfo = issuePage.getJSONObject("pageInfo");
+                withIssues = withIssues && pageInfo.getBoolean("hasNextPage");
+                issueCursor = pageInfo.optString("endCursor", null);
+            }
+        }
+        LOGGER.debug("Retrieved {} through {} graphql queries costing {} points, {} points left", repoName, queries, points, remaining);
+    }
+
+    private static JSONObject history(JSONObject repository) {
+        JSONObject defaultBranchRef = repository.optJSONObject("defaultBranchRef");
+        if (defaultBranchRef == null) {
+            return null;
+        }
+        return defaultBranchRef.getJSONObject("target").optJSONObject("history");
+    }
+
+    private static void acceptCommit(CommitConsumer commits, JSONObject commit) throws IOException {
+        List<String> parentShas = new ArrayList<>();
+        for (Object parent : commit.getJSONObject("parents").getJSONArray("nodes")) {
+            parentShas.add(((JSONObject) parent).getString("oid"));
+        }
+        JSONObject author = commit.optJSONObject("author");
+        JSONObject authorUser = author == null ? null : author.optJSONObject("user");
+        JSONObject committer = commit.optJSONObject("committer");
+        JSONObject committerUser = committer == null ? null : committer.optJSONObject("user");
+        // the profile email is empty rather than null when the user does not make it public
+        String committerEmail = committerUser == null ? null : committerUser.optString("email", "");
+        commits.accept(commit.getString("oid"), parentShas, parseDate(commit.getString("committedDate")),
+                author == null || author.isNull("email") ? null : author.getString("email"),
+                authorUser == null ? null : authorUser.getString("login"),
+                committerEmail == null || committerEmail.isEmpty() ? null : committerEmail);
+    }
+
+    private JSONObject query(String query, JSONObject variables) throws IOException {
+        String body = new JSONObject().put("query", query).put("variables", variables).toString();
+        int rateLimitedRetries = 0;
+        while (true) {
+            if (remaining < lastCost) {
+                waitForReset(resetAtMillis);
+            }
+            HttpURLConnection connection = connector.connect(url);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Authorization", "bearer " + token);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            int status;
+            String responseBody;
+            boolean received = false;
+            try {
+                try (OutputStream requestBody = connection.getOutputStream()) {
+                    requestBody.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+                status = connection.getResponseCode();
+                responseBody = read(status >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream(), connection.getContentEncoding());
+                received = true;
+            } finally {
+                // a response read to the end keeps its connection alive, one failing half way is dropped with its permit
+                if (!received) {
+                    connection.disconnect();
+                }
+            }
+            JSONObject response = responseBody.isEmpty() ? new JSONObject() : new JSONObject(responseBody);
+
+            if (isRateLimited(status, connection, response)) {
+                // the primary or secondary rate limit was exceeded before the query was run
+                if (++rateLimitedRetries > MAX_RATE_LIMITED_RETRIES) {
+                    throw new IOException("GraphQL query to " + url + " still rate limited after " + MAX_RATE_LIMITED_RETRIES + " waits: " + responseBody);
+                }
+                long retryAfterSeconds = connection.getHeaderFieldLong("Retry-After", -1);
+                if (retryAfterSeconds >= 0) {
+                    waitMillis(retryAfterSeconds * 1000);
+                } else {
+                    long resetEpochSecond = connection.getHeaderFieldLong("X-RateLimit-Reset", 0);
+                    waitForReset(resetEpochSecond == 0 ? System.currentTimeMillis() + DEFAULT_RESET_WAIT_MILLIS : resetEpochSecond * 1000);
+                }
+                continue;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("GraphQL query to " + url + " failed with status " + status + ": " + responseBody);
+            }
+            if (response.has("errors")) {
+                throw new IOException("GraphQL query to " + url + " failed: " + errorMessages(response.getJSONArray("errors")));
+            }
+
+            JSONObject data = response.getJSONObject("data");
+            JSONObject rateLimit = data.getJSONObject("rateLimit");
+            lastCost = Math.max(1, rateLimit.getInt("cost"));
+            remaining = rateLimit.getInt("remaining");
+            resetAtMillis = parseDate(rateLimit.getString("resetAt"));
+            queries++;
+            points += lastCost;
+            PipelineMetrics.githubGraphQLQuery(lastCost);
+            if (data.isNull("repository")) {
+                throw new IOException("Repository " + variables.getString("owner") + "/" + variables.getString("name") + " not found");
+            }
+            return data;
+        }
+    }
+
+    // a query over the primary rate limit is rejected with a 403 or 429 status and no points left, one over the
+    // secondary rate limit with a Retry-After header or its message, and one over the GraphQL points with an error
+    private static boolean isRateLimited(int status, HttpURLConnection connection, JSONObject response) {
+        if (status == HttpURLConnection.HTTP_FORBIDDEN || status == HTTP_TOO_MANY_REQUESTS) {
+            return "0".equals(connection.getHeaderField("X-RateLimit-Remaining"))
+                    || connection.getHeaderField("Retry-After") != null
+                    || response.optString("message").toLowerCase(Locale.ROOT).contains("secondary rate limit");
+        }
+        JSONArray errors = response.optJSONArray("errors");
+        if (errors != null) {
+            for (Object error : errors) {
+                if ("RATE_LIMITED".equals(((JSONObject) error).optString("type"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String errorMessages(JSONArray errors) {
+        List<String> messages = new ArrayList<>();
+        for (Object error : errors) {
+            messages.add(((JSONObject) error).optString("message"));
+        }
+        return String.join("; ", messages);
+    }
+
+    private static void waitForReset(long resetAtMillis) throws IOException {
+        // a second more, for the clock of github
+        waitMillis(resetAtMillis - System.currentTimeMillis() + 1000);
+    }
+
+    private static void waitMillis(long waitMillis) throws IOException {
+        if (waitMillis <= 0) {
+            return;
+        }
+        LOGGER.warn("GraphQL rate limit exhausted, waiting {} seconds for its reset", waitMillis / 1000);
+        try {
+            Thread.sleep(waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the reset of the GraphQL rate limit");
+        }
+    }
+
+    private static String read(InputStream inputStream, String contentEncoding) throws IOException {
+        if (inputStream == null) {
+            return "";
+        }
+        // read to the end and closed, so that the connection is kept alive for the next query
+        InputStream body = "gzip".equals(contentEncoding) ? new GZIPInputStream(inputStream) : inputStream;
+        try (InputStreamReader reader = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+            return CharStreams.toString(reader);
+        }
+    }
+
+    private static String formatDate(Date date) {
+        // to the second, as the REST queries of github-api
+        return date.toInstant().truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+
+    private static long parseDate(String date) {
+        // commit dates keep the offset of the committer, the other dates are in UTC
+        return OffsetDateTime.parse(date).toInstant().toEpochMilli();
+    }
+
+    static class RepositoryCounts {
+
+        final int commits;
+        final int issues;
+        final int allIssues;
+        final int users;
+
+        RepositoryCounts(int commits, int issues, int allIssues, int users) {
+            this.commits = commits;
+            this.issues = issues;
+            this.allIssues = allIssues;
+            this.users = users;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d commits, %d issues, %d in all, %d users", commits, issues, allIssues, users);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of previous runs, used by the incremental mode to only compute the months that elapsed since the last run.
+ *
+ * Every variable file holds one header line ("Project name" followed by the months) and one row per project. Rows of
+ * monthly variables are extended with the new months, from the last stored month on, while rolling variables (e.g.
+ * dormant) are recomputed and replaced.
+ * Before a run starts the previous results are snapshotted into "*.previous" files, so that an interrupted run can be
+ * resumed without losing rows.
+ */
+public class IncrementalResults {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(IncrementalResults.class);
+
+    public static final String PREVIOUS_SUFFIX = ".previous";
+    public static final Set<String> ROLLING_VARIABLES = ImmutableSet.of("dormant");
+
+    // the variable used as reference to establish which months have already been computed for a project
+    private static final String REFERENCE_VARIABLE = "commits";
+
+    private final List<LocalDate> months;
+    private final Map<String, Map<String, String>> rowsByVariable;
+    private final String referenceVariable;
+
+    private IncrementalResults(List<LocalDate> months, Map<String, Map<String, String>> rowsByVariable, String referenceVariable) {
+        this.months = months;
+        this.rowsByVariable = rowsByVariable;
+        this.referenceVariable = referenceVariable;
+    }
+
+    public static IncrementalResults load(String outPath) throws IOException {
+        return load(outPath, Utils.VARIABLE_FILENAMES.keySet());
+    }
+
+    /**
+     * Loads the results of the given variables only, the files of the other variables are left untouched.
+     */
+    public static IncrementalResults load(String outPath, Collection<String> variableNames) throws IOException {
+        List<LocalDate> months = Lists.newArrayList();
+        Map<String, Map<String, String>> rowsByVariable = Maps.newHashMap();
+        for (String variableName : variableNames) {
+            String filePath = Utils.variableFilePath(outPath, variableName);
+            Map<String, String> rows = Maps.newLinkedHashMap();
+            // rows of the current file win over the snapshot, as they come from a more recent (interrupted) run
+            List<LocalDate> previousMonths = readRows(filePath + PREVIOUS_SUFFIX, rows);
+            List<LocalDate> currentMonths = readRows(filePath, rows);
+            List<LocalDate> variableMonths = currentMonths.size() >= previousMonths.size() ? currentMonths : previousMonths;
+            if (variableMonths.size() > months.size()) {
+                months = variableMonths;
+            }
+            rowsByVariable.put(variableName, rows);
+        }
+        String referenceVariable = variableNames.contains(REFERENCE_VARIABLE) ? REFERENCE_VARIABLE : variableNames.iterator().next();
+        LOGGER.info("Loaded previous results for {} projects over {} months", rowsByVariable.get(referenceVariable).size(), months.size());
+        return new IncrementalResults(months, rowsByVariable, referenceVariable);
+    }
+
+    private static List<LocalDate> readRows(String filePath, Map<String, String> rows) throws IOException {
+        List<LocalDate> months = Lists.newArrayList();
+        if (!new File(filePath).exists()) {
+            return months;
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int separator = line.indexOf(',');
+                String projName = separator < 0 ? line : line.substring(0, separator);
+                if (projName.equals(Utils.PROJECT_NAME_HEADER)) {
+                    // output files are opened in append mode, so the last header is the one describing the rows
+                    months = Lists.newArrayList();
+                    for (String monthHeader : line.substring(separator + 1).split(",")) {
+                        months.add(Utils.parseMonthHeader(monthHeader));
+                    }
+                } else {
+                    rows.put(projName, line);
+                }
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Writes the loaded results into the snapshot files and truncates the output files, so that the run can write
+     * the extended rows from scratch.
+     */
+    public void snapshot(String outPath) throws IOException {
+        for (Map.Entry<String, Map<String, String>> variableRows : rowsByVariable.entrySet()) {
+            Path filePath = Paths.get(Utils.variableFilePath(outPath, variableRows.getKey()));
+            Path tmpPath = Paths.get(filePath.toString() + PREVIOUS_SUFFIX + ".tmp");
+            try (PrintWriter printWriter = new PrintWriter(Files.newBufferedWriter(tmpPath))) {
+                printWriter.println(header());
+                for (String row : variableRows.getValue().values()) {
+                    printWriter.println(row);
+                }
+            }
+            Files.move(tmpPath, Paths.get(filePath.toString() + PREVIOUS_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(filePath);
+        }
+        LOGGER.info("Previous results snapshotted in {} files", PREVIOUS_SUFFIX);
+    }
+
+    public boolean isEmpty() {
+        return months.isEmpty();
+    }
+
+    public LocalDate getFirstMonth() {
+        return months.isEmpty() ? null : months.get(0);
+    }
+
+    /**
+     * Returns the first month to compute for the project, or null if the project was never analysed. The last stored
+     * month is computed again, as the run that stored it may have ended before the month did.
+     */
+    public synchronized LocalDate getResumeMonth(String projName) {
+        String row = rowsByVariable.get(referenceVariable).get(projName);
+        if (row == null) {
+            return null;
+        }
+        int storedMonths = row.split(",", -1).length - 1;
+        if (storedMonths == 0) {
+            return null;
+        }
+        return months.get(Math.min(storedMonths, months.size()) - 1);
+    }
+
+    /**
+     * Returns the row of the project with the stored values of the months before the first computed month, followed by
+     * the newly computed values, or with the newly computed values only for rolling variables. Months the variable has
+     * no stored value for, e.g. because an earlier run did not compute it, are written as null so that the values stay
+     * under their months.
+     */
+    public synchronized String extendRow(String variableName, String projName, LocalDate firstMonth, String newValues) {
+        String previousRow = rowsByVariable.get(variableName).remove(projName);
+        if (ROLLING_VARIABLES.contains(variableName)) {
+            return projName + newValues;
+        }
+        int keptMonths = Math.max(0, months.indexOf(firstMonth));
+        String[] storedValues = previousRow == null ? new String[]{projName} : previousRow.split(",", -1);
+        StringBuilder row = new StringBuilder(projName);
+        for (int month = 1; month <= keptMonths; month++) {
+            row.append(month < storedValues.length ? "," + storedValues[month] : ", null");
+        }
+        return row.append(newValues).toString();
+    }
+
+    /**
+     * Returns the rows of the projects that have not been extended during this run, so that they are carried over.
+     */
+    public synchronized List<String> getRemainingRows(String variableName) {
+        return Lists.newArrayList(rowsByVariable.get(variableName).values());
+    }
+
+    private String header() {
+        List<String> header = Lists.newArrayList(Utils.PROJECT_NAME_HEADER);
+        for (LocalDate month : months) {
+            header.add(Utils.monthHeader(month));
+        }
+        return String.join(",", header);
+    }
+}
@@ -0,0 +1,78 @@
+package ch.uzh.testsonsustainability;
+
+import org.kohsuke.github.GHIssueState;
+
+/**
+ * Issues of a repository sorted by creation date, with their state and closing date at retrieval time and the
+ * {@link StringIds} id of the login of their submitter.
+ */
+class IssueRecords extends TimeRecords {
+
+    private static final byte OPEN = 0;
+    private static final byte CLOSED = 1;
+
+    // closing time of the issues that are still open
+    static final long NOT_CLOSED = Long.MAX_VALUE;
+
+    private final long[] closedTimes;
+    private final byte[] states;
+    private final int[] submitters;
+
+    private IssueRecords(long[] times, long[] closedTimes, byte[] states, int[] submitters) {
+        super(times);
+        this.closedTimes = closedTimes;
+        this.states = states;
+        this.submitters = submitters;
+    }
+
+    /**
+     * Whether the issue has the state, any issue has the {@link GHIssueState#ALL} state.
+     */
+    boolean hasState(int index, GHIssueState state) {
+        switch (state) {
+            case OPEN:
+                return states[index] == OPEN;
+            case CLOSED:
+                return states[index] == CLOSED;
+            default:
+                return true;
+        }
+    }
+
+    long getClosedTime(int index) {
+        return closedTimes[index];
+    }
+
+    int getSubmitter(int index) {
+        return submitters[index];
+    }
+
+    static class Builder {
+
+        private long[] times = new long[64];
+        private long[] closedTimes = new long[64];
+        private byte[] states = new byte[64];
+        private int[] submitters = new int[64];
+        private int size;
+
+        /**
+         * The closing time is {@link #NOT_CLOSED} for an open issue.
+         */
+        void add(long time, long closedTime, GHIssueState state, int submitter) {
+            times = grow(times, size);
+            closedTimes = grow(closedTimes, size);
+            states = grow(states, size);
+            submitters = grow(submitters, size);
+            times[size] = time;
+            closedTimes[size] = closedTime;
+            states[size] = state == GHIssueState.CLOSED ? CLOSED : OPEN;
+            submitters[size] = submitter;
+            size++;
+        }
+
+        IssueRecords build() {
+            int[] order = timeOrder(times, size);
+            return new IssueRecords(sorted(times, order), sorted(closedTimes, order), sorted(states, order), sorted(submitters, order));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ch.uzh.testsonsustainability;
+
+import org.kohsuke.github.GHIssueState;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Interval index over the lifetimes of the issues of a repository, from their creation to their closing, so that the
+ * state of the issues is known as of a date rather than at retrieval time.
+ *
+ * The creation times are the times of the {@link IssueRecords} and the closing times are kept sorted apart, so the
+ * issues opened or closed during a month and the issues open at its end are counted with binary searches. An issue
+ * reopened after its last closing is open since its creation, as its earlier closings are not retrieved.
+ *
+ * The issues open at a date and the issues closed in a month are only complete from the starting date of the
+ * retrieval if the issues created before it that were still open at that date were retrieved as well, see
+ * {@link DataSource#ISSUE_BACKLOG}. They then do not depend on the starting date, so the months computed again by
+ * the incremental mode keep their values.
+ */
+class IssueTimeline {
+
+    private final IssueRecords issues;
+    private final long[] closedTimes;
+
+    IssueTimeline(IssueRecords issues) {
+        this.issues = issues;
+        long[] closedTimes = new long[issues.size()];
+        int closed = 0;
+        for (int i = 0; i < issues.size(); i++) {
+            if (issues.hasState(i, GHIssueState.CLOSED) && issues.getClosedTime(i) != IssueRecords.NOT_CLOSED) {
+                closedTimes[closed++] = issues.getClosedTime(i);
+            }
+        }
+        this.closedTimes = Arrays.copyOf(closedTimes, closed);
+        Arrays.sort(this.closedTimes);
+    }
+
+    /**
+     * Issues created strictly between the dates, whatever their state.
+     */
+    int opened(Date since, Date until) {
+        return Math.max(issues.to(until) - issues.from(since), 0);
+    }
+
+    /**
+     * Issues closed strictly between the dates.
+     */
+    int closed(Date since, Date until) {
+        int from = TimeRecords.firstIndexAbove(closedTimes, since.getTime());
+        int to = TimeRecords.firstIndexAbove(closedTimes, until.getTime() - 1);
+        return Math.max(to - from, 0);
+    }
+
+    /**
+     * Issues created before the date and not closed before it.
+     */
+    int openAt(Date date) {
+        return issues.to(date) - TimeRecords.firstIndexAbove(closedTimes, date.getTime() - 1);
+    }
+}
@@ -1,5 +1,7 @@
 package ch.uzh.testsonsustainability;
 
+import org.json.JSONObject;
+
 public class Job {
 
     private String project;
@@ -32,6 +34,21 @@ public class Job {
 
     public String getId() { return id; }
 
+    public static Job fromJson(JSONObject json) {
+        Job job = new Job();
+        job.setId(String.valueOf(json.get("id")));
+        job.setProject(json.getString("project"));
+        job.setGithubLink(json.getString("githubLink"));
+        return job;
+    }
+
+    public JSONObject toJson() {
+        return new JSONObject()
+                .put("id", id)
+                .put("project", project)
+                .put("githubLink", githubLink);
+    }
+
     @Override
     public String toString() {
         return id;
@@ -0,0 +1,124 @@
+package ch.uzh.testsonsustainability;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client of the REST API handing out the jobs to execute.
+ *
+ * Jobs are read as JSON strings, so the client does not depend on a JSON message converter being available for the
+ * RestTemplate. An empty response means there is no job left to do.
+ *
+ * While a job is being executed, the client sends heartbeats to extend the lease of the job.
+ */
+public class JobApiClient {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(JobApiClient.class);
+
+    private final RestTemplate restTemplate;
+    private final String jobApiBaseUrl;
+    private final long heartbeatIntervalSeconds;
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> heartbeat;
+
+    /**
+     * No heartbeat is sent if the heartbeat interval is 0.
+     */
+    public JobApiClient(RestTemplate restTemplate, String jobApiBaseUrl, long heartbeatIntervalSeconds) {
+        this.restTemplate = restTemplate;
+        this.jobApiBaseUrl = jobApiBaseUrl;
+        this.heartbeatIntervalSeconds = heartbeatIntervalSeconds;
+    }
+
+    public Job getJobToDo() {
+        String response = restTemplate.getForObject(jobApiBaseUrl + Utils.GET_JOB_TO_DO_ENDPOINT, String.class);
+        if (response == null || response.trim().isEmpty() || response.trim().equals("null")) {
+            LOGGER.info("No job left to do");
+            return null;
+        }
+        Job job = Job.fromJson(new JSONObject(response));
+        startHeartbeat(job);
+        return job;
+    }
+
+    public void jobDone(Job job) {
+        jobDone(job, null);
+    }
+
+    /**
+     * The size of the repository, if known, is reported to improve the cost estimates of the coordinator.
+     */
+    public void jobDone(Job job, Integer repositorySizeKb) {
+        jobDone(job, repositorySizeKb, false);
+    }
+
+    /**
+     * A job that took the variables of its repository from another artifact is reported as such, its duration telling
+     * nothing of the size of the repository.
+     */
+    public void jobDone(Job job, Integer repositorySizeKb, boolean sharedRepository) {
+        stopHeartbeat();
+        postJobUpdate(Utils.POST_DONE_JOB_ENDPOINT, job, repositorySizeKb, sharedRepository);
+    }
+
+    public void jobFailed(Job job) {
+        jobFailed(job, null);
+    }
+
+    public void jobFailed(Job job, Integer repositorySizeKb) {
+        stopHeartbeat();
+        postJobUpdate(Utils.POST_FAILED_JOB_ENDPOINT, job, repositorySizeKb, false);
+    }
+
+    private void postJobUpdate(String endpoint, Job job, Integer repositorySizeKb, boolean sharedRepository) {
+        // the query parameters are ignored by job APIs that do not use them
+        List<String> parameters = new ArrayList<>();
+        if (repositorySizeKb != null) {
+            parameters.add(Utils.REPOSITORY_SIZE_KB_PARAMETER + "=" + repositorySizeKb);
+        }
+        if (sharedRepository) {
+            parameters.add(Utils.SHARED_REPOSITORY_PARAMETER + "=1");
+        }
+        String url = jobApiBaseUrl + endpoint + (parameters.isEmpty() ? "" : "?" + String.join("&", parameters));
+        try {
+            restTemplate.postForLocation(url, job.getId());
+        } catch (HttpClientErrorException e) {
+            // e.g. the lease of the job expired and the job was given to another worker
+            LOGGER.warn("Update {} of job {} rejected: {}", endpoint, job.getId(), e.getStatusCode());
+        }
+    }
+
+    private synchronized void startHeartbeat(Job job) {
+        if (heartbeatIntervalSeconds <= 0) {
+            return;
+        }
+        heartbeat = heartbeats.scheduleAtFixedRate(() -> {
+            try {
+                restTemplate.postForLocation(jobApiBaseUrl + Utils.POST_HEARTBEAT_JOB_ENDPOINT, job.getId());
+            } catch (Exception e) {
+                LOGGER.warn("Heartbeat of job {} failed: {}", job.getId(), e.getMessage());
+            }
+        }, heartbeatIntervalSeconds, heartbeatIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private synchronized void stopHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package ch.uzh.testsonsustainability;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.json.JSONArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded implementation of the /jobs API, handing out the projects of the csv input file to the workers.
+ *
+ * A job handed out is leased for a limited time, which the worker extends with heartbeats. Jobs whose lease expires,
+ * e.g. because the worker crashed, and failed jobs go back to the queue until they have been attempted the maximum
+ * number of times. Every change is appended to a journal in the state path before being answered, so a restarted
+ * coordinator continues where it stopped; the jobs leased when it stopped go back to the queue.
+ *
+ * Jobs are handed out longest first according to the {@link JobCostModel}, so the long jobs start early and the end of
+ * a run is not spent waiting for a single worker. The duration of each job, from its lease to its completion, is
+ * recorded in the cost history of the state path for the estimates of the next runs.
+ */
+public class JobCoordinator implements AutoCloseable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(JobCoordinator.class);
+
+    public static final String JOURNAL_FILENAME = "jobs.journal";
+    private static final long LEASE_CHECK_SECONDS = 5;
+
+    private enum State {TO_DO, DOING, DONE, FAILED}
+
+    private static class JobEntry {
+        private final Job job;
+        private final int index;
+        private final int stars;
+        private State state = State.TO_DO;
+        private int attempts;
+        private long leaseStartMillis;
+        private long leaseExpiryMillis;
+        private double estimatedSeconds;
+        // the worker took the variables of the repository from another artifact
+        private boolean sharedRepository;
+
+        private JobEntry(Job job, int index, int stars) {
+            this.job = job;
+            this.index = index;
+            this.stars = stars;
+        }
+    }
+
+    // longest estimated jobs first, then in the order of the input
+    private static final Comparator<JobEntry> LONGEST_FIRST = Comparator.<JobEntry>comparingDouble(jobEntry -> -jobEntry.estimatedSeconds)
+            .thenComparingInt(jobEntry -> jobEntry.index);
+
+    private final Map<String, JobEntry> jobs = new LinkedHashMap<>();
+    private final PriorityQueue<JobEntry> jobsToDo = new PriorityQueue<>(LONGEST_FIRST);
+    private final JobCostModel costModel;
+    private final long leaseMillis;
+    private final int maxAttempts;
+    private final FileOutputStream journal;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService leaseChecker;
+
+    public JobCoordinator(String csvPath, String statePath, int port, long leaseSeconds, int maxAttempts) throws IOException {
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+        this.maxAttempts = maxAttempts;
+
+        for (JobEntry jobEntry : readJobs(csvPath)) {
+            jobs.put(jobEntry.job.getId(), jobEntry);
+        }
+        Path journalPath = Paths.get(statePath, JOURNAL_FILENAME);
+        replayJournal(journalPath);
+        costModel = new JobCostModel(Paths.get(statePath, JobCostModel.HISTORY_FILENAME));
+        for (JobEntry jobEntry : jobs.values()) {
+            if (jobEntry.state == State.TO_DO) {
+                enqueue(jobEntry);
+            }
+        }
+        LOGGER.info("{} jobs loaded, {} to do", jobs.size(), jobsToDo.size());
+        journal = new FileOutputStream(journalPath.toFile(), true);
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(Utils.GET_JOB_TO_DO_ENDPOINT, exchange -> respond(exchange, 200, nextJob()));
+        server.createContext(Utils.POST_DONE_JOB_ENDPOINT, jobUpdate(this::jobDone));
+        server.createContext(Utils.POST_FAILED_JOB_ENDPOINT, jobUpdate(this::jobFailed));
+        server.createContext(Utils.POST_CANCEL_JOB_ENDPOINT, jobUpdate(this::cancelJob));
+        server.createContext(Utils.POST_HEARTBEAT_JOB_ENDPOINT, jobUpdate(this::heartbeat));
+        server.createContext(Utils.GET_JOBS_TO_DO_ENDPOINT, exchange -> respond(exchange, 200, jobsIn(State.TO_DO)));
+        server.createContext(Utils.GET_DOING_JOBS_ENDPOINT, exchange -> respond(exchange, 200, jobsIn(State.DOING)));
+        server.createContext(Utils.GET_DONE_JOBS_ENDPOINT, exchange -> respond(exchange, 200, jobsIn(State.DONE)));
+        server.createContext(Utils.GET_FAILED_JOBS_ENDPOINT, exchange -> respond(exchange, 200, jobsIn(State.FAILED)));
+        executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        leaseChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-lease-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        server.start();
+        leaseChecker.scheduleAtFixedRate(() -> requeueExpiredLeases(System.currentTimeMillis()), LEASE_CHECK_SECONDS, LEASE_CHECK_SECONDS, TimeUnit.SECONDS);
+        LOGGER.info("Serving the jobs API on port {}", server.getAddress().getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        leaseChecker.shutdownNow();
+        synchronized (this) {
+            journal.close();
+        }
+        costModel.close();
+    }
+
+    private static List<JobEntry> readJobs(String csvPath) throws IOException {
+        List<JobEntry> jobList = new ArrayList<>();
+        BufferedReader brProjects = new BufferedReader(new FileReader(csvPath + Utils.CSV_INPUT_FILENAME));
+        CSVParser projectsParser = CSVParser.parse(brProjects, CSVFormat.DEFAULT.withFirstRecordAsHeader().withDelimiter(';'));
+        for (CSVRecord csvRecord : projectsParser) {
+            String githubLink = csvRecord.get("Github Link");
+            if (!githubLink.contains("github.com/")) {
+                // projects without a github repository cannot be analysed
+                continue;
+            }
+            Job job = new Job();
+            job.setId(csvRecord.get("Project"));
+            job.setProject(csvRecord.get("Project"));
+            job.setGithubLink(githubLink);
+            jobList.add(new JobEntry(job, jobList.size(), parseStars(csvRecord)));
+        }
+        return jobList;
+    }
+
+    private static int parseStars(CSVRecord csvRecord) {
+        try {
+            return csvRecord.isMapped("Star") ? Integer.parseInt(csvRecord.get("Star").trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void replayJournal(Path journalPath) throws IOException {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            JobEntry jobEntry = fields.length < 2 ? null : jobs.get(fields[1]);
+            if (jobEntry == null) {
+                // a partially written last line, or a project no longer in the input
+                continue;
+            }
+            switch (fields[0]) {
+                case "LEASE":
+                    jobEntry.attempts++;
+                    break;
+                case "DONE":
+                    jobEntry.state = State.DONE;
+                    break;
+                case "FAILED":
+                    jobEntry.state = State.FAILED;
+                    break;
+                case "CANCEL":
+                    jobEntry.attempts--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void appendToJournal(String event, String jobId) {
+        try {
+            journal.write(String.format("%s\t%s\t%d%n", event, jobId, System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+            journal.getFD().sync();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write the jobs journal", e);
+        }
+    }
+
+    private synchronized String nextJob() {
+        JobEntry jobEntry = jobsToDo.poll();
+        if (jobEntry == null) {
+            return "";
+        }
+        appendToJournal("LEASE", jobEntry.job.getId());
+        jobEntry.state = State.DOING;
+        jobEntry.attempts++;
+        jobEntry.leaseStartMillis = System.currentTimeMillis();
+        jobEntry.leaseExpiryMillis = jobEntry.leaseStartMillis + leaseMillis;
+        LOGGER.info("Job {} leased, attempt {}, estimated to take {} s", jobEntry.job.getId(), jobEntry.attempts, Math.round(jobEntry.estimatedSeconds));
+        return jobEntry.job.toJson().toString();
+    }
+
+    private synchronized boolean jobDone(JobEntry jobEntry) {
+        if (jobEntry.state == State.DONE) {
+            return true;
+        }
+        // the results of a worker whose lease expired are still accepted, the job does not need to be done again
+        appendToJournal("DONE", jobEntry.job.getId());
+        jobsToDo.remove(jobEntry);
+        if (jobEntry.leaseStartMillis > 0) {
+            // a job leased before a restart of the coordinator has no known duration
+            costModel.record(jobEntry.job.getProject(), jobEntry.stars, jobEntry.estimatedSeconds,
+                    (System.currentTimeMillis() - jobEntry.leaseStartMillis) / 1000.0, jobEntry.sharedRepository);
+        }
+        jobEntry.state = State.DONE;
+        return true;
+    }
+
+    private synchronized boolean jobFailed(JobEntry jobEntry) {
+        if (jobEntry.state != State.DOING) {
+            return false;
+        }
+        if (costModel.getRepositorySize(jobEntry.job.getProject()) != null) {
+            // keeps the repository size reported by the worker for the estimates of the next runs
+            costModel.record(jobEntry.job.getProject(), jobEntry.stars, jobEntry.estimatedSeconds, null);
+        }
+        retryOrFail(jobEntry);
+        return true;
+    }
+
+    private synchronized boolean cancelJob(JobEntry jobEntry) {
+        if (jobEntry.state != State.DOING) {
+            return false;
+        }
+        // a cancelled job goes back to the queue without using an attempt
+        appendToJournal("CANCEL", jobEntry.job.getId());
+        jobEntry.attempts--;
+        jobEntry.state = State.TO_DO;
+        enqueue(jobEntry);
+        return true;
+    }
+
+    private synchronized boolean heartbeat(JobEntry jobEntry) {
+        if (jobEntry.state == State.TO_DO && jobsToDo.remove(jobEntry)) {
+            // the lease expired but no other worker took the job yet, so the worker can keep it
+            appendToJournal("LEASE", jobEntry.job.getId());
+            jobEntry.state = State.DOING;
+            jobEntry.attempts++;
+            jobEntry.leaseStartMillis = System.currentTimeMillis();
+        } else if (jobEntry.state != State.DOING) {
+            return false;
+        }
+        jobEntry.leaseExpiryMillis = System.currentTimeMillis() + leaseMillis;
+        return true;
+    }
+
+    private void retryOrFail(JobEntry jobEntry) {
+        if (jobEntry.attempts >= maxAttempts) {
+            appendToJournal("FAILED", jobEntry.job.getId());
+            jobEntry.state = State.FAILED;
+            LOGGER.warn("Job {} failed after {} attempts", jobEntry.job.getId(), jobEntry.attempts);
+        } else {
+            appendToJournal("RETRY", jobEntry.job.getId());
+            jobEntry.state = State.TO_DO;
+            enqueue(jobEntry);
+        }
+    }
+
+    private void enqueue(JobEntry jobEntry) {
+        // estimated when queued, as the repository size reported by a failed attempt may change the estimate
+        jobEntry.estimatedSeconds = costModel.estimateSeconds(jobEntry.job.getProject(), jobEntry.stars);
+        jobsToDo.add(jobEntry);
+    }
+
+    /**
+     * Puts the jobs whose lease expired before now back to the queue, or fails them after their last attempt.
+     */
+    synchronized void requeueExpiredLeases(long now) {
+        for (JobEntry jobEntry : jobs.values()) {
+            if (jobEntry.state == State.DOING && jobEntry.leaseExpiryMillis < now) {
+                LOGGER.warn("Lease of job {} expired", jobEntry.job.getId());
+                retryOrFail(jobEntry);
+            }
+        }
+    }
+
+    private synchronized String jobsIn(State state) {
+        JSONArray jobsInState = new JSONArray();
+        for (JobEntry jobEntry : jobs.values()) {
+            if (jobEntry.state == state) {
+                jobsInState.put(jobEntry.job.toJson()
+                        .put("attempts", jobEntry.attempts)
+                        .put("estimatedSeconds", Math.round(jobEntry.estimatedSeconds)));
+            }
+        }
+        return jobsInState.toString();
+    }
+
+    private interface JobUpdate {
+        boolean apply(JobEntry jobEntry);
+    }
+
+    private HttpHandler jobUpdate(JobUpdate jobUpdate) {
+        return exchange -> {
+            String jobId = readBody(exchange).trim();
+            Integer repositorySizeKb = queryParameter(exchange, Utils.REPOSITORY_SIZE_KB_PARAMETER);
+            boolean sharedRepository = queryParameter(exchange, Utils.SHARED_REPOSITORY_PARAMETER) != null;
+            JobEntry jobEntry;
+            synchronized (this) {
+                jobEntry = jobs.get(jobId);
+                if (jobEntry != null && repositorySizeKb != null) {
+                    costModel.setRepositorySize(jobEntry.job.getProject(), repositorySizeKb);
+                }
+                if (jobEntry != null) {
+                    jobEntry.sharedRepository = sharedRepository;
+                }
+            }
+            if (jobEntry == null) {
+                respond(exchange, 404, "");
+            } else {
+                // updates of jobs that are no longer leased, e.g. after their lease expired, are rejected
+                respond(exchange, jobUpdate.apply(jobEntry) ? 200 : 409, "");
+            }
+        };
+    }
+
+    private static Integer queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                try {
+                    return Integer.valueOf(parameter.substring(name.length() + 1));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            for (int read = requestBody.read(buffer); read != -1; read = requestBody.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+}
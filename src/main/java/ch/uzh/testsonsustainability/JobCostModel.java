@@ -0,0 +1,173 @@
+package ch.uzh.testsonsustainability;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Estimated duration of the job of a project, used to hand out the longest jobs first.
+ *
+ * The estimate is, in order of preference, the duration of the project in a previous run, a power law of the size of
+ * the repository, or a power law of the star count. The power laws are fitted at startup on the durations of the
+ * previous runs, which are kept with their estimates in a history file appended to as jobs finish. The jobs that took
+ * the variables of their repository from another artifact are flagged in the history and left out of the fits, as
+ * their duration is not that of their repository.
+ */
+class JobCostModel implements AutoCloseable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(JobCostModel.class);
+
+    public static final String HISTORY_FILENAME = "job-costs.csv";
+    private static final String HISTORY_HEADER = "project,stars,repository_size_kb,estimated_seconds,actual_seconds,shared_repository";
+    // durations needed to fit a power law, below that the star count only gives the order of the jobs
+    private static final int MIN_FIT_SAMPLES = 5;
+    private static final double SECONDS_PER_LOG_STAR = 60;
+
+    private final Map<String, Double> actualSeconds = new HashMap<>();
+    private final Map<String, Integer> repositorySizes = new HashMap<>();
+    private final PowerLaw starsFit;
+    private final PowerLaw sizeFit;
+    private final FileOutputStream history;
+
+    JobCostModel(Path historyPath) throws IOException {
+        List<double[]> starSamples = new ArrayList<>();
+        List<double[]> sizeSamples = new ArrayList<>();
+        boolean exists = Files.exists(historyPath);
+        if (exists) {
+            for (String line : Files.readAllLines(historyPath, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(",", -1);
+                if (fields.length < 5 || line.equals(HISTORY_HEADER)) {
+                    continue;
+                }
+                try {
+                    int stars = Integer.parseInt(fields[1]);
+                    if (!fields[2].isEmpty()) {
+                        repositorySizes.put(fields[0], Integer.parseInt(fields[2]));
+                    }
+                    if (!fields[4].isEmpty()) {
+                        double seconds = Double.parseDouble(fields[4]);
+                        // the latest duration of a project replaces the earlier ones
+                        actualSeconds.put(fields[0], seconds);
+                        // the histories written before the flag have 5 fields
+                        boolean sharedRepository = fields.length > 5 && !fields[5].isEmpty();
+                        if (!sharedRepository) {
+                            starSamples.add(new double[]{stars, seconds});
+                            if (!fields[2].isEmpty()) {
+                                sizeSamples.add(new double[]{Integer.parseInt(fields[2]), seconds});
+                            }
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    // a partially written last line
+                }
+            }
+        }
+        starsFit = PowerLaw.fit(starSamples);
+        sizeFit = PowerLaw.fit(sizeSamples);
+        LOGGER.info("Job cost model fitted on {} durations, {} with the repository size", starSamples.size(), sizeSamples.size());
+
+        history = new FileOutputStream(historyPath.toFile(), true);
+        if (!exists) {
+            history.write((HISTORY_HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    synchronized double estimateSeconds(String project, int stars) {
+        Double seconds = actualSeconds.get(project);
+        if (seconds != null) {
+            return seconds;
+        }
+        Integer repositorySize = repositorySizes.get(project);
+        if (repositorySize != null && sizeFit != null) {
+            return sizeFit.apply(repositorySize);
+        }
+        if (starsFit != null) {
+            return starsFit.apply(stars);
+        }
+        return SECONDS_PER_LOG_STAR * Math.log1p(stars);
+    }
+
+    synchronized Integer getRepositorySize(String project) {
+        return repositorySizes.get(project);
+    }
+
+    synchronized void setRepositorySize(String project, int repositorySizeKb) {
+        repositorySizes.put(project, repositorySizeKb);
+    }
+
+    /**
+     * Appends a job to the history, the actual duration is null for the jobs that did not finish.
+     */
+    synchronized void record(String project, int stars, double estimatedSeconds, Double actualDurationSeconds) {
+        record(project, stars, estimatedSeconds, actualDurationSeconds, false);
+    }
+
+    /**
+     * Appends a job to the history, flagged when it took the variables of its repository from another artifact.
+     */
+    synchronized void record(String project, int stars, double estimatedSeconds, Double actualDurationSeconds, boolean sharedRepository) {
+        Integer repositorySize = repositorySizes.get(project);
+        String line = String.format(Locale.ROOT, "%s,%d,%s,%.1f,%s,%s%n", project, stars, repositorySize == null ? "" : repositorySize,
+                estimatedSeconds, actualDurationSeconds == null ? "" : String.format(Locale.ROOT, "%.1f", actualDurationSeconds),
+                sharedRepository ? "1" : "");
+        try {
+            history.write(line.getBytes(StandardCharsets.UTF_8));
+            history.flush();
+        } catch (IOException e) {
+            // the history only improves the estimates of the next runs
+            LOGGER.warn("Cannot write the job cost history: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        history.close();
+    }
+
+    /**
+     * seconds = e^a * (1 + x)^b, fitted by least squares in log space.
+     */
+    private static class PowerLaw {
+
+        private final double a;
+        private final double b;
+
+        private PowerLaw(double a, double b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        private static PowerLaw fit(List<double[]> samples) {
+            if (samples.size() < MIN_FIT_SAMPLES) {
+                return null;
+            }
+            double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+            for (double[] sample : samples) {
+                double x = Math.log1p(sample[0]);
+                double y = Math.log(Math.max(sample[1], 1));
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumXY += x * y;
+            }
+            int n = samples.size();
+            double variance = n * sumXX - sumX * sumX;
+            double b = variance == 0 ? 0 : (n * sumXY - sumX * sumY) / variance;
+            return new PowerLaw((sumY - b * sumX) / n, b);
+        }
+
+        private double apply(double x) {
+            return Math.exp(a + b * Math.log1p(x));
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package ch.uzh.testsonsustainability;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Sets;
 import com.google.common.collect.SortedSetMultimap;
 import com.google.common.collect.TreeMultimap;
-import com.google.common.graph.Graph;
-import com.google.common.graph.GraphBuilder;
 import com.google.common.graph.Graphs;
-import com.google.common.graph.ImmutableGraph;
+import com.google.common.graph.MutableValueGraph;
+import com.google.common.graph.ValueGraph;
+import com.google.common.graph.ValueGraphBuilder;
 import edu.stanford.nlp.util.ArraySet;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -20,62 +23,141 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
-public class MavenCentralInfo {
+/**
+ * The maven dependency graph and the releases of the artifacts, loaded from the csv files of the csv path.
+ *
+ * The links and releases appended to the delta files of the csv path are merged into the loaded graph, see
+ * {@link #readDelta()} and {@link #ingest(Delta)}, so that a daily refresh of Maven Central does not reload the full
+ * files. The nodes of the graph keep the ids they were numbered with, new nodes taking the next ones, so the transitive
+ * counts computed so far stay valid except for the nodes whose closure a new link changes.
+ */
+public class MavenCentralInfo implements DependencyGraph {
 
 	private static Logger LOGGER = LoggerFactory.getLogger(MavenCentralInfo.class);
 
-	private final Graph<String> mavenGraph;
-	private final Graph<String> mavenInvertedGraph;
+	private static final int DORMANCY_SKETCH_PRECISION = TransitiveSketches.precision(ApproximateCounts.DEFAULT_RELATIVE_ERROR);
+	// twenty years of months for one scope mask
+	private static final int MONTH_DORMANCIES = 240;
+
+	// the edge value is the mask of the scopes of the links between the two artifact tags, see DependencyScope
+	// mutable for the deltas, with its nodes in insertion order
+	private final MutableValueGraph<String, Byte> mavenGraph;
+	private final ValueGraph<String, Byte> mavenInvertedGraph;
 	private final SortedSetMultimap<String, Pair<String, LocalDate>> artifactReleases;
 	private final Map<String, String> artifactGHRepoMap;
+	private final AppendOnlyCsv linksDelta;
+	private final AppendOnlyCsv releasesDelta;
+	private volatile ArtifactProjection artifactProjection;
+	// kept across the rebuilds of the dependency index after a delta
+	private final DependencyIndex.TransitiveCounts transitiveCounts = new DependencyIndex.TransitiveCounts();
+	// built on the first batch query, as it is only needed by the batch queries
+	private volatile Supplier<DependencyIndex> dependencyIndex = Suppliers.memoize(this::buildDependencyIndex);
+	// dormancy of the GH repos at a date, null when the dormancy of the dependencies comes from the commits of the project
+	private volatile BiPredicate<String, LocalDate> dormantGHRepos = null;
+	// estimated dormant transitive dependencies of the current versions of the projects per month and scope mask, bounded
+	// for the graph daemon, which answers the months of run after run
+	private final Cache<String, Map<String, Integer>> monthDormancies = CacheBuilder.newBuilder().maximumSize(MONTH_DORMANCIES).build();
 
 	public MavenCentralInfo(String csvPath) throws IOException {
-		ImmutableGraph.Builder<String> mavenGraphBuilder = GraphBuilder
+		try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_links")) {
+			mavenGraph = parseMavenGraph(csvPath);
+		}
+		mavenInvertedGraph = Graphs.transpose(mavenGraph);
+		LOGGER.info("Maven graphs built");
+
+		try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_releases")) {
+			artifactReleases = parseArtifactReleases(csvPath);
+		}
+		LOGGER.info("Releases imported");
+
+		try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_gh_repos")) {
+			artifactGHRepoMap = parseArtifactGHRepoMap(csvPath);
+		}
+		LOGGER.info("Artifacts / GH repos imported");
+
+		// the records already in the delta files are merged before the projection is built
+		linksDelta = new AppendOnlyCsv(Paths.get(csvPath + Utils.CSV_MAVEN_LINKS_DELTA_FILENAME));
+		releasesDelta = new AppendOnlyCsv(Paths.get(csvPath + Utils.ARTIFACT_RELEASES_DELTA_FILENAME));
+		Delta delta = readDelta();
+		if (!delta.isEmpty()) {
+			merge(delta, new HashSet<>(), new HashSet<>());
+			LOGGER.info("Merged {} links and {} releases of the delta files", delta.links.size(), delta.releases.size());
+		}
+
+		try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_projection")) {
+			artifactProjection = new ArtifactProjection(mavenGraph, artifactReleases.keySet(), artifactGHRepoMap);
+		}
+		LOGGER.info("Artifact projection built");
+	}
+
+	private static MutableValueGraph<String, Byte> parseMavenGraph(String csvPath) throws IOException {
+		MutableValueGraph<String, Byte> mavenGraphBuilder = ValueGraphBuilder
 				.directed()
 				.allowsSelfLoops(false)
-				.immutable();
+				.build();
 
 		LOGGER.info("Parsing maven links from file {} and building graphs in memory", csvPath + Utils.CSV_MAVEN_LINKS_FILENAME);
 		BufferedReader brLinks = new BufferedReader(new FileReader(csvPath + Utils.CSV_MAVEN_LINKS_FILENAME));
-		CSVParser linksParser = CSVParser.parse(brLinks, CSVFormat.DEFAULT);
+		CSVParser linksParser = CSVParser.parse(brLinks, CSVFormat.DEFAULT.withFirstRecordAsHeader());
 
 		for (CSVRecord csvRecord : linksParser) {
-			String fromNodeLabel = csvRecord.get(0);
-			String toNodeLabel = csvRecord.get(1);
-			try {
-				mavenGraphBuilder.putEdge(fromNodeLabel, toNodeLabel);
-			} catch (Exception e) {
-				LOGGER.error("Error when trying to add link {} => {}", fromNodeLabel, toNodeLabel);
-				LOGGER.error(e.getMessage());
-			}
+			addLink(mavenGraphBuilder, csvRecord);
 		}
-		mavenGraph = mavenGraphBuilder.build();
-		mavenInvertedGraph = Graphs.transpose(mavenGraph);
-		LOGGER.info("Maven graphs built");
+		return mavenGraphBuilder;
+	}
 
+	/**
+	 * Adds the link of the record to the graph, returning whether it was not in the graph with its scope yet.
+	 */
+	private static boolean addLink(MutableValueGraph<String, Byte> mavenGraph, CSVRecord csvRecord) {
+		String fromNodeLabel = csvRecord.get("source");
+		String toNodeLabel = csvRecord.get("target");
+		byte scopeBit = DependencyScope.parse(csvRecord.isSet("scope") ? csvRecord.get("scope") : null).bit();
+		try {
+			// the same two artifact tags can be linked with more than one scope
+			byte scopeMask = mavenGraph.edgeValueOrDefault(fromNodeLabel, toNodeLabel, DependencyScope.NONE);
+			mavenGraph.putEdgeValue(fromNodeLabel, toNodeLabel, (byte) (scopeMask | scopeBit));
+			return (scopeMask | scopeBit) != scopeMask;
+		} catch (Exception e) {
+			LOGGER.error("Error when trying to add link {} => {}", fromNodeLabel, toNodeLabel);
+			LOGGER.error(e.getMessage());
+			return false;
+		}
+	}
+
+	private static SortedSetMultimap<String, Pair<String, LocalDate>> parseArtifactReleases(String csvPath) throws IOException {
 		// keep sorted for performance on lookup - keeping most recent last
 		Comparator<Pair<String, LocalDate>> tagDateComparator = Comparator.comparing(Pair::getRight, Comparator.reverseOrder());
 		Comparator<String> artifactComparator = Comparator.naturalOrder();
-		artifactReleases = TreeMultimap.create(artifactComparator, tagDateComparator);
+		SortedSetMultimap<String, Pair<String, LocalDate>> artifactReleases = TreeMultimap.create(artifactComparator, tagDateComparator);
 
 		LOGGER.info("Parsing release from file {} and building map in memory", csvPath + Utils.ALL_ARTIFACT_RELEASES_FILENAME);
 		BufferedReader brReleases = new BufferedReader(new FileReader(csvPath + Utils.ALL_ARTIFACT_RELEASES_FILENAME));
 		CSVParser releasesParser = CSVParser.parse(brReleases, CSVFormat.DEFAULT.withFirstRecordAsHeader());
 		for (CSVRecord csvRecord : releasesParser) {
-			String[] artifactTag = csvRecord.get("artifact").split(":");
-			String artifact = String.format("%s:%s", artifactTag[0], artifactTag[1]);
-			String tag = artifactTag[2];
-			LocalDateTime releaseDateTime = LocalDateTime.parse(csvRecord.get("release"), DateTimeFormatter.ISO_ZONED_DATE_TIME);
-			artifactReleases.put(artifact, ImmutablePair.of(tag, releaseDateTime.toLocalDate()));
+			addRelease(artifactReleases, csvRecord);
 		}
-		LOGGER.info("Releases imported");
+		return artifactReleases;
+	}
+
+	private static void addRelease(SortedSetMultimap<String, Pair<String, LocalDate>> artifactReleases, CSVRecord csvRecord) {
+		String[] artifactTag = csvRecord.get("artifact").split(":");
+		String artifact = String.format("%s:%s", artifactTag[0], artifactTag[1]);
+		String tag = artifactTag[2];
+		LocalDateTime releaseDateTime = LocalDateTime.parse(csvRecord.get("release"), DateTimeFormatter.ISO_ZONED_DATE_TIME);
+		artifactReleases.put(artifact, ImmutablePair.of(tag, releaseDateTime.toLocalDate()));
+	}
 
+	private static Map<String, String> parseArtifactGHRepoMap(String csvPath) throws IOException {
 		ImmutableMap.Builder artifactGHRepoMapBuilder = new ImmutableMap.Builder();
 		LOGGER.info("Parsing artifacts / GH repos from file {} and building map in memory", csvPath + Utils.CSV_INPUT_FILENAME);
 		BufferedReader brArtifactGHRepo = new BufferedReader(new FileReader(csvPath + Utils.CSV_INPUT_FILENAME));
@@ -85,8 +167,82 @@ public class MavenCentralInfo {
 			String ghRepo = csvRecord.get("Github Link");
 			artifactGHRepoMapBuilder.put(artifact, ghRepo);
 		}
-		artifactGHRepoMap = artifactGHRepoMapBuilder.build();
-		LOGGER.info("Artifacts / GH repos imported");
+		return artifactGHRepoMapBuilder.build();
+	}
+
+	private DependencyIndex buildDependencyIndex() {
+		try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_index")) {
+			return new DependencyIndex(mavenGraph, artifactProjection.getVersionIds(), transitiveCounts);
+		}
+	}
+
+	/**
+	 * Links and releases appended to the delta files since the previous read, read without touching the graph.
+	 */
+	Delta readDelta() throws IOException {
+		return new Delta(linksDelta.readNewRecords(), releasesDelta.readNewRecords());
+	}
+
+	/**
+	 * Merges the links and releases of the delta into the graph. The artifact projection is rebuilt, the dependency
+	 * index is rebuilt on the next batch query, and the cached transitive counts of the artifact tags whose closure
+	 * gained a node are dropped: the upstreams of the sources of the new links and of their dependants, and the
+	 * downstreams of the targets and of their dependencies. The katz centralities are computed from the graph on each
+	 * query, so they need no update. Queries must not run during the merge, the graph daemon holds them back.
+	 */
+	void ingest(Delta delta) {
+		try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_delta")) {
+			Set<String> linkSources = new HashSet<>();
+			Set<String> linkTargets = new HashSet<>();
+			int newLinks = merge(delta, linkSources, linkTargets);
+			artifactProjection = new ArtifactProjection(mavenGraph, artifactReleases.keySet(), artifactGHRepoMap);
+			Map<String, Integer> ids = artifactProjection.getVersionIds();
+			int invalidated = transitiveCounts.invalidate(
+					ids(reachableNodes(mavenInvertedGraph, linkSources), ids),
+					ids(reachableNodes(mavenGraph, linkTargets), ids));
+			dependencyIndex = Suppliers.memoize(this::buildDependencyIndex);
+			monthDormancies.invalidateAll();
+			LOGGER.info("Merged {} links and {} releases of the delta files, {} new links, {} cached transitive counts dropped",
+					delta.links.size(), delta.releases.size(), newLinks, invalidated);
+		}
+	}
+
+	// merges the delta into the graph and the releases, collecting the ends of the links that were not in the graph
+	private int merge(Delta delta, Set<String> linkSources, Set<String> linkTargets) {
+		int newLinks = 0;
+		for (CSVRecord link : delta.links) {
+			if (addLink(mavenGraph, link)) {
+				linkSources.add(link.get("source"));
+				linkTargets.add(link.get("target"));
+				newLinks++;
+			}
+		}
+		for (CSVRecord release : delta.releases) {
+			addRelease(artifactReleases, release);
+		}
+		return newLinks;
+	}
+
+	// the nodes reachable from any of the start nodes through links of any scope, the start nodes included
+	private static Set<String> reachableNodes(ValueGraph<String, Byte> graph, Collection<String> startNodes) {
+		Set<String> visited = new HashSet<>(startNodes);
+		Deque<String> toVisit = new ArrayDeque<>(startNodes);
+		while (!toVisit.isEmpty()) {
+			for (String successor : graph.successors(toVisit.poll())) {
+				if (visited.add(successor)) {
+					toVisit.add(successor);
+				}
+			}
+		}
+		return visited;
+	}
+
+	private static BitSet ids(Set<String> artifactTags, Map<String, Integer> ids) {
+		BitSet idSet = new BitSet(ids.size());
+		for (String artifactTag : artifactTags) {
+			idSet.set(ids.get(artifactTag));
+		}
+		return idSet;
 	}
 
 	public Boolean artifactTagExists(String artifactTag) {
@@ -136,6 +292,10 @@ public class MavenCentralInfo {
 		return mavenGraph.successors(artifactTag);
 	}
 
+	public Set<String> getDependencies(String artifactTag, Set<DependencyScope> scopes) {
+		return neighboursInScope(mavenGraph, artifactTag, DependencyScope.mask(scopes));
+	}
+
 	public Set<String> getDependants(String artifactTag) /*throws Exception*/ {
 		/*if (mavenInvertedGraph.successors(artifactTag).size() != mavenGraph.predecessors(artifactTag).size()) {
 			LOGGER.error("Something is wrong about the inverted graph - please investigate");
@@ -144,33 +304,183 @@ public class MavenCentralInfo {
 		return mavenGraph.predecessors(artifactTag);
 	}
 
+	public Set<String> getDependants(String artifactTag, Set<DependencyScope> scopes) {
+		return neighboursInScope(mavenInvertedGraph, artifactTag, DependencyScope.mask(scopes));
+	}
+
 	public Set<String> getTransitiveDependencies(String artifactTag) {
-		return Graphs.reachableNodes(mavenGraph, artifactTag).stream()
-				.filter(dependencyArtifactTag -> !dependencyArtifactTag.equals(artifactTag))
-				.collect(Collectors.toSet());
+		return reachableNodesInScope(mavenGraph, artifactTag, DependencyScope.ALL);
+	}
+
+	public Set<String> getTransitiveDependencies(String artifactTag, Set<DependencyScope> scopes) {
+		return reachableNodesInScope(mavenGraph, artifactTag, DependencyScope.mask(scopes));
 	}
 
 	public Set<String> getTransitiveDependants(String artifactTag) {
-		return Graphs.reachableNodes(mavenInvertedGraph, artifactTag).stream()
-				.filter(dependencyArtifactTag -> !dependencyArtifactTag.equals(artifactTag))
-				.collect(Collectors.toSet());
+		return reachableNodesInScope(mavenInvertedGraph, artifactTag, DependencyScope.ALL);
+	}
+
+	public Set<String> getTransitiveDependants(String artifactTag, Set<DependencyScope> scopes) {
+		return reachableNodesInScope(mavenInvertedGraph, artifactTag, DependencyScope.mask(scopes));
+	}
+
+	/**
+	 * Direct and transitive upstream / downstream counts of all the artifact tags, computed in parallel. Artifact tags
+	 * not in the graph are not part of the result.
+	 */
+	public Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, Set<DependencyScope> scopes) throws Exception {
+		return dependencyIndex.get().getDependencyCounts(artifactTags, DependencyScope.mask(scopes));
+	}
+
+	/**
+	 * Counts with the transitive counts selected by approximate estimated for all the artifact tags in one pass over
+	 * the graph, see {@link TransitiveSketches}, exact if it is null.
+	 */
+	@Override
+	public Map<String, DependencyCounts> getDependencyCounts(Collection<String> artifactTags, Set<DependencyScope> scopes, ApproximateCounts approximate) throws Exception {
+		return dependencyIndex.get().getDependencyCounts(artifactTags, DependencyScope.mask(scopes), approximate);
+	}
+
+	/**
+	 * The group:artifact of an artifact tag.
+	 */
+	public String getArtifact(String artifactTag) {
+		return artifactProjection.getArtifact(artifactTag);
+	}
+
+	/**
+	 * Distinct artifacts that any version of the artifact depends on, through links in scope.
+	 */
+	public Set<String> getDependencyArtifacts(String artifact, Set<DependencyScope> scopes) {
+		return artifactProjection.getDependencyArtifacts(artifact, DependencyScope.mask(scopes));
+	}
+
+	/**
+	 * Distinct artifacts with any version depending on any version of the artifact, through links in scope.
+	 */
+	public Set<String> getDependantArtifacts(String artifact, Set<DependencyScope> scopes) {
+		return artifactProjection.getDependantArtifacts(artifact, DependencyScope.mask(scopes));
+	}
+
+	private static boolean inScope(ValueGraph<String, Byte> graph, String fromNode, String toNode, byte scopeMask) {
+		return (graph.edgeValueOrDefault(fromNode, toNode, DependencyScope.NONE) & scopeMask) != 0;
+	}
+
+	private static Set<String> neighboursInScope(ValueGraph<String, Byte> graph, String artifactTag, byte scopeMask) {
+		Set<String> neighbours = new HashSet<>();
+		for (String neighbour : graph.successors(artifactTag)) {
+			if (inScope(graph, artifactTag, neighbour, scopeMask)) {
+				neighbours.add(neighbour);
+			}
+		}
+		return neighbours;
+	}
+
+	// breadth first visit following only the links in scope, the artifact tag itself is not part of the result
+	private static Set<String> reachableNodesInScope(ValueGraph<String, Byte> graph, String artifactTag, byte scopeMask) {
+		Set<String> visited = new HashSet<>();
+		Deque<String> toVisit = new ArrayDeque<>();
+		visited.add(artifactTag);
+		toVisit.add(artifactTag);
+		while (!toVisit.isEmpty()) {
+			String node = toVisit.poll();
+			for (String successor : graph.successors(node)) {
+				if (inScope(graph, node, successor, scopeMask) && visited.add(successor)) {
+					toVisit.add(successor);
+				}
+			}
+		}
+		visited.remove(artifactTag);
+		return visited;
 	}
 
 	public Set<String> getDormantDependencies(String artifactTag, LocalDate date, GithubAPI githubAPI) {
-		Set<String> dependencies = mavenGraph.successors(artifactTag);
-		return dependencies.stream()
-				.filter( dependencyArtifactTag -> isGHRepoDormant(dependencyArtifactTag, date, githubAPI))
+		return getDormantDependencies(artifactTag, date, githubAPI, EnumSet.allOf(DependencyScope.class));
+	}
+
+	public Set<String> getDormantDependencies(String artifactTag, LocalDate date, GithubAPI githubAPI, Set<DependencyScope> scopes) {
+		return getDependencyGHRepos(artifactTag, scopes).entrySet().stream()
+				.filter(dependencyGHRepo -> isGHRepoDormant(dependencyGHRepo.getValue(), date, githubAPI))
+				.map(Map.Entry::getKey)
 				.collect(Collectors.toSet());
 	}
 
-	private boolean isGHRepoDormant(String artifactTag, LocalDate date, GithubAPI githubAPI) {
-		String[] artifactTagSplits = artifactTag.split(":");
-		String artifact = String.format("%s:%s", artifactTagSplits[0], artifactTagSplits[1]);
-		if (!artifactGHRepoMap.containsKey(artifact)) {
+	public Map<String, String> getDependencyGHRepos(String artifactTag, Set<DependencyScope> scopes) {
+		Map<String, String> dependencyGHRepos = new HashMap<>();
+		for (String dependencyArtifactTag : getDependencies(artifactTag, scopes)) {
+			dependencyGHRepos.put(dependencyArtifactTag, artifactProjection.getGHRepo(dependencyArtifactTag));
+		}
+		return dependencyGHRepos;
+	}
+
+	/**
+	 * Establishes the dormancy of the dependencies from the dormancy of their own GH repo at the date, e.g. read from
+	 * the github archive, instead of from the commits of the project.
+	 */
+	void setDormantGHRepos(BiPredicate<String, LocalDate> dormantGHRepos) {
+		this.dormantGHRepos = dormantGHRepos;
+		monthDormancies.invalidateAll();
+	}
+
+	@Override
+	public boolean hasDependencyDormancy() {
+		return dormantGHRepos != null;
+	}
+
+	/**
+	 * Transitive dependencies of the artifact tag whose own GH repo is dormant at the date, when the dormancy of the GH
+	 * repos is known, see {@link #setDormantGHRepos}. The versions dormant at the date are propagated once over the
+	 * graph for all the projects, so the projects of a month cost one pass, and only the current versions of the
+	 * projects at the date keep their estimate: they are the artifact tags the variable is computed for.
+	 */
+	@Override
+	public int getNumberOfTransitiveDormantDependencies(String artifactTag, LocalDate date, Set<DependencyScope> scopes) {
+		BiPredicate<String, LocalDate> dormantGHRepos = this.dormantGHRepos;
+		if (dormantGHRepos == null) {
+			throw new IllegalStateException("The dormancy of the dependencies is not known, it needs the github archive");
+		}
+		byte scopeMask = DependencyScope.mask(scopes);
+		Map<String, Integer> projectEstimates;
+		try {
+			projectEstimates = monthDormancies.get(date + "/" + scopeMask, () -> projectEstimates(date, scopeMask, dormantGHRepos));
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		Integer estimate = projectEstimates.get(artifactTag);
+		if (estimate == null) {
+			throw new IllegalArgumentException("Artifact tag " + artifactTag + " is not the current version of a project at " + date + " in the dependency graph");
+		}
+		return estimate;
+	}
+
+	private Map<String, Integer> projectEstimates(LocalDate date, byte scopeMask, BiPredicate<String, LocalDate> dormantGHRepos) {
+		try (PipelineMetrics.Timer timer = PipelineMetrics.time("maven_dormancy")) {
+			DependencyIndex index = dependencyIndex.get();
+			BitSet dormantVersions = artifactProjection.versionsOfGHRepos(ghRepo -> dormantGHRepos.test(ghRepo, date));
+			int[] estimates = index.estimateCountedDependencies(dormantVersions, scopeMask, DORMANCY_SKETCH_PRECISION);
+			Map<String, Integer> projectEstimates = new HashMap<>();
+			for (String project : artifactGHRepoMap.keySet()) {
+				String tag = null;
+				try {
+					tag = artifactReleases.containsKey(project) ? getCurrentVersionTag(project, date) : null;
+				} catch (Exception e) {
+					LOGGER.debug("No current version of {} at {}: {}", project, date, e.getMessage());
+				}
+				Integer id = tag == null ? null : index.getId(artifactWithTag(project, tag));
+				if (id != null) {
+					projectEstimates.put(artifactWithTag(project, tag), estimates[id]);
+				}
+			}
+			LOGGER.info("Propagated the {} versions dormant at {} over the dependency graph for {} projects", dormantVersions.cardinality(), date, projectEstimates.size());
+			return projectEstimates;
+		}
+	}
+
+	static boolean isGHRepoDormant(String ghRepo, LocalDate date, GithubAPI githubAPI) {
+		if (ghRepo == null) {
 			// if we do not have the GH repo link, we cannot establish if the project is dormant => convention is it is not dormant
 			return false;
 		} else {
-			String ghRepo = artifactGHRepoMap.get(artifact);
 			try {
 				return githubAPI.isDormant(new Date(date.getYear() - 1900, date.getMonthValue()-1, date.getDayOfMonth()));
 			} catch (Exception e) {
@@ -182,6 +492,21 @@ public class MavenCentralInfo {
 		}
 	}
 
+	/**
+	 * Dormancy at the date of the project whose commits the github API retrieved, which stands for the dormancy of its
+	 * dependencies with a known GH repo when they are not established one by one.
+	 */
+	static boolean isProjectDormant(LocalDate date, GithubAPI githubAPI) {
+		try {
+			return githubAPI.isDormant(new Date(date.getYear() - 1900, date.getMonthValue()-1, date.getDayOfMonth()));
+		} catch (Exception e) {
+			LOGGER.error("Error when establishing if the project is dormant at {}", date);
+			LOGGER.error(e.getMessage());
+			// we cannot establish if the project is dormant => convention is it is not dormant
+			return false;
+		}
+	}
+
 
 //	private int[] getNumberOfUpAndDownstreams(List<String[]> map, String key,
 //													 List<String> u_analyzedKeys, List<String> d_analyzedKeys, String csvPath, String date)
@@ -273,31 +598,58 @@ public class MavenCentralInfo {
 	}
 
 	public double katzCentrality(String artifact, LocalDate date) throws Exception {
+		return katzCentrality(artifact, date, EnumSet.allOf(DependencyScope.class));
+	}
+
+	public double katzCentrality(String artifact, LocalDate date, Set<DependencyScope> scopes) throws Exception {
 		LOGGER.info("Calculating katz centrality for {} at date {}", artifact, date);
 
 		String artifactTag = getCurrentVersionArtifactTag(artifact, date);
+		double kc = katzCentralityOfArtifactTag(artifactTag, scopes);
 
+		LOGGER.info("Katz centrality computed", artifact, date);
+		return kc;
+	}
+
+	/**
+	 * Katz centrality of an artifact tag, which only depends on its direct dependencies and the size of the graph.
+	 */
+	public double katzCentralityOfArtifactTag(String artifactTag, Set<DependencyScope> scopes) {
 		double kc = 0;
 		double x1 = 0;
 		double a = 0.5;
 		int weight = 1;
 		double init_vertex_cent = 0.37;
 
-		Set<String> successors = mavenGraph.successors(artifactTag);
+		Set<String> successors = getDependencies(artifactTag, scopes);
 
 		for (String successorNode : successors) {
 			x1 = (a * 1 * init_vertex_cent) + weight;
 			kc = kc + (x1 * x1);
 		}
 
-		Set<String> allButSuccessors = Sets.difference(mavenGraph.nodes(), successors);
-		for (String node : allButSuccessors) {
-			//x1 = (a * 0 * init_vertex_cent) + weight;
-			x1 = weight;
-			kc = kc + (x1 * x1);
+		// every other node contributes weight^2, so we count them instead of visiting the whole graph
+		//x1 = (a * 0 * init_vertex_cent) + weight;
+		x1 = weight;
+		kc = kc + (mavenGraph.nodes().size() - successors.size()) * (x1 * x1);
+		return kc;
+	}
+
+	/**
+	 * Records appended to the delta files, in the formats of the links and releases files.
+	 */
+	static class Delta {
+
+		private final List<CSVRecord> links;
+		private final List<CSVRecord> releases;
+
+		private Delta(List<CSVRecord> links, List<CSVRecord> releases) {
+			this.links = links;
+			this.releases = releases;
 		}
 
-		LOGGER.info("Katz centrality computed", artifact, date);
-		return kc;
+		boolean isEmpty() {
+			return links.isEmpty() && releases.isEmpty();
+		}
 	}
 }
@@ -0,0 +1,159 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans the retrieval of a run from the variables to compute: only the data sources the selected variables need are
+ * retrieved, e.g. a study of the commit and issue counts clones the repositories without working tree and does not
+ * load the maven graph.
+ */
+public class MetricPlanner {
+
+    public static final List<String> MAVEN_VARIABLES = ImmutableList.of(
+            "upstreams", "downstreams", "t_upstreams", "t_downstreams", "d_upstreams", "t_d_upstreams", "q90", "cc_degree", "dc_katz");
+
+    public static final List<String> STATIC_ANALYSIS_VARIABLES = ImmutableList.of(
+            "ar", "dc", "ec_t", "ec_p", "et", "fto", "cdsbp", "cc", "fd", "gc", "mc", "sc",
+            "it", "loc_t", "loc_p", "lt", "mg", "noc", "notc", "ro", "se", "st", "wmc_t", "wmc_p");
+
+    // data sources needed to retrieve another data source
+    private static final Map<DataSource, Set<DataSource>> SOURCE_DEPENDENCIES = ImmutableMap.of(
+            DataSource.COMMITS, EnumSet.of(DataSource.CLONE),
+            DataSource.COMMIT_USERS, EnumSet.of(DataSource.COMMITS),
+            DataSource.CHECKOUT, EnumSet.of(DataSource.CLONE),
+            DataSource.TAGS, EnumSet.of(DataSource.CLONE),
+            DataSource.SOCIAL_API, EnumSet.of(DataSource.COMMIT_USERS));
+
+    private static final Map<String, Set<DataSource>> VARIABLE_SOURCES = variableSources();
+
+    private final List<String> variables;
+    private final Set<DataSource> dataSources = EnumSet.noneOf(DataSource.class);
+    // the variables are all the variables by default, not a selection of the user
+    private final boolean all;
+
+    public MetricPlanner(Collection<String> selectedVariables) {
+        this(selectedVariables, false);
+    }
+
+    private MetricPlanner(Collection<String> selectedVariables, boolean all) {
+        this.all = all;
+        for (String variable : selectedVariables) {
+            if (!VARIABLE_SOURCES.containsKey(variable)) {
+                throw new IllegalArgumentException("Unknown variable " + variable + ", expected one of " + VARIABLE_SOURCES.keySet());
+            }
+        }
+        // the variables keep the order of the output files
+        variables = Lists.newArrayList();
+        for (String variable : Utils.VARIABLE_FILENAMES.keySet()) {
+            if (selectedVariables.contains(variable)) {
+                variables.add(variable);
+                for (DataSource dataSource : VARIABLE_SOURCES.get(variable)) {
+                    addDataSource(dataSource);
+                }
+            }
+        }
+    }
+
+    public static MetricPlanner all() {
+        return new MetricPlanner(Utils.VARIABLE_FILENAMES.keySet(), true);
+    }
+
+    /**
+     * Planner of the same variables but the given one, e.g. a variable the run cannot compute.
+     */
+    public MetricPlanner without(String variable) {
+        List<String> selectedVariables = Lists.newArrayList(variables);
+        selectedVariables.remove(variable);
+        return new MetricPlanner(selectedVariables, all);
+    }
+
+    /**
+     * Planner of a comma separated list of variables, e.g. "commits,issues".
+     */
+    public static MetricPlanner parse(String variableList) {
+        List<String> selectedVariables = Lists.newArrayList();
+        for (String variable : variableList.split(",")) {
+            if (!variable.trim().isEmpty()) {
+                selectedVariables.add(variable.trim());
+            }
+        }
+        if (selectedVariables.isEmpty()) {
+            throw new IllegalArgumentException("No variable selected");
+        }
+        return new MetricPlanner(selectedVariables);
+    }
+
+    private void addDataSource(DataSource dataSource) {
+        if (dataSources.add(dataSource)) {
+            for (DataSource dependency : SOURCE_DEPENDENCIES.getOrDefault(dataSource, EnumSet.noneOf(DataSource.class))) {
+                addDataSource(dependency);
+            }
+        }
+    }
+
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    public Set<DataSource> getDataSources() {
+        return dataSources;
+    }
+
+    public boolean computes(String variable) {
+        return variables.contains(variable);
+    }
+
+    /**
+     * Whether the variables are all the variables by default rather than a selection of the user.
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    public boolean needs(DataSource dataSource) {
+        return dataSources.contains(dataSource);
+    }
+
+    private static Map<String, Set<DataSource>> variableSources() {
+        ImmutableMap.Builder<String, Set<DataSource>> variableSources = ImmutableMap.builder();
+        for (String variable : Lists.newArrayList("commits", "contributors", "u_contributors", "c_contributors", "dormant")) {
+            variableSources.put(variable, EnumSet.of(DataSource.COMMITS));
+        }
+        for (String state : Lists.newArrayList("", "open_", "closed_")) {
+            variableSources.put(state + "issues", EnumSet.of(DataSource.ISSUES));
+            // non dev issues are the issues submitted by users who are not contributors
+            variableSources.put("non_dev_" + state + "issues", EnumSet.of(DataSource.ISSUES, DataSource.CONTRIBUTORS));
+        }
+        // the issues open at the end of the month and the issues closed during the month, whenever they were created
+        variableSources.put("backlog_issues", EnumSet.of(DataSource.ISSUES, DataSource.ISSUE_BACKLOG));
+        variableSources.put("resolved_issues", EnumSet.of(DataSource.ISSUES, DataSource.ISSUE_BACKLOG));
+        for (String submitters : Lists.newArrayList("submitters", "open_issues_submitters", "closed_issues_submitters")) {
+            variableSources.put(submitters, EnumSet.of(DataSource.ISSUES));
+            variableSources.put("non_dev_" + submitters, EnumSet.of(DataSource.ISSUES, DataSource.CONTRIBUTORS));
+        }
+        // the maven variables are null for the months whose version is not in the maven graph, q90 and cc_degree included
+        for (String variable : Lists.newArrayList("upstreams", "downstreams", "t_upstreams", "t_downstreams", "dc_katz")) {
+            variableSources.put(variable, EnumSet.of(DataSource.MAVEN_GRAPH));
+        }
+        // the dormancy of the direct dependencies is established from the commits of the project, the dormancy of the
+        // transitive ones from the github archive, see DependencyLookup
+        variableSources.put("d_upstreams", EnumSet.of(DataSource.MAVEN_GRAPH, DataSource.COMMITS));
+        variableSources.put("t_d_upstreams", EnumSet.of(DataSource.MAVEN_GRAPH));
+        // the core team is made of the github users committing
+        variableSources.put("q90", EnumSet.of(DataSource.MAVEN_GRAPH, DataSource.COMMIT_USERS));
+        variableSources.put("cc_degree", EnumSet.of(DataSource.MAVEN_GRAPH, DataSource.SOCIAL_API));
+        // the static analysis runs on the working tree at the latest tag of each month
+        for (String variable : STATIC_ANALYSIS_VARIABLES) {
+            variableSources.put(variable, EnumSet.of(DataSource.CHECKOUT, DataSource.TAGS));
+        }
+        return variableSources.build();
+    }
+}
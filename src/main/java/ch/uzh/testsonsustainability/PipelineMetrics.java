@@ -0,0 +1,355 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Timers, counters, gauges and histograms of the analysis pipeline.
+ *
+ * Metrics are kept in memory and periodically exported to a file in the Prometheus text format. In addition, the
+ * phases and API calls of the job running on the current thread are accumulated to log a summary line per job.
+ *
+ * The github API calls issued while a phase or a variable is timed are attributed to it, including the calls of the
+ * phases nested in it, so that the calls of a job can be compared with its planned calls, see {@link ApiBudgetPlanner}.
+ */
+public class PipelineMetrics {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(PipelineMetrics.class);
+
+    public static final String METRICS_FILENAME = "metrics.prom";
+
+    public static final String PHASE_SECONDS = "tos_phase_seconds";
+    public static final String VARIABLE_SECONDS = "tos_variable_seconds";
+    public static final String JOB_SECONDS = "tos_job_seconds";
+    public static final String JOB_API_CALLS = "tos_job_github_api_calls";
+    public static final String JOB_PLANNED_API_CALLS = "tos_job_github_api_calls_planned";
+    public static final String PHASE_API_CALLS = "tos_phase_github_api_calls_total";
+    public static final String VARIABLE_API_CALLS = "tos_variable_github_api_calls_total";
+    public static final String GITHUB_API_CALLS = "tos_github_api_calls_total";
+    public static final String JOB_GRAPHQL_POINTS = "tos_job_github_graphql_points";
+    public static final String GITHUB_GRAPHQL_CALLS = "tos_github_graphql_calls_total";
+    public static final String GITHUB_GRAPHQL_POINTS = "tos_github_graphql_points_total";
+    public static final String JOBS = "tos_jobs_total";
+    public static final String CHECKOUT_BYTES = "tos_checkout_step_bytes";
+    public static final String CHECKOUT_PATHS = "tos_checkout_step_paths";
+    public static final String HTTP_REQUESTS = "tos_http_requests_total";
+    public static final String HTTP_TLS_CONNECTIONS = "tos_http_tls_connections_total";
+    public static final String HTTP_IN_FLIGHT = "tos_http_requests_in_flight";
+    public static final String HTTP_WAITING = "tos_http_requests_waiting";
+    public static final String HTTP_PERMIT_WAIT_SECONDS = "tos_http_permit_wait_seconds";
+    public static final String ARCHIVE_EVENTS = "tos_github_archive_events_total";
+    public static final String STATIC_ANALYSIS_HELPER_EXITS = "tos_static_analysis_helper_exits_total";
+
+    // upper bounds in seconds, from quick graph queries to the static analysis of a big repository
+    private static final double[] SECONDS_BUCKETS = {0.001, 0.01, 0.1, 0.5, 1, 5, 10, 30, 60, 300, 900, 3600, 14400};
+    private static final double[] CALLS_BUCKETS = {10, 100, 500, 1000, 5000, 10000, 50000};
+    private static final double[] BYTES_BUCKETS = {0, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, Histogram>> histograms = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> counters = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, ConcurrentMap<String, DoubleSupplier>> gauges = new ConcurrentSkipListMap<>();
+    private static final ThreadLocal<JobStats> currentJob = new ThreadLocal<>();
+    private static final long startNanos = System.nanoTime();
+
+    private static ScheduledExecutorService exporter;
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * Starts timing a phase of the pipeline; the returned timer records the elapsed time when closed.
+     */
+    public static Timer time(String phase) {
+        return new Timer(PHASE_SECONDS, "phase", phase);
+    }
+
+    public static Timer timeVariable(String variableName) {
+        return new Timer(VARIABLE_SECONDS, "variable", variableName);
+    }
+
+    public static void increment(String name, String labelName, String labelValue) {
+        add(name, labelName, labelValue, 1);
+    }
+
+    public static void add(String name, String labelName, String labelValue, long value) {
+        counters.computeIfAbsent(name, k -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(labels(labelName, labelValue), k -> new LongAdder())
+                .add(value);
+    }
+
+    public static void observe(String name, String labelName, String labelValue, double value) {
+        double[] buckets = name.endsWith("_seconds") ? SECONDS_BUCKETS : name.endsWith("_bytes") ? BYTES_BUCKETS : CALLS_BUCKETS;
+        histograms.computeIfAbsent(name, k -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(labels(labelName, labelValue), k -> new Histogram(buckets))
+                .observe(value);
+    }
+
+    /**
+     * Registers a gauge, whose value is read from the supplier on each export.
+     */
+    public static void gauge(String name, String labelName, String labelValue, DoubleSupplier value) {
+        gauges.computeIfAbsent(name, k -> new ConcurrentSkipListMap<>())
+                .put(labels(labelName, labelValue), value);
+    }
+
+    public static void githubApiCall() {
+        increment(GITHUB_API_CALLS, null, null);
+        JobStats jobStats = currentJob.get();
+        if (jobStats != null) {
+            jobStats.apiCalls++;
+        }
+    }
+
+    /**
+     * Records a query to the github GraphQL API and the points of the rate limit it cost. The request itself is
+     * counted as an api call by the connector.
+     */
+    public static void githubGraphQLQuery(int points) {
+        increment(GITHUB_GRAPHQL_CALLS, null, null);
+        add(GITHUB_GRAPHQL_POINTS, null, null, points);
+        JobStats jobStats = currentJob.get();
+        if (jobStats != null) {
+            jobStats.graphQLCalls++;
+            jobStats.graphQLPoints += points;
+        }
+    }
+
+    public static void startJob(String jobId, String projName) {
+        currentJob.set(new JobStats(jobId, projName));
+    }
+
+    /**
+     * Records the outcome of the job running on the current thread and returns its summary line.
+     */
+    public static String finishJob(String outcome) {
+        JobStats jobStats = currentJob.get();
+        currentJob.remove();
+        increment(JOBS, "outcome", outcome);
+        if (jobStats == null) {
+            return "No job was started";
+        }
+        double jobSeconds = (System.nanoTime() - jobStats.startNanos) / 1e9;
+        observe(JOB_SECONDS, "outcome", outcome, jobSeconds);
+        observe(JOB_API_CALLS, null, null, jobStats.apiCalls);
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Job %s for project %s %s in %.1fs with %d github api calls",
+                jobStats.jobId, jobStats.projName, outcome, jobSeconds, jobStats.apiCalls));
+        if (jobStats.graphQLCalls > 0) {
+            observe(JOB_GRAPHQL_POINTS, null, null, jobStats.graphQLPoints);
+            summary.append(String.format(" (%d graphql queries costing %d points)", jobStats.graphQLCalls, jobStats.graphQLPoints));
+        }
+        for (Map.Entry<String, Double> phaseSeconds : jobStats.phaseSeconds.entrySet()) {
+            summary.append(String.format(", %s=%.1fs", phaseSeconds.getKey(), phaseSeconds.getValue()));
+            long phaseApiCalls = jobStats.apiCallsByTimer.getOrDefault(phaseSeconds.getKey(), 0L);
+            if (phaseApiCalls > 0) {
+                summary.append(String.format("/%d calls", phaseApiCalls));
+            }
+        }
+        for (Map.Entry<String, Long> variableApiCalls : jobStats.apiCallsByTimer.entrySet()) {
+            if (!jobStats.phaseSeconds.containsKey(variableApiCalls.getKey()) && variableApiCalls.getValue() > 0) {
+                summary.append(String.format(", %s=%d calls", variableApiCalls.getKey(), variableApiCalls.getValue()));
+            }
+        }
+        summary.append(String.format(" (%.1f jobs/hour)", jobsPerHour()));
+        return summary.toString();
+    }
+
+    public static long getJobApiCalls() {
+        JobStats jobStats = currentJob.get();
+        return jobStats == null ? 0 : jobStats.apiCalls;
+    }
+
+    /**
+     * Github API calls of the job running on the current thread issued while the phase or the variable was timed.
+     */
+    public static long getJobApiCalls(String phaseOrVariable) {
+        JobStats jobStats = currentJob.get();
+        return jobStats == null ? 0 : jobStats.apiCallsByTimer.getOrDefault(phaseOrVariable, 0L);
+    }
+
+    public static double jobsPerHour() {
+        long completedJobs = 0;
+        ConcurrentMap<String, LongAdder> jobs = counters.get(JOBS);
+        if (jobs != null) {
+            for (LongAdder outcomeJobs : jobs.values()) {
+                completedJobs += outcomeJobs.sum();
+            }
+        }
+        double elapsedHours = (System.nanoTime() - startNanos) / 3.6e12;
+        return completedJobs / elapsedHours;
+    }
+
+    public static String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, ConcurrentMap<String, LongAdder>> counter : counters.entrySet()) {
+            text.append("# TYPE ").append(counter.getKey()).append(" counter\n");
+            for (Map.Entry<String, LongAdder> labelledCounter : counter.getValue().entrySet()) {
+                text.append(counter.getKey()).append(braces(labelledCounter.getKey())).append(' ')
+                        .append(labelledCounter.getValue().sum()).append('\n');
+            }
+        }
+        for (Map.Entry<String, ConcurrentMap<String, Histogram>> histogram : histograms.entrySet()) {
+            text.append("# TYPE ").append(histogram.getKey()).append(" histogram\n");
+            for (Map.Entry<String, Histogram> labelledHistogram : histogram.getValue().entrySet()) {
+                labelledHistogram.getValue().appendTo(text, histogram.getKey(), labelledHistogram.getKey());
+            }
+        }
+        for (Map.Entry<String, ConcurrentMap<String, DoubleSupplier>> gauge : gauges.entrySet()) {
+            text.append("# TYPE ").append(gauge.getKey()).append(" gauge\n");
+            for (Map.Entry<String, DoubleSupplier> labelledGauge : gauge.getValue().entrySet()) {
+                text.append(gauge.getKey()).append(braces(labelledGauge.getKey())).append(' ')
+                        .append(labelledGauge.getValue().getAsDouble()).append('\n');
+            }
+        }
+        text.append("# TYPE tos_jobs_per_hour gauge\n");
+        text.append("tos_jobs_per_hour ").append(jobsPerHour()).append('\n');
+        return text.toString();
+    }
+
+    public static synchronized void export(String outPath) {
+        Path metricsPath = Paths.get(outPath, METRICS_FILENAME);
+        Path tmpPath = Paths.get(outPath, METRICS_FILENAME + ".tmp");
+        try {
+            try (PrintWriter printWriter = new PrintWriter(Files.newBufferedWriter(tmpPath))) {
+                printWriter.print(toPrometheusText());
+            }
+            Files.move(tmpPath, metricsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Error when exporting metrics to {}", metricsPath);
+            LOGGER.error(e.getMessage());
+        }
+    }
+
+    public static synchronized void startExporter(String outPath, long intervalSeconds) {
+        if (exporter != null) {
+            return;
+        }
+        LOGGER.info("Exporting metrics to {} every {} seconds", outPath + METRICS_FILENAME, intervalSeconds);
+        exporter = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("metrics-exporter").setDaemon(true).build());
+        exporter.scheduleAtFixedRate(() -> export(outPath), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopExporter(String outPath) {
+        if (exporter != null) {
+            exporter.shutdownNow();
+            exporter = null;
+        }
+        export(outPath);
+    }
+
+    private static String labels(String labelName, String labelValue) {
+        return labelName == null ? "" : labelName + "=\"" + labelValue + "\"";
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    public static class Timer implements AutoCloseable {
+
+        private final String name;
+        private final String labelName;
+        private final String labelValue;
+        private final long start;
+        private final long startApiCalls;
+
+        private Timer(String name, String labelName, String labelValue) {
+            this.name = name;
+            this.labelName = labelName;
+            this.labelValue = labelValue;
+            this.start = System.nanoTime();
+            this.startApiCalls = getJobApiCalls();
+        }
+
+        @Override
+        public void close() {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            observe(name, labelName, labelValue, seconds);
+            JobStats jobStats = currentJob.get();
+            if (jobStats != null) {
+                if (PHASE_SECONDS.equals(name)) {
+                    jobStats.phaseSeconds.merge(labelValue, seconds, Double::sum);
+                }
+                long apiCalls = jobStats.apiCalls - startApiCalls;
+                if (apiCalls > 0) {
+                    jobStats.apiCallsByTimer.merge(labelValue, apiCalls, Long::sum);
+                    add(PHASE_SECONDS.equals(name) ? PHASE_API_CALLS : VARIABLE_API_CALLS, labelName, labelValue, apiCalls);
+                }
+            }
+        }
+    }
+
+    private static class Histogram {
+
+        private final double[] buckets;
+        private final LongAdder[] bucketCounts;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        private Histogram(double[] buckets) {
+            this.buckets = buckets;
+            this.bucketCounts = new LongAdder[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                bucketCounts[i] = new LongAdder();
+            }
+        }
+
+        private void observe(double value) {
+            for (int i = 0; i < buckets.length; i++) {
+                if (value <= buckets[i]) {
+                    bucketCounts[i].increment();
+                }
+            }
+            count.increment();
+            sum.add(value);
+        }
+
+        private void appendTo(StringBuilder text, String name, String labels) {
+            String labelsPrefix = labels.isEmpty() ? "" : labels + ",";
+            for (int i = 0; i < buckets.length; i++) {
+                text.append(name).append("_bucket{").append(labelsPrefix).append("le=\"").append(buckets[i]).append("\"} ")
+                        .append(bucketCounts[i].sum()).append('\n');
+            }
+            text.append(name).append("_bucket{").append(labelsPrefix).append("le=\"+Inf\"} ").append(count.sum()).append('\n');
+            text.append(name).append("_sum").append(braces(labels)).append(' ').append(sum.sum()).append('\n');
+            text.append(name).append("_count").append(braces(labels)).append(' ').append(count.sum()).append('\n');
+        }
+    }
+
+    private static class JobStats {
+
+        private final String jobId;
+        private final String projName;
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Double> phaseSeconds = new LinkedHashMap<>();
+        private final Map<String, Long> apiCallsByTimer = new LinkedHashMap<>();
+        private long apiCalls = 0;
+        private long graphQLCalls = 0;
+        private long graphQLPoints = 0;
+
+        private JobStats(String jobId, String projName) {
+            this.jobId = jobId;
+            this.projName = projName;
+        }
+    }
+}
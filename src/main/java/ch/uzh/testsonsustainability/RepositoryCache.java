@@ -0,0 +1,132 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Variables of the github repositories shared by the jobs of the artifacts of a repository, e.g. the modules of a
+ * multi-module project. The first job of a repository clones it, retrieves its github data and computes the github
+ * and clone derived variables; the jobs of the other artifacts only compute their maven variables and take the others
+ * from here, waiting for the first job if it is still computing them.
+ *
+ * The results are keyed by repository and first month, as the months of a job depend on the rows it extends. Only the
+ * results of the most recently used repositories are kept; the projects of the input are sorted by stars, so the
+ * artifacts of a repository are handed out one after the other.
+ */
+class RepositoryCache {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(RepositoryCache.class);
+
+    private final ConcurrentMap<String, CompletableFuture<Results>> repositories;
+
+    RepositoryCache(int maximumSize) {
+        this.repositories = CacheBuilder.newBuilder().maximumSize(maximumSize).<String, CompletableFuture<Results>>build().asMap();
+    }
+
+    /**
+     * Returns the results of the repository from its first month, computing them on the current thread unless another
+     * job has computed them or is computing them. The jobs waiting for a computation that fails fail with it, but the
+     * failure is not kept, so the next job tries again.
+     */
+    Results get(String repoName, LocalDate firstMonth, Callable<Results> computation) throws Exception {
+        String key = repoName.toLowerCase(Locale.ROOT) + "@" + firstMonth;
+        CompletableFuture<Results> results = new CompletableFuture<>();
+        CompletableFuture<Results> sharedResults = repositories.putIfAbsent(key, results);
+        if (sharedResults != null) {
+            LOGGER.info("Taking the github and clone variables of {} from another artifact of the repository", repoName);
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("repository_wait")) {
+                return sharedResults.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        try {
+            results.complete(computation.call());
+        } catch (Throwable e) {
+            // errors too, e.g. running out of memory, or the jobs waiting for the repository would wait forever
+            repositories.remove(key, results);
+            results.completeExceptionally(e);
+            throw e;
+        }
+        return results.get();
+    }
+
+    /**
+     * Computation of the value of a variable for the month ending at the date.
+     */
+    interface MonthComputation {
+        Object compute(LocalDate untilLocalDate) throws Exception;
+    }
+
+    static class Results {
+
+        private final GithubAPI github;
+        private final Integer repositorySizeKb;
+        private final Map<String, Map<LocalDate, Object>> monthValues;
+        private final Map<String, MonthComputation> onDemand;
+        private final boolean dormant;
+
+        /**
+         * @param monthValues values of each variable computed, by the date each month of the job ends
+         * @param onDemand computations of the variables only computed for some months, run for the other months when
+         *                 the job of another artifact needs them
+         */
+        Results(GithubAPI github, Integer repositorySizeKb, Map<String, Map<LocalDate, Object>> monthValues, Map<String, MonthComputation> onDemand, boolean dormant) {
+            this.github = github;
+            this.repositorySizeKb = repositorySizeKb;
+            this.monthValues = monthValues;
+            this.onDemand = onDemand;
+            this.dormant = dormant;
+        }
+
+        /**
+         * Github data of the repository, for the maven variables that depend on it.
+         */
+        GithubAPI getGithub() {
+            return github;
+        }
+
+        Integer getRepositorySizeKb() {
+            return repositorySizeKb;
+        }
+
+        synchronized Set<String> getVariables() {
+            // a copy, as the variables computed on demand are added while other jobs read them
+            return new HashSet<>(monthValues.keySet());
+        }
+
+        /**
+         * The value of the variable for the month, computed now if the variable is computed on demand and the month has
+         * not been computed yet. The jobs of the artifacts compute one month at a time, on the github data they share.
+         */
+        synchronized Object getMonthValue(String variable, LocalDate untilLocalDate) throws Exception {
+            Map<LocalDate, Object> values = monthValues.computeIfAbsent(variable, computedVariable -> new HashMap<>());
+            MonthComputation computation = onDemand.get(variable);
+            if (computation == null || values.containsKey(untilLocalDate)) {
+                return values.get(untilLocalDate);
+            }
+            Object value;
+            try (PipelineMetrics.Timer timer = PipelineMetrics.timeVariable(variable)) {
+                value = computation.compute(untilLocalDate);
+            }
+            values.put(untilLocalDate, value);
+            return value;
+        }
+
+        boolean isDormant() {
+            return dormant;
+        }
+    }
+}
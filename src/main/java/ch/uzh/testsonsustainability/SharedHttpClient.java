@@ -0,0 +1,639 @@
+package ch.uzh.testsonsustainability;
+
+import org.kohsuke.github.HttpConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URL;
+import java.security.Permission;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP client shared by the github and job API traffic of a worker, over the connections of the JDK.
+ *
+ * The JDK keeps the connection of a response whose body was read to the end and closed, and reuses it, with its TLS
+ * session, for the next request to the same host, keeping up to http.maxConnections idle connections per host, which
+ * the client sets to its limit of requests per host. The github-api client and the GraphQL queries read and close their
+ * responses, both asking for gzip bodies, and the requests of a RestTemplate go through {@link #requestFactory()},
+ * which closes the responses rather than disconnecting them as the default factory of Spring does.
+ *
+ * At most the given number of requests per host wait for their response at the same time, the next ones wait for one
+ * of them to be answered. The requests waiting and in flight, the time waited and the TLS connections opened per host
+ * are exported with the pipeline metrics, the requests per TLS connection telling how well the connections are reused.
+ */
+class SharedHttpClient implements HttpConnector {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+
+    private final int maxRequestsPerHost;
+    private final int readTimeoutMillis;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    SharedHttpClient(int maxRequestsPerHost, int readTimeoutSeconds) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.readTimeoutMillis = readTimeoutSeconds * 1000;
+        // read by the JDK when its first connection is kept alive
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(maxRequestsPerHost));
+        }
+        LOGGER.info("Sending at most {} concurrent requests per host, with a read timeout of {} seconds", maxRequestsPerHost, readTimeoutSeconds);
+    }
+
+    /**
+     * Connection to the url, which takes a permit of its host when the request is sent and gives it back once the
+     * response status and headers are received.
+     */
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        Host host = hosts.computeIfAbsent(url.getAuthority(), name -> new Host(name, maxRequestsPerHost));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(readTimeoutMillis);
+        if (connection instanceof HttpsURLConnection) {
+            // the JDK only reuses a kept alive connection for the same socket factory, hence one factory per host
+            ((HttpsURLConnection) connection).setSSLSocketFactory(host.socketFactory);
+        }
+        PipelineMetrics.increment(PipelineMetrics.HTTP_REQUESTS, "host", host.name);
+        return new PooledConnection(connection, host);
+    }
+
+    /**
+     * Factory of the requests of a RestTemplate, sent through the client.
+     */
+    ClientHttpRequestFactory requestFactory() {
+        return (uri, method) -> new PooledClientHttpRequest(uri, connect(uri.toURL()), method);
+    }
+
+    private static class Host {
+
+        private final String name;
+        private final Semaphore permits;
+        private final SSLSocketFactory socketFactory;
+
+        private Host(String name, int maxRequests) {
+            this.name = name;
+            this.permits = new Semaphore(maxRequests, true);
+            this.socketFactory = new CountingSSLSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory(), name);
+            PipelineMetrics.gauge(PipelineMetrics.HTTP_IN_FLIGHT, "host", name, () -> maxRequests - permits.availablePermits());
+            PipelineMetrics.gauge(PipelineMetrics.HTTP_WAITING, "host", name, permits::getQueueLength);
+        }
+
+        private void acquire() throws IOException {
+            long startNanos = System.nanoTime();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to send a request to " + name);
+            }
+            PipelineMetrics.observe(PipelineMetrics.HTTP_PERMIT_WAIT_SECONDS, "host", name, (System.nanoTime() - startNanos) / 1e9);
+        }
+
+        private void release() {
+            permits.release();
+        }
+    }
+
+    /**
+     * Connection delegating to the connection of the JDK, which holds a permit of the host from the first call sending
+     * the request to the first call returning the response, or failing, writing the body of the request included.
+     */
+    private static class PooledConnection extends HttpURLConnection {
+
+        // named as the field github-api looks up to set a request method the JDK does not support on a wrapped connection
+        private final HttpURLConnection delegate;
+        private final Host host;
+        private boolean sent = false;
+        private boolean answered = false;
+
+        private PooledConnection(HttpURLConnection delegate, Host host) {
+            super(delegate.getURL());
+            this.delegate = delegate;
+            this.host = host;
+        }
+
+        private void send() throws IOException {
+            if (!sent) {
+                host.acquire();
+                sent = true;
+            }
+        }
+
+        private void answer() {
+            if (sent && !answered) {
+                answered = true;
+                host.release();
+            }
+        }
+
+        @Override
+        public void connect() throws IOException {
+            send();
+            try {
+                delegate.connect();
+            } catch (IOException | RuntimeException e) {
+                answer();
+                throw e;
+            }
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            send();
+            try {
+                return new RequestBody(delegate.getOutputStream());
+            } catch (IOException | RuntimeException e) {
+                answer();
+                throw e;
+            }
+        }
+
+        /**
+         * Body of the request, which gives the permit back when writing it fails, e.g. on a reset connection or a
+         * write timeout, as the response is then never received.
+         */
+        private class RequestBody extends FilterOutputStream {
+
+            private RequestBody(OutputStream out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    out.write(b);
+                } catch (IOException | RuntimeException e) {
+                    answer();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    out.write(b, off, len);
+                } catch (IOException | RuntimeException e) {
+                    answer();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                try {
+                    out.flush();
+                } catch (IOException | RuntimeException e) {
+                    answer();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    out.close();
+                } catch (IOException | RuntimeException e) {
+                    answer();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            send();
+            try {
+                return delegate.getResponseCode();
+            } finally {
+                answer();
+            }
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            send();
+            try {
+                return delegate.getResponseMessage();
+            } finally {
+                answer();
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            send();
+            try {
+                return delegate.getInputStream();
+            } finally {
+                answer();
+            }
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return delegate.getErrorStream();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return receive(() -> delegate.getHeaderField(name));
+        }
+
+        @Override
+        public String getHeaderField(int n) {
+            return receive(() -> delegate.getHeaderField(n));
+        }
+
+        @Override
+        public String getHeaderFieldKey(int n) {
+            return receive(() -> delegate.getHeaderFieldKey(n));
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            return receive(delegate::getHeaderFields);
+        }
+
+        private <T> T receive(Supplier<T> response) {
+            try {
+                send();
+            } catch (IOException e) {
+                // interrupted while waiting, and as the header getters cannot throw, the request goes without a permit
+            }
+            try {
+                return response.get();
+            } finally {
+                answer();
+            }
+        }
+
+        @Override
+        public void disconnect() {
+            answer();
+            delegate.disconnect();
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return delegate.usingProxy();
+        }
+
+        @Override
+        public void setRequestMethod(String method) throws ProtocolException {
+            delegate.setRequestMethod(method);
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return delegate.getRequestMethod();
+        }
+
+        @Override
+        public void setRequestProperty(String key, String value) {
+            delegate.setRequestProperty(key, value);
+        }
+
+        @Override
+        public void addRequestProperty(String key, String value) {
+            delegate.addRequestProperty(key, value);
+        }
+
+        @Override
+        public String getRequestProperty(String key) {
+            return delegate.getRequestProperty(key);
+        }
+
+        @Override
+        public Map<String, List<String>> getRequestProperties() {
+            return delegate.getRequestProperties();
+        }
+
+        @Override
+        public void setDoOutput(boolean doOutput) {
+            delegate.setDoOutput(doOutput);
+        }
+
+        @Override
+        public boolean getDoOutput() {
+            return delegate.getDoOutput();
+        }
+
+        @Override
+        public void setDoInput(boolean doInput) {
+            delegate.setDoInput(doInput);
+        }
+
+        @Override
+        public boolean getDoInput() {
+            return delegate.getDoInput();
+        }
+
+        @Override
+        public void setUseCaches(boolean useCaches) {
+            delegate.setUseCaches(useCaches);
+        }
+
+        @Override
+        public boolean getUseCaches() {
+            return delegate.getUseCaches();
+        }
+
+        @Override
+        public void setIfModifiedSince(long ifModifiedSince) {
+            delegate.setIfModifiedSince(ifModifiedSince);
+        }
+
+        @Override
+        public long getIfModifiedSince() {
+            return delegate.getIfModifiedSince();
+        }
+
+        @Override
+        public void setAllowUserInteraction(boolean allowUserInteraction) {
+            delegate.setAllowUserInteraction(allowUserInteraction);
+        }
+
+        @Override
+        public boolean getAllowUserInteraction() {
+            return delegate.getAllowUserInteraction();
+        }
+
+        @Override
+        public void setConnectTimeout(int timeout) {
+            delegate.setConnectTimeout(timeout);
+        }
+
+        @Override
+        public int getConnectTimeout() {
+            return delegate.getConnectTimeout();
+        }
+
+        @Override
+        public void setReadTimeout(int timeout) {
+            delegate.setReadTimeout(timeout);
+        }
+
+        @Override
+        public int getReadTimeout() {
+            return delegate.getReadTimeout();
+        }
+
+        @Override
+        public void setInstanceFollowRedirects(boolean followRedirects) {
+            delegate.setInstanceFollowRedirects(followRedirects);
+        }
+
+        @Override
+        public boolean getInstanceFollowRedirects() {
+            return delegate.getInstanceFollowRedirects();
+        }
+
+        @Override
+        public void setFixedLengthStreamingMode(int contentLength) {
+            delegate.setFixedLengthStreamingMode(contentLength);
+        }
+
+        @Override
+        public void setFixedLengthStreamingMode(long contentLength) {
+            delegate.setFixedLengthStreamingMode(contentLength);
+        }
+
+        @Override
+        public void setChunkedStreamingMode(int chunkLength) {
+            delegate.setChunkedStreamingMode(chunkLength);
+        }
+
+        @Override
+        public URL getURL() {
+            return delegate.getURL();
+        }
+
+        @Override
+        public Permission getPermission() throws IOException {
+            return delegate.getPermission();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /**
+     * Request of a RestTemplate, its body buffered and sent with a fixed length. The methods of the later Spring
+     * versions (getMethodValue) are implemented without override, so that the request builds against all of them.
+     */
+    private static class PooledClientHttpRequest extends AbstractClientHttpRequest {
+
+        private final URI uri;
+        private final HttpURLConnection connection;
+        private final HttpMethod method;
+        private final ByteArrayOutputStream bufferedOutput = new ByteArrayOutputStream(1024);
+
+        private PooledClientHttpRequest(URI uri, HttpURLConnection connection, HttpMethod method) throws ProtocolException {
+            this.uri = uri;
+            this.connection = connection;
+            this.method = method;
+            connection.setRequestMethod(method.name());
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        public String getMethodValue() {
+            return method.name();
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return bufferedOutput;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    connection.addRequestProperty(header.getKey(), value);
+                }
+            }
+            if (!headers.containsKey("Accept-Encoding")) {
+                connection.setRequestProperty("Accept-Encoding", "gzip");
+            }
+            if (method == HttpMethod.POST || method == HttpMethod.PUT || bufferedOutput.size() > 0) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(bufferedOutput.size());
+                boolean sent = false;
+                try {
+                    try (OutputStream body = connection.getOutputStream()) {
+                        bufferedOutput.writeTo(body);
+                    }
+                    sent = true;
+                } finally {
+                    // the response is never asked for, so the connection and its permit go now
+                    if (!sent) {
+                        connection.disconnect();
+                    }
+                }
+            }
+            return new PooledClientHttpResponse(connection);
+        }
+    }
+
+    private static class PooledClientHttpResponse implements ClientHttpResponse {
+
+        private final HttpURLConnection connection;
+        private HttpHeaders headers;
+        private InputStream body;
+
+        private PooledClientHttpResponse(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return HttpStatus.valueOf(connection.getResponseCode());
+        }
+
+        public int getRawStatusCode() throws IOException {
+            return connection.getResponseCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return connection.getResponseMessage();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                headers = new HttpHeaders();
+                for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+                    // the status line has no name
+                    if (header.getKey() != null) {
+                        for (String value : header.getValue()) {
+                            headers.add(header.getKey(), value);
+                        }
+                    }
+                }
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                connection.getResponseCode();
+                InputStream errorStream = connection.getErrorStream();
+                InputStream stream = errorStream != null ? errorStream : connection.getInputStream();
+                body = "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(stream) : stream;
+            }
+            return body;
+        }
+
+        /**
+         * Closes the body, which hands the connection back to the JDK to be kept alive, and only disconnects it when
+         * the body cannot be read.
+         */
+        @Override
+        public void close() {
+            try {
+                getBody().close();
+            } catch (IOException e) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Counts the TLS connections opened to a host, a socket being created per connection.
+     */
+    private static class CountingSSLSocketFactory extends SSLSocketFactory {
+
+        private final SSLSocketFactory delegate;
+        private final String hostName;
+
+        private CountingSSLSocketFactory(SSLSocketFactory delegate, String hostName) {
+            this.delegate = delegate;
+            this.hostName = hostName;
+        }
+
+        private Socket opened(Socket socket) {
+            PipelineMetrics.increment(PipelineMetrics.HTTP_TLS_CONNECTIONS, "host", hostName);
+            return socket;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return delegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return delegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return opened(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return opened(delegate.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return opened(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return opened(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return opened(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return opened(delegate.createSocket(address, port, localAddress, localPort));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ch.uzh.testsonsustainability;
+
+import it.unisa.testSmellDiffusion.main.CalculateMetrics;
+import it.unisa.testSmellDiffusion.main.StaticAnalysisOutput;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Static analysis of the tree of a tag, run in the worker JVM or in a helper JVM of a {@link StaticAnalysisPool}.
+ *
+ * A helper reads one request per line from its standard input, a JSON object with the path of the directory and the
+ * tag to analyse, and writes one JSON line to its standard output with the values of the static analysis variables,
+ * or the error of the analysis. Whatever the analysis prints goes to the standard error, shared with the worker. The
+ * helper exits when its standard input is closed, i.e. when the worker goes away.
+ */
+public class StaticAnalysisHelper {
+
+    public static void main(String[] args) throws IOException {
+        // the standard output only carries the responses
+        PrintStream responses = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8.name());
+        System.setOut(System.err);
+
+        BufferedReader requests = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = requests.readLine()) != null) {
+            JSONObject request = new JSONObject(line);
+            JSONObject response = new JSONObject();
+            try {
+                response.put("values", new JSONObject(analyse(request.getString("path"), request.isNull("tag") ? null : request.getString("tag"))));
+            } catch (Exception e) {
+                response.put("error", String.valueOf(e.getMessage()));
+            }
+            responses.println(response);
+        }
+    }
+
+    /**
+     * Analyses the directory at the tag, or at HEAD if the tag is null, and returns the value of each static analysis
+     * variable, in the order of {@link MetricPlanner#STATIC_ANALYSIS_VARIABLES}.
+     */
+    static Map<String, String> analyse(String path, String tag) throws Exception {
+        StaticAnalysisOutput output = CalculateMetrics.calculateMetrics(path, tag);
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("ar", String.valueOf(output.getAr()));
+        values.put("dc", String.valueOf(output.getDc()));
+        values.put("ec_t", String.valueOf(output.getEcJUnit()));
+        values.put("ec_p", String.valueOf(output.getEcProject()));
+        values.put("et", String.valueOf(output.getEt()));
+        values.put("fto", String.valueOf(output.getFto()));
+        values.put("cdsbp", String.valueOf(output.getIsCDSBP()));
+        values.put("cc", String.valueOf(output.getIsComplexClass()));
+        values.put("fd", String.valueOf(output.getIsFuctionalDecomposition()));
+        values.put("gc", String.valueOf(output.getIsGodClass()));
+        values.put("mc", String.valueOf(output.getIsMisplacedClass()));
+        values.put("sc", String.valueOf(output.getIsSpaghettiCode()));
+        values.put("it", String.valueOf(output.getIt()));
+        values.put("loc_t", String.valueOf(output.getLocJUnit()));
+        values.put("loc_p", String.valueOf(output.getLocProject()));
+        values.put("lt", String.valueOf(output.getLt()));
+        values.put("mg", String.valueOf(output.getMg()));
+        values.put("noc", String.valueOf(output.getNumberOfClasses()));
+        values.put("notc", String.valueOf(output.getNumberOfTestClasses()));
+        values.put("ro", String.valueOf(output.getRo()));
+        values.put("se", String.valueOf(output.getSe()));
+        values.put("st", String.valueOf(output.getSmellyJUnit()));
+        values.put("wmc_t", String.valueOf(output.getWmcJUnit()));
+        values.put("wmc_p", String.valueOf(output.getWmcProject()));
+        return values;
+    }
+}
@@ -0,0 +1,222 @@
+package ch.uzh.testsonsustainability;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived helper JVMs running the static analysis, see {@link StaticAnalysisHelper}, so that an analysis running
+ * out of memory or hanging only takes its helper down instead of the worker and its job, and so that the analysis code
+ * stays compiled from one request to the next.
+ *
+ * A helper serves one request at a time over its standard input and output, so its maximum heap bounds the heap of one
+ * analysis. A helper not answering within the timeout is killed, and one that exited while idle is replaced by the next
+ * request. After a number of requests a helper is replaced, letting go of whatever the analysis leaks, and its
+ * replacement is started right away so that it is up by the next request. Helpers are started on demand, up to the size
+ * of the pool. A job analyses its months one after the other, so the pool is busy with at most one analysis per job run
+ * at the same time, and is sized after the worker threads.
+ */
+class StaticAnalysisPool implements AutoCloseable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(StaticAnalysisPool.class);
+
+    static final String LOG4J_CONFIGURATION = "log4j-helper.properties";
+
+    private final String maxHeap;
+    private final long timeoutSeconds;
+    private final int requestsPerHelper;
+    private final Semaphore permits;
+    private final BlockingQueue<Helper> idleHelpers = new LinkedBlockingQueue<>();
+    private final AtomicInteger helperIds = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * @param maxHeap maximum heap of a helper in the format of -Xmx, or null for the default of the JVM
+     */
+    StaticAnalysisPool(int size, String maxHeap, long timeoutSeconds, int requestsPerHelper) {
+        this.maxHeap = maxHeap;
+        this.timeoutSeconds = timeoutSeconds;
+        this.requestsPerHelper = requestsPerHelper;
+        this.permits = new Semaphore(size, true);
+        LOGGER.info("Running the static analysis in up to {} helper JVMs with {} heap, {}s per analysis and {} analyses per helper",
+                size, maxHeap == null ? "the default" : maxHeap, timeoutSeconds, requestsPerHelper);
+    }
+
+    /**
+     * Analyses the directory at the tag in a helper, waiting for a helper to be free, see
+     * {@link StaticAnalysisHelper#analyse(String, String)}.
+     */
+    Map<String, String> analyse(String path, String tag) throws Exception {
+        permits.acquire();
+        try {
+            Helper helper = idleHelpers.poll();
+            while (helper != null && !helper.isAlive()) {
+                // the helper exited while idle, e.g. killed by the system, and would fail the request
+                discard(helper, "exited");
+                helper = idleHelpers.poll();
+            }
+            if (helper == null) {
+                helper = start();
+            }
+            JSONObject response;
+            try {
+                response = helper.request(new JSONObject().put("path", path).put("tag", tag == null ? JSONObject.NULL : tag), timeoutSeconds);
+            } catch (TimeoutException e) {
+                discard(helper, "timeout");
+                throw e;
+            } catch (InterruptedException e) {
+                // the job gave up on the analysis, which the helper would still be running
+                discard(helper, "interrupted");
+                throw e;
+            } catch (Exception e) {
+                discard(helper, "exited");
+                throw e;
+            }
+            release(helper);
+            if (response.has("error")) {
+                throw new Exception(response.getString("error"));
+            }
+            JSONObject values = response.getJSONObject("values");
+            Map<String, String> variableValues = new LinkedHashMap<>();
+            for (String variable : MetricPlanner.STATIC_ANALYSIS_VARIABLES) {
+                variableValues.put(variable, values.getString(variable));
+            }
+            return variableValues;
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Helper helper;
+        while ((helper = idleHelpers.poll()) != null) {
+            helper.destroy();
+        }
+    }
+
+    private Helper start() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (maxHeap != null) {
+            command.add("-Xmx" + maxHeap);
+        }
+        // an analysis running out of memory ends its helper instead of leaving it in an unknown state
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-Dlog4j.configuration=" + LOG4J_CONFIGURATION);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StaticAnalysisHelper.class.getName());
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        Helper helper = new Helper(helperIds.incrementAndGet(), process);
+        LOGGER.info("Started static analysis helper {}", helper.id);
+        return helper;
+    }
+
+    private void release(Helper helper) {
+        if (closed) {
+            discard(helper, "closed");
+        } else if (helper.served >= requestsPerHelper) {
+            discard(helper, "recycled");
+            try {
+                idleHelpers.add(start());
+            } catch (IOException e) {
+                // the next request starts one
+                LOGGER.error("Error when starting a static analysis helper");
+                LOGGER.error(e.getMessage());
+            }
+        } else {
+            idleHelpers.add(helper);
+        }
+    }
+
+    private void discard(Helper helper, String reason) {
+        LOGGER.info("Stopping static analysis helper {} after {} analyses ({})", helper.id, helper.served, reason);
+        PipelineMetrics.increment(PipelineMetrics.STATIC_ANALYSIS_HELPER_EXITS, "reason", reason);
+        helper.destroy();
+    }
+
+    private static class Helper {
+
+        // marks the end of the standard output of the helper
+        private static final JSONObject EXITED = new JSONObject();
+
+        private final int id;
+        private final Process process;
+        private final PrintWriter requests;
+        private final BlockingQueue<JSONObject> responses = new LinkedBlockingQueue<>();
+        private int served = 0;
+
+        private Helper(int id, Process process) {
+            this.id = id;
+            this.process = process;
+            this.requests = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), true);
+            // the responses are read apart, so that the wait for one can time out
+            Thread reader = new Thread(this::readResponses, "static-analysis-helper-" + id);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private JSONObject request(JSONObject request, long timeoutSeconds) throws Exception {
+            requests.println(request);
+            if (requests.checkError()) {
+                throw new IOException("Static analysis helper " + id + " is not running");
+            }
+            JSONObject response = responses.poll(timeoutSeconds, TimeUnit.SECONDS);
+            if (response == null) {
+                throw new TimeoutException("Static analysis of " + request.get("tag") + " not completed within " + timeoutSeconds + " seconds");
+            }
+            if (response == EXITED) {
+                throw new IOException("Static analysis helper " + id + " exited during the analysis of " + request.get("tag"));
+            }
+            served++;
+            return response;
+        }
+
+        private void readResponses() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("{")) {
+                        // the JVM itself reports on the standard output, e.g. the out of memory error ending the helper
+                        LOGGER.warn("Static analysis helper {}: {}", id, line);
+                        continue;
+                    }
+                    responses.add(new JSONObject(line));
+                }
+            } catch (Exception e) {
+                LOGGER.error("Error when reading the responses of static analysis helper {}", id);
+                LOGGER.error(e.getMessage());
+            }
+            responses.add(EXITED);
+        }
+
+        private boolean isAlive() {
+            return process.isAlive();
+        }
+
+        private void destroy() {
+            requests.close();
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ch.uzh.testsonsustainability;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense int ids of the strings of a repository (emails, logins), so that the records store an int per string and
+ * each string is kept once.
+ */
+class StringIds {
+
+    static final int NONE = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Id of the string, assigned on its first occurrence. A null string has the id {@link #NONE}.
+     */
+    int id(String string) {
+        if (string == null) {
+            return NONE;
+        }
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            ids.put(string, id);
+            strings.add(string);
+        }
+        return id;
+    }
+
+    String get(int id) {
+        return id == NONE ? null : strings.get(id);
+    }
+
+    int size() {
+        return strings.size();
+    }
+}
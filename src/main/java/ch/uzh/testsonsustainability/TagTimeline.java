@@ -0,0 +1,83 @@
+package ch.uzh.testsonsustainability;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tags of a repository sorted by the commit date of the commit they point to, read once per job from the refs of the
+ * local clone, so that the tags current at the months of a job are found in one merge of the sorted tags with the
+ * ascending dates rather than by listing the tags and their commits through github every month.
+ */
+class TagTimeline {
+
+    private final long[] times;
+    private final String[] names;
+
+    private TagTimeline(long[] times, String[] names) {
+        this.times = times;
+        this.names = names;
+    }
+
+    /**
+     * Tags of the clone, annotated tags are peeled to their commit and the tags of other objects are ignored.
+     */
+    static TagTimeline read(Git git) throws IOException, GitAPIException {
+        List<Tag> tags = new ArrayList<>();
+        try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+            for (Ref tagRef : git.tagList().call()) {
+                RevObject target = revWalk.peel(revWalk.parseAny(tagRef.getObjectId()));
+                if (target instanceof RevCommit) {
+                    // the commit date, as github reports it for the commit of a tag
+                    tags.add(new Tag(((RevCommit) target).getCommitterIdent().getWhen().getTime(), Repository.shortenRefName(tagRef.getName())));
+                }
+            }
+        }
+        // tags of the same commit date are ordered by name, so that the same tag is picked on every run
+        tags.sort(Comparator.comparingLong((Tag tag) -> tag.time).thenComparing(tag -> tag.name));
+        long[] times = new long[tags.size()];
+        String[] names = new String[tags.size()];
+        for (int i = 0; i < tags.size(); i++) {
+            times[i] = tags.get(i).time;
+            names[i] = tags.get(i).name;
+        }
+        return new TagTimeline(times, names);
+    }
+
+    /**
+     * Latest tag whose commit is strictly before each of the dates, given in ascending order, null if there is none,
+     * resolved in one pass over the tags.
+     */
+    List<String> tagsAt(List<Date> dates) {
+        List<String> tags = new ArrayList<>(dates.size());
+        int next = 0;
+        for (Date date : dates) {
+            while (next < times.length && times[next] < date.getTime()) {
+                next++;
+            }
+            tags.add(next == 0 ? null : names[next - 1]);
+        }
+        return tags;
+    }
+
+    private static class Tag {
+
+        private final long time;
+        private final String name;
+
+        private Tag(long time, String name) {
+            this.time = time;
+            this.name = name;
+        }
+    }
+}
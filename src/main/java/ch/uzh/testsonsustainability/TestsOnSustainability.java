@@ -2,12 +2,13 @@ package ch.uzh.testsonsustainability;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import it.unisa.testSmellDiffusion.main.CalculateMetrics;
-import it.unisa.testSmellDiffusion.main.StaticAnalysisOutput;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.cli.*;
-import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.jgit.api.Git;
 import org.kohsuke.github.GHIssueState;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.client.RestTemplate;
@@ -19,9 +20,19 @@ import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Month;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class TestsOnSustainability {
@@ -38,6 +49,34 @@ public class TestsOnSustainability {
         options.addOption("u", "github-username", true, "Username for accessing the github api");
         options.addOption("t", "github-token", true, "Access token for accessing the github api");
         options.addOption("j", "job-api-base-url", true, "Url of the base REST API to get next job to execute");
+        options.addOption("g", "github-api-url", true, "Url of the github API (default " + Utils.GITHUB_API_URL + ")");
+        options.addOption("i", "incremental", false, "Only compute the months elapsed since the results stored in the out path");
+        options.addOption("m", "metrics-interval", true, "Seconds between two exports of the pipeline metrics to the out path (default 60)");
+        options.addOption("s", "dependency-scopes", true, "Comma separated maven scopes of the links used for the dependency variables, e.g. compile,runtime (default all)");
+        options.addOption("D", "graph-daemon-port", true, "Only load the dependency graph from the csv data path and serve it to the workers on this loopback port");
+        options.addOption("E", "graph-refresh-interval", true, "Seconds between two merges of the links and releases appended to " + Utils.CSV_MAVEN_LINKS_DELTA_FILENAME + " and " + Utils.ARTIFACT_RELEASES_DELTA_FILENAME + " in the csv data path into the graph served, in graph daemon mode (default 0, never)");
+        options.addOption("G", "graph-url", true, "Url of a dependency graph daemon to use instead of loading the dependency graph");
+        options.addOption("C", "coordinator-port", true, "Only serve the jobs API for the projects in the csv data path on this port, keeping its journal in the out path");
+        options.addOption("L", "lease-seconds", true, "Seconds a job is leased to a worker without heartbeat, in coordinator mode (default 600)");
+        options.addOption("A", "max-attempts", true, "Attempts of a job before it is marked as failed, in coordinator mode (default 3)");
+        options.addOption("b", "heartbeat-interval", true, "Seconds between two heartbeats extending the lease of the current job, 0 to disable (default 60)");
+        options.addOption("M", "metrics", true, "Comma separated variables to compute, e.g. commits,issues, only the data they need is retrieved (default all)");
+        options.addOption("X", "approximate-variables", true, "Comma separated transitive counts to estimate from cardinality sketches propagated over the dependency graph instead of counting them, t_upstreams and/or t_downstreams");
+        options.addOption("e", "sketch-error", true, "Relative standard error of the estimated transitive counts, setting the size of the sketches (default " + ApproximateCounts.DEFAULT_RELATIVE_ERROR + ")");
+        options.addOption("q", "github-graphql", false, "Retrieve the commits and issues through the github GraphQL API, in pages of 100 commits and 100 issues per query");
+        options.addOption("a", "github-archive", true, "Directory of github event dumps in the GH Archive format (*.json.gz), scanned once for the commits, issues and contributors of all the projects in the csv data path instead of retrieving them through the github API, and for the dormancy of each dependency that t_d_upstreams needs, also in graph daemon and bulk dependency table mode");
+        options.addOption("T", "incremental-checkout", false, "Clone without checkout and move the working tree, index and HEAD of the clone from the tag of a month to the next by applying their tree diff before each static analysis, so that the analysis finds its tag checked out");
+        options.addOption("R", "api-budget-reserve", true, "Plan the github API calls of each job from the counts of its repository, postponing the job until the rate limit resets when the calls left minus this reserve cannot pay for it, and skipping cc_degree when a whole rate limit window cannot");
+        options.addOption("B", "bulk-dependency-table", false, "Only compute the dependency variables of all the projects in the csv data path for every month since the starting year, writing them to a table in the out path");
+        options.addOption("J", "dependency-table", true, "Dependency table computed with --bulk-dependency-table, joined against instead of loading the dependency graph");
+        options.addOption("P", "http-max-per-host", true, "Concurrent requests per host of the HTTP client shared by the github and job API traffic, also the idle connections kept alive per host (default 8)");
+        options.addOption("O", "http-read-timeout", true, "Seconds the HTTP client waits for the data of a response before failing the request (default 60)");
+        options.addOption("H", "analysis-helpers", true, "Run the static analysis in this number of long-lived helper JVMs instead of the worker JVM, so that an analysis running out of memory or hanging only fails its months, 0 for one per worker thread, as a job analyses one month at a time");
+        options.addOption("x", "analysis-max-heap", true, "Maximum heap of each static analysis helper JVM, bounding the heap of one analysis, e.g. 4g (default the JVM default)");
+        options.addOption("w", "analysis-timeout", true, "Seconds a static analysis helper JVM is given for the analysis of a tag before it is killed (default 3600)");
+        options.addOption("r", "analysis-recycle", true, "Analyses served by a static analysis helper JVM before it is replaced by a fresh one (default 100)");
+        options.addOption("W", "worker-threads", true, "Jobs run at the same time by the worker, each asking the jobs API for its own jobs (default 1)");
+        options.addOption("K", "repository-cache-size", true, "Repositories whose github and clone derived variables are kept for the jobs of their other artifacts (default 16)");
         options.addOption("h", "help", false, "Print this message");
 
         return options;
@@ -52,13 +91,7 @@ public class TestsOnSustainability {
 
     public static void main(String[] args) throws Exception {
 
-        String csvPath = null;
-        String outPath = null;
-        String clonePath = null;
-        int startingYear = 2019;
-        String gitHubUsername = null;
-        String gitHubToken = null;
-        String jobApiBaseUrl = null;
+        AnalysisSettings settings = new AnalysisSettings();
 
         CommandLineParser parser = new DefaultParser();
         Options options = createCLIOptions();
@@ -71,43 +104,126 @@ public class TestsOnSustainability {
                 System.exit(0);
             } else {
                 if (line.hasOption("d")) {
-                    csvPath = Utils.normalizePath(line.getOptionValue("d"));
+                    settings.csvPath = Utils.normalizePath(line.getOptionValue("d"));
                 } else {
                     exitWithError("Option --csv-data-path is mandatory", formatter, options);
                 }
+                if (line.hasOption("a")) {
+                    settings.githubArchivePath = Utils.normalizePath(line.getOptionValue("a"));
+                }
+                if (line.hasOption("D")) {
+                    runGraphDaemon(settings.csvPath, Integer.parseInt(line.getOptionValue("D")), Long.parseLong(line.getOptionValue("E", "0")), settings.githubArchivePath);
+                    return;
+                }
                 if (line.hasOption("o")) {
-                    outPath = Utils.normalizePath(line.getOptionValue("o"));
+                    settings.outPath = Utils.normalizePath(line.getOptionValue("o"));
                 } else {
                     exitWithError("Option --out-path is mandatory", formatter, options);
                 }
+                if (line.hasOption("C")) {
+                    long leaseSeconds = Long.parseLong(line.getOptionValue("L", "600"));
+                    int maxAttempts = Integer.parseInt(line.getOptionValue("A", "3"));
+                    new JobCoordinator(settings.csvPath, settings.outPath, Integer.parseInt(line.getOptionValue("C")), leaseSeconds, maxAttempts).start();
+                    return;
+                }
+                if (line.hasOption("B")) {
+                    // the table only needs the maven data, for the months since the starting year and in the scopes of the workers
+                    if (line.hasOption("y")) {
+                        settings.startingYear = Integer.parseInt(line.getOptionValue("y"));
+                    } else {
+                        exitWithError("Option --starting-year is mandatory", formatter, options);
+                    }
+                    if (line.hasOption("s")) {
+                        settings.dependencyScopes = DependencyScope.parseList(line.getOptionValue("s"));
+                    }
+                    runBulkDependencyTable(settings.csvPath, settings.outPath, settings.startingYear, settings.dependencyScopes, settings.githubArchivePath);
+                    return;
+                }
                 if (line.hasOption("c")) {
                     String cloneRoot = Utils.normalizePath(line.getOptionValue("c"));
                     String cloneSubDir = String.valueOf(Instant.now().getEpochSecond());
-                    clonePath = Utils.normalizePath(cloneRoot + "run-" + cloneSubDir);
-                    Files.createDirectories(Paths.get(clonePath));
+                    settings.clonePath = Utils.normalizePath(cloneRoot + "run-" + cloneSubDir);
+                    Files.createDirectories(Paths.get(settings.clonePath));
                 } else {
                     exitWithError("Option --clone-path is mandatory", formatter, options);
                 }
                 if (line.hasOption("y")) {
-                    startingYear = Integer.parseInt(line.getOptionValue("y"));
+                    settings.startingYear = Integer.parseInt(line.getOptionValue("y"));
                 } else {
                     exitWithError("Option --starting-year is mandatory", formatter, options);
                 }
                 if (line.hasOption("u")) {
-                    gitHubUsername = line.getOptionValue("u");
+                    settings.gitHubUsername = line.getOptionValue("u");
                 } else {
                     exitWithError("Option --github-username is mandatory", formatter, options);
                 }
                 if (line.hasOption("t")) {
-                    gitHubToken = line.getOptionValue("t");
+                    settings.gitHubToken = line.getOptionValue("t");
                 } else {
                     exitWithError("Option --github-token is mandatory", formatter, options);
                 }
                 if (line.hasOption("j")) {
-                    jobApiBaseUrl = line.getOptionValue("j");
+                    settings.jobApiBaseUrl = line.getOptionValue("j");
                 } else {
                     exitWithError("Option --job-api-url is mandatory", formatter, options);
                 }
+                if (line.hasOption("g")) {
+                    settings.gitHubApiUrl = line.getOptionValue("g");
+                }
+                settings.gitHubGraphQL = line.hasOption("q");
+                settings.incrementalCheckout = line.hasOption("T");
+                if (line.hasOption("W")) {
+                    settings.workerThreads = Integer.parseInt(line.getOptionValue("W"));
+                }
+                if (line.hasOption("H")) {
+                    settings.analysisHelpers = Integer.parseInt(line.getOptionValue("H"));
+                    settings.analysisMaxHeap = line.getOptionValue("x");
+                    settings.analysisTimeoutSeconds = Long.parseLong(line.getOptionValue("w", "3600"));
+                    settings.analysisRecycle = Integer.parseInt(line.getOptionValue("r", "100"));
+                }
+                if (line.hasOption("K")) {
+                    settings.repositoryCacheSize = Integer.parseInt(line.getOptionValue("K"));
+                }
+                if (line.hasOption("R")) {
+                    settings.apiBudgetReserve = Integer.parseInt(line.getOptionValue("R"));
+                }
+                if (line.hasOption("P")) {
+                    settings.httpMaxPerHost = Integer.parseInt(line.getOptionValue("P"));
+                }
+                if (line.hasOption("O")) {
+                    settings.httpReadTimeoutSeconds = Integer.parseInt(line.getOptionValue("O"));
+                }
+                if (line.hasOption("J")) {
+                    settings.dependencyTablePath = line.getOptionValue("J");
+                }
+                settings.incremental = line.hasOption("i");
+                if (line.hasOption("m")) {
+                    settings.metricsIntervalSeconds = Long.parseLong(line.getOptionValue("m"));
+                }
+                if (line.hasOption("s")) {
+                    settings.dependencyScopes = DependencyScope.parseList(line.getOptionValue("s"));
+                }
+                if (line.hasOption("G")) {
+                    settings.graphUrl = line.getOptionValue("G");
+                }
+                if (line.hasOption("b")) {
+                    settings.heartbeatIntervalSeconds = Long.parseLong(line.getOptionValue("b"));
+                }
+                if (line.hasOption("M")) {
+                    try {
+                        settings.metrics = MetricPlanner.parse(line.getOptionValue("M"));
+                    } catch (IllegalArgumentException e) {
+                        exitWithError(e.getMessage(), formatter, options);
+                    }
+                }
+                if (line.hasOption("X")) {
+                    try {
+                        settings.approximateCounts = ApproximateCounts.parse(line.getOptionValue("X"),
+                                Double.parseDouble(line.getOptionValue("e", String.valueOf(ApproximateCounts.DEFAULT_RELATIVE_ERROR))));
+                    } catch (IllegalArgumentException e) {
+                        exitWithError(e.getMessage(), formatter, options);
+                    }
+                }
             }
         }
         catch( ParseException exp ) {
@@ -116,24 +232,108 @@ public class TestsOnSustainability {
             System.exit(1);
         }
 
-        runAnalysis(csvPath, outPath, clonePath, startingYear, Pair.of(gitHubUsername, gitHubToken), jobApiBaseUrl);
+        runAnalysis(settings);
 
     }
 
-    private static void runAnalysis(String csvPath, String outPath, String clonePath, int startingYear, Pair<String, String> ghUserPassword, String jobApiBaseUrl) throws Exception {
+    private static void runGraphDaemon(String csvPath, int port, long refreshIntervalSeconds, String githubArchivePath) throws Exception {
+        DependencyGraphServer server = new DependencyGraphServer(loadGraph(csvPath, githubArchivePath == null ? null
+                : GithubArchive.load(githubArchivePath, csvPath, Runtime.getRuntime().availableProcessors())), port);
+        server.start();
+        if (refreshIntervalSeconds > 0) {
+            server.startRefresh(refreshIntervalSeconds);
+        }
+        // the server threads keep the daemon running until it is stopped
+    }
+
+    private static void runBulkDependencyTable(String csvPath, String outPath, int startingYear, Set<DependencyScope> dependencyScopes, String githubArchivePath) throws Exception {
+        // the months of the workers, identified by the date they end
+        List<LocalDate> untilLocalDates = Lists.newArrayList();
+        LocalDate today = LocalDate.now();
+        for (LocalDate iteratorDate = LocalDate.of(startingYear, Month.JANUARY, 1); iteratorDate.isBefore(today); iteratorDate = iteratorDate.plusMonths(1)) {
+            untilLocalDates.add(iteratorDate.plusMonths(1));
+        }
+        try (PipelineMetrics.Timer timer = PipelineMetrics.time("dependency_table")) {
+            DependencyTable.write(loadGraph(csvPath, githubArchivePath == null ? null
+                    : GithubArchive.load(githubArchivePath, csvPath, Runtime.getRuntime().availableProcessors())),
+                    csvPath, untilLocalDates, dependencyScopes, outPath + Utils.DEPENDENCY_TABLE_FILENAME);
+        }
+    }
+
+    /**
+     * Loads the dependency graph of the csv path, with the dormancy of each dependency if the github archive is given.
+     */
+    private static MavenCentralInfo loadGraph(String csvPath, GithubArchive githubArchive) throws Exception {
         MavenCentralInfo mavenCentralInfo = new MavenCentralInfo(csvPath);
-        Domains domains = new Domains(csvPath);
+        if (githubArchive != null) {
+            // the archive has the commits of all the projects, so each dependency is dormant on its own
+            LOGGER.info("Establishing the dormancy of the transitive dependencies from the github archive");
+            mavenCentralInfo.setDormantGHRepos(githubArchive::isDormant);
+        }
+        return mavenCentralInfo;
+    }
 
-        String csvFileInputPath = csvPath + Utils.CSV_INPUT_FILENAME;
-        Map<String, PrintWriter> csvOutput = Utils.csvOutput(outPath);
+    private static void runAnalysis(AnalysisSettings settings) throws Exception {
+        String outPath = settings.outPath;
+        Set<DependencyScope> dependencyScopes = settings.dependencyScopes;
+        MetricPlanner selectedMetrics = settings.metrics;
+        if (settings.approximateCounts != null) {
+            LOGGER.info("Estimating transitive counts from sketches: {}", settings.approximateCounts);
+        }
+        SharedHttpClient httpClient = new SharedHttpClient(settings.httpMaxPerHost, settings.httpReadTimeoutSeconds);
+        // the commits, issues and contributors of all the projects are read in one scan of the archive before the first job
+        GithubArchive githubArchive = settings.githubArchivePath == null ? null
+                : GithubArchive.load(settings.githubArchivePath, settings.csvPath, Runtime.getRuntime().availableProcessors());
+        DependencyLookup mavenCentralInfo;
+        if (!selectedMetrics.needs(DataSource.MAVEN_GRAPH)) {
+            mavenCentralInfo = null;
+        } else if (settings.dependencyTablePath != null) {
+            LOGGER.info("Joining the dependency variables against the dependency table {}", settings.dependencyTablePath);
+            mavenCentralInfo = DependencyTable.read(settings.dependencyTablePath, dependencyScopes);
+        } else if (settings.graphUrl == null) {
+            mavenCentralInfo = loadGraph(settings.csvPath, githubArchive);
+        } else {
+            LOGGER.info("Using the dependency graph served on {}", settings.graphUrl);
+            mavenCentralInfo = new DependencyGraphClient(new RestTemplate(httpClient.requestFactory()), settings.graphUrl);
+        }
+        // counting the transitive dependencies on the dormancy of the project would fill the same file with another variable
+        boolean dependencyDormancy = mavenCentralInfo == null || mavenCentralInfo.hasDependencyDormancy();
+        if (selectedMetrics.computes("t_d_upstreams") && !dependencyDormancy) {
+            if (!selectedMetrics.isAll()) {
+                throw new IllegalArgumentException("t_d_upstreams needs the dormancy of each dependency: give --github-archive to the worker, "
+                        + "or to the graph daemon or bulk dependency table it uses, or leave t_d_upstreams out of --metrics");
+            }
+            LOGGER.warn("Not computing t_d_upstreams, which needs the dormancy of each dependency from --github-archive");
+        }
+        MetricPlanner metricPlanner = dependencyDormancy ? selectedMetrics : selectedMetrics.without("t_d_upstreams");
+        LOGGER.info("Computing {} from {}", metricPlanner.getVariables(), metricPlanner.getDataSources());
+        Domains domains = new Domains(settings.csvPath);
+        // one github client for all the jobs, whose requests go through the shared connections
+        HttpConnector githubConnector = new CountingHttpConnector(httpClient);
+        GitHub gitHub = GithubAPI.connect(settings.gitHubApiUrl, settings.ghUserPassword(), githubConnector);
+        ApiBudgetPlanner budgetPlanner = settings.apiBudgetReserve == null ? null
+                : new ApiBudgetPlanner(gitHub, new GithubGraphQL(settings.gitHubApiUrl, settings.gitHubToken, githubConnector), settings.apiBudgetReserve);
 
-        LocalDate startingDate = LocalDate.of(startingYear, Month.JANUARY, 1);
         LocalDate today = LocalDate.now();
 
+        IncrementalResults storedResults = settings.incremental ? IncrementalResults.load(outPath, metricPlanner.getVariables()) : null;
+        if (storedResults != null && storedResults.isEmpty()) {
+            LOGGER.info("No previous results found in {}, computing all months", outPath);
+        }
+        IncrementalResults previousResults = storedResults == null || storedResults.isEmpty() ? null : storedResults;
+        // the rows we extend start from the first month of the previous results, whatever the starting year
+        LocalDate startingDate = previousResults == null ? LocalDate.of(settings.startingYear, Month.JANUARY, 1) : previousResults.getFirstMonth();
+        if (previousResults != null) {
+            previousResults.snapshot(outPath);
+        }
+
+        Map<String, PrintWriter> csvOutput = Utils.csvOutput(outPath, metricPlanner.getVariables());
+        PipelineMetrics.startExporter(outPath, settings.metricsIntervalSeconds);
+
         List<String> yearMonthBetweenDates = Lists.newArrayList();
-        yearMonthBetweenDates.add("Project name");
+        yearMonthBetweenDates.add(Utils.PROJECT_NAME_HEADER);
         for (LocalDate iteratorDate = startingDate; iteratorDate.isBefore(today); iteratorDate = iteratorDate.plusMonths(1)) {
-            yearMonthBetweenDates.add(iteratorDate.getYear() + "-" + iteratorDate.getMonth());
+            yearMonthBetweenDates.add(Utils.monthHeader(iteratorDate));
         }
 
         String fileHeaderString = String.join(",", yearMonthBetweenDates);
@@ -141,220 +341,462 @@ public class TestsOnSustainability {
             printWriter.println(fileHeaderString);
         }
 
-        try {
-            RestTemplate restTemplate = new RestTemplate();
-            Job job = restTemplate.getForObject(jobApiBaseUrl + Utils.GET_JOB_TO_DO_ENDPOINT, Job.class);
+        // the static analyses of a job run apart, while the job goes on with its other variables
+        ExecutorService analysisExecutor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("static-analysis-%d").setDaemon(true).build());
+        StaticAnalysisPool analysisPool = settings.createAnalysisPool();
+        RunContext run = new RunContext(settings, metricPlanner, gitHub, githubConnector, githubArchive, domains, budgetPlanner, analysisExecutor, analysisPool);
+        // the artifacts of a repository share its github and clone derived variables
+        RepositoryCache repositoryCache = new RepositoryCache(settings.repositoryCacheSize);
+
+        // each worker thread asks for its own jobs, with its own lease
+        Callable<Void> worker = () -> {
+            JobApiClient jobApi = new JobApiClient(new RestTemplate(httpClient.requestFactory()), settings.jobApiBaseUrl, settings.heartbeatIntervalSeconds);
+            Job job = jobApi.getJobToDo();
             while (job != null) {
                 String projName = job.getProject();
                 String cloneLink = job.getGithubLink();
                 LOGGER.info("Got job to execute with id = {}, project = {}, and github link = {}", job.getId(), projName, cloneLink);
+                PipelineMetrics.startJob(job.getId(), projName);
 
+                Integer repositorySizeKb = null;
+                boolean sharedRepository = false;
                 try {
-                    File cloneDir = new File(clonePath + "/" + projName.replace(":", "/"));
-                    cloneDir.mkdirs();
-                    Git git = Git.cloneRepository()
-                            .setURI(cloneLink)
-                            .setDirectory(cloneDir)
-                            .call();
+                    LocalDate resumeDate = previousResults == null ? null : previousResults.getResumeMonth(projName);
+                    LocalDate firstMonth = resumeDate == null ? startingDate : resumeDate;
+                    if (!firstMonth.isBefore(today)) {
+                        LOGGER.info("Project {} is already up to date", projName);
+                        LOGGER.info(PipelineMetrics.finishJob("skipped"));
+                        jobApi.jobDone(job);
+                        job = jobApi.getJobToDo();
+                        continue;
+                    }
+                    // dormancy looks back one year, so the retrieved history has to cover the year before the first new month
+                    LocalDate retrievalDate = resumeDate == null ? startingDate : resumeDate.minusMonths(12);
+
                     String repoName = cloneLink.split("github.com/")[1];
+                    List<LocalDate> untilLocalDates = Lists.newArrayList();
+                    for (LocalDate iteratorDate = firstMonth; iteratorDate.isBefore(today); iteratorDate = iteratorDate.plusMonths(1)) {
+                        untilLocalDates.add(iteratorDate.plusMonths(1));
+                    }
+
+                    // the counts of the versions of all months are computed in one batch, a version is usually current for several months
+                    Map<LocalDate, String> monthArtifactTags = Maps.newHashMap();
+                    Map<String, DependencyCounts> dependencyCounts = Maps.newHashMap();
+                    if (metricPlanner.needs(DataSource.MAVEN_GRAPH)) {
+                        try (PipelineMetrics.Timer timer = PipelineMetrics.time("dependency_counts")) {
+                            List<String> artifactTags = mavenCentralInfo.getCurrentVersionArtifactTags(projName, untilLocalDates);
+                            for (int i = 0; i < untilLocalDates.size(); i++) {
+                                monthArtifactTags.put(untilLocalDates.get(i), artifactTags.get(i));
+                            }
+                            // artifact tags not in the dependency graph have no counts
+                            dependencyCounts = mavenCentralInfo.getDependencyCounts(artifactTags, dependencyScopes, settings.approximateCounts);
+                        }
+                    }
+                    // the maven variables, q90 and cc_degree included, are only computed for the months with a version in the graph
+                    Set<LocalDate> versionMonths = Sets.newHashSet();
+                    for (LocalDate untilLocalDate : untilLocalDates) {
+                        if (dependencyCounts.containsKey(monthArtifactTags.get(untilLocalDate))) {
+                            versionMonths.add(untilLocalDate);
+                        }
+                    }
 
-                    GithubAPI github = new GithubAPI(repoName, domains, startingYear, git, ghUserPassword);
+                    String jobId = job.getId();
+                    AtomicBoolean computedRepository = new AtomicBoolean(false);
+                    RepositoryCache.Results repository = repositoryCache.get(repoName, firstMonth, () -> {
+                        computedRepository.set(true);
+                        return computeRepository(run, jobId, projName, cloneLink, repoName, retrievalDate, untilLocalDates, versionMonths, today);
+                    });
+                    // a job taking the variables of another artifact is reported as such, so that the job cost model does
+                    // not learn the size of the repository with the duration of the maven variables alone
+                    sharedRepository = !computedRepository.get();
+                    GithubAPI github = repository.getGithub();
+                    repositorySizeKb = repository.getRepositorySizeKb();
 
                     Map<String, StringBuilder> variableValues = Maps.newHashMap();
                     for (String variableName : csvOutput.keySet()) {
                         variableValues.put(variableName, new StringBuilder());
                     }
 
-                    Date untilDate = new Date();
-
-                    for (LocalDate iteratorDate = startingDate; iteratorDate.isBefore(today); iteratorDate = iteratorDate.plusMonths(1)) {
-
-                        LocalDate sinceLocalDate = iteratorDate;
-                        LocalDate untilLocalDate = sinceLocalDate.plusMonths(1);
-                        // we need the deprecated java date type to use the GHAPI library
-                        Date sinceDate = new Date(sinceLocalDate.getYear() - 1900, sinceLocalDate.getMonthValue() - 1, sinceLocalDate.getDayOfMonth());
-                        untilDate = new Date(untilLocalDate.getYear() - 1900, untilLocalDate.getMonthValue() - 1, untilLocalDate.getDayOfMonth());
-
-                        LOGGER.info("Starting github extraction");
-
-                        variableValues.get("commits").append(",").append(github.getNumberOfCommits(sinceDate, untilDate));
-                        variableValues.get("contributors").append(",").append(github.getNumberOfContributors(sinceDate, untilDate));
-                        variableValues.get("u_contributors").append(",").append(github.getNumberOfUniversityContributors(sinceDate, untilDate));
-                        variableValues.get("c_contributors").append(",").append(github.getNumberOfCommercialContributors(sinceDate, untilDate));
-
-                        variableValues.get("issues").append(",").append(github.getNumberOfIssues(GHIssueState.ALL, sinceDate, untilDate));
-                        variableValues.get("non_dev_issues").append(",").append(github.getNumberOfNonDevIssues(GHIssueState.ALL, sinceDate, untilDate));
-                        variableValues.get("submitters").append(",").append(github.getNumberOfSubmitters(GHIssueState.ALL, sinceDate, untilDate));
-                        variableValues.get("non_dev_submitters").append(",").append(github.getNumberOfNonDevSubmitters(GHIssueState.ALL, sinceDate, untilDate));
-
-                        variableValues.get("open_issues").append(",").append(github.getNumberOfIssues(GHIssueState.OPEN, sinceDate, untilDate));
-                        variableValues.get("non_dev_open_issues").append(",").append(github.getNumberOfNonDevIssues(GHIssueState.OPEN, sinceDate, untilDate));
-                        variableValues.get("open_issues_submitters").append(",").append(github.getNumberOfSubmitters(GHIssueState.OPEN, sinceDate, untilDate));
-                        variableValues.get("non_dev_open_issues_submitters").append(",").append(github.getNumberOfNonDevSubmitters(GHIssueState.OPEN, sinceDate, untilDate));
-
-                        variableValues.get("closed_issues").append(",").append(github.getNumberOfIssues(GHIssueState.CLOSED, sinceDate, untilDate));
-                        variableValues.get("non_dev_closed_issues").append(",").append(github.getNumberOfNonDevIssues(GHIssueState.CLOSED, sinceDate, untilDate));
-                        variableValues.get("closed_issues_submitters").append(",").append(github.getNumberOfSubmitters(GHIssueState.CLOSED, sinceDate, untilDate));
-                        variableValues.get("non_dev_closed_issues_submitters").append(",").append(github.getNumberOfNonDevSubmitters(GHIssueState.CLOSED, sinceDate, untilDate));
-
-                        String artifactTag = mavenCentralInfo.getCurrentVersionArtifactTag(projName, untilLocalDate);
-                        if (mavenCentralInfo.artifactTagExists(artifactTag)) {
-                            variableValues.get("upstreams").append(",").append(mavenCentralInfo.getDependencies(artifactTag).size());
-                            variableValues.get("downstreams").append(",").append(mavenCentralInfo.getDependants(artifactTag).size());
-                            variableValues.get("t_upstreams").append(",").append(mavenCentralInfo.getTransitiveDependencies(artifactTag).size());
-                            variableValues.get("t_downstreams").append(",").append(mavenCentralInfo.getTransitiveDependants(artifactTag).size());
-                            variableValues.get("d_upstreams").append(",").append(mavenCentralInfo.getDormantDependencies(artifactTag, untilLocalDate, github).size());
-                            variableValues.get("q90").append(",").append(github.getSizeOfTheCoreTeam(sinceDate, untilDate));
-                            variableValues.get("cc_degree").append(",").append(github.getSocialTies(sinceDate, untilDate));
-                            variableValues.get("dc_katz").append(",").append(mavenCentralInfo.katzCentrality(projName, untilLocalDate));
-                        } else {
-                            LOGGER.error("Artifact tag {} not found in maven dependency graph. Thus setting all maven dependent variables to null", artifactTag);
-                            List<String> mavenVariables = Lists.newArrayList("upstreams", "downstreams", "t_upstreams", "t_downstreams", "d_upstreams", "q90", "cc_degree", "dc_katz");
-                            for (String mavenVariable : mavenVariables) {
-                                variableValues.get(mavenVariable).append(", null");
+                    for (LocalDate untilLocalDate : untilLocalDates) {
+                        if (metricPlanner.needs(DataSource.MAVEN_GRAPH)) {
+                            String artifactTag = monthArtifactTags.get(untilLocalDate);
+                            if (versionMonths.contains(untilLocalDate)) {
+                                DependencyCounts artifactTagCounts = dependencyCounts.get(artifactTag);
+                                appendValue(variableValues, "upstreams", artifactTagCounts::getUpstreams);
+                                appendValue(variableValues, "downstreams", artifactTagCounts::getDownstreams);
+                                appendValue(variableValues, "t_upstreams", artifactTagCounts::getTransitiveUpstreams);
+                                appendValue(variableValues, "t_downstreams", artifactTagCounts::getTransitiveDownstreams);
+                                appendValue(variableValues, "d_upstreams", () -> mavenCentralInfo.getNumberOfDormantDependencies(artifactTag, untilLocalDate, github, dependencyScopes));
+                                appendValue(variableValues, "t_d_upstreams", () -> mavenCentralInfo.getNumberOfTransitiveDormantDependencies(artifactTag, untilLocalDate, dependencyScopes));
+                                appendValue(variableValues, "q90", () -> repository.getMonthValue("q90", untilLocalDate));
+                                appendValue(variableValues, "cc_degree", () -> repository.getMonthValue("cc_degree", untilLocalDate));
+                                appendValue(variableValues, "dc_katz", () -> mavenCentralInfo.katzCentrality(projName, untilLocalDate, dependencyScopes));
+                            } else {
+                                LOGGER.error("Artifact tag {} not found in maven dependency graph. Thus setting all maven dependent variables to null", artifactTag);
+                                for (String mavenVariable : MetricPlanner.MAVEN_VARIABLES) {
+                                    if (variableValues.containsKey(mavenVariable)) {
+                                        append(variableValues.get(mavenVariable), null);
+                                    }
+                                }
                             }
                         }
+                    }
 
-                        String branch = github.getBranchAtDate(untilDate);
-
-                        LOGGER.info("Starting calculation of static factors");
-                        try {
-                            StaticAnalysisOutput output = CalculateMetrics.calculateMetrics(cloneDir.getAbsolutePath(), branch);
-                            variableValues.get("ar").append(",").append(output.getAr());
-                            variableValues.get("dc").append(",").append(output.getDc());
-                            variableValues.get("ec_t").append(",").append(output.getEcJUnit());
-                            variableValues.get("ec_p").append(",").append(output.getEcProject());
-                            variableValues.get("et").append(",").append(output.getEt());
-                            variableValues.get("fto").append(",").append(output.getFto());
-                            variableValues.get("cdsbp").append(",").append(output.getIsCDSBP());
-                            variableValues.get("cc").append(",").append(output.getIsComplexClass());
-                            variableValues.get("fd").append(",").append(output.getIsFuctionalDecomposition());
-                            variableValues.get("gc").append(",").append(output.getIsGodClass());
-                            variableValues.get("mc").append(",").append(output.getIsMisplacedClass());
-                            variableValues.get("sc").append(",").append(output.getIsSpaghettiCode());
-                            variableValues.get("it").append(",").append(output.getIt());
-                            variableValues.get("loc_t").append(",").append(output.getLocJUnit());
-                            variableValues.get("loc_p").append(",").append(output.getLocProject());
-                            variableValues.get("lt").append(",").append(output.getLt());
-                            variableValues.get("mg").append(",").append(output.getMg());
-                            variableValues.get("noc").append(",").append(output.getNumberOfClasses());
-                            variableValues.get("notc").append(",").append(output.getNumberOfTestClasses());
-                            variableValues.get("ro").append(",").append(output.getRo());
-                            variableValues.get("se").append(",").append(output.getSe());
-                            variableValues.get("st").append(",").append(output.getSmellyJUnit());
-                            variableValues.get("wmc_t").append(",").append(output.getWmcJUnit());
-                            variableValues.get("wmc_p").append(",").append(output.getWmcProject());
-                        } catch (Exception e) {
-                            LOGGER.error(e.getMessage());
-                            variableValues.get("ar").append(",").append("ERROR");
-                            variableValues.get("dc").append(",").append("ERROR");
-                            variableValues.get("ec_t").append(",").append("ERROR");
-                            variableValues.get("ec_p").append(",").append("ERROR");
-                            variableValues.get("et").append(",").append("ERROR");
-                            variableValues.get("fto").append(",").append("ERROR");
-                            variableValues.get("cdsbp").append(",").append("ERROR");
-                            variableValues.get("cc").append(",").append("ERROR");
-                            variableValues.get("fd").append(",").append("ERROR");
-                            variableValues.get("gc").append(",").append("ERROR");
-                            variableValues.get("mc").append(",").append("ERROR");
-                            variableValues.get("sc").append(",").append("ERROR");
-                            variableValues.get("it").append(",").append("ERROR");
-                            variableValues.get("loc_t").append(",").append("ERROR");
-                            variableValues.get("loc_p").append(",").append("ERROR");
-                            variableValues.get("lt").append(",").append("ERROR");
-                            variableValues.get("mg").append(",").append("ERROR");
-                            variableValues.get("noc").append(",").append("ERROR");
-                            variableValues.get("notc").append(",").append("ERROR");
-                            variableValues.get("ro").append(",").append("ERROR");
-                            variableValues.get("se").append(",").append("ERROR");
-                            variableValues.get("st").append(",").append("ERROR");
-                            variableValues.get("wmc_t").append(",").append("ERROR");
-                            variableValues.get("wmc_p").append(",").append("ERROR");
-
+                    for (String repositoryVariable : repository.getVariables()) {
+                        if (!MetricPlanner.MAVEN_VARIABLES.contains(repositoryVariable)) {
+                            for (LocalDate untilLocalDate : untilLocalDates) {
+                                appendAnalysed(variableValues, repositoryVariable, repository.getMonthValue(repositoryVariable, untilLocalDate));
+                            }
                         }
-                        LOGGER.info("Calculation of static factors completed");
                     }
-                    
+
                     LOGGER.info("Calculating dependent variable");
-                    variableValues.get("dormant").append(",").append(github.isDormant(untilDate));
+                    appendAnalysed(variableValues, "dormant", repository.isDormant());
                   
                     LOGGER.info("Writing files");
 
-                    csvOutput.get("commits").println(projName + "" + variableValues.get("commits").toString());
-                    csvOutput.get("contributors").println(projName + "" + variableValues.get("contributors").toString());
-                    csvOutput.get("u_contributors").println(projName + "" + variableValues.get("u_contributors").toString());
-                    csvOutput.get("c_contributors").println(projName + "" + variableValues.get("c_contributors").toString());
-                    csvOutput.get("issues").println(projName + "" + variableValues.get("issues").toString());
-                    csvOutput.get("non_dev_issues").println(projName + "" + variableValues.get("non_dev_issues").toString());
-                    csvOutput.get("submitters").println(projName + "" + variableValues.get("submitters").toString());
-                    csvOutput.get("non_dev_submitters").println(projName + "" + variableValues.get("non_dev_submitters").toString());
-                    csvOutput.get("open_issues").println(projName + "" + variableValues.get("open_issues").toString());
-                    csvOutput.get("non_dev_open_issues").println(projName + "" + variableValues.get("non_dev_open_issues").toString());
-                    csvOutput.get("open_issues_submitters").println(projName + "" + variableValues.get("open_issues_submitters").toString());
-                    csvOutput.get("non_dev_open_issues_submitters").println(projName + "" + variableValues.get("non_dev_open_issues_submitters").toString());
-                    csvOutput.get("closed_issues").println(projName + "" + variableValues.get("closed_issues").toString());
-                    csvOutput.get("non_dev_closed_issues").println(projName + "" + variableValues.get("non_dev_closed_issues").toString());
-                    csvOutput.get("closed_issues_submitters").println(projName + "" + variableValues.get("closed_issues_submitters").toString());
-                    csvOutput.get("non_dev_closed_issues_submitters").println(projName + "" + variableValues.get("non_dev_closed_issues_submitters").toString());
-                    csvOutput.get("upstreams").println(projName + "" + variableValues.get("upstreams").toString());
-                    csvOutput.get("downstreams").println(projName + "" + variableValues.get("downstreams").toString());
-                    csvOutput.get("t_upstreams").println(projName + "" + variableValues.get("t_upstreams").toString());
-                    csvOutput.get("t_downstreams").println(projName + "" + variableValues.get("t_downstreams").toString());
-                    csvOutput.get("d_upstreams").println(projName + "" + variableValues.get("d_upstreams").toString());
-                    csvOutput.get("q90").println(projName + "" + variableValues.get("q90").toString());
-                    csvOutput.get("cc_degree").println(projName + "" + variableValues.get("cc_degree").toString());
-                    csvOutput.get("dc_katz").println(projName + "" + variableValues.get("cc_degree").toString());
-                    csvOutput.get("ar").println(projName + "" + variableValues.get("ar").toString());
-                    csvOutput.get("dc").println(projName + "" + variableValues.get("dc").toString());
-                    csvOutput.get("ec_t").println(projName + "" + variableValues.get("ec_t").toString());
-                    csvOutput.get("ec_p").println(projName + "" + variableValues.get("ec_p").toString());
-                    csvOutput.get("et").println(projName + "" + variableValues.get("et").toString());
-                    csvOutput.get("fto").println(projName + "" + variableValues.get("fto").toString());
-                    csvOutput.get("cdsbp").println(projName + "" + variableValues.get("cdsbp").toString());
-                    csvOutput.get("cc").println(projName + "" + variableValues.get("cc").toString());
-                    csvOutput.get("fd").println(projName + "" + variableValues.get("fd").toString());
-                    csvOutput.get("gc").println(projName + "" + variableValues.get("gc").toString());
-                    csvOutput.get("mc").println(projName + "" + variableValues.get("mc").toString());
-                    csvOutput.get("sc").println(projName + "" + variableValues.get("sc").toString());
-                    csvOutput.get("it").println(projName + "" + variableValues.get("it").toString());
-                    csvOutput.get("loc_t").println(projName + "" + variableValues.get("loc_t").toString());
-                    csvOutput.get("loc_p").println(projName + "" + variableValues.get("loc_p").toString());
-                    csvOutput.get("lt").println(projName + "" + variableValues.get("lt").toString());
-                    csvOutput.get("mg").println(projName + "" + variableValues.get("mg").toString());
-                    csvOutput.get("noc").println(projName + "" + variableValues.get("noc").toString());
-                    csvOutput.get("notc").println(projName + "" + variableValues.get("notc").toString());
-                    csvOutput.get("ro").println(projName + "" + variableValues.get("ro").toString());
-                    csvOutput.get("se").println(projName + "" + variableValues.get("se").toString());
-                    csvOutput.get("st").println(projName + "" + variableValues.get("st").toString());
-                    csvOutput.get("wmc_t").println(projName + "" + variableValues.get("wmc_t").toString());
-                    csvOutput.get("wmc_p").println(projName + "" + variableValues.get("wmc_p").toString());
-
-                    csvOutput.get("dormant").println(projName + "" + variableValues.get("dormant").toString());
-                    deleteDirectory(cloneDir);
+                    try (PipelineMetrics.Timer timer = PipelineMetrics.time("writing")) {
+                        // the rows of a job are written together, whatever the other workers write
+                        synchronized (csvOutput) {
+                            for (Map.Entry<String, PrintWriter> variableOutput : csvOutput.entrySet()) {
+                                String variableName = variableOutput.getKey();
+                                String newValues = variableValues.get(variableName).toString();
+                                if (previousResults == null) {
+                                    variableOutput.getValue().println(projName + newValues);
+                                } else {
+                                    variableOutput.getValue().println(previousResults.extendRow(variableName, projName, firstMonth, newValues));
+                                }
+                            }
+                        }
+                    }
+
+                    LOGGER.info(PipelineMetrics.finishJob("done"));
 
                     // mark job as completed and get next job to execute
-                    restTemplate.postForLocation(jobApiBaseUrl + Utils.POST_DONE_JOB_ENDPOINT, job.getId());
+                    jobApi.jobDone(job, repositorySizeKb, sharedRepository);
                     LOGGER.info("Marked the job as done. id = {}, project = {}, and github link = {}", job.getId(), projName, cloneLink);
-                    job = restTemplate.getForObject(jobApiBaseUrl + Utils.GET_JOB_TO_DO_ENDPOINT, Job.class);
+                    job = jobApi.getJobToDo();
                 } catch (Exception e){
                     // GENERAL FAILURE
                     LOGGER.error("Error in processing project {} from {}", projName, cloneLink);
                     LOGGER.error(e.getMessage());
+                    LOGGER.info(PipelineMetrics.finishJob("failed"));
 
                     // mark job as failed and get next job to execute
-                    restTemplate.postForLocation(jobApiBaseUrl + Utils.POST_FAILED_JOB_ENDPOINT, job.getId());
+                    jobApi.jobFailed(job, repositorySizeKb);
                     LOGGER.info("Marked the job as failed. id = {}, project = {}, and github link = {}", job.getId(), projName, cloneLink);
-                    job = restTemplate.getForObject(jobApiBaseUrl + Utils.GET_JOB_TO_DO_ENDPOINT, Job.class);
+                    job = jobApi.getJobToDo();
+                }
+            }
+            return null;
+        };
+
+        try {
+            if (settings.workerThreads == 1) {
+                worker.call();
+            } else {
+                LOGGER.info("Running {} jobs at the same time", settings.workerThreads);
+                ExecutorService workers = Executors.newFixedThreadPool(settings.workerThreads, new ThreadFactoryBuilder().setNameFormat("worker-%d").build());
+                try {
+                    for (Future<Void> workerThread : workers.invokeAll(Collections.nCopies(settings.workerThreads, worker))) {
+                        workerThread.get();
+                    }
+                } finally {
+                    workers.shutdownNow();
                 }
             }
         } finally {
+            if (previousResults != null) {
+                // carry over the rows of the projects that have not been extended in this run
+                for (Map.Entry<String, PrintWriter> variableOutput : csvOutput.entrySet()) {
+                    for (String row : previousResults.getRemainingRows(variableOutput.getKey())) {
+                        variableOutput.getValue().println(row);
+                    }
+                }
+            }
             for (PrintWriter printWriter : csvOutput.values()) {
                 printWriter.close();
             }
+            analysisExecutor.shutdownNow();
+            if (analysisPool != null) {
+                analysisPool.close();
+            }
+            PipelineMetrics.stopExporter(outPath);
         }
         LOGGER.info("Completed writing files");
     }
 
+    /**
+     * Clients and settings shared by the jobs of a run.
+     */
+    private static class RunContext {
+
+        private final AnalysisSettings settings;
+        // the variables computed, the selected ones that the maven data can provide
+        private final MetricPlanner metricPlanner;
+        private final GitHub gitHub;
+        private final HttpConnector githubConnector;
+        private final GithubArchive githubArchive;
+        private final Domains domains;
+        private final ApiBudgetPlanner budgetPlanner;
+        private final ExecutorService analysisExecutor;
+        private final StaticAnalysisPool analysisPool;
+
+        private RunContext(AnalysisSettings settings, MetricPlanner metricPlanner, GitHub gitHub, HttpConnector githubConnector, GithubArchive githubArchive,
+                           Domains domains, ApiBudgetPlanner budgetPlanner, ExecutorService analysisExecutor, StaticAnalysisPool analysisPool) {
+            this.settings = settings;
+            this.metricPlanner = metricPlanner;
+            this.gitHub = gitHub;
+            this.githubConnector = githubConnector;
+            this.githubArchive = githubArchive;
+            this.domains = domains;
+            this.budgetPlanner = budgetPlanner;
+            this.analysisExecutor = analysisExecutor;
+            this.analysisPool = analysisPool;
+        }
+    }
+
+    /**
+     * Clones the repository, retrieves its github data and computes its github and clone derived variables for the
+     * months of the job, see {@link RepositoryCache}. q90 and cc_degree are only computed for the version months, those
+     * whose version of the artifact is in the maven graph; the other artifacts of the repository compute the other
+     * months they need through the results.
+     */
+    private static RepositoryCache.Results computeRepository(RunContext run, String jobId, String projName, String cloneLink, String repoName, LocalDate retrievalDate, List<LocalDate> untilLocalDates, Set<LocalDate> versionMonths, LocalDate today) throws Exception {
+        AnalysisSettings settings = run.settings;
+        MetricPlanner metricPlanner = run.metricPlanner;
+        // the job waits until the rate limit left can pay for its planned calls, or runs without cc_degree
+        ApiBudgetPlanner.Plan plan = null;
+        if (run.budgetPlanner != null) {
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("api_planning")) {
+                int retrievalMonths = (int) ChronoUnit.MONTHS.between(retrievalDate, today) + 1;
+                // the social ties are only planned for the version months
+                plan = run.budgetPlanner.plan(repoName, new Date(retrievalDate.getYear() - 1900, retrievalDate.getMonthValue() - 1, 1), retrievalMonths, versionMonths.size(), metricPlanner, settings.gitHubGraphQL);
+            }
+        }
+        boolean socialTies = plan == null || plan.hasSocialTies();
+
+        File cloneDir = new File(settings.clonePath + "/" + projName.replace(":", "/"));
+        Git git = null;
+        if (metricPlanner.needs(DataSource.CLONE)) {
+            cloneDir.mkdirs();
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("clone")) {
+                // without static analysis the clone is only used to filter the commits, so no working tree is needed,
+                // and with incremental checkout the working tree is written tag by tag
+                git = Git.cloneRepository()
+                        .setURI(cloneLink)
+                        .setDirectory(cloneDir)
+                        .setNoCheckout(!metricPlanner.needs(DataSource.CHECKOUT) || settings.incrementalCheckout)
+                        .call();
+            }
+        }
+        GithubAPI github;
+        try (PipelineMetrics.Timer timer = PipelineMetrics.time("github_retrieval")) {
+            GithubGraphQL graphQL = settings.gitHubGraphQL && run.githubArchive == null ? new GithubGraphQL(settings.gitHubApiUrl, settings.gitHubToken, run.githubConnector) : null;
+            github = new GithubAPI(repoName, run.domains, new Date(retrievalDate.getYear() - 1900, retrievalDate.getMonthValue() - 1, 1), git, run.gitHub, graphQL, run.githubArchive, metricPlanner.getDataSources());
+        }
+        // on the commits retrieved, without the clone, so that the other artifacts can compute them for their months
+        Map<String, RepositoryCache.MonthComputation> onDemand = Maps.newHashMap();
+        if (metricPlanner.computes("q90")) {
+            onDemand.put("q90", untilLocalDate -> github.getSizeOfTheCoreTeam(monthStart(untilLocalDate.minusMonths(1)), monthStart(untilLocalDate)));
+        }
+        if (metricPlanner.computes("cc_degree")) {
+            onDemand.put("cc_degree", untilLocalDate -> socialTies ? github.getSocialTies(monthStart(untilLocalDate.minusMonths(1)), monthStart(untilLocalDate)) : null);
+        }
+
+        // the tag analysed in each month is resolved in one pass over the tags of the clone
+        Map<LocalDate, String> monthTags = Maps.newHashMap();
+        if (metricPlanner.needs(DataSource.CHECKOUT)) {
+            try (PipelineMetrics.Timer timer = PipelineMetrics.time("tags")) {
+                List<Date> untilDates = Lists.newArrayList();
+                for (LocalDate untilLocalDate : untilLocalDates) {
+                    untilDates.add(new Date(untilLocalDate.getYear() - 1900, untilLocalDate.getMonthValue() - 1, untilLocalDate.getDayOfMonth()));
+                }
+                List<String> tags = TagTimeline.read(git).tagsAt(untilDates);
+                for (int i = 0; i < untilLocalDates.size(); i++) {
+                    monthTags.put(untilLocalDates.get(i), tags.get(i));
+                }
+            }
+        }
+
+        FutureTask<Map<LocalDate, Map<String, String>>> staticAnalyses = null;
+        // counted down once the analyses have stopped using the clone, even when they were cancelled
+        CountDownLatch staticAnalysesEnded = new CountDownLatch(1);
+        if (metricPlanner.needs(DataSource.CHECKOUT)) {
+            Git analysedGit = git;
+            FutureTask<Map<LocalDate, Map<String, String>>> analyses = new FutureTask<>(() -> analyseTags(projName, untilLocalDates, monthTags, cloneDir, settings.incrementalCheckout ? analysedGit : null, run.analysisPool));
+            run.analysisExecutor.execute(() -> {
+                try {
+                    analyses.run();
+                } finally {
+                    staticAnalysesEnded.countDown();
+                }
+            });
+            staticAnalyses = analyses;
+        }
+
+        Map<String, Map<LocalDate, Object>> monthValues = Maps.newHashMap();
+        Date lastUntilDate = new Date();
+        try {
+            for (LocalDate untilLocalDate : untilLocalDates) {
+
+                LocalDate sinceLocalDate = untilLocalDate.minusMonths(1);
+                // we need the deprecated java date type to use the GHAPI library
+                Date sinceDate = new Date(sinceLocalDate.getYear() - 1900, sinceLocalDate.getMonthValue() - 1, sinceLocalDate.getDayOfMonth());
+                Date untilDate = new Date(untilLocalDate.getYear() - 1900, untilLocalDate.getMonthValue() - 1, untilLocalDate.getDayOfMonth());
+                lastUntilDate = untilDate;
+
+                LOGGER.info("Starting github extraction");
+
+                computeValue(monthValues, metricPlanner, "commits", untilLocalDate, () -> github.getNumberOfCommits(sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "contributors", untilLocalDate, () -> github.getNumberOfContributors(sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "u_contributors", untilLocalDate, () -> github.getNumberOfUniversityContributors(sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "c_contributors", untilLocalDate, () -> github.getNumberOfCommercialContributors(sinceDate, untilDate));
+
+                computeValue(monthValues, metricPlanner, "issues", untilLocalDate, () -> github.getNumberOfIssues(GHIssueState.ALL, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "non_dev_issues", untilLocalDate, () -> github.getNumberOfNonDevIssues(GHIssueState.ALL, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "submitters", untilLocalDate, () -> github.getNumberOfSubmitters(GHIssueState.ALL, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "non_dev_submitters", untilLocalDate, () -> github.getNumberOfNonDevSubmitters(GHIssueState.ALL, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "backlog_issues", untilLocalDate, () -> github.getNumberOfOpenIssuesAt(untilDate));
+                computeValue(monthValues, metricPlanner, "resolved_issues", untilLocalDate, () -> github.getNumberOfIssuesClosedBetween(sinceDate, untilDate));
+
+                computeValue(monthValues, metricPlanner, "open_issues", untilLocalDate, () -> github.getNumberOfIssues(GHIssueState.OPEN, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "non_dev_open_issues", untilLocalDate, () -> github.getNumberOfNonDevIssues(GHIssueState.OPEN, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "open_issues_submitters", untilLocalDate, () -> github.getNumberOfSubmitters(GHIssueState.OPEN, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "non_dev_open_issues_submitters", untilLocalDate, () -> github.getNumberOfNonDevSubmitters(GHIssueState.OPEN, sinceDate, untilDate));
+
+                computeValue(monthValues, metricPlanner, "closed_issues", untilLocalDate, () -> github.getNumberOfIssues(GHIssueState.CLOSED, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "non_dev_closed_issues", untilLocalDate, () -> github.getNumberOfNonDevIssues(GHIssueState.CLOSED, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "closed_issues_submitters", untilLocalDate, () -> github.getNumberOfSubmitters(GHIssueState.CLOSED, sinceDate, untilDate));
+                computeValue(monthValues, metricPlanner, "non_dev_closed_issues_submitters", untilLocalDate, () -> github.getNumberOfNonDevSubmitters(GHIssueState.CLOSED, sinceDate, untilDate));
+
+                if (versionMonths.contains(untilLocalDate)) {
+                    for (Map.Entry<String, RepositoryCache.MonthComputation> variable : onDemand.entrySet()) {
+                        computeValue(monthValues, metricPlanner, variable.getKey(), untilLocalDate, () -> variable.getValue().compute(untilLocalDate));
+                    }
+                }
+            }
+
+            if (staticAnalyses != null) {
+                Map<LocalDate, Map<String, String>> monthAnalyses;
+                try (PipelineMetrics.Timer timer = PipelineMetrics.time("static_analysis_wait")) {
+                    monthAnalyses = staticAnalyses.get();
+                }
+                for (LocalDate untilLocalDate : untilLocalDates) {
+                    Map<String, String> staticValues = monthAnalyses.get(untilLocalDate);
+                    for (String staticVariable : MetricPlanner.STATIC_ANALYSIS_VARIABLES) {
+                        if (metricPlanner.computes(staticVariable)) {
+                            monthValues.computeIfAbsent(staticVariable, variable -> Maps.newHashMap())
+                                    .put(untilLocalDate, staticValues == null ? "ERROR" : staticValues.get(staticVariable));
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            if (staticAnalyses != null) {
+                staticAnalyses.cancel(true);
+                // the analysis in the worker JVM does not stop when interrupted, so the job waits for the month being
+                // analysed, rather than leaving an analysis running over the clone while the next job starts
+                staticAnalysesEnded.await();
+            }
+            throw e;
+        }
+        boolean dormant = github.isDormant(lastUntilDate);
+
+        if (git != null) {
+            deleteDirectory(cloneDir);
+        }
+        if (plan != null) {
+            run.budgetPlanner.finish(plan, jobId);
+        }
+        return new RepositoryCache.Results(github, github.getRepositorySize(), monthValues, onDemand, dormant);
+    }
+
+    // the local date in the deprecated java date type of the GHAPI library
+    private static Date monthStart(LocalDate localDate) {
+        return new Date(localDate.getYear() - 1900, localDate.getMonthValue() - 1, localDate.getDayOfMonth());
+    }
+
+    /**
+     * Analyses the tag of each month in turn, in the helpers of the pool if any. The values of a month are missing when
+     * its analysis failed. With the git of the clone, the working tree of the clone is moved from a tag to the next by
+     * a {@link CheckoutManager} before each analysis.
+     */
+    private static Map<LocalDate, Map<String, String>> analyseTags(String projName, List<LocalDate> untilLocalDates, Map<LocalDate, String> monthTags, File cloneDir, Git incrementalGit, StaticAnalysisPool analysisPool) throws Exception {
+        Map<LocalDate, Map<String, String>> monthAnalyses = Maps.newHashMap();
+        String analysedPath = cloneDir.getAbsolutePath();
+        // the manager is closed by the thread using it, whether the analyses complete or not
+        try (CheckoutManager checkoutManager = incrementalGit == null ? null : new CheckoutManager(incrementalGit.getRepository())) {
+            for (LocalDate untilLocalDate : untilLocalDates) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // the job failed, and gave up on the months left
+                    throw new InterruptedException("Static analysis of " + projName + " cancelled");
+                }
+                String branch = monthTags.get(untilLocalDate);
+
+                LOGGER.info("Starting calculation of static factors");
+                try {
+                    if (checkoutManager != null) {
+                        try (PipelineMetrics.Timer timer = PipelineMetrics.time("checkout")) {
+                            checkoutManager.moveTo(branch);
+                        }
+                    }
+                    try (PipelineMetrics.Timer timer = PipelineMetrics.time("static_analysis")) {
+                        monthAnalyses.put(untilLocalDate, analysisPool == null
+                                ? StaticAnalysisHelper.analyse(analysedPath, branch)
+                                : analysisPool.analyse(analysedPath, branch));
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    LOGGER.error(e.getMessage());
+                }
+                LOGGER.info("Calculation of static factors completed");
+            }
+            if (checkoutManager != null) {
+                LOGGER.info("Materialised the tags of {} with {} bytes written", projName, checkoutManager.getTotalBytes());
+            }
+        }
+        return monthAnalyses;
+    }
+
+    /**
+     * Computes the value of the variable for the month, if the variable is computed in this run.
+     */
+    private static void computeValue(Map<String, Map<LocalDate, Object>> monthValues, MetricPlanner metricPlanner, String variableName, LocalDate untilLocalDate, Callable<Object> computation) throws Exception {
+        if (!metricPlanner.computes(variableName)) {
+            return;
+        }
+        try (PipelineMetrics.Timer timer = PipelineMetrics.timeVariable(variableName)) {
+            monthValues.computeIfAbsent(variableName, variable -> Maps.newHashMap()).put(untilLocalDate, computation.call());
+        }
+    }
+
+    /**
+     * Computes and appends the value of the variable, if the variable is computed in this run.
+     */
+    private static void appendValue(Map<String, StringBuilder> variableValues, String variableName, Callable<Object> computation) throws Exception {
+        if (!variableValues.containsKey(variableName)) {
+            return;
+        }
+        try (PipelineMetrics.Timer timer = PipelineMetrics.timeVariable(variableName)) {
+            append(variableValues.get(variableName), computation.call());
+        }
+    }
+
+    private static void appendAnalysed(Map<String, StringBuilder> variableValues, String variableName, Object value) {
+        if (variableValues.containsKey(variableName)) {
+            append(variableValues.get(variableName), value);
+        }
+    }
+
+    // values that are not available, e.g. cc_degree when the social ties are not computed, are written as the values of
+    // the months without a version
+    private static void append(StringBuilder values, Object value) {
+        values.append(value == null ? ", null" : "," + value);
+    }
+
     public static boolean deleteDirectory(File directoryToBeDeleted) {
         File[] allContents = directoryToBeDeleted.listFiles();
         if (allContents != null) {
@@ -0,0 +1,107 @@
+package ch.uzh.testsonsustainability;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.stream.IntStream;
+
+/**
+ * Records of a repository sorted by time, stored as columns of primitive arrays. The records of a month are a range
+ * of indexes found by binary search.
+ */
+abstract class TimeRecords {
+
+    protected final long[] times;
+
+    protected TimeRecords(long[] times) {
+        this.times = times;
+    }
+
+    int size() {
+        return times.length;
+    }
+
+    long getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Index of the first record strictly after since.
+     */
+    int from(Date since) {
+        return firstIndexAbove(since.getTime());
+    }
+
+    /**
+     * Index after the last record strictly before until.
+     */
+    int to(Date until) {
+        return firstIndexAbove(until.getTime() - 1);
+    }
+
+    private int firstIndexAbove(long time) {
+        return firstIndexAbove(times, time);
+    }
+
+    /**
+     * Index of the first of the sorted times strictly above the time.
+     */
+    protected static int firstIndexAbove(long[] times, long time) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Order of the records of the given times, so that the builders can sort their columns by time.
+     */
+    protected static int[] timeOrder(long[] times, int size) {
+        return IntStream.range(0, size).boxed()
+                .sorted((first, second) -> Long.compare(times[first], times[second]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    protected static long[] sorted(long[] column, int[] order) {
+        long[] sortedColumn = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedColumn[i] = column[order[i]];
+        }
+        return sortedColumn;
+    }
+
+    protected static int[] sorted(int[] column, int[] order) {
+        int[] sortedColumn = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedColumn[i] = column[order[i]];
+        }
+        return sortedColumn;
+    }
+
+    protected static byte[] sorted(byte[] column, int[] order) {
+        byte[] sortedColumn = new byte[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedColumn[i] = column[order[i]];
+        }
+        return sortedColumn;
+    }
+
+    protected static long[] grow(long[] column, int size) {
+        return size < column.length ? column : Arrays.copyOf(column, column.length * 2);
+    }
+
+    protected static int[] grow(int[] column, int size) {
+        return size < column.length ? column : Arrays.copyOf(column, column.length * 2);
+    }
+
+    protected static byte[] grow(byte[] column, int size) {
+        return size < column.length ? column : Arrays.copyOf(column, column.length * 2);
+    }
+}
@@ -0,0 +1,309 @@
+package ch.uzh.testsonsustainability;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Estimates of the number of nodes reachable from every node of a graph, from HyperLogLog sketches propagated in one
+ * pass over the graph condensed into its strongly connected components.
+ *
+ * The components are found with Tarjan's algorithm, which completes a component after all the components it reaches,
+ * so each component is sketched once, from its own nodes and the sketches of the components its links point to. The
+ * nodes of a component reach the same nodes, so they share its estimate, less the node itself, as the exact counts do
+ * not count it. A sketch is dropped once every component pointing to it has been sketched, and small sketches hold
+ * their registers as a sorted list, so that the many artifact tags with a small closure take a few bytes rather than
+ * the registers of a full sketch. Only some of the nodes may be counted, e.g. the dormant ones, the sketches then
+ * holding only the counted nodes reached.
+ */
+class TransitiveSketches {
+
+    static final int MIN_PRECISION = 4;
+    static final int MAX_PRECISION = 16;
+
+    private TransitiveSketches() {
+    }
+
+    /**
+     * Precision, the log2 of the number of registers, of the sketches whose estimates have at most the relative
+     * standard error 1.04 / sqrt(registers).
+     */
+    static int precision(double relativeError) {
+        double registers = Math.pow(1.04 / relativeError, 2);
+        int precision = (int) Math.ceil(Math.log(registers) / Math.log(2));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    /**
+     * Estimated number of nodes reachable from each node through the links in the scope mask, the node itself not
+     * counted. The graph is given as adjacency arrays: the links of node i are at offsets[i] to offsets[i + 1] of the
+     * targets and scopes.
+     */
+    static int[] estimateReachable(int[] offsets, int[] targets, byte[] scopes, byte scopeMask, int precision) {
+        return estimateReachable(offsets, targets, scopes, scopeMask, null, precision);
+    }
+
+    /**
+     * Estimated number of counted nodes reachable from each node, the node itself not counted, all the nodes being
+     * counted if counted is null.
+     */
+    static int[] estimateReachable(int[] offsets, int[] targets, byte[] scopes, byte scopeMask, BitSet counted, int precision) {
+        int nodes = offsets.length - 1;
+        Components components = new Components(offsets, targets, scopes, scopeMask);
+
+        // links from other components, a sketch is dropped when all of them have been followed
+        int[] pendingLinks = new int[components.count];
+        for (int node = 0; node < nodes; node++) {
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                if ((scopes[i] & scopeMask) != 0 && components.of[targets[i]] != components.of[node]) {
+                    pendingLinks[components.of[targets[i]]]++;
+                }
+            }
+        }
+
+        Sketch[] sketches = new Sketch[components.count];
+        long[] componentEstimates = new long[components.count];
+        // components are numbered in the order they are completed, so the components they reach come first
+        for (int component = 0; component < components.count; component++) {
+            Sketch sketch = new Sketch(precision);
+            for (int m = components.starts[component]; m < components.starts[component + 1]; m++) {
+                int node = components.members[m];
+                if (counted == null || counted.get(node)) {
+                    sketch.add(node);
+                }
+                for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                    int target = components.of[targets[i]];
+                    if ((scopes[i] & scopeMask) != 0 && target != component) {
+                        sketch.merge(sketches[target]);
+                        if (--pendingLinks[target] == 0) {
+                            sketches[target] = null;
+                        }
+                    }
+                }
+            }
+            componentEstimates[component] = Math.round(sketch.estimate());
+            if (pendingLinks[component] > 0) {
+                sketches[component] = sketch;
+            }
+        }
+
+        int[] estimates = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            long reached = componentEstimates[components.of[node]] - (counted == null || counted.get(node) ? 1 : 0);
+            estimates[node] = (int) Math.max(0, reached);
+        }
+        return estimates;
+    }
+
+    /**
+     * Strongly connected components of the links in scope, numbered in the order Tarjan's algorithm completes them,
+     * with their members listed contiguously. The visit keeps its own stack, as the dependency chains are too deep for
+     * the call stack.
+     */
+    private static class Components {
+
+        private final int[] of;
+        private final int[] members;
+        private final int[] starts;
+        private int count = 0;
+
+        private Components(int[] offsets, int[] targets, byte[] scopes, byte scopeMask) {
+            int nodes = offsets.length - 1;
+            of = new int[nodes];
+            members = new int[nodes];
+            int[] startList = new int[nodes + 1];
+            int[] index = new int[nodes];
+            int[] lowLink = new int[nodes];
+            boolean[] onStack = new boolean[nodes];
+            int[] stack = new int[nodes];
+            int stackSize = 0;
+            // the nodes being visited, with the next link each one follows
+            int[] callNodes = new int[nodes];
+            int[] callLinks = new int[nodes];
+            Arrays.fill(index, -1);
+            int nextIndex = 0;
+            int nextMember = 0;
+
+            for (int root = 0; root < nodes; root++) {
+                if (index[root] >= 0) {
+                    continue;
+                }
+                int depth = 0;
+                callNodes[0] = root;
+                callLinks[0] = offsets[root];
+                index[root] = lowLink[root] = nextIndex++;
+                stack[stackSize++] = root;
+                onStack[root] = true;
+                while (depth >= 0) {
+                    int node = callNodes[depth];
+                    int link = callLinks[depth];
+                    if (link < offsets[node + 1]) {
+                        callLinks[depth]++;
+                        if ((scopes[link] & scopeMask) == 0) {
+                            continue;
+                        }
+                        int target = targets[link];
+                        if (index[target] < 0) {
+                            index[target] = lowLink[target] = nextIndex++;
+                            stack[stackSize++] = target;
+                            onStack[target] = true;
+                            depth++;
+                            callNodes[depth] = target;
+                            callLinks[depth] = offsets[target];
+                        } else if (onStack[target]) {
+                            lowLink[node] = Math.min(lowLink[node], index[target]);
+                        }
+                        continue;
+                    }
+                    if (lowLink[node] == index[node]) {
+                        startList[count] = nextMember;
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            of[member] = count;
+                            members[nextMember++] = member;
+                        } while (member != node);
+                        count++;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callNodes[depth];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                    }
+                }
+            }
+            startList[count] = nextMember;
+            starts = Arrays.copyOf(startList, count + 1);
+        }
+    }
+
+    /**
+     * HyperLogLog sketch of 2^precision registers, held as a sorted list of its non zero registers, each encoded as
+     * its index and value, until the list would take a quarter of the registers.
+     */
+    static class Sketch {
+
+        private final int precision;
+        private int[] sparse = new int[0];
+        private byte[] registers = null;
+
+        Sketch(int precision) {
+            this.precision = precision;
+        }
+
+        void add(int node) {
+            long hash = mix(node);
+            int register = (int) (hash >>> (64 - precision));
+            // the position of the first one bit of the other bits, bounded for a hash whose other bits are all zero
+            int value = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+            if (registers != null) {
+                registers[register] = (byte) Math.max(registers[register], value);
+            } else {
+                merge(new int[]{register << 8 | value}, 1);
+            }
+        }
+
+        void merge(Sketch other) {
+            if (other.registers != null) {
+                densify();
+                for (int i = 0; i < registers.length; i++) {
+                    registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+                }
+            } else if (registers != null) {
+                for (int entry : other.sparse) {
+                    registers[entry >>> 8] = (byte) Math.max(registers[entry >>> 8], entry & 0xff);
+                }
+            } else {
+                merge(other.sparse, other.sparse.length);
+            }
+        }
+
+        // merges sorted sparse entries into the sparse entries of the sketch, keeping the larger value of a register
+        void merge(int[] entries, int length) {
+            int[] merged = new int[sparse.length + length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < sparse.length || j < length) {
+                int entry;
+                if (j == length || (i < sparse.length && sparse[i] >>> 8 < entries[j] >>> 8)) {
+                    entry = sparse[i++];
+                } else if (i == sparse.length || entries[j] >>> 8 < sparse[i] >>> 8) {
+                    entry = entries[j++];
+                } else {
+                    entry = Math.max(sparse[i++], entries[j++]);
+                }
+                merged[size++] = entry;
+            }
+            sparse = Arrays.copyOf(merged, size);
+            if (sparse.length > (1 << precision) / 4) {
+                densify();
+            }
+        }
+
+        private void densify() {
+            if (registers == null) {
+                registers = new byte[1 << precision];
+                for (int entry : sparse) {
+                    registers[entry >>> 8] = (byte) (entry & 0xff);
+                }
+                sparse = null;
+            }
+        }
+
+        boolean isSparse() {
+            return registers == null;
+        }
+
+        // value of the register, whether the sketch is sparse or not
+        int register(int register) {
+            if (registers != null) {
+                return registers[register];
+            }
+            for (int entry : sparse) {
+                if (entry >>> 8 == register) {
+                    return entry & 0xff;
+                }
+            }
+            return 0;
+        }
+
+        double estimate() {
+            int m = 1 << precision;
+            double sum = 0;
+            int zeros = 0;
+            if (registers != null) {
+                for (byte register : registers) {
+                    sum += 1.0 / (1L << register);
+                    if (register == 0) {
+                        zeros++;
+                    }
+                }
+            } else {
+                zeros = m - sparse.length;
+                sum = zeros;
+                for (int entry : sparse) {
+                    sum += 1.0 / (1L << (entry & 0xff));
+                }
+            }
+            double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+            double estimate = alpha * m * m / sum;
+            // linear counting is more accurate for the small cardinalities
+            if (estimate <= 2.5 * m && zeros > 0) {
+                estimate = m * Math.log((double) m / zeros);
+            }
+            return estimate;
+        }
+
+        // finaliser of murmur3, spreading the bits of the node id over the hash
+        private static long mix(int node) {
+            long hash = node;
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
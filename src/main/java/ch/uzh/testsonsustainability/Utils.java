@@ -7,6 +7,9 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Collection;
 
 public class Utils {
 
@@ -14,14 +17,22 @@ public class Utils {
     public static final String CSV_INPUT_FILENAME = "githubs_sorted_for_stars.csv";
     public static final String CSV_MAVEN_LINKS_FILENAME = "links_all.csv";
     public static final String ALL_ARTIFACT_RELEASES_FILENAME = "release_all.csv";
+    public static final String CSV_MAVEN_LINKS_DELTA_FILENAME = "links_delta.csv";
+    public static final String ARTIFACT_RELEASES_DELTA_FILENAME = "release_delta.csv";
+    public static final String DEPENDENCY_TABLE_FILENAME = "dependency_table.csv";
+    public static final String GITHUB_API_URL = "https://api.github.com";
     public static final String GET_JOB_TO_DO_ENDPOINT = "/jobs/get-job-to-do";
     public static final String POST_DONE_JOB_ENDPOINT = "/jobs/job-done";
     public static final String POST_CANCEL_JOB_ENDPOINT = "/jobs/cancel-job";
     public static final String POST_FAILED_JOB_ENDPOINT = "/jobs/job-failed";
+    public static final String POST_HEARTBEAT_JOB_ENDPOINT = "/jobs/heartbeat";
     public static final String GET_JOBS_TO_DO_ENDPOINT = "/jobs/get-jobs-to-do";
     public static final String GET_DOING_JOBS_ENDPOINT = "/jobs/get-doing-jobs";
     public static final String GET_DONE_JOBS_ENDPOINT = "/jobs/get-done-jobs";
     public static final String GET_FAILED_JOBS_ENDPOINT = "/jobs/get-failed-jobs";
+    public static final String REPOSITORY_SIZE_KB_PARAMETER = "repositorySizeKb";
+    public static final String SHARED_REPOSITORY_PARAMETER = "sharedRepository";
+    public static final String PROJECT_NAME_HEADER = "Project name";
 
 
     public static String normalizePath(String path) {
@@ -37,57 +48,83 @@ public class Utils {
         return new PrintWriter(bufferedWriter, true);
     }
 
+    public static final ImmutableMap<String, String> VARIABLE_FILENAMES = ImmutableMap.<String, String>builder()
+            .put("commits", "commits.csv")
+            .put("contributors", "contributors.csv")
+            .put("u_contributors", "university.csv")
+            .put("c_contributors", "commercial.csv")
+            .put("open_issues", "open_issues.csv")
+            .put("non_dev_open_issues", "non_dev_open_issues.csv")
+            .put("open_issues_submitters", "open_issues_submitters.csv")
+            .put("non_dev_open_issues_submitters", "non_dev_open_issues_submitters.csv")
+            .put("closed_issues", "closed_issues.csv")
+            .put("non_dev_closed_issues", "non_dev_closed_issues.csv")
+            .put("closed_issues_submitters", "closed_issues_submitters.csv")
+            .put("non_dev_closed_issues_submitters", "non_dev_closed_issues_submitters.csv")
+            .put("issues", "issues.csv")
+            .put("non_dev_issues", "non_dev_issues.csv")
+            .put("submitters", "issues_submitters.csv")
+            .put("non_dev_submitters", "non_dev_issues_submitters.csv")
+            .put("backlog_issues", "backlog_issues.csv")
+            .put("resolved_issues", "resolved_issues.csv")
+            .put("upstreams", "upstreams.csv")
+            .put("downstreams", "downstreams.csv")
+            .put("t_upstreams", "t_upstreams.csv")
+            .put("t_downstreams", "t_downstreams.csv")
+            .put("d_upstreams", "d_upstreams.csv")
+            .put("t_d_upstreams", "t_d_upstreams.csv")
+            .put("q90", "q90.csv")
+            .put("cc_degree", "cc_degree.csv")
+            .put("dc_katz", "dc_katz.csv")
+            .put("ar", "assertion_roulette.csv")
+            .put("dc", "duplicated_code.csv")
+            .put("ec_t", "efferent_coupling_test.csv")
+            .put("ec_p", "efferent_coupling_production.csv")
+            .put("et", "eager_test.csv")
+            .put("fto", "for_testers_only.csv")
+            .put("cdsbp", "class_data_should_be_private.csv")
+            .put("cc", "complex_class.csv")
+            .put("fd", "functional_decomposition.csv")
+            .put("gc", "god_class.csv")
+            .put("mc", "misplaced_class.csv")
+            .put("sc", "spaghetti_code.csv")
+            .put("it", "indirect_testing.csv")
+            .put("loc_t", "loc_test.csv")
+            .put("loc_p", "loc_production.csv")
+            .put("lt", "lazy_test.csv")
+            .put("mg", "mystery_guest.csv")
+            .put("noc", "number_of_classes.csv")
+            .put("notc", "number_of_test_classes.csv")
+            .put("ro", "resource_optimism.csv")
+            .put("se", "sensitive_equality.csv")
+            .put("st", "smelly_tests.csv")
+            .put("wmc_t", "wmc_test.csv")
+            .put("wmc_p", "wmc_production.csv")
+            .put("dormant", "dormant.csv")
+            .build();
+
+    public static String variableFilePath(String outPath, String variableName) {
+        return outPath + "/" + VARIABLE_FILENAMES.get(variableName);
+    }
+
+    public static String monthHeader(LocalDate month) {
+        return month.getYear() + "-" + month.getMonth();
+    }
+
+    public static LocalDate parseMonthHeader(String header) {
+        String[] yearMonth = header.trim().split("-");
+        return LocalDate.of(Integer.parseInt(yearMonth[0]), Month.valueOf(yearMonth[1]), 1);
+    }
+
     public static ImmutableMap<String, PrintWriter> csvOutput(String outPath) throws IOException {
-        return ImmutableMap.<String, PrintWriter>builder()
-                .put("commits", createPrintWriter(outPath + "/commits.csv"))
-                .put("contributors", createPrintWriter(outPath + "/contributors.csv"))
-                .put("u_contributors", createPrintWriter(outPath + "/university.csv"))
-                .put("c_contributors", createPrintWriter(outPath + "/commercial.csv"))
-                .put("open_issues", createPrintWriter(outPath + "/open_issues.csv"))
-                .put("non_dev_open_issues", createPrintWriter(outPath + "/non_dev_open_issues.csv"))
-                .put("open_issues_submitters", createPrintWriter(outPath + "/open_issues_submitters.csv"))
-                .put("non_dev_open_issues_submitters", createPrintWriter(outPath + "/non_dev_open_issues_submitters.csv"))
-                .put("closed_issues", createPrintWriter(outPath + "/closed_issues.csv"))
-                .put("non_dev_closed_issues", createPrintWriter(outPath + "/non_dev_closed_issues.csv"))
-                .put("closed_issues_submitters", createPrintWriter(outPath + "/closed_issues_submitters.csv"))
-                .put("non_dev_closed_issues_submitters", createPrintWriter(outPath + "/non_dev_closed_issues_submitters.csv"))
-                .put("issues", createPrintWriter(outPath + "/issues.csv"))
-                .put("non_dev_issues", createPrintWriter(outPath + "/non_dev_issues.csv"))
-                .put("submitters", createPrintWriter(outPath + "/issues_submitters.csv"))
-                .put("non_dev_submitters", createPrintWriter(outPath + "/non_dev_issues_submitters.csv"))
-                .put("upstreams", createPrintWriter(outPath + "/upstreams.csv"))
-                .put("downstreams", createPrintWriter(outPath + "/downstreams.csv"))
-                .put("t_upstreams", createPrintWriter(outPath + "/t_upstreams.csv"))
-                .put("t_downstreams", createPrintWriter(outPath + "/t_downstreams.csv"))
-                .put("d_upstreams", createPrintWriter(outPath + "/d_upstreams.csv"))
-                .put("q90", createPrintWriter(outPath + "/q90.csv"))
-                .put("cc_degree", createPrintWriter(outPath + "/cc_degree.csv"))
-                .put("dc_katz", createPrintWriter(outPath + "/dc_katz.csv"))
-                .put("ar", createPrintWriter(outPath + "/assertion_roulette.csv"))
-                .put("dc", createPrintWriter(outPath + "/duplicated_code.csv"))
-                .put("ec_t", createPrintWriter(outPath + "/efferent_coupling_test.csv"))
-                .put("ec_p", createPrintWriter(outPath + "/efferent_coupling_production.csv"))
-                .put("et", createPrintWriter(outPath + "/eager_test.csv"))
-                .put("fto", createPrintWriter(outPath + "/for_testers_only.csv"))
-                .put("cdsbp", createPrintWriter(outPath + "/class_data_should_be_private.csv"))
-                .put("cc", createPrintWriter(outPath + "/complex_class.csv"))
-                .put("fd", createPrintWriter(outPath + "/functional_decomposition.csv"))
-                .put("gc", createPrintWriter(outPath + "/god_class.csv"))
-                .put("mc", createPrintWriter(outPath + "/misplaced_class.csv"))
-                .put("sc", createPrintWriter(outPath + "/spaghetti_code.csv"))
-                .put("it", createPrintWriter(outPath + "/indirect_testing.csv"))
-                .put("loc_t", createPrintWriter(outPath + "/loc_test.csv"))
-                .put("loc_p", createPrintWriter(outPath + "/loc_production.csv"))
-                .put("lt", createPrintWriter(outPath + "/lazy_test.csv"))
-                .put("mg", createPrintWriter(outPath + "/mystery_guest.csv"))
-                .put("noc", createPrintWriter(outPath + "/number_of_classes.csv"))
-                .put("notc", createPrintWriter(outPath + "/number_of_test_classes.csv"))
-                .put("ro", createPrintWriter(outPath + "/resource_optimism.csv"))
-                .put("se", createPrintWriter(outPath + "/sensitive_equality.csv"))
-                .put("st", createPrintWriter(outPath + "/smelly_tests.csv"))
-                .put("wmc_t", createPrintWriter(outPath + "/wmc_test.csv"))
-                .put("wmc_p", createPrintWriter(outPath + "/wmc_production.csv"))
-                .put("dormant", createPrintWriter(outPath + "/dormant.csv"))
-                .build();
+        return csvOutput(outPath, VARIABLE_FILENAMES.keySet());
+    }
+
+    public static ImmutableMap<String, PrintWriter> csvOutput(String outPath, Collection<String> variableNames) throws IOException {
+        ImmutableMap.Builder<String, PrintWriter> csvOutputBuilder = ImmutableMap.builder();
+        for (String variableName : variableNames) {
+            csvOutputBuilder.put(variableName, createPrintWriter(variableFilePath(outPath, variableName)));
+        }
+        return csvOutputBuilder.build();
     }
 }
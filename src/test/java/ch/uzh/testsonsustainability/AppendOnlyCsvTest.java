@@ -0,0 +1,92 @@
+package ch.uzh.testsonsustainability;
+
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AppendOnlyCsvTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRecordsAreReadFromThePreviousRead() throws Exception {
+        Path path = temporaryFolder.getRoot().toPath().resolve(Utils.CSV_MAVEN_LINKS_DELTA_FILENAME);
+        AppendOnlyCsv csv = new AppendOnlyCsv(path);
+        assertTrue(csv.readNewRecords().isEmpty());
+
+        // the header alone, then a line without its line break
+        append(path, "\"source\",\"target\",\"scope\"\n");
+        assertTrue(csv.readNewRecords().isEmpty());
+        append(path, "\"a:b:1.0\",\"c:d:2.0\",\"Compile\"\n\"e:f:1.0\",\"c:d");
+        List<CSVRecord> records = csv.readNewRecords();
+        assertEquals(1, records.size());
+        assertEquals("a:b:1.0", records.get(0).get("source"));
+        assertTrue(csv.readNewRecords().isEmpty());
+
+        // the end of the line completes the record
+        append(path, ":2.0\",\"Test\"\n\"g:h:1.0\",\"a:b:1.0\",\"Runtime\"\n");
+        records = csv.readNewRecords();
+        assertEquals(2, records.size());
+        assertEquals("e:f:1.0", records.get(0).get("source"));
+        assertEquals("c:d:2.0", records.get(0).get("target"));
+        assertEquals("Test", records.get(0).get("scope"));
+        assertEquals("g:h:1.0", records.get(1).get("source"));
+        assertTrue(csv.readNewRecords().isEmpty());
+    }
+
+    @Test
+    public void testAppendedBytesAreReadInChunks() throws Exception {
+        Path path = temporaryFolder.getRoot().toPath().resolve(Utils.CSV_MAVEN_LINKS_DELTA_FILENAME);
+        // a few lines per chunk, most lines cut by the end of a chunk
+        AppendOnlyCsv csv = new AppendOnlyCsv(path, 100);
+        StringBuilder lines = new StringBuilder("\"source\",\"target\",\"scope\"\n");
+        for (int i = 0; i < 500; i++) {
+            lines.append("\"a:b:").append(i).append("\",\"c:d:2.0\",\"Compile\"\n");
+        }
+        append(path, lines + "\"e:f:1.0\",\"c:d");
+        List<CSVRecord> records = csv.readNewRecords();
+        assertEquals(500, records.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("a:b:" + i, records.get(i).get("source"));
+            assertEquals("Compile", records.get(i).get("scope"));
+        }
+
+        append(path, ":2.0\",\"Test\"\n");
+        records = csv.readNewRecords();
+        assertEquals(1, records.size());
+        assertEquals("c:d:2.0", records.get(0).get("target"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testLineLongerThanAChunkIsRefused() throws Exception {
+        Path path = temporaryFolder.getRoot().toPath().resolve(Utils.CSV_MAVEN_LINKS_DELTA_FILENAME);
+        AppendOnlyCsv csv = new AppendOnlyCsv(path, 10);
+        append(path, "\"source\",\"target\",\"scope\"\n");
+        csv.readNewRecords();
+    }
+
+    @Test(expected = IOException.class)
+    public void testShrunkFileIsRefused() throws Exception {
+        Path path = temporaryFolder.getRoot().toPath().resolve(Utils.CSV_MAVEN_LINKS_DELTA_FILENAME);
+        AppendOnlyCsv csv = new AppendOnlyCsv(path);
+        append(path, "\"source\",\"target\",\"scope\"\n\"a:b:1.0\",\"c:d:2.0\",\"Compile\"\n");
+        assertEquals(1, csv.readNewRecords().size());
+        Files.write(path, "\"source\",\"target\",\"scope\"\n".getBytes(StandardCharsets.UTF_8));
+        csv.readNewRecords();
+    }
+
+    private static void append(Path path, String lines) throws Exception {
+        Files.write(path, lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
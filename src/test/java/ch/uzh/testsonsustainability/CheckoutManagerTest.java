@@ -0,0 +1,195 @@
+package ch.uzh.testsonsustainability;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class CheckoutManagerTest {
+
+    private static final int COMMITS = 30;
+    private static final List<String> DIRECTORIES = Arrays.asList("", "src/", "src/main/", "doc/");
+    // paths that are a file in some commits and a directory in others
+    private static final List<String> SWAPPED = Arrays.asList("src/swapped", "doc/notes");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Git origin;
+    private Git clone;
+    private List<String> tags;
+
+    @Before
+    public void setUp() throws Exception {
+        origin = Git.init().setDirectory(temporaryFolder.newFolder("origin")).call();
+        tags = new ArrayList<>();
+        Random random = new Random(41);
+        Map<String, String> files = new TreeMap<>();
+        for (int i = 0; i < COMMITS; i++) {
+            if (i == 20) {
+                // a release commit that leaves the files untouched
+                origin.commit().setMessage("release " + i).setAllowEmpty(true).call();
+            } else {
+                change(files, random, i);
+                write(files, random);
+                origin.add().addFilepattern(".").call();
+                origin.add().setUpdate(true).addFilepattern(".").call();
+                origin.commit().setMessage("commit " + i).call();
+            }
+            if (i % 2 == 0 || i == 19) {
+                origin.tag().setName("v" + i).setAnnotated(i % 4 == 0).setMessage("release " + i).call();
+                tags.add("v" + i);
+            }
+        }
+        clone = Git.cloneRepository().setURI(origin.getRepository().getDirectory().toURI().toString())
+                .setDirectory(temporaryFolder.newFolder("clone")).setNoCheckout(true).call();
+    }
+
+    @Test
+    public void testWorkingTreeIndexAndHeadFollowTheTags() throws Exception {
+        try (CheckoutManager checkoutManager = new CheckoutManager(clone.getRepository())) {
+            long bytes = 0;
+            for (String tag : tags) {
+                bytes += checkoutManager.moveTo(tag);
+                assertCheckedOut(tag);
+            }
+            assertEquals(bytes, checkoutManager.getTotalBytes());
+            // a month without a tag analyses HEAD as cloned
+            checkoutManager.moveTo(null);
+            assertCheckedOut(Constants.HEAD);
+        }
+    }
+
+    @Test
+    public void testTagOfTheSameTreeMovesHeadOnly() throws Exception {
+        try (CheckoutManager checkoutManager = new CheckoutManager(clone.getRepository())) {
+            checkoutManager.moveTo("v19");
+            assertEquals(0, checkoutManager.moveTo("v20"));
+            assertCheckedOut("v20");
+        }
+    }
+
+    @Test
+    public void testTagsInAnyOrder() throws Exception {
+        try (CheckoutManager checkoutManager = new CheckoutManager(clone.getRepository())) {
+            Random random = new Random(7);
+            for (int i = 0; i < 20; i++) {
+                String tag = tags.get(random.nextInt(tags.size()));
+                checkoutManager.moveTo(tag);
+                assertCheckedOut(tag);
+            }
+        }
+    }
+
+    private void assertCheckedOut(String tag) throws Exception {
+        Repository repository = clone.getRepository();
+        ObjectId commit = origin.getRepository().resolve(tag.equals(Constants.HEAD) ? Constants.HEAD : tag + "^{commit}");
+        assertEquals(tag, commit, repository.resolve(Constants.HEAD));
+        // the index matches HEAD and the files match the index
+        assertTrue(tag + " " + clone.status().call().getUncommittedChanges(), clone.status().call().isClean());
+        assertTrue(tag + " " + clone.status().call().getUntracked(), clone.status().call().getUntracked().isEmpty());
+
+        Map<String, String> expected = new HashMap<>();
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revWalk.parseCommit(commit).getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                File file = new File(repository.getWorkTree(), treeWalk.getPathString());
+                assertEquals(treeWalk.getPathString(), treeWalk.getFileMode(0) == FileMode.EXECUTABLE_FILE, file.canExecute());
+                expected.put(treeWalk.getPathString(), new String(repository.open(treeWalk.getObjectId(0)).getBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(tag, expected, read(repository.getWorkTree().toPath()));
+    }
+
+    // adds, modifies and deletes a few files, and swaps a file with a directory of the same path
+    private static void change(Map<String, String> files, Random random, int i) {
+        int changes = 1 + random.nextInt(5);
+        for (int c = 0; c < changes; c++) {
+            String path = DIRECTORIES.get(random.nextInt(DIRECTORIES.size())) + "file" + random.nextInt(6) + ".txt";
+            if (files.containsKey(path) && random.nextInt(3) == 0) {
+                files.remove(path);
+            } else {
+                files.put(path, "commit " + i + " change " + c + "\n");
+            }
+        }
+        String swapped = SWAPPED.get(random.nextInt(SWAPPED.size()));
+        if (files.containsKey(swapped)) {
+            files.remove(swapped);
+            files.put(swapped + "/inner.txt", "directory of commit " + i + "\n");
+            files.put(swapped + "/deeper/inner.txt", "deeper of commit " + i + "\n");
+        } else {
+            files.keySet().removeIf(path -> path.startsWith(swapped + "/"));
+            files.put(swapped, "file of commit " + i + "\n");
+        }
+        if (files.isEmpty()) {
+            files.put("README", "commit " + i + "\n");
+        }
+    }
+
+    // rewrites the working tree of the origin with the files, some of them executable
+    private void write(Map<String, String> files, Random random) throws Exception {
+        Path workTree = origin.getRepository().getWorkTree().toPath();
+        for (File child : workTree.toFile().listFiles()) {
+            if (!child.getName().equals(Constants.DOT_GIT)) {
+                deleteRecursively(child);
+            }
+        }
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path path = workTree.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.write(path, file.getValue().getBytes(StandardCharsets.UTF_8));
+            path.toFile().setExecutable(random.nextInt(5) == 0);
+        }
+    }
+
+    // the files below the directory, outside .git, by path relative to the working tree
+    private static Map<String, String> read(Path workTree) throws Exception {
+        Map<String, String> files = new HashMap<>();
+        Files.walk(workTree).filter(path -> !workTree.relativize(path).startsWith(Constants.DOT_GIT)).forEach(path -> {
+            File file = path.toFile();
+            // no directory is left empty
+            assertTrue(path.toString(), file.isFile() || path.equals(workTree) || file.list().length > 0);
+            if (file.isFile()) {
+                try {
+                    files.put(workTree.relativize(path).toString().replace(File.separatorChar, '/'),
+                            new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        return files;
+    }
+
+    private static void deleteRecursively(File file) throws Exception {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.delete(file.toPath());
+    }
+}
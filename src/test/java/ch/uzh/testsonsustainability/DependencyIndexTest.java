@@ -0,0 +1,273 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.graph.MutableValueGraph;
+import com.google.common.graph.ValueGraph;
+import com.google.common.graph.ValueGraphBuilder;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DependencyIndexTest {
+
+    private static final int NODES = 400;
+    private static final byte COMPILE = DependencyScope.COMPILE.bit();
+    private static final byte TEST = DependencyScope.TEST.bit();
+
+    private static final ApproximateCounts APPROXIMATE = new ApproximateCounts(true, true, ApproximateCounts.DEFAULT_RELATIVE_ERROR);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MutableValueGraph<String, Byte> graph;
+    private Map<String, Integer> ids;
+
+    @Before
+    public void setUp() {
+        // mostly links to lower nodes, with some links to higher nodes closing cycles
+        Random random = new Random(31);
+        graph = ValueGraphBuilder.directed().allowsSelfLoops(false).build();
+        ids = new LinkedHashMap<>();
+        for (int node = 0; node < NODES; node++) {
+            graph.addNode(node(node));
+            ids.put(node(node), node);
+        }
+        for (int node = 1; node < NODES; node++) {
+            for (int link = 0; link < 2; link++) {
+                int target = random.nextInt(10) == 0 ? random.nextInt(NODES) : random.nextInt(node);
+                if (target != node) {
+                    graph.putEdgeValue(node(node), node(target), random.nextInt(4) == 0 ? TEST : COMPILE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTransitiveCountsMatchTraversals() throws Exception {
+        DependencyIndex index = new DependencyIndex(graph, ids, new DependencyIndex.TransitiveCounts());
+        for (byte scopeMask : new byte[]{DependencyScope.ALL, COMPILE}) {
+            Map<String, DependencyCounts> counts = index.getDependencyCounts(ids.keySet(), scopeMask);
+            for (String node : ids.keySet()) {
+                assertEquals(node, reachable(graph, node, scopeMask, true), counts.get(node).getTransitiveUpstreams());
+                assertEquals(node, reachable(graph, node, scopeMask, false), counts.get(node).getTransitiveDownstreams());
+            }
+        }
+    }
+
+    @Test
+    public void testTransitiveCountsOfComponentsAreReused() throws Exception {
+        // 0 -> 1 -> 2 -> 0 is a cycle, 2 -> 3 leaves it
+        MutableValueGraph<String, Byte> cycle = ValueGraphBuilder.directed().allowsSelfLoops(false).build();
+        Map<String, Integer> cycleIds = new LinkedHashMap<>();
+        for (int node = 0; node < 4; node++) {
+            cycle.addNode(node(node));
+            cycleIds.put(node(node), node);
+        }
+        cycle.putEdgeValue(node(0), node(1), COMPILE);
+        cycle.putEdgeValue(node(1), node(2), COMPILE);
+        cycle.putEdgeValue(node(2), node(0), COMPILE);
+        cycle.putEdgeValue(node(2), node(3), COMPILE);
+        DependencyIndex.TransitiveCounts transitiveCounts = new DependencyIndex.TransitiveCounts();
+        DependencyIndex index = new DependencyIndex(cycle, cycleIds, transitiveCounts);
+
+        assertEquals(3, index.getDependencyCounts(Collections.singleton(node(0)), COMPILE).get(node(0)).getTransitiveUpstreams());
+        // the one traversal of each direction cached the counts of the three nodes of the cycle
+        BitSet all = new BitSet();
+        all.set(0, 4);
+        assertEquals(3, transitiveCounts.invalidate(all, new BitSet()));
+        assertEquals(3, transitiveCounts.invalidate(new BitSet(), all));
+
+        Map<String, DependencyCounts> counts = index.getDependencyCounts(cycleIds.keySet(), COMPILE);
+        assertEquals(3, counts.get(node(1)).getTransitiveUpstreams());
+        assertEquals(3, counts.get(node(2)).getTransitiveUpstreams());
+        assertEquals(0, counts.get(node(3)).getTransitiveUpstreams());
+        assertEquals(2, counts.get(node(2)).getTransitiveDownstreams());
+        assertEquals(3, counts.get(node(3)).getTransitiveDownstreams());
+    }
+
+    @Test
+    public void testNewArtifactTagTakesTheNextId() {
+        Map<String, Integer> projectionIds = new ArtifactProjection(graph, Collections.emptySet(), Collections.emptyMap()).getVersionIds();
+        graph.putEdgeValue(node(NODES), node(0), COMPILE);
+        Map<String, Integer> newIds = new ArtifactProjection(graph, Collections.emptySet(), Collections.emptyMap()).getVersionIds();
+        // the cached counts stay keyed by the same ids
+        for (Map.Entry<String, Integer> id : projectionIds.entrySet()) {
+            assertEquals(id.getValue(), newIds.get(id.getKey()));
+        }
+        assertEquals(Integer.valueOf(NODES), newIds.get(node(NODES)));
+    }
+
+    @Test
+    public void testInvalidatedCountsMatchTraversalsAfterANewLink() throws Exception {
+        DependencyIndex.TransitiveCounts transitiveCounts = new DependencyIndex.TransitiveCounts();
+        byte[] scopeMasks = {DependencyScope.ALL, COMPILE};
+        for (byte scopeMask : scopeMasks) {
+            new DependencyIndex(graph, ids, transitiveCounts).getDependencyCounts(ids.keySet(), scopeMask);
+        }
+
+        assertFalse(graph.hasEdgeConnecting(node(3), node(NODES - 1)));
+        graph.putEdgeValue(node(3), node(NODES - 1), COMPILE);
+        // the upstreams of the source and of its dependants, and the downstreams of the target and of its dependencies
+        BitSet upstreamIds = new BitSet();
+        BitSet downstreamIds = new BitSet();
+        reachableNodes(graph, node(3), DependencyScope.ALL, false).forEach(node -> upstreamIds.set(ids.get(node)));
+        reachableNodes(graph, node(NODES - 1), DependencyScope.ALL, true).forEach(node -> downstreamIds.set(ids.get(node)));
+        assertEquals(scopeMasks.length * (upstreamIds.cardinality() + downstreamIds.cardinality()), transitiveCounts.invalidate(upstreamIds, downstreamIds));
+
+        DependencyIndex index = new DependencyIndex(graph, ids, transitiveCounts);
+        for (byte scopeMask : scopeMasks) {
+            Map<String, DependencyCounts> counts = index.getDependencyCounts(ids.keySet(), scopeMask);
+            for (String node : ids.keySet()) {
+                assertEquals(node, reachable(graph, node, scopeMask, true), counts.get(node).getTransitiveUpstreams());
+                assertEquals(node, reachable(graph, node, scopeMask, false), counts.get(node).getTransitiveDownstreams());
+            }
+        }
+    }
+
+    @Test
+    public void testTransitiveEstimatesAreWithinTheRelativeError() throws Exception {
+        // the cycles of the graph are strongly connected components sharing one sketch
+        assertEstimatesWithinError(graph, ids);
+    }
+
+    @Test
+    public void testTransitiveEstimatesOfSyntheticDataAreWithinTheRelativeError() throws Exception {
+        String csvPath = new SyntheticMavenData(2000, 3, 4, 7).writeTo(temporaryFolder.getRoot().toPath());
+        MutableValueGraph<String, Byte> syntheticGraph = ValueGraphBuilder.directed().allowsSelfLoops(false).build();
+        try (Reader reader = Files.newBufferedReader(Paths.get(csvPath + Utils.CSV_MAVEN_LINKS_FILENAME))) {
+            for (CSVRecord link : CSVParser.parse(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+                byte scopeMask = syntheticGraph.edgeValueOrDefault(link.get("source"), link.get("target"), DependencyScope.NONE);
+                syntheticGraph.putEdgeValue(link.get("source"), link.get("target"), (byte) (scopeMask | DependencyScope.parse(link.get("scope")).bit()));
+            }
+        }
+        Map<String, Integer> syntheticIds = new LinkedHashMap<>();
+        for (String node : syntheticGraph.nodes()) {
+            syntheticIds.put(node, syntheticIds.size());
+        }
+        assertEstimatesWithinError(syntheticGraph, syntheticIds);
+    }
+
+    @Test
+    public void testTransitiveEstimatesOfComponentsAreExact() throws Exception {
+        // 0 -> 1 -> 2 -> 0 is a cycle, 2 -> 3 leaves it, the small closures are counted exactly by the sparse sketches
+        MutableValueGraph<String, Byte> cycle = ValueGraphBuilder.directed().allowsSelfLoops(false).build();
+        Map<String, Integer> cycleIds = new LinkedHashMap<>();
+        for (int node = 0; node < 4; node++) {
+            cycle.addNode(node(node));
+            cycleIds.put(node(node), node);
+        }
+        cycle.putEdgeValue(node(0), node(1), COMPILE);
+        cycle.putEdgeValue(node(1), node(2), COMPILE);
+        cycle.putEdgeValue(node(2), node(0), COMPILE);
+        cycle.putEdgeValue(node(2), node(3), COMPILE);
+        DependencyIndex index = new DependencyIndex(cycle, cycleIds, new DependencyIndex.TransitiveCounts());
+
+        Map<String, DependencyCounts> estimates = index.getDependencyCounts(cycleIds.keySet(), COMPILE, APPROXIMATE);
+        for (int node = 0; node < 3; node++) {
+            assertEquals(3, estimates.get(node(node)).getTransitiveUpstreams());
+            assertEquals(2, estimates.get(node(node)).getTransitiveDownstreams());
+        }
+        assertEquals(0, estimates.get(node(3)).getTransitiveUpstreams());
+        assertEquals(3, estimates.get(node(3)).getTransitiveDownstreams());
+
+        BitSet counted = new BitSet();
+        counted.set(1);
+        counted.set(3);
+        int[] countedEstimates = index.estimateCountedDependencies(counted, COMPILE, TransitiveSketches.precision(ApproximateCounts.DEFAULT_RELATIVE_ERROR));
+        // a counted node of the cycle does not count itself
+        assertArrayEquals(new int[]{2, 1, 2, 0}, countedEstimates);
+    }
+
+    // the estimates of every node, all of them and only the counted ones, are within four standard errors of the exact
+    // counts, with a slack for the small counts, and within the standard error on average
+    private static void assertEstimatesWithinError(ValueGraph<String, Byte> graph, Map<String, Integer> ids) throws Exception {
+        DependencyIndex index = new DependencyIndex(graph, ids, new DependencyIndex.TransitiveCounts());
+        int precision = TransitiveSketches.precision(ApproximateCounts.DEFAULT_RELATIVE_ERROR);
+        BitSet counted = new BitSet();
+        for (int id = 0; id < ids.size(); id += 3) {
+            counted.set(id);
+        }
+        for (byte scopeMask : new byte[]{DependencyScope.ALL, COMPILE}) {
+            Map<String, DependencyCounts> counts = index.getDependencyCounts(ids.keySet(), scopeMask);
+            Map<String, DependencyCounts> estimates = index.getDependencyCounts(ids.keySet(), scopeMask, APPROXIMATE);
+            int[] countedEstimates = index.estimateCountedDependencies(counted, scopeMask, precision);
+            RelativeErrors errors = new RelativeErrors();
+            for (Map.Entry<String, Integer> node : ids.entrySet()) {
+                errors.add(node.getKey() + " upstreams", counts.get(node.getKey()).getTransitiveUpstreams(), estimates.get(node.getKey()).getTransitiveUpstreams());
+                errors.add(node.getKey() + " downstreams", counts.get(node.getKey()).getTransitiveDownstreams(), estimates.get(node.getKey()).getTransitiveDownstreams());
+                errors.add(node.getKey() + " counted upstreams", countedReachable(graph, ids, node.getKey(), scopeMask, counted), countedEstimates[node.getValue()]);
+            }
+            errors.assertMean();
+        }
+    }
+
+    // shared with the estimates of the dormant dependencies of MavenCentralInfo
+    static class RelativeErrors {
+
+        private double sum = 0;
+        private int count = 0;
+
+        void add(String label, int exact, int estimate) {
+            double error = ApproximateCounts.DEFAULT_RELATIVE_ERROR;
+            assertTrue(label + ": " + estimate + " estimated for " + exact, Math.abs(estimate - exact) <= 4 * error * exact + 4);
+            // the mean is taken over the counts large enough for the error not to be a rounding
+            if (exact >= 100) {
+                sum += (double) Math.abs(estimate - exact) / exact;
+                count++;
+            }
+        }
+
+        void assertMean() {
+            assertTrue(sum / Math.max(1, count) + " mean relative error", sum <= ApproximateCounts.DEFAULT_RELATIVE_ERROR * count);
+        }
+    }
+
+    private static int countedReachable(ValueGraph<String, Byte> graph, Map<String, Integer> ids, String start, byte scopeMask, BitSet counted) {
+        Set<String> reached = reachableNodes(graph, start, scopeMask, true);
+        reached.remove(start);
+        return (int) reached.stream().filter(node -> counted.get(ids.get(node))).count();
+    }
+
+    private static String node(int node) {
+        return "org.synthetic:artifact" + node + ":1.0.0";
+    }
+
+    private static int reachable(ValueGraph<String, Byte> graph, String start, byte scopeMask, boolean upstreams) {
+        Set<String> reached = reachableNodes(graph, start, scopeMask, upstreams);
+        reached.remove(start);
+        return reached.size();
+    }
+
+    private static Set<String> reachableNodes(ValueGraph<String, Byte> graph, String start, byte scopeMask, boolean upstreams) {
+        Set<String> visited = new HashSet<>(Collections.singleton(start));
+        Deque<String> toVisit = new ArrayDeque<>(visited);
+        while (!toVisit.isEmpty()) {
+            String node = toVisit.poll();
+            for (String neighbour : upstreams ? graph.successors(node) : graph.predecessors(node)) {
+                byte scopes = upstreams ? graph.edgeValueOrDefault(node, neighbour, DependencyScope.NONE) : graph.edgeValueOrDefault(neighbour, node, DependencyScope.NONE);
+                if ((scopes & scopeMask) != 0 && visited.add(neighbour)) {
+                    toVisit.add(neighbour);
+                }
+            }
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,119 @@
+package ch.uzh.testsonsustainability;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GithubGraphQLTest {
+
+    private static final String COUNTS = "{\"data\": {\"rateLimit\": {\"cost\": 1, \"remaining\": 4999, \"resetAt\": \"2030-01-01T00:00:00Z\"},"
+            + " \"repository\": {\"defaultBranchRef\": {\"target\": {\"history\": {\"totalCount\": 7}}},"
+            + " \"issues\": {\"totalCount\": 3}, \"allIssues\": {\"totalCount\": 5}, \"mentionableUsers\": {\"totalCount\": 2}}}}";
+
+    private HttpServer server;
+    // the responses of the next queries, the last one being repeated
+    private final Deque<Response> responses = new ArrayDeque<>();
+    private final AtomicInteger queries = new AtomicInteger();
+    private GithubGraphQL githubGraphQL;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/graphql", this::respond);
+        server.start();
+        githubGraphQL = new GithubGraphQL("http://127.0.0.1:" + server.getAddress().getPort(), "token", HttpConnector.DEFAULT);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testRetriesAfterSecondaryRateLimit() throws Exception {
+        responses.add(new Response(403, "{\"message\": \"You have exceeded a secondary rate limit.\"}", "Retry-After", "0"));
+        responses.add(new Response(200, COUNTS));
+        assertEquals(7, githubGraphQL.counts("owner/name", new Date(0)).commits);
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testRetriesAfterPrimaryRateLimit() throws Exception {
+        String resetNow = String.valueOf(System.currentTimeMillis() / 1000 - 1);
+        responses.add(new Response(403, "{\"message\": \"API rate limit exceeded\"}", "X-RateLimit-Remaining", "0", "X-RateLimit-Reset", resetNow));
+        responses.add(new Response(200, COUNTS));
+        assertEquals(3, githubGraphQL.counts("owner/name", new Date(0)).issues);
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testFailsOnOtherForbiddenQueries() throws Exception {
+        responses.add(new Response(403, "{\"message\": \"Resource not accessible by integration\"}", "X-RateLimit-Remaining", "4000"));
+        try {
+            githubGraphQL.counts("owner/name", new Date(0));
+            fail("a forbidden query is not retried");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("403"));
+        }
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void testGivesUpAfterRepeatedRateLimits() throws Exception {
+        responses.add(new Response(429, "{\"message\": \"You have exceeded a secondary rate limit.\"}", "Retry-After", "0"));
+        try {
+            githubGraphQL.counts("owner/name", new Date(0));
+            fail("the retries are capped");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("rate limited"));
+        }
+        assertEquals(GithubGraphQL.MAX_RATE_LIMITED_RETRIES + 1, queries.get());
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        queries.incrementAndGet();
+        Response response;
+        synchronized (responses) {
+            response = responses.size() > 1 ? responses.poll() : responses.peek();
+        }
+        // the request body is read, as github does before answering
+        new JSONObject(new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+        for (int i = 0; i + 1 < response.headers.length; i += 2) {
+            exchange.getResponseHeaders().set(response.headers[i], response.headers[i + 1]);
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static class Response {
+
+        private final int status;
+        private final String body;
+        private final String[] headers;
+
+        private Response(int status, String body, String... headers) {
+            this.status = status;
+            this.body = body;
+            this.headers = headers;
+        }
+    }
+}
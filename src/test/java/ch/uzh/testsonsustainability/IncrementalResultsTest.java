@@ -0,0 +1,95 @@
+package ch.uzh.testsonsustainability;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IncrementalResultsTest {
+
+    private static final LocalDate JANUARY = LocalDate.of(2019, Month.JANUARY, 1);
+    private static final LocalDate FEBRUARY = LocalDate.of(2019, Month.FEBRUARY, 1);
+    private static final LocalDate MARCH = LocalDate.of(2019, Month.MARCH, 1);
+    private static final List<String> VARIABLES = Arrays.asList("commits", "contributors", "dormant");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String outPath;
+
+    @Before
+    public void setUp() throws Exception {
+        outPath = temporaryFolder.getRoot().getAbsolutePath();
+        String header = String.join(",", Utils.PROJECT_NAME_HEADER, Utils.monthHeader(JANUARY), Utils.monthHeader(FEBRUARY), Utils.monthHeader(MARCH));
+        write("commits", header, "p,1,2,3", "q,1");
+        // an earlier run did not compute the contributors of p
+        write("contributors", header, "q,4");
+        write("dormant", header, "p,false", "q,true");
+    }
+
+    @Test
+    public void testResumeFromTheLastStoredMonth() throws Exception {
+        IncrementalResults results = IncrementalResults.load(outPath, VARIABLES);
+        assertFalse(results.isEmpty());
+        assertEquals(JANUARY, results.getFirstMonth());
+        // the last stored month may have been stored before it ended
+        assertEquals(MARCH, results.getResumeMonth("p"));
+        assertEquals(JANUARY, results.getResumeMonth("q"));
+        assertNull(results.getResumeMonth("r"));
+    }
+
+    @Test
+    public void testRowsAreExtendedFromTheFirstComputedMonth() throws Exception {
+        IncrementalResults results = IncrementalResults.load(outPath, VARIABLES);
+        assertEquals("p,1,2,30,4", results.extendRow("commits", "p", MARCH, ",30,4"));
+        assertEquals("q,10,20,30,4", results.extendRow("commits", "q", JANUARY, ",10,20,30,4"));
+        // a project that was never analysed is computed from the first month
+        assertEquals("r,1,2,3,4", results.extendRow("commits", "r", JANUARY, ",1,2,3,4"));
+    }
+
+    @Test
+    public void testMissingRowIsPaddedWithNull() throws Exception {
+        IncrementalResults results = IncrementalResults.load(outPath, VARIABLES);
+        assertEquals("p, null, null,5,6", results.extendRow("contributors", "p", MARCH, ",5,6"));
+        // a row shorter than the kept months is padded as well
+        assertEquals("q,4, null,5,6", results.extendRow("contributors", "q", MARCH, ",5,6"));
+    }
+
+    @Test
+    public void testRollingVariableIsReplaced() throws Exception {
+        IncrementalResults results = IncrementalResults.load(outPath, VARIABLES);
+        assertEquals("p,true", results.extendRow("dormant", "p", MARCH, ",true"));
+        assertEquals(Collections.singletonList("q,true"), results.getRemainingRows("dormant"));
+    }
+
+    @Test
+    public void testSnapshotIsLoadedByTheResumedRun() throws Exception {
+        IncrementalResults results = IncrementalResults.load(outPath, VARIABLES);
+        results.snapshot(outPath);
+        assertFalse(new File(Utils.variableFilePath(outPath, "commits")).exists());
+        assertTrue(new File(Utils.variableFilePath(outPath, "commits") + IncrementalResults.PREVIOUS_SUFFIX).exists());
+
+        // the interrupted run had written the extended row of p
+        write("commits", String.join(",", Utils.PROJECT_NAME_HEADER, Utils.monthHeader(JANUARY), Utils.monthHeader(FEBRUARY),
+                Utils.monthHeader(MARCH), Utils.monthHeader(MARCH.plusMonths(1))), "p,1,2,30,4");
+        IncrementalResults resumed = IncrementalResults.load(outPath, VARIABLES);
+        assertEquals(MARCH.plusMonths(1), resumed.getResumeMonth("p"));
+        assertEquals(JANUARY, resumed.getResumeMonth("q"));
+        assertEquals(Arrays.asList("p,1,2,30,4", "q,1"), resumed.getRemainingRows("commits"));
+    }
+
+    private void write(String variableName, String... lines) throws Exception {
+        Files.write(Paths.get(Utils.variableFilePath(outPath, variableName)), Arrays.asList(lines));
+    }
+}
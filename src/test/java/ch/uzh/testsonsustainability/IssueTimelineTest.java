@@ -0,0 +1,123 @@
+package ch.uzh.testsonsustainability;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GHIssueState;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IssueTimelineTest {
+
+    private static final int ISSUES = 20000;
+    private static final int MONTHS = 102;
+    private static final LocalDate FIRST_MONTH = LocalDate.of(2010, 1, 1);
+
+    private List<Date> dates;
+    private long[] createdTimes;
+    private long[] closedTimes;
+    private GHIssueState[] states;
+    private IssueTimeline timeline;
+
+    @Before
+    public void setUp() {
+        dates = new ArrayList<>();
+        for (int month = 0; month < MONTHS; month++) {
+            dates.add(Date.from(FIRST_MONTH.plusMonths(month).atStartOfDay().toInstant(ZoneOffset.UTC)));
+        }
+        Random random = new Random(17);
+        createdTimes = new long[ISSUES];
+        closedTimes = new long[ISSUES];
+        states = new GHIssueState[ISSUES];
+        IssueRecords.Builder builder = new IssueRecords.Builder();
+        for (int i = 0; i < ISSUES; i++) {
+            createdTimes[i] = time(random);
+            switch (random.nextInt(4)) {
+                case 0:
+                    // still open
+                    states[i] = GHIssueState.OPEN;
+                    closedTimes[i] = IssueRecords.NOT_CLOSED;
+                    break;
+                case 1:
+                    // reopened after its last closing, open since its creation
+                    states[i] = GHIssueState.OPEN;
+                    closedTimes[i] = Math.max(createdTimes[i], time(random));
+                    break;
+                default:
+                    states[i] = GHIssueState.CLOSED;
+                    closedTimes[i] = Math.max(createdTimes[i], time(random));
+            }
+            builder.add(createdTimes[i], closedTimes[i], states[i], i % 50);
+        }
+        timeline = new IssueTimeline(builder.build());
+    }
+
+    @Test
+    public void testCountsMatchAScanOfTheIssues() {
+        for (int month = 1; month < MONTHS; month++) {
+            Date since = dates.get(month - 1);
+            Date until = dates.get(month);
+            assertEquals(until.toString(), opened(since, until), timeline.opened(since, until));
+            assertEquals(until.toString(), closed(since, until), timeline.closed(since, until));
+            assertEquals(until.toString(), openAt(until), timeline.openAt(until));
+        }
+    }
+
+    @Test
+    public void testCountsOverLongerPeriods() {
+        Date since = dates.get(3);
+        Date until = dates.get(MONTHS - 5);
+        assertEquals(opened(since, until), timeline.opened(since, until));
+        assertEquals(closed(since, until), timeline.closed(since, until));
+        // no issue is opened or closed in an empty period
+        assertEquals(0, timeline.opened(until, since));
+        assertEquals(0, timeline.closed(until, since));
+    }
+
+    // a time within the months, often exactly at the start of a month to cover the bounds
+    private long time(Random random) {
+        long start = dates.get(0).getTime();
+        long end = dates.get(MONTHS - 1).getTime();
+        if (random.nextInt(10) == 0) {
+            return dates.get(random.nextInt(MONTHS)).getTime();
+        }
+        return start + (long) (random.nextDouble() * (end - start));
+    }
+
+    private int opened(Date since, Date until) {
+        int opened = 0;
+        for (int i = 0; i < ISSUES; i++) {
+            if (createdTimes[i] > since.getTime() && createdTimes[i] < until.getTime()) {
+                opened++;
+            }
+        }
+        return opened;
+    }
+
+    private int closed(Date since, Date until) {
+        int closed = 0;
+        for (int i = 0; i < ISSUES; i++) {
+            if (states[i] == GHIssueState.CLOSED && closedTimes[i] > since.getTime() && closedTimes[i] < until.getTime()) {
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    private int openAt(Date date) {
+        int open = 0;
+        for (int i = 0; i < ISSUES; i++) {
+            boolean closedBefore = states[i] == GHIssueState.CLOSED && closedTimes[i] < date.getTime();
+            if (createdTimes[i] < date.getTime() && !closedBefore) {
+                open++;
+            }
+        }
+        return open;
+    }
+}
@@ -0,0 +1,197 @@
+package ch.uzh.testsonsustainability;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class JobCoordinatorTest {
+
+    private static final long LEASE_SECONDS = 60;
+    private static final long LEASE_MILLIS = TimeUnit.SECONDS.toMillis(LEASE_SECONDS);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String csvPath;
+    private String statePath;
+    private JobCoordinator coordinator;
+
+    @Before
+    public void setUp() throws Exception {
+        csvPath = temporaryFolder.newFolder("input").getAbsolutePath() + "/";
+        statePath = temporaryFolder.newFolder("state").getAbsolutePath();
+        Files.write(Paths.get(csvPath + Utils.CSV_INPUT_FILENAME), Arrays.asList(
+                "Project;Github Link;Star",
+                "g:p1;https://github.com/o/p1;100",
+                "g:p2;https://github.com/o/p2;10",
+                "g:nogithub;https://gitlab.com/o/nogithub;5000",
+                "g:p3;https://github.com/o/p3;1000",
+                "g:p4;https://github.com/o/p4;1"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (coordinator != null) {
+            coordinator.close();
+        }
+    }
+
+    @Test
+    public void testJournalIsReplayedAfterARestart() throws Exception {
+        start(1);
+        assertEquals(200, post(Utils.POST_DONE_JOB_ENDPOINT, nextJob()));
+        assertEquals(200, post(Utils.POST_FAILED_JOB_ENDPOINT, nextJob()));
+        String leased = nextJob();
+        coordinator.close();
+
+        start(1);
+        assertEquals(Arrays.asList("g:p3"), ids(Utils.GET_DONE_JOBS_ENDPOINT));
+        assertEquals(Arrays.asList("g:p1"), ids(Utils.GET_FAILED_JOBS_ENDPOINT));
+        // the job leased when the coordinator stopped goes back to the queue, with its attempt counted
+        assertEquals("g:p2", leased);
+        assertEquals(Arrays.asList("g:p2", "g:p4"), ids(Utils.GET_JOBS_TO_DO_ENDPOINT));
+        assertEquals(1, attempts(Utils.GET_JOBS_TO_DO_ENDPOINT, "g:p2"));
+        assertTrue(ids(Utils.GET_DOING_JOBS_ENDPOINT).isEmpty());
+        // and the finished ones are not handed out again
+        assertEquals("g:p2", nextJob());
+        assertEquals("g:p4", nextJob());
+        assertEquals("", get(Utils.GET_JOB_TO_DO_ENDPOINT));
+    }
+
+    @Test
+    public void testExpiredLeaseIsRetried() throws Exception {
+        start(2);
+        String jobId = nextJob();
+        coordinator.requeueExpiredLeases(System.currentTimeMillis() + LEASE_MILLIS + 1);
+        // listed in the order of the input
+        assertEquals(Arrays.asList("g:p1", "g:p2", "g:p3", "g:p4"), ids(Utils.GET_JOBS_TO_DO_ENDPOINT));
+
+        // the worker that lost the lease takes the job back with a heartbeat, as no other worker took it
+        assertEquals(200, post(Utils.POST_HEARTBEAT_JOB_ENDPOINT, jobId));
+        assertEquals(Arrays.asList(jobId), ids(Utils.GET_DOING_JOBS_ENDPOINT));
+        assertEquals(2, attempts(Utils.GET_DOING_JOBS_ENDPOINT, jobId));
+
+        // the second expiry uses the last attempt
+        coordinator.requeueExpiredLeases(System.currentTimeMillis() + LEASE_MILLIS + 1);
+        assertEquals(Arrays.asList(jobId), ids(Utils.GET_FAILED_JOBS_ENDPOINT));
+        assertEquals(409, post(Utils.POST_HEARTBEAT_JOB_ENDPOINT, jobId));
+        assertEquals(409, post(Utils.POST_FAILED_JOB_ENDPOINT, jobId));
+        assertEquals(404, post(Utils.POST_HEARTBEAT_JOB_ENDPOINT, "g:unknown"));
+    }
+
+    @Test
+    public void testHeartbeatExtendsTheLease() throws Exception {
+        start(1);
+        String withHeartbeat = nextJob();
+        String withoutHeartbeat = nextJob();
+        long leased = System.currentTimeMillis();
+        Thread.sleep(50);
+        assertEquals(200, post(Utils.POST_HEARTBEAT_JOB_ENDPOINT, withHeartbeat));
+
+        coordinator.requeueExpiredLeases(leased + LEASE_MILLIS + 1);
+        assertEquals(Arrays.asList(withHeartbeat), ids(Utils.GET_DOING_JOBS_ENDPOINT));
+        assertEquals(Arrays.asList(withoutHeartbeat), ids(Utils.GET_FAILED_JOBS_ENDPOINT));
+        assertEquals(200, post(Utils.POST_DONE_JOB_ENDPOINT, withHeartbeat));
+        assertEquals(Arrays.asList(withHeartbeat), ids(Utils.GET_DONE_JOBS_ENDPOINT));
+    }
+
+    @Test
+    public void testFailedJobIsRetriedUpToTheMaximumAttempts() throws Exception {
+        start(2);
+        String jobId = nextJob();
+        // a cancelled job does not use an attempt
+        assertEquals(200, post(Utils.POST_CANCEL_JOB_ENDPOINT, jobId));
+        assertEquals(0, attempts(Utils.GET_JOBS_TO_DO_ENDPOINT, jobId));
+
+        assertEquals(jobId, nextJob());
+        assertEquals(200, post(Utils.POST_FAILED_JOB_ENDPOINT, jobId));
+        assertEquals(1, attempts(Utils.GET_JOBS_TO_DO_ENDPOINT, jobId));
+        assertEquals(jobId, nextJob());
+        assertEquals(200, post(Utils.POST_FAILED_JOB_ENDPOINT, jobId));
+        assertEquals(Arrays.asList(jobId), ids(Utils.GET_FAILED_JOBS_ENDPOINT));
+        assertFalse(ids(Utils.GET_JOBS_TO_DO_ENDPOINT).contains(jobId));
+        assertEquals(409, post(Utils.POST_CANCEL_JOB_ENDPOINT, jobId));
+    }
+
+    @Test
+    public void testLongestEstimatedJobsFirst() throws Exception {
+        // p4 has few stars but took long in a previous run
+        Files.write(Paths.get(statePath, JobCostModel.HISTORY_FILENAME), Arrays.asList(
+                "project,stars,repository_size_kb,estimated_seconds,actual_seconds,shared_repository",
+                "g:p4,1,,40.0,5000.0,"));
+        start(1);
+        assertEquals(Arrays.asList("g:p4", "g:p3", "g:p1", "g:p2"), Arrays.asList(nextJob(), nextJob(), nextJob(), nextJob()));
+    }
+
+    private void start(int maxAttempts) throws Exception {
+        coordinator = new JobCoordinator(csvPath, statePath, 0, LEASE_SECONDS, maxAttempts);
+        coordinator.start();
+    }
+
+    private String nextJob() throws Exception {
+        return new JSONObject(get(Utils.GET_JOB_TO_DO_ENDPOINT)).getString("id");
+    }
+
+    private List<String> ids(String endpoint) throws Exception {
+        List<String> ids = new ArrayList<>();
+        JSONArray jobs = new JSONArray(get(endpoint));
+        for (int i = 0; i < jobs.length(); i++) {
+            ids.add(jobs.getJSONObject(i).getString("id"));
+        }
+        return ids;
+    }
+
+    private int attempts(String endpoint, String jobId) throws Exception {
+        JSONArray jobs = new JSONArray(get(endpoint));
+        for (int i = 0; i < jobs.length(); i++) {
+            if (jobs.getJSONObject(i).getString("id").equals(jobId)) {
+                return jobs.getJSONObject(i).getInt("attempts");
+            }
+        }
+        throw new AssertionError(jobId + " not in " + endpoint);
+    }
+
+    private String get(String endpoint) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + coordinator.getPort() + endpoint).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private int post(String endpoint, String jobId) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + coordinator.getPort() + endpoint).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(jobId.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+}
@@ -0,0 +1,89 @@
+package ch.uzh.testsonsustainability;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class JobCostModelTest {
+
+    private static final String HEADER = "project,stars,repository_size_kb,estimated_seconds,actual_seconds,shared_repository";
+    private static final int[] STARS = {0, 9, 99, 999, 9999};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path historyPath;
+
+    @Before
+    public void setUp() throws Exception {
+        historyPath = temporaryFolder.getRoot().toPath().resolve(JobCostModel.HISTORY_FILENAME);
+    }
+
+    @Test
+    public void testEstimateWithoutHistoryGrowsWithTheStars() throws Exception {
+        try (JobCostModel costModel = new JobCostModel(historyPath)) {
+            assertEquals(0, costModel.estimateSeconds("g:a", 0), 0);
+            assertTrue(costModel.estimateSeconds("g:a", 1000) > costModel.estimateSeconds("g:b", 100));
+        }
+        // the history is created with its header
+        assertEquals(HEADER, Files.readAllLines(historyPath).get(0));
+    }
+
+    @Test
+    public void testFitsLeaveOutTheSharedRepositories() throws Exception {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (int stars : STARS) {
+            // seconds = 2 * (1 + stars) = 2 * (1 + size)^0.5
+            int size = (1 + stars) * (1 + stars) - 1;
+            lines.add(String.format(Locale.ROOT, "g:s%d,%d,%d,1.0,%.1f,", stars, stars, size, 2.0 * (1 + stars)));
+        }
+        // artifacts that took their variables from another artifact of their repository, far off the power laws
+        for (int stars : STARS) {
+            lines.add(String.format(Locale.ROOT, "g:shared%d,%d,%d,1.0,1.0,1", stars, stars, stars));
+        }
+        // a partially written last line
+        lines.add("g:partial,12,");
+        Files.write(historyPath, lines);
+
+        try (JobCostModel costModel = new JobCostModel(historyPath)) {
+            assertEquals(100, costModel.estimateSeconds("g:new", 49), 1e-6);
+            costModel.setRepositorySize("g:new", 99);
+            // the repository size is preferred to the stars
+            assertEquals(20, costModel.estimateSeconds("g:new", 49), 1e-6);
+            // and the duration of a previous run to both
+            assertEquals(200, costModel.estimateSeconds("g:s99", 0), 0);
+            assertEquals(1, costModel.estimateSeconds("g:shared99", 99), 0);
+        }
+    }
+
+    @Test
+    public void testRecordedDurationsAreTheEstimatesOfTheNextRun() throws Exception {
+        try (JobCostModel costModel = new JobCostModel(historyPath)) {
+            costModel.setRepositorySize("g:a", 1200);
+            costModel.record("g:a", 10, 5, 300.0);
+            costModel.record("g:b", 10, 5, 30.0, true);
+            costModel.setRepositorySize("g:c", 800);
+            // a job that did not finish keeps its repository size only
+            costModel.record("g:c", 10, 5, null);
+        }
+        try (JobCostModel costModel = new JobCostModel(historyPath)) {
+            assertEquals(300, costModel.estimateSeconds("g:a", 0), 0);
+            assertEquals(30, costModel.estimateSeconds("g:b", 0), 0);
+            assertEquals(Integer.valueOf(1200), costModel.getRepositorySize("g:a"));
+            assertEquals(Integer.valueOf(800), costModel.getRepositorySize("g:c"));
+            assertNull(costModel.getRepositorySize("g:b"));
+            // too few durations to fit a power law
+            assertEquals(costModel.estimateSeconds("g:d", 10), costModel.estimateSeconds("g:c", 10), 0);
+        }
+    }
+}
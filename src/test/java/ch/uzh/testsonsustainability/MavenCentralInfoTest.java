@@ -2,13 +2,27 @@ package ch.uzh.testsonsustainability;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
 
 import static org.junit.Assert.*;
 
@@ -20,6 +34,9 @@ public class MavenCentralInfoTest {
     public String tag1;
     public String artifactTag2;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Before
     public void setUp() throws Exception {
         artifact1 = "com.hankcs:hanlp";
@@ -61,6 +78,159 @@ public class MavenCentralInfoTest {
         assertEquals(2,mavenCentralInfo.getTransitiveDependants(artifact1+":"+tag1).size());
     }
 
+    @Test
+    public void testGetDependantsInScope(){
+        assertEquals(1,mavenCentralInfo.getDependants(artifact1+":"+tag1, EnumSet.of(DependencyScope.COMPILE)).size());
+        assertEquals(0,mavenCentralInfo.getDependants(artifact1+":"+tag1, EnumSet.of(DependencyScope.TEST)).size());
+    }
+
+    @Test
+    public void testGetTransitiveDependantsInScope(){
+        assertEquals(2,mavenCentralInfo.getTransitiveDependants(artifact1+":"+tag1, EnumSet.of(DependencyScope.COMPILE, DependencyScope.RUNTIME)).size());
+        assertEquals(0,mavenCentralInfo.getTransitiveDependants(artifact1+":"+tag1, EnumSet.of(DependencyScope.TEST)).size());
+    }
+
+    @Test
+    public void testGetDependencyCounts() throws Exception{
+        Map<String, DependencyCounts> dependencyCounts = mavenCentralInfo.getDependencyCounts(
+                Arrays.asList(artifact1+":"+tag1, artifact1+":"+tag1, artifactTag2), EnumSet.allOf(DependencyScope.class));
+        assertEquals(1,dependencyCounts.size());
+        DependencyCounts artifactTagCounts = dependencyCounts.get(artifact1+":"+tag1);
+        assertEquals(mavenCentralInfo.getDependencies(artifact1+":"+tag1).size(),artifactTagCounts.getUpstreams());
+        assertEquals(mavenCentralInfo.getDependants(artifact1+":"+tag1).size(),artifactTagCounts.getDownstreams());
+        assertEquals(mavenCentralInfo.getTransitiveDependencies(artifact1+":"+tag1).size(),artifactTagCounts.getTransitiveUpstreams());
+        assertEquals(mavenCentralInfo.getTransitiveDependants(artifact1+":"+tag1).size(),artifactTagCounts.getTransitiveDownstreams());
+    }
+
+    @Test
+    public void testGetDependantArtifacts(){
+        assertEquals(artifact1,mavenCentralInfo.getArtifact(artifact1+":"+tag1));
+        assertEquals(4,mavenCentralInfo.getDependantArtifacts(artifact1, EnumSet.allOf(DependencyScope.class)).size());
+        assertEquals(0,mavenCentralInfo.getDependencyArtifacts(artifact1, EnumSet.allOf(DependencyScope.class)).size());
+    }
+
+    @Test
+    public void testIngestedDeltaMatchesTheMergedFiles() throws Exception {
+        SyntheticMavenData syntheticData = new SyntheticMavenData(60, 2, 3, 11);
+        String csvPath = syntheticData.writeTo(temporaryFolder.getRoot().toPath().resolve("ingested"));
+        String mergedCsvPath = syntheticData.writeTo(temporaryFolder.getRoot().toPath().resolve("merged"));
+        String newArtifactTag = "org.delta:artifact:1.0.0";
+        List<String> artifactTags = new ArrayList<>();
+        for (int artifactIndex = 0; artifactIndex < 60; artifactIndex++) {
+            for (int versionIndex = 0; versionIndex < 2; versionIndex++) {
+                artifactTags.add(artifactTag(artifactIndex, versionIndex));
+            }
+        }
+        artifactTags.add(newArtifactTag);
+        MavenCentralInfo mavenCentralInfo = new MavenCentralInfo(csvPath);
+        // the counts of all the artifact tags are cached before the delta
+        for (Set<DependencyScope> scopes : scopeSets()) {
+            mavenCentralInfo.getDependencyCounts(artifactTags, scopes);
+        }
+
+        // a link closing paths between many artifact tags, a scope added to an existing link, a new artifact tag, and
+        // a line still being written
+        String existingLink = Files.readAllLines(Paths.get(csvPath + Utils.CSV_MAVEN_LINKS_FILENAME)).get(1);
+        String links = link(artifactTag(10, 0), artifactTag(50, 1), "Compile")
+                + existingLink.substring(0, existingLink.lastIndexOf(',')) + ",\"Provided\"\n"
+                + link(newArtifactTag, artifactTag(1, 0), "Compile");
+        String partialLink = "\"" + artifactTag(20, 1) + "\",\"";
+        append(csvPath + Utils.CSV_MAVEN_LINKS_DELTA_FILENAME, "\"source\",\"target\",\"scope\"\n" + links + partialLink);
+        append(mergedCsvPath + Utils.CSV_MAVEN_LINKS_FILENAME, links);
+
+        MavenCentralInfo.Delta delta = mavenCentralInfo.readDelta();
+        assertFalse(delta.isEmpty());
+        mavenCentralInfo.ingest(delta);
+        assertTrue(mavenCentralInfo.artifactTagExists(newArtifactTag));
+        assertSameCounts(new MavenCentralInfo(mergedCsvPath), mavenCentralInfo, artifactTags);
+
+        // the end of the line is read with the next delta
+        append(csvPath + Utils.CSV_MAVEN_LINKS_DELTA_FILENAME, artifactTag(55, 0) + "\",\"Test\"\n");
+        append(mergedCsvPath + Utils.CSV_MAVEN_LINKS_FILENAME, link(artifactTag(20, 1), artifactTag(55, 0), "Test"));
+        delta = mavenCentralInfo.readDelta();
+        assertFalse(delta.isEmpty());
+        mavenCentralInfo.ingest(delta);
+        assertSameCounts(new MavenCentralInfo(mergedCsvPath), mavenCentralInfo, artifactTags);
+        assertTrue(mavenCentralInfo.readDelta().isEmpty());
+    }
+
+    @Test
+    public void testDormantTransitiveEstimatesAreWithinTheRelativeError() throws Exception {
+        int artifacts = 300;
+        String csvPath = new SyntheticMavenData(artifacts, 3, 4, 13).writeTo(temporaryFolder.getRoot().toPath());
+        MavenCentralInfo mavenCentralInfo = new MavenCentralInfo(csvPath);
+        assertFalse(mavenCentralInfo.hasDependencyDormancy());
+        // about a third of the GH repos are dormant, not the same ones every year
+        BiPredicate<String, LocalDate> dormantGHRepos = (ghRepo, date) -> Math.floorMod(ghRepo.hashCode() + date.getYear(), 3) == 0;
+        mavenCentralInfo.setDormantGHRepos(dormantGHRepos);
+        assertTrue(mavenCentralInfo.hasDependencyDormancy());
+
+        Set<DependencyScope> compileScope = EnumSet.of(DependencyScope.COMPILE);
+        for (Set<DependencyScope> scopes : Arrays.asList(EnumSet.allOf(DependencyScope.class), compileScope)) {
+            DependencyIndexTest.RelativeErrors errors = new DependencyIndexTest.RelativeErrors();
+            for (LocalDate date : Arrays.asList(LocalDate.of(2008, Month.JANUARY, 1), LocalDate.of(2012, Month.JULY, 1), LocalDate.of(2016, Month.JANUARY, 1))) {
+                for (int artifactIndex = 0; artifactIndex < artifacts; artifactIndex++) {
+                    String artifactTag;
+                    try {
+                        artifactTag = mavenCentralInfo.getCurrentVersionArtifactTag(SyntheticMavenData.artifact(artifactIndex), date);
+                    } catch (Exception e) {
+                        // no version released yet
+                        continue;
+                    }
+                    if (!mavenCentralInfo.artifactTagExists(artifactTag)) {
+                        continue;
+                    }
+                    int dormant = 0;
+                    for (String dependency : mavenCentralInfo.getTransitiveDependencies(artifactTag, scopes)) {
+                        if (dormantGHRepos.test(ghRepo(mavenCentralInfo.getArtifact(dependency)), date)) {
+                            dormant++;
+                        }
+                    }
+                    errors.add(artifactTag + " at " + date, dormant, mavenCentralInfo.getNumberOfTransitiveDormantDependencies(artifactTag, date, scopes));
+                }
+            }
+            errors.assertMean();
+        }
+    }
+
+    // the GH repo link SyntheticMavenData gives to the artifact
+    private static String ghRepo(String artifact) {
+        int artifactIndex = Integer.parseInt(artifact.substring(artifact.lastIndexOf(":artifact") + ":artifact".length()));
+        return String.format("https://github.com/synthetic%d/artifact%d", artifactIndex % 97, artifactIndex);
+    }
+
+    private static List<Set<DependencyScope>> scopeSets() {
+        return Arrays.asList(EnumSet.allOf(DependencyScope.class), EnumSet.of(DependencyScope.COMPILE),
+                EnumSet.of(DependencyScope.PROVIDED), EnumSet.of(DependencyScope.TEST));
+    }
+
+    private static void assertSameCounts(MavenCentralInfo expected, MavenCentralInfo actual, Collection<String> artifactTags) throws Exception {
+        for (Set<DependencyScope> scopes : scopeSets()) {
+            Map<String, DependencyCounts> expectedCounts = expected.getDependencyCounts(artifactTags, scopes);
+            Map<String, DependencyCounts> actualCounts = actual.getDependencyCounts(artifactTags, scopes);
+            assertEquals(expectedCounts.keySet(), actualCounts.keySet());
+            for (String artifactTag : expectedCounts.keySet()) {
+                String label = artifactTag + " " + scopes;
+                assertEquals(label, expectedCounts.get(artifactTag).getUpstreams(), actualCounts.get(artifactTag).getUpstreams());
+                assertEquals(label, expectedCounts.get(artifactTag).getDownstreams(), actualCounts.get(artifactTag).getDownstreams());
+                assertEquals(label, expectedCounts.get(artifactTag).getTransitiveUpstreams(), actualCounts.get(artifactTag).getTransitiveUpstreams());
+                assertEquals(label, expectedCounts.get(artifactTag).getTransitiveDownstreams(), actualCounts.get(artifactTag).getTransitiveDownstreams());
+            }
+        }
+    }
+
+    private static String artifactTag(int artifactIndex, int versionIndex) {
+        return SyntheticMavenData.artifact(artifactIndex) + ":" + SyntheticMavenData.tag(versionIndex);
+    }
+
+    private static String link(String source, String target, String scope) {
+        return "\"" + source + "\",\"" + target + "\",\"" + scope + "\"\n";
+    }
+
+    private static void append(String path, String lines) throws Exception {
+        Files.write(Paths.get(path), lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
     @After
     public void tearDown() throws Exception {
     }
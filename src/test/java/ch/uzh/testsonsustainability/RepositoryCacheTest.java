@@ -0,0 +1,133 @@
+package ch.uzh.testsonsustainability;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RepositoryCacheTest {
+
+    private static final LocalDate FIRST_MONTH = LocalDate.of(2015, 1, 1);
+
+    @Test
+    public void testArtifactsOfARepositoryShareItsResults() throws Exception {
+        RepositoryCache repositoryCache = new RepositoryCache(10);
+        AtomicInteger computations = new AtomicInteger();
+        RepositoryCache.Results results = repositoryCache.get("o/Repo", FIRST_MONTH, () -> results(computations));
+        assertSame(results, repositoryCache.get("o/repo", FIRST_MONTH, () -> results(computations)));
+        // the months of a job starting later are different results
+        assertNotSame(results, repositoryCache.get("o/repo", FIRST_MONTH.plusMonths(1), () -> results(computations)));
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    public void testWaitersFailWithTheComputation() throws Exception {
+        RepositoryCache repositoryCache = new RepositoryCache(10);
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<RepositoryCache.Results> first = executor.submit(() -> repositoryCache.get("o/repo", FIRST_MONTH, () -> {
+                computing.countDown();
+                fail.await();
+                throw new IOException("clone failed");
+            }));
+            computing.await();
+            AtomicReference<Thread> waiter = new AtomicReference<>();
+            Future<RepositoryCache.Results> second = executor.submit(() -> {
+                waiter.set(Thread.currentThread());
+                return repositoryCache.get("o/repo", FIRST_MONTH, () -> results(computations));
+            });
+            // the second artifact waits for the computation of the first
+            while (waiter.get() == null || waiter.get().getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            fail.countDown();
+            assertCause(first);
+            assertCause(second);
+            assertEquals(0, computations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        // the failure is not kept, the next artifact computes the results again
+        assertNotNull(repositoryCache.get("o/repo", FIRST_MONTH, () -> results(computations)));
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    public void testErrorIsNotKept() throws Exception {
+        RepositoryCache repositoryCache = new RepositoryCache(10);
+        try {
+            repositoryCache.get("o/repo", FIRST_MONTH, () -> {
+                throw new OutOfMemoryError("out of memory");
+            });
+            fail();
+        } catch (OutOfMemoryError e) {
+            assertEquals("out of memory", e.getMessage());
+        }
+        AtomicInteger computations = new AtomicInteger();
+        repositoryCache.get("o/repo", FIRST_MONTH, () -> results(computations));
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRepositoriesAreEvicted() throws Exception {
+        RepositoryCache repositoryCache = new RepositoryCache(2);
+        AtomicInteger computations = new AtomicInteger();
+        repositoryCache.get("o/a", FIRST_MONTH, () -> results(computations));
+        repositoryCache.get("o/b", FIRST_MONTH, () -> results(computations));
+        repositoryCache.get("o/a", FIRST_MONTH, () -> results(computations));
+        assertEquals(2, computations.get());
+        // c evicts b, the least recently used
+        repositoryCache.get("o/c", FIRST_MONTH, () -> results(computations));
+        repositoryCache.get("o/a", FIRST_MONTH, () -> results(computations));
+        assertEquals(3, computations.get());
+        repositoryCache.get("o/b", FIRST_MONTH, () -> results(computations));
+        assertEquals(4, computations.get());
+    }
+
+    @Test
+    public void testMonthsNeededByAnotherArtifactAreComputedOnce() throws Exception {
+        Map<LocalDate, Object> coreTeams = new HashMap<>();
+        coreTeams.put(FIRST_MONTH.plusMonths(1), 3);
+        Map<String, Map<LocalDate, Object>> monthValues = new HashMap<>();
+        monthValues.put("q90", coreTeams);
+        AtomicInteger computations = new AtomicInteger();
+        RepositoryCache.MonthComputation coreTeam = untilLocalDate -> computations.incrementAndGet() * 10;
+        RepositoryCache.Results results = new RepositoryCache.Results(null, 100, monthValues, Collections.singletonMap("q90", coreTeam), false);
+        assertEquals(3, results.getMonthValue("q90", FIRST_MONTH.plusMonths(1)));
+        assertEquals(0, computations.get());
+        // a month without a version for the artifact that computed the repository
+        assertEquals(10, results.getMonthValue("q90", FIRST_MONTH.plusMonths(2)));
+        assertEquals(10, results.getMonthValue("q90", FIRST_MONTH.plusMonths(2)));
+        assertEquals(1, computations.get());
+    }
+
+    private static RepositoryCache.Results results(AtomicInteger computations) {
+        computations.incrementAndGet();
+        return new RepositoryCache.Results(null, 100, Collections.emptyMap(), Collections.emptyMap(), false);
+    }
+
+    private static void assertCause(Future<RepositoryCache.Results> future) throws InterruptedException {
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals("clone failed", e.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ch.uzh.testsonsustainability;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * Seeded generator of the maven csv input files (links, releases and artifacts / GH repos) at a given scale.
+ *
+ * Artifacts only depend on artifacts with a lower index, so the graph is a DAG, and dependencies are skewed towards
+ * the first artifacts to reproduce the hubs (logging, testing libraries) of the real dataset.
+ */
+public class SyntheticMavenData {
+
+    public static final LocalDate FIRST_RELEASE = LocalDate.of(2005, 1, 1);
+    private static final String[] SCOPES = {"Compile", "Compile", "Compile", "Compile", "Compile", "Compile", "Compile", "Test", "Test", "Runtime"};
+
+    private final int artifacts;
+    private final int versionsPerArtifact;
+    private final int dependenciesPerVersion;
+    private final long seed;
+
+    public SyntheticMavenData(int artifacts, int versionsPerArtifact, int dependenciesPerVersion, long seed) {
+        this.artifacts = artifacts;
+        this.versionsPerArtifact = versionsPerArtifact;
+        this.dependenciesPerVersion = dependenciesPerVersion;
+        this.seed = seed;
+    }
+
+    public static String artifact(int artifactIndex) {
+        return String.format("org.synthetic%d:artifact%d", artifactIndex % 97, artifactIndex);
+    }
+
+    public static String tag(int versionIndex) {
+        return String.format("1.%d.0", versionIndex);
+    }
+
+    public static LocalDate releaseDate(int artifactIndex, int versionIndex) {
+        // versions are released every 3 months, artifacts start at staggered dates
+        return FIRST_RELEASE.plusMonths(artifactIndex % 60 + versionIndex * 3L);
+    }
+
+    /**
+     * Writes the three csv files in the directory and returns the directory path with a trailing slash.
+     */
+    public String writeTo(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Random random = new Random(seed);
+        DateTimeFormatter releaseFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z[GMT]'");
+
+        try (PrintWriter links = new PrintWriter(Files.newBufferedWriter(directory.resolve(Utils.CSV_MAVEN_LINKS_FILENAME)))) {
+            links.println("\"source\",\"target\",\"scope\"");
+            for (int artifactIndex = 1; artifactIndex < artifacts; artifactIndex++) {
+                for (int versionIndex = 0; versionIndex < versionsPerArtifact; versionIndex++) {
+                    for (int d = 0; d < dependenciesPerVersion; d++) {
+                        // squaring the uniform sample skews the dependencies towards the first artifacts
+                        double r = random.nextDouble();
+                        int dependencyIndex = (int) (r * r * artifactIndex);
+                        int dependencyVersion = random.nextInt(versionsPerArtifact);
+                        links.printf("\"%s:%s\",\"%s:%s\",\"%s\"%n",
+                                artifact(artifactIndex), tag(versionIndex),
+                                artifact(dependencyIndex), tag(dependencyVersion),
+                                SCOPES[random.nextInt(SCOPES.length)]);
+                    }
+                }
+            }
+        }
+
+        try (PrintWriter releases = new PrintWriter(Files.newBufferedWriter(directory.resolve(Utils.ALL_ARTIFACT_RELEASES_FILENAME)))) {
+            releases.println("\"artifact\",\"packaging\",\"release\"");
+            for (int artifactIndex = 0; artifactIndex < artifacts; artifactIndex++) {
+                for (int versionIndex = 0; versionIndex < versionsPerArtifact; versionIndex++) {
+                    LocalDate releaseDate = releaseDate(artifactIndex, versionIndex);
+                    releases.printf("\"%s:%s\",\"Jar\",\"%s\"%n", artifact(artifactIndex), tag(versionIndex),
+                            releaseFormatter.format(releaseDate.atTime(12, random.nextInt(60))));
+                }
+            }
+        }
+
+        try (PrintWriter repos = new PrintWriter(Files.newBufferedWriter(directory.resolve(Utils.CSV_INPUT_FILENAME)))) {
+            repos.println("Project;Github Link;Github API;Star");
+            for (int artifactIndex = 0; artifactIndex < artifacts; artifactIndex++) {
+                String repo = String.format("synthetic%d/artifact%d", artifactIndex % 97, artifactIndex);
+                repos.printf("%s;https://github.com/%s;https://api.github.com/repos/%s;%d%n",
+                        artifact(artifactIndex), repo, repo, Math.max(1, 20000 / (artifactIndex + 1)));
+            }
+        }
+        return Utils.normalizePath(directory.toAbsolutePath().toString());
+    }
+}
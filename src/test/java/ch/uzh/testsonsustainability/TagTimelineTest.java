@@ -0,0 +1,117 @@
+package ch.uzh.testsonsustainability;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class TagTimelineTest {
+
+    private static final int COMMITS = 30;
+    // 2015-01-01, in whole seconds as git stores the commit dates
+    private static final long FIRST_COMMIT = 1420070400000L;
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testTagsAtMatchTheLatestTagBeforeEachDate() throws Exception {
+        List<Long> tagTimes = new ArrayList<>();
+        List<String> tagNames = new ArrayList<>();
+        try (Git git = Git.init().setDirectory(temporaryFolder.getRoot()).call()) {
+            for (int i = 0; i < COMMITS; i++) {
+                // commits 9 and 10 share their date
+                long time = FIRST_COMMIT + (i == 10 ? 9 : i) * DAY;
+                RevCommit commit = commit(git, i, time);
+                if (i % 3 == 0) {
+                    lightweightTag(git, "v" + i, commit);
+                    tagTimes.add(time);
+                    tagNames.add("v" + i);
+                } else if (i % 3 == 1) {
+                    // the date of an annotated tag is the one of its commit, not of its tagger
+                    git.tag().setName("a" + i).setObjectId(commit).setMessage("release " + i)
+                            .setTagger(new PersonIdent("tagger", "tagger@example.org", new Date(time + 365 * DAY), TimeZone.getTimeZone("UTC"))).call();
+                    tagTimes.add(time);
+                    tagNames.add("a" + i);
+                }
+                if (i == 21) {
+                    // tags of the same commit are ordered by name
+                    lightweightTag(git, "z21", commit);
+                    tagTimes.add(time);
+                    tagNames.add("z21");
+                }
+                if (i == 27) {
+                    // a tag of a tree has no commit date
+                    lightweightTag(git, "tree27", commit.getTree());
+                }
+            }
+
+            List<Date> dates = new ArrayList<>();
+            for (long time = FIRST_COMMIT - DAY; time <= FIRST_COMMIT + (COMMITS + 1) * DAY; time += DAY / 2) {
+                // exactly at a commit, and one millisecond after it
+                dates.add(new Date(time));
+                dates.add(new Date(time + 1));
+            }
+            List<String> tags = TagTimeline.read(git).tagsAt(dates);
+            assertEquals(dates.size(), tags.size());
+            for (int d = 0; d < dates.size(); d++) {
+                assertEquals(dates.get(d).toString(), latestTagBefore(tagTimes, tagNames, dates.get(d).getTime()), tags.get(d));
+            }
+            assertNull(tags.get(0));
+            assertEquals("a28", tags.get(tags.size() - 1));
+        }
+    }
+
+    @Test
+    public void testRepositoryWithoutTags() throws Exception {
+        try (Git git = Git.init().setDirectory(temporaryFolder.getRoot()).call()) {
+            commit(git, 0, FIRST_COMMIT);
+            List<String> tags = TagTimeline.read(git).tagsAt(Arrays.asList(new Date(FIRST_COMMIT), new Date(FIRST_COMMIT + DAY)));
+            assertNull(tags.get(0));
+            assertNull(tags.get(1));
+        }
+    }
+
+    // the tag of the latest date strictly before the time, the last by name among the tags of that date
+    private static String latestTagBefore(List<Long> tagTimes, List<String> tagNames, long time) {
+        String latest = null;
+        long latestTime = Long.MIN_VALUE;
+        for (int i = 0; i < tagTimes.size(); i++) {
+            long tagTime = tagTimes.get(i);
+            if (tagTime < time && (tagTime > latestTime || tagTime == latestTime && tagNames.get(i).compareTo(latest) > 0)) {
+                latest = tagNames.get(i);
+                latestTime = tagTime;
+            }
+        }
+        return latest;
+    }
+
+    private static RevCommit commit(Git git, int i, long time) throws Exception {
+        Files.write(git.getRepository().getWorkTree().toPath().resolve("version.txt"), ("version " + i).getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(".").call();
+        PersonIdent ident = new PersonIdent("committer", "committer@example.org", new Date(time), TimeZone.getTimeZone("UTC"));
+        return git.commit().setMessage("commit " + i).setAuthor(ident).setCommitter(ident).call();
+    }
+
+    private static void lightweightTag(Git git, String name, ObjectId objectId) throws Exception {
+        RefUpdate tagUpdate = git.getRepository().updateRef(Constants.R_TAGS + name);
+        tagUpdate.setNewObjectId(objectId);
+        assertEquals(RefUpdate.Result.NEW, tagUpdate.update());
+    }
+}
@@ -0,0 +1,91 @@
+package ch.uzh.testsonsustainability;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TransitiveSketchesTest {
+
+    private static final int REGISTERS = 1 << TransitiveSketches.MIN_PRECISION;
+
+    @Test
+    public void testPrecisionOfTheDefaultError() {
+        // 1.04 / sqrt(4096) is the first standard error below 2%
+        assertEquals(12, TransitiveSketches.precision(ApproximateCounts.DEFAULT_RELATIVE_ERROR));
+        assertEquals(TransitiveSketches.MIN_PRECISION, TransitiveSketches.precision(0.5));
+        assertEquals(TransitiveSketches.MAX_PRECISION, TransitiveSketches.precision(0.0001));
+    }
+
+    @Test
+    public void testSparseSketchTurnsDenseAfterAQuarterOfTheRegisters() {
+        TransitiveSketches.Sketch sketch = new TransitiveSketches.Sketch(TransitiveSketches.MIN_PRECISION);
+        int[] previous = new int[REGISTERS];
+        boolean wasSparse = true;
+        for (int node = 0; node < 200; node++) {
+            sketch.add(node);
+            int nonZero = 0;
+            int changed = 0;
+            for (int register = 0; register < REGISTERS; register++) {
+                int value = sketch.register(register);
+                // the registers only grow, across the switch to the dense registers too
+                assertTrue(node + " " + register, value >= previous[register]);
+                changed += value != previous[register] ? 1 : 0;
+                nonZero += value != 0 ? 1 : 0;
+                previous[register] = value;
+            }
+            assertTrue(node + " changed " + changed + " registers", changed <= 1);
+            assertEquals(node + " with " + nonZero + " registers", nonZero <= REGISTERS / 4, sketch.isSparse());
+            // once dense, it stays dense
+            assertTrue(wasSparse || !sketch.isSparse());
+            wasSparse = sketch.isSparse();
+        }
+        assertFalse(sketch.isSparse());
+    }
+
+    @Test
+    public void testMergedSparseEntriesKeepTheLargerValueOfARegister() {
+        TransitiveSketches.Sketch sketch = new TransitiveSketches.Sketch(TransitiveSketches.MIN_PRECISION);
+        sketch.merge(new int[]{3 << 8 | 2, 5 << 8 | 1}, 2);
+        sketch.merge(new int[]{3 << 8 | 4, 7 << 8 | 1}, 2);
+        sketch.merge(new int[]{3 << 8 | 1, 5 << 8 | 3}, 2);
+        assertTrue(sketch.isSparse());
+        assertEquals(4, sketch.register(3));
+        assertEquals(3, sketch.register(5));
+        assertEquals(1, sketch.register(7));
+        // linear counting over the three registers set, a register counted twice would be a fourth one
+        assertEquals(REGISTERS * Math.log(REGISTERS / (REGISTERS - 3.0)), sketch.estimate(), 1e-9);
+
+        TransitiveSketches.Sketch other = new TransitiveSketches.Sketch(TransitiveSketches.MIN_PRECISION);
+        other.merge(new int[]{3 << 8 | 6, 9 << 8 | 2}, 2);
+        sketch.merge(other);
+        assertTrue(sketch.isSparse());
+        assertEquals(6, sketch.register(3));
+        assertEquals(2, sketch.register(9));
+    }
+
+    @Test
+    public void testSparseAndDenseSketchesMerge() {
+        TransitiveSketches.Sketch dense = new TransitiveSketches.Sketch(TransitiveSketches.MIN_PRECISION);
+        for (int node = 0; node < 100; node++) {
+            dense.add(node);
+        }
+        assertFalse(dense.isSparse());
+        int register = 0;
+        int value = dense.register(register) + 1;
+
+        TransitiveSketches.Sketch sparse = new TransitiveSketches.Sketch(TransitiveSketches.MIN_PRECISION);
+        sparse.merge(new int[]{register << 8 | value}, 1);
+        TransitiveSketches.Sketch sparseIntoDense = new TransitiveSketches.Sketch(TransitiveSketches.MIN_PRECISION);
+        sparseIntoDense.merge(dense);
+        sparseIntoDense.merge(sparse);
+        // a sparse sketch merging a dense one turns dense
+        sparse.merge(dense);
+        assertFalse(sparse.isSparse());
+        for (int r = 0; r < REGISTERS; r++) {
+            int expected = r == register ? value : dense.register(r);
+            assertEquals(expected, sparse.register(r));
+            assertEquals(expected, sparseIntoDense.register(r));
+        }
+        assertEquals(sparse.estimate(), sparseIntoDense.estimate(), 0);
+    }
+}
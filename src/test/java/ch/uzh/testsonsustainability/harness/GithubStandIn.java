@@ -0,0 +1,580 @@
+package ch.uzh.testsonsustainability.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the github REST endpoints used by GithubAPI, and for the GraphQL endpoint queried by
+ * GithubGraphQL.
+ *
+ * Repositories are served from local git repositories, so that commit shas match the clones of the worker. Issues,
+ * contributors and subscriptions are generated from a seed. Lists are paginated with Link headers and every response
+ * carries the rate limit headers; once the limit of the window is used, requests are rejected as github does.
+ *
+ * The GraphQL endpoint does not parse the query: it answers the history and counts queries of GithubGraphQL from
+ * their variables, with opaque offsets as cursors. Every query costs one point of a budget separate from the REST
+ * rate limit.
+ */
+public class GithubStandIn implements AutoCloseable {
+
+    private static final Pattern REPO = Pattern.compile("^/repos/([^/]+)/([^/]+)(/.*)?$");
+    private static final Pattern USER = Pattern.compile("^/users/([^/]+)(/subscriptions)?$");
+    private static final Pattern COMMIT = Pattern.compile("^/commits/([0-9a-f]{40})$");
+    private static final int DEFAULT_PAGE_SIZE = 30;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String url;
+    private final Map<String, RepositoryData> repositories = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> callsPerRepository = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder graphQLQueries = new LongAdder();
+    private final long seed;
+
+    private final int rateLimit;
+    private final long rateLimitWindowMillis;
+    private long windowStart = System.currentTimeMillis();
+    private int remaining;
+    private int remainingPoints;
+
+    public GithubStandIn(int rateLimit, long rateLimitWindowSeconds, long seed) throws IOException {
+        this.rateLimit = rateLimit;
+        this.rateLimitWindowMillis = rateLimitWindowSeconds * 1000;
+        this.remaining = rateLimit;
+        this.remainingPoints = rateLimit;
+        this.seed = seed;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        executor = Executors.newFixedThreadPool(8);
+        server.setExecutor(executor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getGraphQLQueries() {
+        return graphQLQueries.sum();
+    }
+
+    public Map<String, Long> getCallsPerRepository() {
+        Map<String, Long> callsPerRepositorySnapshot = new LinkedHashMap<>();
+        callsPerRepository.forEach((repoName, repoCalls) -> callsPerRepositorySnapshot.put(repoName, repoCalls.sum()));
+        return callsPerRepositorySnapshot;
+    }
+
+    /**
+     * Serves the repository from the local git repository, with seeded issues and contributors.
+     */
+    public void register(String repoName, File gitDirectory, int developers) throws Exception {
+        repositories.put(repoName, new RepositoryData(repoName, gitDirectory, developers, new Random(seed + repoName.hashCode())));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        calls.increment();
+        try {
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (path.equals("/graphql")) {
+                // github counts the GraphQL points apart from the REST calls
+                handleGraphQL(exchange);
+                return;
+            }
+            if (path.equals("/rate_limit")) {
+                // github does not count the requests of the rate limit status
+                JSONObject core;
+                synchronized (this) {
+                    acquireWindow();
+                    core = new JSONObject().put("limit", rateLimit).put("remaining", remaining).put("reset", resetEpochSecond());
+                }
+                respond(exchange, 200, new JSONObject().put("rate", core).put("resources", new JSONObject().put("core", core)).toString(), null);
+                return;
+            }
+            if (!acquireRateLimit()) {
+                respond(exchange, 403, new JSONObject().put("message", "API rate limit exceeded").toString(), null);
+                return;
+            }
+
+            Matcher repoMatcher = REPO.matcher(path);
+            Matcher userMatcher = USER.matcher(path);
+            if (repoMatcher.matches()) {
+                String repoName = repoMatcher.group(1) + "/" + repoMatcher.group(2);
+                callsPerRepository.computeIfAbsent(repoName, k -> new LongAdder()).increment();
+                RepositoryData repository = repositories.get(repoName);
+                if (repository == null) {
+                    notFound(exchange);
+                } else {
+                    handleRepository(exchange, repository, repoMatcher.group(3) == null ? "" : repoMatcher.group(3), query);
+                }
+            } else if (userMatcher.matches()) {
+                String login = userMatcher.group(1);
+                if (userMatcher.group(2) == null) {
+                    respond(exchange, 200, user(login).toString(), null);
+                } else {
+                    respondPage(exchange, subscriptions(login), query);
+                }
+            } else {
+                notFound(exchange);
+            }
+        } catch (Exception e) {
+            respond(exchange, 500, new JSONObject().put("message", String.valueOf(e.getMessage())).toString(), null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleRepository(HttpExchange exchange, RepositoryData repository, String resource, Map<String, String> query) throws IOException, ParseException {
+        Matcher commitMatcher = COMMIT.matcher(resource);
+        if (resource.isEmpty()) {
+            respond(exchange, 200, repository.toJson().toString(), null);
+        } else if (resource.equals("/commits")) {
+            Date since = query.containsKey("since") ? parseDate(query.get("since")) : null;
+            Date until = query.containsKey("until") ? parseDate(query.get("until")) : null;
+            String author = query.get("author");
+            Predicate<CommitData> filter = commit -> (since == null || !commit.date.before(since))
+                    && (until == null || !commit.date.after(until))
+                    && (author == null || author.equals(commit.login));
+            List<Object> commits = new ArrayList<>();
+            for (CommitData commit : repository.commits) {
+                if (filter.test(commit)) {
+                    commits.add(repository.commitJson(commit, false));
+                }
+            }
+            respondPage(exchange, commits, query);
+        } else if (commitMatcher.matches()) {
+            CommitData commit = repository.commitsBySha.get(commitMatcher.group(1));
+            if (commit == null) {
+                notFound(exchange);
+            } else {
+                respond(exchange, 200, repository.commitJson(commit, true).toString(), null);
+            }
+        } else if (resource.equals("/issues")) {
+            String state = query.getOrDefault("state", "open");
+            List<Object> issues = new ArrayList<>();
+            for (JSONObject issue : repository.issues) {
+                if (state.equals("all") || state.equals(issue.getString("state"))) {
+                    issues.add(issue);
+                }
+            }
+            respondPage(exchange, issues, query);
+        } else if (resource.equals("/contributors")) {
+            respondPage(exchange, new ArrayList<>(repository.contributors), query);
+        } else if (resource.equals("/tags")) {
+            respondPage(exchange, new ArrayList<>(repository.tags), query);
+        } else {
+            notFound(exchange);
+        }
+    }
+
+    private void handleGraphQL(HttpExchange exchange) throws IOException, ParseException {
+        graphQLQueries.increment();
+        JSONObject variables = new JSONObject(new String(readAll(exchange), StandardCharsets.UTF_8)).getJSONObject("variables");
+        if (!acquireGraphQLPoint()) {
+            JSONObject error = new JSONObject().put("type", "RATE_LIMITED").put("message", "API rate limit exceeded");
+            respond(exchange, 200, new JSONObject().put("errors", new JSONArray().put(error)).toString(), null);
+            return;
+        }
+        String repoName = variables.getString("owner") + "/" + variables.getString("name");
+        callsPerRepository.computeIfAbsent(repoName, k -> new LongAdder()).increment();
+        JSONObject data = new JSONObject();
+        synchronized (this) {
+            data.put("rateLimit", new JSONObject().put("cost", 1).put("remaining", remainingPoints).put("resetAt", formatDate(new Date(resetEpochSecond() * 1000))));
+        }
+        RepositoryData repository = repositories.get(repoName);
+        if (repository == null) {
+            data.put("repository", JSONObject.NULL);
+            JSONObject error = new JSONObject().put("type", "NOT_FOUND").put("message", "Could not resolve to a Repository with the name '" + repoName + "'.");
+            respond(exchange, 200, new JSONObject().put("data", data).put("errors", new JSONArray().put(error)).toString(), null);
+            return;
+        }
+
+        JSONObject repositoryJson = new JSONObject();
+        if (!variables.has("withCommits")) {
+            // the counts query of the budget planner
+            Date since = parseDate(variables.getString("since"));
+            int commits = 0;
+            for (CommitData commit : repository.commits) {
+                if (!commit.date.before(since)) {
+                    commits++;
+                }
+            }
+            int issues = 0;
+            int allIssues = 0;
+            for (JSONObject issue : repository.issues) {
+                boolean updated = !parseDate(issue.getString("created_at")).before(since)
+                        || issue.has("closed_at") && !parseDate(issue.getString("closed_at")).before(since);
+                if (!issue.has("pull_request") && updated) {
+                    issues++;
+                }
+                if (!issue.has("pull_request")) {
+                    allIssues++;
+                }
+            }
+            repositoryJson.put("defaultBranchRef", new JSONObject().put("target", new JSONObject().put("history", new JSONObject().put("totalCount", commits))))
+                    .put("issues", new JSONObject().put("totalCount", issues))
+                    .put("allIssues", new JSONObject().put("totalCount", allIssues))
+                    .put("mentionableUsers", new JSONObject().put("totalCount", repository.contributors.size()));
+            respond(exchange, 200, new JSONObject().put("data", data.put("repository", repositoryJson)).toString(), null);
+            return;
+        }
+        if (variables.getBoolean("withCommits")) {
+            Date since = variables.isNull("since") ? null : parseDate(variables.getString("since"));
+            Date until = variables.isNull("until") ? null : parseDate(variables.getString("until"));
+            boolean withUsers = variables.getBoolean("withUsers");
+            List<JSONObject> commits = new ArrayList<>();
+            for (CommitData commit : repository.commits) {
+                if ((since == null || !commit.date.before(since)) && (until == null || !commit.date.after(until))) {
+                    commits.add(repository.commitNode(commit, withUsers));
+                }
+            }
+            JSONObject history = connection(commits, variables.optString("commitCursor", null));
+            repositoryJson.put("defaultBranchRef", new JSONObject().put("target", new JSONObject().put("history", history)));
+        }
+        if (variables.getBoolean("withIssues")) {
+            List<JSONObject> issues = new ArrayList<>();
+            for (JSONObject issue : repository.issues) {
+                // pull requests are not listed as issues in GraphQL
+                if (!issue.has("pull_request")) {
+                    issues.add(new JSONObject()
+                            .put("createdAt", issue.getString("created_at"))
+                            .put("closedAt", issue.has("closed_at") ? issue.getString("closed_at") : JSONObject.NULL)
+                            .put("state", issue.getString("state").toUpperCase())
+                            .put("author", new JSONObject().put("login", issue.getJSONObject("user").getString("login"))));
+                }
+            }
+            repositoryJson.put("issues", connection(issues, variables.optString("issueCursor", null)));
+        }
+        respond(exchange, 200, new JSONObject().put("data", data.put("repository", repositoryJson)).toString(), null);
+    }
+
+    private static JSONObject connection(List<JSONObject> nodes, String cursor) {
+        int start = cursor == null ? 0 : Integer.parseInt(cursor);
+        int end = Math.min(nodes.size(), start + MAX_PAGE_SIZE);
+        return new JSONObject()
+                .put("nodes", new JSONArray(nodes.subList(Math.min(start, end), end)))
+                .put("pageInfo", new JSONObject().put("hasNextPage", end < nodes.size()).put("endCursor", String.valueOf(end)));
+    }
+
+    private static byte[] readAll(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = exchange.getRequestBody().read(buffer)) > 0) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private List<Object> subscriptions(String login) {
+        // every developer watches a couple of the served repositories
+        List<String> repoNames = new ArrayList<>(repositories.keySet());
+        repoNames.sort(Comparator.naturalOrder());
+        List<Object> subscriptions = new ArrayList<>();
+        if (!repoNames.isEmpty()) {
+            Random random = new Random(seed + login.hashCode());
+            for (int i = 0; i < 2; i++) {
+                subscriptions.add(repositories.get(repoNames.get(random.nextInt(repoNames.size()))).toJson());
+            }
+        }
+        return subscriptions;
+    }
+
+    private JSONObject user(String login) {
+        return new JSONObject()
+                .put("login", login)
+                .put("id", Math.abs(login.hashCode()))
+                .put("type", "User")
+                .put("url", url + "/users/" + login)
+                .put("html_url", "https://github.com/" + login);
+    }
+
+    private synchronized boolean acquireRateLimit() {
+        acquireWindow();
+        if (remaining == 0) {
+            return false;
+        }
+        remaining--;
+        return true;
+    }
+
+    private synchronized boolean acquireGraphQLPoint() {
+        acquireWindow();
+        if (remainingPoints == 0) {
+            return false;
+        }
+        remainingPoints--;
+        return true;
+    }
+
+    private synchronized void acquireWindow() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= rateLimitWindowMillis) {
+            windowStart = now;
+            remaining = rateLimit;
+            remainingPoints = rateLimit;
+        }
+    }
+
+    private synchronized long resetEpochSecond() {
+        return (windowStart + rateLimitWindowMillis) / 1000;
+    }
+
+    private void respondPage(HttpExchange exchange, List<Object> items, Map<String, String> query) throws IOException {
+        int pageSize = Math.min(MAX_PAGE_SIZE, Integer.parseInt(query.getOrDefault("per_page", String.valueOf(DEFAULT_PAGE_SIZE))));
+        int page = Integer.parseInt(query.getOrDefault("page", "1"));
+        int lastPage = Math.max(1, (items.size() + pageSize - 1) / pageSize);
+        JSONArray pageItems = new JSONArray();
+        for (int i = (page - 1) * pageSize; i < Math.min(items.size(), page * pageSize); i++) {
+            pageItems.put(items.get(i));
+        }
+        String link = null;
+        if (page < lastPage) {
+            link = String.format("<%s>; rel=\"next\", <%s>; rel=\"last\"",
+                    pageUrl(exchange, query, page + 1), pageUrl(exchange, query, lastPage));
+        }
+        respond(exchange, 200, pageItems.toString(), link);
+    }
+
+    private String pageUrl(HttpExchange exchange, Map<String, String> query, int page) {
+        StringBuilder pageUrl = new StringBuilder(url).append(exchange.getRequestURI().getPath()).append('?');
+        for (Map.Entry<String, String> parameter : query.entrySet()) {
+            if (!parameter.getKey().equals("page")) {
+                pageUrl.append(parameter.getKey()).append('=').append(parameter.getValue()).append('&');
+            }
+        }
+        return pageUrl.append("page=").append(page).toString();
+    }
+
+    private void notFound(HttpExchange exchange) throws IOException {
+        respond(exchange, 404, new JSONObject().put("message", "Not Found").toString(), null);
+    }
+
+    private void respond(HttpExchange exchange, int status, String body, String link) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        synchronized (this) {
+            exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(rateLimit));
+            exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining));
+        }
+        exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(resetEpochSecond()));
+        if (link != null) {
+            exchange.getResponseHeaders().set("Link", link);
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> query = new LinkedHashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    query.put(parameter.substring(0, separator), URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static SimpleDateFormat dateFormat() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return dateFormat;
+    }
+
+    private static Date parseDate(String date) throws ParseException {
+        return dateFormat().parse(date);
+    }
+
+    private static String formatDate(Date date) {
+        return dateFormat().format(date);
+    }
+
+    private static class CommitData {
+        private final String sha;
+        private final List<String> parents = new ArrayList<>();
+        private final String name;
+        private final String email;
+        private final String login;
+        private final Date date;
+
+        private CommitData(RevCommit commit) {
+            sha = commit.getName();
+            for (RevCommit parent : commit.getParents()) {
+                parents.add(parent.getName());
+            }
+            name = commit.getAuthorIdent().getName();
+            email = commit.getAuthorIdent().getEmailAddress();
+            login = email.substring(0, email.indexOf('@'));
+            date = commit.getCommitterIdent().getWhen();
+        }
+    }
+
+    private class RepositoryData {
+        private final String repoName;
+        private final List<CommitData> commits = new ArrayList<>();
+        private final Map<String, CommitData> commitsBySha = new LinkedHashMap<>();
+        private final List<JSONObject> issues = new ArrayList<>();
+        private final List<JSONObject> contributors = new ArrayList<>();
+        private final List<JSONObject> tags = new ArrayList<>();
+        private final AtomicLong issueIds = new AtomicLong();
+
+        private RepositoryData(String repoName, File gitDirectory, int developers, Random random) throws Exception {
+            this.repoName = repoName;
+            try (Git git = Git.open(gitDirectory); RevWalk revWalk = new RevWalk(git.getRepository())) {
+                // newest first, as github lists them
+                for (RevCommit commit : git.log().call()) {
+                    CommitData commitData = new CommitData(commit);
+                    commits.add(commitData);
+                    commitsBySha.put(commitData.sha, commitData);
+                }
+                for (Ref tagRef : git.tagList().call()) {
+                    ObjectId commitId = revWalk.parseCommit(tagRef.getObjectId()).getId();
+                    tags.add(new JSONObject()
+                            .put("name", tagRef.getName().substring("refs/tags/".length()))
+                            .put("commit", new JSONObject().put("sha", commitId.getName()).put("url", apiUrl() + "/commits/" + commitId.getName())));
+                }
+            }
+
+            for (int developer = 0; developer < developers; developer += 2) {
+                contributors.add(user(SyntheticRepository.login(developer)).put("contributions", developers - developer));
+            }
+
+            // one issue or pull request every four commits, created along the history of the repository
+            List<Date> commitDates = new ArrayList<>();
+            for (CommitData commit : commits) {
+                commitDates.add(commit.date);
+            }
+            for (Date createdAt : commitDates.subList(0, commitDates.size() / 4)) {
+                long number = issueIds.incrementAndGet();
+                boolean closed = random.nextInt(3) > 0;
+                JSONObject issue = new JSONObject()
+                        .put("id", number)
+                        .put("number", number)
+                        .put("url", apiUrl() + "/issues/" + number)
+                        .put("html_url", "https://github.com/" + repoName + "/issues/" + number)
+                        .put("title", "Issue " + number)
+                        .put("state", closed ? "closed" : "open")
+                        .put("created_at", formatDate(createdAt))
+                        .put("user", user(SyntheticRepository.login(random.nextInt(developers * 4))));
+                if (closed) {
+                    issue.put("closed_at", formatDate(new Date(createdAt.getTime() + random.nextInt(30 * 24 * 3600) * 1000L)));
+                }
+                if (random.nextInt(4) == 0) {
+                    issue.put("pull_request", new JSONObject().put("url", apiUrl() + "/pulls/" + number));
+                }
+                issues.add(issue);
+            }
+            issues.sort(Comparator.comparing((JSONObject issue) -> issue.getString("created_at")).reversed());
+        }
+
+        private String apiUrl() {
+            return url + "/repos/" + repoName;
+        }
+
+        private JSONObject toJson() {
+            String[] ownerAndName = repoName.split("/");
+            return new JSONObject()
+                    .put("id", Math.abs(repoName.hashCode()))
+                    .put("name", ownerAndName[1])
+                    .put("full_name", repoName)
+                    .put("owner", user(ownerAndName[0]))
+                    .put("url", apiUrl())
+                    .put("html_url", "https://github.com/" + repoName)
+                    .put("private", false)
+                    .put("size", commits.size() * 10)
+                    .put("stargazers_count", commits.size())
+                    .put("open_issues_count", issues.size() / 3);
+        }
+
+        private JSONObject commitNode(CommitData commit, boolean withUsers) {
+            JSONArray parents = new JSONArray();
+            for (String parent : commit.parents) {
+                parents.put(new JSONObject().put("oid", parent));
+            }
+            JSONObject author = new JSONObject().put("email", commit.email);
+            JSONObject committer = new JSONObject();
+            if (withUsers) {
+                // the stand-in users do not make their email public
+                author.put("user", new JSONObject().put("login", commit.login));
+                committer.put("user", new JSONObject().put("email", ""));
+            }
+            return new JSONObject()
+                    .put("oid", commit.sha)
+                    .put("committedDate", formatDate(commit.date))
+                    .put("author", author)
+                    .put("committer", committer)
+                    .put("parents", new JSONObject().put("nodes", parents));
+        }
+
+        private JSONObject commitJson(CommitData commit, boolean detailed) {
+            JSONObject person = new JSONObject().put("name", commit.name).put("email", commit.email).put("date", formatDate(commit.date));
+            JSONArray parents = new JSONArray();
+            for (String parent : commit.parents) {
+                parents.put(new JSONObject().put("sha", parent).put("url", apiUrl() + "/commits/" + parent));
+            }
+            JSONObject commitJson = new JSONObject()
+                    .put("sha", commit.sha)
+                    .put("url", apiUrl() + "/commits/" + commit.sha)
+                    .put("html_url", "https://github.com/" + repoName + "/commit/" + commit.sha)
+                    .put("commit", new JSONObject().put("author", person).put("committer", person).put("message", "Change"))
+                    .put("author", user(commit.login))
+                    .put("committer", user(commit.login))
+                    .put("parents", parents);
+            if (detailed) {
+                commitJson.put("files", new JSONArray()).put("stats", new JSONObject().put("total", 0).put("additions", 0).put("deletions", 0));
+            }
+            return commitJson;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ch.uzh.testsonsustainability.harness;
+
+import ch.uzh.testsonsustainability.Job;
+import ch.uzh.testsonsustainability.Utils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * In-process stand-in for the /jobs endpoints of the job server, handing out a fixed list of jobs once each.
+ */
+public class JobsStandIn implements AutoCloseable {
+
+    private final HttpServer server;
+    private final String url;
+    private final Deque<Job> jobsToDo = new ArrayDeque<>();
+    private final List<String> doneJobs = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> failedJobs = Collections.synchronizedList(new ArrayList<>());
+    private volatile long firstJobMillis;
+    private volatile long lastJobMillis;
+
+    public JobsStandIn(List<Job> jobs) throws IOException {
+        jobsToDo.addAll(jobs);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(Utils.GET_JOB_TO_DO_ENDPOINT, this::getJobToDo);
+        server.createContext(Utils.POST_DONE_JOB_ENDPOINT, exchange -> finishJob(exchange, doneJobs));
+        server.createContext(Utils.POST_FAILED_JOB_ENDPOINT, exchange -> finishJob(exchange, failedJobs));
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public List<String> getDoneJobs() {
+        return new ArrayList<>(doneJobs);
+    }
+
+    public List<String> getFailedJobs() {
+        return new ArrayList<>(failedJobs);
+    }
+
+    /**
+     * Milliseconds between the first job handed out and the last job reported as done or failed.
+     */
+    public long getElapsedMillis() {
+        return lastJobMillis - firstJobMillis;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void getJobToDo(HttpExchange exchange) throws IOException {
+        Job job;
+        synchronized (jobsToDo) {
+            job = jobsToDo.poll();
+        }
+        if (job != null && firstJobMillis == 0) {
+            firstJobMillis = System.currentTimeMillis();
+        }
+        respond(exchange, job == null ? "" : job.toJson().toString());
+    }
+
+    private void finishJob(HttpExchange exchange, List<String> finishedJobs) throws IOException {
+        String jobId = readBody(exchange).trim();
+        finishedJobs.add(jobId);
+        lastJobMillis = System.currentTimeMillis();
+        respond(exchange, "");
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            for (int read = requestBody.read(buffer); read != -1; read = requestBody.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+        exchange.close();
+    }
+}
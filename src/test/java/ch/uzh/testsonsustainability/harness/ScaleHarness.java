@@ -0,0 +1,214 @@
+package ch.uzh.testsonsustainability.harness;
+
+import ch.uzh.testsonsustainability.DependencyGraphServer;
+import ch.uzh.testsonsustainability.Job;
+import ch.uzh.testsonsustainability.MavenCentralInfo;
+import ch.uzh.testsonsustainability.SyntheticMavenData;
+import ch.uzh.testsonsustainability.TestsOnSustainability;
+import ch.uzh.testsonsustainability.Utils;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the whole worker against synthetic data, a local github stand-in and a local job server stand-in, and reports
+ * jobs/hour, peak heap and github API calls per job, so that changes to the scalability can be checked offline.
+ *
+ * The synthetic repositories are cloned from the work directory, under a github.com directory so that the worker
+ * derives the same repository names the github stand-in serves.
+ */
+public class ScaleHarness {
+
+    private static final long SEED = 42;
+
+    private static Options createCLIOptions() {
+        Options options = new Options();
+        options.addOption("w", "work-dir", true, "Directory where the synthetic data, clones and results are stored");
+        options.addOption("a", "artifacts", true, "Number of maven artifacts (default 1000)");
+        options.addOption("v", "versions", true, "Number of versions per artifact (default 5)");
+        options.addOption("e", "dependencies", true, "Number of dependencies per version (default 4)");
+        options.addOption("n", "jobs", true, "Number of projects to analyse (default 10)");
+        options.addOption("m", "modules", true, "Number of projects sharing a repository, as the modules of a multi-module project (default 1)");
+        options.addOption("k", "commits", true, "Number of commits per project (default 500)");
+        options.addOption("p", "developers", true, "Number of developers per project (default 50)");
+        options.addOption("y", "starting-year", true, "Starting year for the analysis (default 2018)");
+        options.addOption("r", "rate-limit", true, "Github API calls allowed per hour (default 5000)");
+        options.addOption("g", "graph-daemon", false, "Serve the dependency graph from a daemon instead of loading it in the worker");
+        options.addOption("M", "metrics", true, "Comma separated variables computed by the worker (default all)");
+        options.addOption("q", "github-graphql", false, "Retrieve the commits and issues through the GraphQL endpoint of the stand-in");
+        options.addOption("T", "incremental-checkout", false, "Materialise the tags for the static analysis by applying tree diffs");
+        options.addOption("H", "analysis-helpers", true, "Number of helper JVMs running the static analysis of the worker");
+        options.addOption("W", "worker-threads", true, "Number of jobs run at the same time by the worker");
+        options.addOption("R", "api-budget-reserve", true, "Plan the github API calls of each job, keeping this reserve of calls");
+        options.addOption("X", "approximate-variables", true, "Comma separated transitive counts the worker estimates from sketches, t_upstreams and/or t_downstreams");
+        options.addOption("B", "dependency-table", false, "Compute the dependency table in bulk before the worker and join the worker against it");
+        options.addOption("h", "help", false, "Print this message");
+        return options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = createCLIOptions();
+        CommandLine line;
+        try {
+            line = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("scale-harness", options);
+            System.exit(1);
+            return;
+        }
+        if (line.hasOption("h") || !line.hasOption("w")) {
+            new HelpFormatter().printHelp("scale-harness", options);
+            System.exit(line.hasOption("h") ? 0 : 1);
+        }
+
+        Path workDir = Paths.get(line.getOptionValue("w")).toAbsolutePath();
+        int artifacts = Integer.parseInt(line.getOptionValue("a", "1000"));
+        int versions = Integer.parseInt(line.getOptionValue("v", "5"));
+        int dependencies = Integer.parseInt(line.getOptionValue("e", "4"));
+        int jobs = Math.min(artifacts, Integer.parseInt(line.getOptionValue("n", "10")));
+        int modules = Integer.parseInt(line.getOptionValue("m", "1"));
+        int commits = Integer.parseInt(line.getOptionValue("k", "500"));
+        int developers = Integer.parseInt(line.getOptionValue("p", "50"));
+        int startingYear = Integer.parseInt(line.getOptionValue("y", "2018"));
+        int rateLimit = Integer.parseInt(line.getOptionValue("r", "5000"));
+
+        System.out.println("Generating the synthetic dataset in " + workDir);
+        String csvPath = new SyntheticMavenData(artifacts, versions, dependencies, SEED).writeTo(workDir.resolve("data"));
+        writeDomains(Paths.get(csvPath));
+
+        Date since = new Date(startingYear - 1 - 1900, 0, 1);
+        Date until = new Date();
+        List<Job> jobList = new ArrayList<>();
+        try (GithubStandIn github = new GithubStandIn(rateLimit, 3600, SEED)) {
+            for (int artifactIndex = 0; artifactIndex < jobs; artifactIndex++) {
+                int repositoryIndex = artifactIndex / modules;
+                String repoName = String.format("synthetic%d/artifact%d", repositoryIndex % 97, repositoryIndex);
+                File repository = workDir.resolve("repos/github.com/" + repoName).toFile();
+                if (!new File(repository, ".git").exists()) {
+                    SyntheticRepository.create(repository, commits, developers, since, until, SEED + repositoryIndex);
+                }
+                if (artifactIndex % modules == 0) {
+                    github.register(repoName, repository, developers);
+                }
+
+                Job job = new Job();
+                job.setId(String.valueOf(artifactIndex));
+                job.setProject(SyntheticMavenData.artifact(artifactIndex));
+                job.setGithubLink("file://" + repository.getAbsolutePath());
+                jobList.add(job);
+            }
+
+            DependencyGraphServer graphServer = null;
+            if (line.hasOption("g")) {
+                graphServer = new DependencyGraphServer(new MavenCentralInfo(csvPath), 0);
+                graphServer.start();
+            }
+            try (JobsStandIn jobServer = new JobsStandIn(jobList)) {
+                // with a graph daemon the peak heap also includes the graph, as the daemon runs in the same JVM
+                heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+                Path outPath = workDir.resolve("out");
+                Files.createDirectories(outPath);
+                List<String> workerArgs = new ArrayList<>(Arrays.asList(
+                        "-d", csvPath,
+                        "-o", outPath.toString(),
+                        "-c", workDir.resolve("clones").toString(),
+                        "-y", String.valueOf(startingYear),
+                        "-u", "harness",
+                        "-t", "harness-token",
+                        "-j", jobServer.getUrl(),
+                        "-g", github.getUrl(),
+                        "-m", "5"));
+                if (line.hasOption("B")) {
+                    Path tablePath = workDir.resolve("table");
+                    Files.createDirectories(tablePath);
+                    long tableStart = System.currentTimeMillis();
+                    TestsOnSustainability.main(new String[]{"-d", csvPath, "-o", tablePath.toString(), "-y", String.valueOf(startingYear), "-B"});
+                    System.out.printf("Dependency table computed in %.1fs%n", (System.currentTimeMillis() - tableStart) / 1000.0);
+                    workerArgs.addAll(Arrays.asList("-J", tablePath.resolve(Utils.DEPENDENCY_TABLE_FILENAME).toString()));
+                } else if (graphServer != null) {
+                    workerArgs.addAll(Arrays.asList("-G", graphServer.getUrl()));
+                }
+                if (line.hasOption("M")) {
+                    workerArgs.addAll(Arrays.asList("-M", line.getOptionValue("M")));
+                }
+                if (line.hasOption("q")) {
+                    workerArgs.add("-q");
+                }
+                if (line.hasOption("T")) {
+                    workerArgs.add("-T");
+                }
+                if (line.hasOption("H")) {
+                    workerArgs.addAll(Arrays.asList("-H", line.getOptionValue("H")));
+                }
+                if (line.hasOption("W")) {
+                    workerArgs.addAll(Arrays.asList("-W", line.getOptionValue("W")));
+                }
+                if (line.hasOption("R")) {
+                    workerArgs.addAll(Arrays.asList("-R", line.getOptionValue("R")));
+                }
+                if (line.hasOption("X")) {
+                    workerArgs.addAll(Arrays.asList("-X", line.getOptionValue("X")));
+                }
+                TestsOnSustainability.main(workerArgs.toArray(new String[0]));
+
+                int finishedJobs = jobServer.getDoneJobs().size() + jobServer.getFailedJobs().size();
+                double elapsedHours = jobServer.getElapsedMillis() / 3.6e6;
+                System.out.println();
+                System.out.println("Jobs: " + jobServer.getDoneJobs().size() + " done, " + jobServer.getFailedJobs().size() + " failed " + jobServer.getFailedJobs());
+                System.out.printf("Jobs/hour: %.1f (%.1fs elapsed)%n", elapsedHours == 0 ? 0 : finishedJobs / elapsedHours, elapsedHours * 3600);
+                System.out.printf("Peak heap: %d MB%n", peakHeapBytes() / (1024 * 1024));
+                System.out.printf("Github API calls: %d, %.1f per job%n", github.getCalls(), finishedJobs == 0 ? 0 : (double) github.getCalls() / finishedJobs);
+                System.out.printf("  of which GraphQL queries: %d%n", github.getGraphQLQueries());
+                for (Map.Entry<String, Long> repositoryCalls : github.getCallsPerRepository().entrySet()) {
+                    System.out.printf("  %s: %d%n", repositoryCalls.getKey(), repositoryCalls.getValue());
+                }
+            } finally {
+                if (graphServer != null) {
+                    graphServer.close();
+                }
+            }
+        }
+    }
+
+    private static void writeDomains(Path csvPath) throws IOException {
+        // the stand-in commit emails use these domains, see SyntheticRepository
+        Files.write(csvPath.resolve("universityDomains.txt"), Arrays.asList("uzh.ch", "unisa.it"));
+        Files.write(csvPath.resolve("publicDomains.txt"), Arrays.asList("gmail.com", "yahoo.com"));
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                heapPools.add(memoryPool);
+            }
+        }
+        return heapPools;
+    }
+
+    private static long peakHeapBytes() {
+        // the JVM tracks the peak usage of each pool since the last reset
+        long peakHeapBytes = 0;
+        for (MemoryPoolMXBean heapPool : heapPools()) {
+            peakHeapBytes += heapPool.getPeakUsage().getUsed();
+        }
+        return peakHeapBytes;
+    }
+}
@@ -0,0 +1,103 @@
+package ch.uzh.testsonsustainability.harness;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Seeded generator of a local git repository with the history of a java project: commits of a skewed set of
+ * developers, merge pull request commits without changes, and a tag every few commits.
+ */
+public class SyntheticRepository {
+
+    private static final String[] DOMAINS = {"uzh.ch", "unisa.it", "gmail.com", "yahoo.com", "google.com", "redhat.com"};
+    private static final int COMMITS_PER_TAG = 25;
+    private static final int COMMITS_PER_MERGE = 10;
+
+    private SyntheticRepository() {
+    }
+
+    public static String login(int developer) {
+        return "dev" + developer;
+    }
+
+    public static String email(int developer) {
+        return login(developer) + "@" + DOMAINS[developer % DOMAINS.length];
+    }
+
+    public static void create(File directory, int commits, int developers, Date since, Date until, long seed) throws Exception {
+        Random random = new Random(seed);
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        long step = Math.max(1, (until.getTime() - since.getTime()) / (commits + 1));
+        Path sources = directory.toPath().resolve("src/main/java/synthetic");
+        Files.createDirectories(sources);
+
+        try (Git git = Git.init().setDirectory(directory).call()) {
+            List<RevCommit> history = new ArrayList<>();
+            for (int i = 0; i < commits; i++) {
+                Date commitDate = new Date(since.getTime() + step * (i + 1));
+                // few developers author most of the commits
+                double r = random.nextDouble();
+                int developer = (int) (r * r * developers);
+                PersonIdent author = new PersonIdent("Developer " + developer, email(developer), commitDate, utc);
+
+                if (i > 0 && i % COMMITS_PER_MERGE == 0 && history.size() > 2) {
+                    history.add(emptyMerge(git, history.get(history.size() - 1), history.get(history.size() - 3), author));
+                    continue;
+                }
+
+                int classIndex = random.nextInt(Math.max(1, i / 5 + 1));
+                try (PrintWriter printWriter = new PrintWriter(Files.newBufferedWriter(sources.resolve("Class" + classIndex + ".java")))) {
+                    printWriter.printf("package synthetic;%n%npublic class Class%d {%n", classIndex);
+                    printWriter.printf("    public int revision() {%n        return %d;%n    }%n}%n", i);
+                }
+                git.add().addFilepattern(".").call();
+                RevCommit commit = git.commit()
+                        .setMessage("Change " + i)
+                        .setAuthor(author)
+                        .setCommitter(author)
+                        .call();
+                history.add(commit);
+                if (i % COMMITS_PER_TAG == COMMITS_PER_TAG - 1) {
+                    git.tag().setName("v1." + i / COMMITS_PER_TAG).setAnnotated(false).setObjectId(commit).call();
+                }
+            }
+        }
+    }
+
+    private static RevCommit emptyMerge(Git git, RevCommit head, RevCommit otherParent, PersonIdent author) throws IOException {
+        // a merge pull request commit whose tree is the one of its most recent parent
+        try (ObjectInserter inserter = git.getRepository().newObjectInserter(); RevWalk revWalk = new RevWalk(git.getRepository())) {
+            CommitBuilder commitBuilder = new CommitBuilder();
+            commitBuilder.setTreeId(head.getTree());
+            commitBuilder.setParentIds(otherParent, head);
+            commitBuilder.setAuthor(author);
+            commitBuilder.setCommitter(author);
+            commitBuilder.setMessage("Merge pull request");
+            ObjectId mergeId = inserter.insert(commitBuilder);
+            inserter.flush();
+
+            RefUpdate refUpdate = git.getRepository().updateRef(Constants.HEAD);
+            refUpdate.setNewObjectId(mergeId);
+            refUpdate.forceUpdate();
+            return revWalk.parseCommit(mergeId);
+        }
+    }
+}